@@ -16,6 +16,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
@@ -172,6 +173,18 @@ public final class Operators {
         }
     }
 
+    public static <T> T await(CompletionStage<T> stage) {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            } else {
+                throw e;
+            }
+        }
+    }
+
     public static <T, E extends Exception> CompletionStage<T> completeExceptionally(E with) {
         CompletableFuture<T> result = new CompletableFuture<>();
         result.completeExceptionally(with);
@@ -10,13 +10,31 @@ import org.objenesis.ObjenesisStd;
 
 import javax.annotation.Nullable;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 public final class ReflectionUtils {
 
+    /**
+     * Cached accessors to read (nested) fields, see {@link #getFieldAccessor(Class, String)}.
+     */
+    private static final ClassValue<Map<String, Function<Object, Object>>> FIELD_ACCESSORS = new ClassValue<>() {
+
+        @Override
+        protected Map<String, Function<Object, Object>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+
+    };
+
     private ReflectionUtils() {
 
     }
@@ -152,47 +170,71 @@ public final class ReflectionUtils {
         }
     }
 
-
-    @SuppressWarnings("unchecked")
+    /**
+     * Returns a function to read a (nested) field from objects of the given type, e.g. `engine.type`. Each path
+     * segment is read from a getter (`get` + field name, case-insensitive) or, if no getter exists, directly from
+     * the declared field. If an intermediate value is `null`, the function returns `null`.
+     * <p>
+     * See {@link #getFieldAccessor(Class, String)}.
+     *
+     * @param field The field path, segments separated by `.`.
+     * @param type  The type from which the field should be read.
+     * @param <U>   The object type to read a value from.
+     * @return A function to read the value.
+     */
     public static <U> Function1<U, Object> getValueGetterForNestedFieldForClass(String field, Class<U> type) {
-        var fields = Arrays.stream(field.split("\\.")).toList();
-        var childField = Optional
-            .of(String.join(".", fields.subList(1, fields.size())))
-            .flatMap(s -> {
-                if (s.length() > 0) {
-                    return Optional.of(s);
-                } else {
-                    return Optional.empty();
-                }
-            });
+        var accessor = getFieldAccessor(type, field);
+        return accessor::apply;
+    }
 
-        var objFieldTuple = getValueGetterForClass(fields.get(0), type);
-        var objFieldGetter = objFieldTuple._1;
-        var objFieldType = objFieldTuple._2;
+    /**
+     * Returns an accessor to read a (nested) field from objects of the given type, see
+     * {@link #getValueGetterForNestedFieldForClass(String, Class)}.
+     * <p>
+     * Accessors are resolved once per type and field path and cached. Getters are bound with
+     * {@link LambdaMetafactory} (falling back to {@link MethodHandle}s if the getter's class is not accessible),
+     * thus reading a value costs about the same as a direct method call. The cache is keyed with a
+     * {@link ClassValue} and does not prevent classes from being unloaded.
+     *
+     * @param type  The type from which the field should be read.
+     * @param field The field path, segments separated by `.`.
+     * @return The accessor.
+     */
+    public static Function<Object, Object> getFieldAccessor(Class<?> type, String field) {
+        var accessors = FIELD_ACCESSORS.get(type);
+        var accessor = accessors.get(field);
 
-        if (childField.isPresent()) {
-            var nextFunction = getValueGetterForNestedFieldForClass(childField.get(), (Class<Object>) objFieldType);
+        if (Objects.isNull(accessor)) {
+            /*
+             * Not using `computeIfAbsent` as resolving a nested path might recursively resolve paths of the same type.
+             */
+            accessors.putIfAbsent(field, createFieldAccessor(field, type));
+            accessor = accessors.get(field);
+        }
 
-            return obj -> {
-                var nextObj = objFieldGetter.get(obj);
+        return accessor;
+    }
 
-                if (Objects.nonNull(nextObj)) {
-                    return nextFunction.apply(nextObj);
-                } else {
-                    return null;
-                }
-            };
-        } else {
-            return obj -> {
-                var nextObj = objFieldGetter.get(obj);
+    private static Function<Object, Object> createFieldAccessor(String field, Class<?> type) {
+        var separator = field.indexOf('.');
 
-                if (Objects.nonNull(nextObj)) {
-                    return nextObj;
-                } else {
-                    return null;
-                }
-            };
+        if (separator < 0) {
+            return getValueGetterForClass(field, type)._1;
         }
+
+        var objFieldTuple = getValueGetterForClass(field.substring(0, separator), type);
+        var objFieldGetter = objFieldTuple._1;
+        var nextFunction = getFieldAccessor(objFieldTuple._2, field.substring(separator + 1));
+
+        return obj -> {
+            var nextObj = objFieldGetter.apply(obj);
+
+            if (Objects.nonNull(nextObj)) {
+                return nextFunction.apply(nextObj);
+            } else {
+                return null;
+            }
+        };
     }
 
     /**
@@ -201,10 +243,9 @@ public final class ReflectionUtils {
      *
      * @param field The field name (no nested path). Field must be direct field of `type`.
      * @param type  The type from which a field should be read.
-     * @param <U>   The object type to read a value from.
-     * @return A function to read a value from object of type U and the corresponding response type.
+     * @return A function to read a value from object of the type and the corresponding response type.
      */
-    private static <U> Tuple2<Function1<U, Object>, Class<?>> getValueGetterForClass(String field, Class<U> type) {
+    private static Tuple2<Function<Object, Object>, Class<?>> getValueGetterForClass(String field, Class<?> type) {
         /*
          * Try to find getter.
          */
@@ -221,14 +262,12 @@ public final class ReflectionUtils {
 
         if (getter.isPresent()) {
             return Tuple.apply(
-                obj -> getter.get().invoke(obj),
+                createMethodAccessor(getter.get()),
                 getter.get().getReturnType()
             );
         } else if (objField.isPresent()) {
-            objField.get().setAccessible(true);
-
             return Tuple.apply(
-                obj -> objField.get().get(obj),
+                createFieldAccessor(objField.get()),
                 objField.get().getType()
             );
         } else {
@@ -239,4 +278,62 @@ public final class ReflectionUtils {
         }
     }
 
+    /**
+     * Creates a function which calls a getter. The function is created with {@link LambdaMetafactory} to allow
+     * the JIT to inline the call. If this is not possible (e.g. the class of the getter is not accessible from
+     * this module), a {@link MethodHandle} is used.
+     *
+     * @param method The getter method.
+     * @return The function to call the getter.
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> createMethodAccessor(Method method) {
+        try {
+            var lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup());
+            var handle = lookup.unreflect(method);
+            var site = LambdaMetafactory.metafactory(
+                lookup,
+                "apply",
+                MethodType.methodType(Function.class),
+                MethodType.methodType(Object.class, Object.class),
+                handle,
+                handle.type().wrap()
+            );
+
+            return (Function<Object, Object>) site.getTarget().invoke();
+        } catch (Throwable e) {
+            method.trySetAccessible();
+
+            var handle = Operators.suppressExceptions(() -> MethodHandles.lookup().unreflect(method));
+            return createHandleAccessor(handle);
+        }
+    }
+
+    /**
+     * Creates a function which reads the value of a field with a {@link MethodHandle}.
+     *
+     * @param field The field to read.
+     * @return The function to read the field.
+     */
+    private static Function<Object, Object> createFieldAccessor(java.lang.reflect.Field field) {
+        field.trySetAccessible();
+
+        var handle = Operators.suppressExceptions(() -> MethodHandles.lookup().unreflectGetter(field));
+        return createHandleAccessor(handle);
+    }
+
+    private static Function<Object, Object> createHandleAccessor(MethodHandle handle) {
+        var getter = handle.asType(MethodType.methodType(Object.class, Object.class));
+
+        return obj -> {
+            try {
+                return getter.invokeExact(obj);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
 }
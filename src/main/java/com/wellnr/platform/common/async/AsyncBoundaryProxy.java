@@ -1,55 +1,144 @@
 package com.wellnr.platform.common.async;
 
-import com.wellnr.platform.common.Operators;
 import com.wellnr.platform.common.ReflectionUtils;
-import com.wellnr.platform.common.functions.Function1;
 import com.wellnr.platform.common.tuples.Done;
 import com.wellnr.platform.common.tuples.Either;
+import com.wellnr.platform.common.tuples.Tuple;
+import com.wellnr.platform.common.tuples.Tuple2;
 import javassist.util.proxy.MethodFilter;
 import javassist.util.proxy.ProxyFactory;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Value;
-import lombok.With;
-import org.slf4j.LoggerFactory;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.text.MessageFormat;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Serializes calls to an object: calls are queued in a mailbox per proxied object and executed one at a time (calls
+ * to methods annotated as pure may be executed along with each other), see {@link AsyncMethod}.
+ * <p>
+ * The mailboxes of all proxies are multiplexed onto a shared scheduler, thus the number of threads does not depend on
+ * the number of proxied objects. Proxies only submit a task to the scheduler if a call is ready to be executed, thus
+ * the order of calls to a single object is preserved independent of the scheduler.
+ * <p>
+ * A proxy can be passivated while it is idle, see {@link #passivate(Supplier)}. Calls which arrive afterwards are
+ * forwarded to a successor, e.g. a proxy of the same object which has been created again.
+ */
 @AllArgsConstructor(staticName = "apply", access = AccessLevel.PRIVATE)
 public final class AsyncBoundaryProxy implements InvocationHandler {
 
+    /**
+     * The default maximum number of threads of schedulers, see {@link #createScheduler(int, int)}.
+     */
+    public static final int DEFAULT_MAX_POOL_SIZE = 256;
+
+    /**
+     * Set within {@link #state} while a thread drains the inbox.
+     */
+    private static final int DRAINING = 1;
+
+    /**
+     * Set within {@link #state} while a method, which is not pure, is executed. Additional calls must wait.
+     */
+    private static final int WRITING = 1 << 1;
+
+    /**
+     * Set within {@link #state} once the proxy has been passivated, see {@link #passivate(Supplier)}. The flag is
+     * never cleared; calls are forwarded to the {@link #successor}.
+     */
+    private static final int PASSIVATED = 1 << 2;
+
+    /**
+     * The increment of the number of pure methods which are executed, the remaining bits of {@link #state}. While
+     * pure methods are executed, additional pure methods may be executed; other methods must wait to ensure
+     * consistent reads.
+     */
+    private static final int READER = 1 << 3;
+
+    private static final Object[] NO_ARGS = new Object[0];
+
     private final Object delegate;
 
-    private final ExecutorService executors;
+    /**
+     * The metadata of the proxied type's methods, shared by all proxies of the type.
+     */
+    private final DispatchTable dispatchTable;
+
+    private final Executor scheduler;
 
-    private final ReadWriteLock stateLock;
+    /**
+     * The calls which are not yet executed, in the order of their arrival. Calls are added by any thread, but polled
+     * only by the thread which drains the inbox.
+     */
+    private final Queue<Call> inbox;
 
-    private State state;
+    /**
+     * The state of the mailbox, see {@link #DRAINING}, {@link #WRITING}, {@link #PASSIVATED} and {@link #READER}.
+     */
+    private final AtomicInteger state;
 
-    private static AsyncBoundaryProxy apply(Object delegate) {
+    /**
+     * Provides the proxy which receives calls after the proxy has been passivated.
+     */
+    private final AtomicReference<Supplier<AsyncBoundaryProxy>> successor;
+
+    private static AsyncBoundaryProxy apply(Object delegate, Class<?> type, Executor scheduler) {
         return apply(
-            delegate,
-            Executors.newFixedThreadPool(10),
-            new ReentrantReadWriteLock(),
-            State.apply(Mode.IDLE, new ConcurrentLinkedQueue<>(), 0)
+            delegate, DispatchTable.forType(type), scheduler, new ConcurrentLinkedQueue<>(), new AtomicInteger(),
+            new AtomicReference<>()
         );
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Creates a proxy whose calls are executed on the given scheduler.
+     *
+     * @param delegate      The object to wrap.
+     * @param interfaceType The type of the proxy.
+     * @param scheduler     The scheduler which executes calls, usually shared by all proxies.
+     * @param <T>           The type of the proxy.
+     * @return The proxy.
+     */
+    public static <T> T createProxy(T delegate, Class<T> interfaceType, Executor scheduler) {
+        return createProxyWithHandler(delegate, interfaceType, scheduler)._1;
+    }
+
+    /**
+     * Creates a proxy whose calls are executed on the given scheduler and returns it along with its handler, e.g.
+     * to passivate the proxy.
+     *
+     * @param delegate      The object to wrap.
+     * @param interfaceType The type of the proxy.
+     * @param scheduler     The scheduler which executes calls, usually shared by all proxies.
+     * @param <T>           The type of the proxy.
+     * @return The proxy and its handler.
+     */
+    public static <T> Tuple2<T, AsyncBoundaryProxy> createProxyWithHandler(
+        T delegate, Class<T> interfaceType, Executor scheduler) {
+
+        var handler = AsyncBoundaryProxy.apply(delegate, interfaceType, scheduler);
+        return Tuple.apply(ReflectionUtils.createProxy(interfaceType, handler), handler);
+    }
+
+    /**
+     * Creates a proxy whose calls are executed on the default scheduler, which is shared by all proxies created
+     * without explicit scheduler.
+     *
+     * @param delegate      The object to wrap.
+     * @param interfaceType The type of the proxy.
+     * @param <T>           The type of the proxy.
+     * @return The proxy.
+     */
     public static <T> T createProxy(T delegate, Class<T> interfaceType) {
-        return ReflectionUtils.createProxy(
-            interfaceType, AsyncBoundaryProxy.apply(delegate)
-        );
+        return createProxy(delegate, interfaceType, DefaultScheduler.INSTANCE);
     }
 
     @SuppressWarnings("unchecked")
@@ -57,36 +146,47 @@ public final class AsyncBoundaryProxy implements InvocationHandler {
         return createProxy(delegate, (Class<T>) delegate.getClass());
     }
 
-    @Override
-    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        var maybeAsyncMethod = Optional.ofNullable(method.getAnnotation(AsyncMethod.class));
-
-        if (maybeAsyncMethod.isEmpty()) {
-            LoggerFactory.getLogger(delegate.getClass()).warn(
-                "Method `{}` is not annotated with @AsyncMethod. Its strongly recommended to annotate " +
-                    "methods of classes wrapped by {},",
-                method.getName(), this.getClass().getSimpleName()
-            );
+    /**
+     * Creates a work-stealing scheduler for proxies.
+     * <p>
+     * Methods of proxied objects may block, e.g. when calling other proxies synchronously. Waiting for a
+     * {@link CompletableFuture} within the scheduler's threads temporarily adds threads to keep the parallelism, up
+     * to `maxPoolSize` threads.
+     *
+     * @param parallelism The number of threads which execute calls, usually the number of available processors.
+     * @param maxPoolSize The maximum number of threads, including threads which compensate blocked threads.
+     * @return A new scheduler.
+     */
+    public static ExecutorService createScheduler(int parallelism, int maxPoolSize) {
+        if (parallelism < 1 || maxPoolSize < parallelism) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "Parallelism must be positive and must not exceed maximum pool size, got `{0}` and `{1}`.",
+                parallelism, maxPoolSize
+            ));
         }
 
+        var threads = new AtomicInteger();
 
-        var result = new CompletableFuture<>();
-        this.addToInbox(Call.apply(
-            method, args, result, maybeAsyncMethod.orElse(new AsyncMethod() {
-                @Override
-                public boolean pure() {
-                    return false;
-                }
+        ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = pool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("async-boundary-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
 
-                @Override
-                public Class<? extends Annotation> annotationType() {
-                    return AsyncMethod.class;
-                }
+        return new ForkJoinPool(
+            parallelism, threadFactory, null, true, 0, maxPoolSize, 1, null, 60, TimeUnit.SECONDS
+        );
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        var dispatch = this.dispatchTable.get(method);
+        var result = new CompletableFuture<>();
 
-            })
-        ));
+        this.addToInbox(Call.apply(dispatch, Objects.requireNonNullElse(args, NO_ARGS), result));
 
-        if (method.getReturnType().isAssignableFrom(CompletionStage.class)) {
+        if (dispatch.isAsync()) {
             return result;
         } else {
             try {
@@ -101,144 +201,197 @@ public final class AsyncBoundaryProxy implements InvocationHandler {
         }
     }
 
-    private void addToInbox(Call call) {
-        this.updateState(currentState -> {
-            currentState.inbox.add(call);
-            return currentState;
-        });
+    /**
+     * Checks whether calls are queued or executed. The result may be outdated immediately if the proxy is called
+     * concurrently.
+     *
+     * @return True, if no call is queued or executed.
+     */
+    public boolean isIdle() {
+        return this.state.get() == 0 && this.inbox.isEmpty();
+    }
 
+    /**
+     * Passivates the proxy if no call is queued or executed. Once passivated, the delegate is not called anymore;
+     * calls are forwarded to the proxy provided by `successor`, which is requested when the first call arrives.
+     * Forwarded calls keep the order in which they arrived.
+     *
+     * @param successor Provides the proxy which receives calls after passivation, e.g. a proxy of the same object
+     *                  which is created again. It must not return this proxy.
+     * @return True, if the proxy has been passivated; false, if calls are queued or executed.
+     */
+    public boolean passivate(Supplier<AsyncBoundaryProxy> successor) {
+        /*
+         * Callers add calls to the inbox before they check the state, thus a call which arrives concurrently is
+         * either seen by `process` as passivated and forwarded, or the state has changed and the CAS fails.
+         */
+        this.successor.set(successor);
+        return this.inbox.isEmpty() && this.state.compareAndSet(0, PASSIVATED);
+    }
+
+    private void addToInbox(Call call) {
+        this.inbox.add(call);
         this.process();
     }
 
+    /**
+     * Executes the calls at the head of the inbox, as long as the state allows it. Only one thread drains the inbox
+     * at a time; other threads which add calls or complete calls meanwhile return immediately, the draining thread
+     * checks the inbox again after it has released the {@link #DRAINING} flag.
+     */
     private void process() {
-        this.updateState(currentState -> {
-            if (currentState.getInbox().isEmpty()) {
-                return currentState;
+        while (true) {
+            var current = this.state.get();
+
+            if ((current & PASSIVATED) != 0) {
+                this.forward();
+                return;
+            } else if ((current & DRAINING) != 0) {
+                return;
+            } else if (!this.state.compareAndSet(current, current | DRAINING)) {
+                continue;
             }
 
-            var nextCall = currentState.getInbox().element();
-
-            if (
-                nextCall.getMode().pure() && (currentState.getMode().equals(Mode.IDLE) || currentState.getMode()
-                    .equals(Mode.PURE))
-            ) {
-                /*
-                 * Pure methods can be executed along with others.
-                 */
-                var call = currentState.getInbox().poll();
-                this.execute(call);
-
-                return currentState
-                    .withRunningCalls(currentState.runningCalls + 1)
-                    .withMode(Mode.PURE);
-            } else if (currentState.getMode().equals(Mode.IDLE)) {
-                var call = currentState.getInbox().poll();
-                this.execute(call);
-
-                return currentState
-                    .withRunningCalls(currentState.runningCalls + 1)
-                    .withMode(Mode.WRITING);
-            } else {
-                return currentState;
+            this.drain();
+
+            var released = this.state.updateAndGet(s -> s & ~DRAINING);
+            var next = this.inbox.peek();
+
+            if (Objects.isNull(next) || !canExecute(next, released)) {
+                return;
             }
-        });
+        }
     }
 
-    private void execute(Call call) {
-        CompletableFuture.runAsync(() -> {
-            try {
-
-                var result = call.method.invoke(delegate, call.args);
+    /**
+     * Polls and executes calls from the inbox until the inbox is empty or the next call must wait. Must only be
+     * called by the thread which has set the {@link #DRAINING} flag.
+     */
+    private void drain() {
+        while (true) {
+            var next = this.inbox.peek();
 
-                if (!Objects.isNull(result) && result instanceof CompletionStage<?> cs) {
-                    cs
-                        .handle(Either::apply)
-                        .thenApply(r -> r
-                            .ifLeft(call.result::complete)
-                            .ifRight(call.result::completeExceptionally));
-                } else {
-                    call.result.complete(result);
-                }
-            } catch (InvocationTargetException ex) {
-                call.result.completeExceptionally(ex.getCause());
-            } catch (Exception ex) {
-                call.result.completeExceptionally(ex);
+            if (Objects.isNull(next)) {
+                return;
             }
 
-            call
-                .result
-                .handle((i1, i2) -> Done.getInstance())
-                .thenAccept(i -> {
-                    this.updateState(s -> {
-                        s = s.withRunningCalls(s.runningCalls - 1);
+            var current = this.state.get();
 
-                        if (s.runningCalls <= 0) {
-                            s = s.withMode(Mode.IDLE);
-                        }
+            if (!canExecute(next, current)) {
+                return;
+            }
 
-                        return s;
-                    });
+            var updated = next.getDispatch().isPure() ? current + READER : current | WRITING;
 
-                    this.process();
-                });
-        }, this.executors);
+            if (this.state.compareAndSet(current, updated)) {
+                this.execute(this.inbox.poll());
+            }
+        }
     }
 
-    private void updateState(Function1<State, State> updateFn) {
-        this.stateLock.writeLock().lock();
-
-        this.state = Operators.ignoreExceptionsWithDefault(
-            () -> updateFn.get(this.state), state
-        );
+    /**
+     * Executes a call on the scheduler. If the scheduler rejects the call, e.g. because it has been shut down, the
+     * call fails and its slot is released again; the draining thread continues with the next call.
+     */
+    private void execute(Call call) {
+        try {
+            CompletableFuture.runAsync(() -> {
+                try {
+
+                    var result = call.dispatch.getInvoker().invoke(delegate, call.args);
+
+                    if (!Objects.isNull(result) && result instanceof CompletionStage<?> cs) {
+                        cs
+                            .handle(Either::apply)
+                            .thenApply(r -> r
+                                .ifLeft(call.result::complete)
+                                .ifRight(call.result::completeExceptionally));
+                    } else {
+                        call.result.complete(result);
+                    }
+                } catch (Throwable ex) {
+                    call.result.completeExceptionally(ex);
+                }
 
-        this.stateLock.writeLock().unlock();
+                call
+                    .result
+                    .handle((i1, i2) -> Done.getInstance())
+                    .thenAccept(i -> {
+                        this.release(call);
+                        this.process();
+                    });
+            }, this.scheduler);
+        } catch (RejectedExecutionException ex) {
+            this.release(call);
+            call.result.completeExceptionally(ex);
+        }
     }
 
-    @Value
-    @AllArgsConstructor(staticName = "apply")
-    private static class Call {
+    /**
+     * Releases the state acquired for a call by {@link #drain()}.
+     */
+    private void release(Call call) {
+        if (call.getDispatch().isPure()) {
+            this.state.addAndGet(-READER);
+        } else {
+            this.state.updateAndGet(s -> s & ~WRITING);
+        }
+    }
 
-        Method method;
+    /**
+     * Forwards all queued calls to the successor of a passivated proxy. Calls are forwarded by one thread at a time,
+     * thus a thread which returns from forwarding its call has forwarded all calls which arrived earlier.
+     */
+    private void forward() {
+        synchronized (this.inbox) {
+            AsyncBoundaryProxy target = null;
+
+            for (var call = this.inbox.poll(); Objects.nonNull(call); call = this.inbox.poll()) {
+                try {
+                    if (Objects.isNull(target)) {
+                        target = this.successor.get().get();
+                    }
+
+                    target.addToInbox(call);
+                } catch (RuntimeException ex) {
+                    call.result.completeExceptionally(ex);
+                }
+            }
+        }
+    }
 
-        Object[] args;
+    /**
+     * Pure methods can be executed along with other pure methods; other methods are executed exclusively.
+     */
+    private static boolean canExecute(Call call, int state) {
+        if (call.getDispatch().isPure()) {
+            return (state & WRITING) == 0;
+        } else {
+            return (state & ~DRAINING) == 0;
+        }
+    }
 
-        CompletableFuture<Object> result;
+    /**
+     * Holds the default scheduler, which is created when it is used first.
+     */
+    private static final class DefaultScheduler {
 
-        AsyncMethod mode;
+        private static final ExecutorService INSTANCE = createScheduler(
+            Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_POOL_SIZE
+        );
 
     }
 
-    @With
     @Value
     @AllArgsConstructor(staticName = "apply")
-    private static class State {
-
-        Mode mode;
-
-        Queue<Call> inbox;
+    private static class Call {
 
-        int runningCalls;
+        DispatchTable.MethodDispatch dispatch;
 
-    }
-
-    private enum Mode {
-        /**
-         * Nothing is currently executed.
-         */
-        IDLE,
+        Object[] args;
 
-        /**
-         * A read operation is currently executing.
-         * Additional read operations may be executed.
-         * Writes are not allowed, to ensure consistent reads.
-         */
-        PURE,
+        CompletableFuture<Object> result;
 
-        /**
-         * A write operation is currently executing.
-         * Additional operations must wait.
-         */
-        WRITING
     }
 
 }
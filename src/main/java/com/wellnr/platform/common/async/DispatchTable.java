@@ -0,0 +1,179 @@
+package com.wellnr.platform.common.async;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metadata to dispatch the calls of {@link AsyncBoundaryProxy} to the methods of a type. The table is computed once
+ * per type and shared by all proxies of the type, thus calls do not require reflection.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class DispatchTable {
+
+    private static final ClassValue<DispatchTable> TABLES = new ClassValue<>() {
+
+        @Override
+        protected DispatchTable computeValue(Class<?> type) {
+            return DispatchTable.apply(type);
+        }
+
+    };
+
+    private final Map<Method, MethodDispatch> methods;
+
+    /**
+     * Returns the table of a type; the table is created when it is requested first.
+     *
+     * @param type The type of proxies.
+     * @return The table.
+     */
+    public static DispatchTable forType(Class<?> type) {
+        return TABLES.get(type);
+    }
+
+    private static DispatchTable apply(Class<?> type) {
+        var methods = new ConcurrentHashMap<Method, MethodDispatch>();
+
+        for (var method : type.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())) {
+                methods.put(method, MethodDispatch.apply(method));
+            }
+        }
+
+        var table = new DispatchTable(methods);
+
+        /*
+         * Report unannotated methods once per type, instead of warning on each call.
+         */
+        var unannotated = table
+            .getUnannotatedMethods()
+            .stream()
+            .map(Method::getName)
+            .distinct()
+            .sorted()
+            .toList();
+
+        if (!unannotated.isEmpty()) {
+            LoggerFactory.getLogger(type).warn(
+                "Methods `{}` of `{}` are not annotated with @AsyncMethod, they are executed exclusively. Its " +
+                    "strongly recommended to annotate methods of classes wrapped by {}.",
+                String.join("`, `", unannotated), type.getName(), AsyncBoundaryProxy.class.getSimpleName()
+            );
+        }
+
+        return table;
+    }
+
+    /**
+     * Returns the metadata of a method. Methods which are not public are added to the table when they are called
+     * first.
+     *
+     * @param method The called method.
+     * @return The metadata.
+     */
+    public MethodDispatch get(Method method) {
+        var dispatch = methods.get(method);
+
+        if (Objects.isNull(dispatch)) {
+            return methods.computeIfAbsent(method, MethodDispatch::apply);
+        } else {
+            return dispatch;
+        }
+    }
+
+    /**
+     * @return The public methods which are not annotated with {@link AsyncMethod}, excluding methods of
+     * {@link Object}.
+     */
+    public List<Method> getUnannotatedMethods() {
+        return methods
+            .values()
+            .stream()
+            .filter(dispatch -> !dispatch.isAnnotated())
+            .map(MethodDispatch::getMethod)
+            .filter(method -> method.getDeclaringClass() != Object.class)
+            .toList();
+    }
+
+    /**
+     * Invokes a method on a target.
+     */
+    @FunctionalInterface
+    interface Invoker {
+
+        Object invoke(Object target, Object[] args) throws Throwable;
+
+    }
+
+    /**
+     * The metadata of a single method.
+     */
+    @lombok.Value
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    static class MethodDispatch {
+
+        Method method;
+
+        /**
+         * Whether the method is annotated with {@link AsyncMethod}.
+         */
+        boolean annotated;
+
+        /**
+         * Whether the method may be executed along with other pure methods, see {@link AsyncMethod#pure()}.
+         * Methods which are not annotated are not pure.
+         */
+        boolean pure;
+
+        /**
+         * Whether the method returns a {@link CompletionStage}; otherwise callers wait for the result.
+         */
+        boolean async;
+
+        Invoker invoker;
+
+        static MethodDispatch apply(Method method) {
+            var annotation = method.getAnnotation(AsyncMethod.class);
+            var annotated = Objects.nonNull(annotation);
+            var async = method.getReturnType().isAssignableFrom(CompletionStage.class);
+
+            return new MethodDispatch(method, annotated, annotated && annotation.pure(), async, createInvoker(method));
+        }
+
+        /**
+         * Creates an invoker from a method handle with type `(Object, Object[])Object`.
+         */
+        private static Invoker createInvoker(Method method) {
+            try {
+                if (!Modifier.isPublic(method.getModifiers()) ||
+                    !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+
+                    method.trySetAccessible();
+                }
+
+                var handle = MethodHandles.lookup().unreflect(method);
+                var invoker = handle
+                    .asType(handle.type().generic())
+                    .asSpreader(Object[].class, method.getParameterCount());
+
+                return (target, args) -> (Object) invoker.invokeExact(target, args);
+            } catch (IllegalAccessException ex) {
+                return (target, args) -> {
+                    throw ex;
+                };
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.wellnr.platform.common.async;
+
+import com.wellnr.platform.common.functions.Function0;
+import lombok.AllArgsConstructor;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Flow.Publisher} which emits the elements of a {@link Stream}. Each subscriber receives a new stream,
+ * the stream is opened on subscription and closed when it is completed, failed or cancelled.
+ * <p>
+ * Elements are only pulled from the stream if requested by the subscriber. They are emitted on the thread which
+ * calls {@link Flow.Subscription#request(long)}; recursive requests from within `onNext` are served by the
+ * outer call.
+ *
+ * @param <T> The type of the elements.
+ */
+@AllArgsConstructor(staticName = "apply")
+public final class StreamPublisher<T> implements Flow.Publisher<T> {
+
+    /**
+     * A function which opens a new stream for a subscriber.
+     */
+    private final Function0<Stream<T>> open;
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        new StreamSubscription<>(subscriber, open).start();
+    }
+
+    private static final class StreamSubscription<T> implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+
+        private final Function0<Stream<T>> open;
+
+        private final AtomicLong demand = new AtomicLong();
+
+        /**
+         * Counts the pending calls to {@link #drain()}, only one caller emits elements at a time.
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Stream<T> stream;
+
+        private Iterator<T> iterator;
+
+        private volatile Throwable invalidRequest;
+
+        private StreamSubscription(Flow.Subscriber<? super T> subscriber, Function0<Stream<T>> open) {
+            this.subscriber = subscriber;
+            this.open = open;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("The number of requested elements must be positive.");
+            } else {
+                demand.getAndAccumulate(n, (current, requested) -> {
+                    var sum = current + requested;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (done.compareAndSet(false, true)) {
+                drain();
+            }
+        }
+
+        private void start() {
+            try {
+                stream = open.get();
+                iterator = stream.iterator();
+            } catch (Exception e) {
+                subscriber.onSubscribe(this);
+                fail(e);
+                return;
+            }
+
+            subscriber.onSubscribe(this);
+        }
+
+        private void drain() {
+            if (pending.getAndIncrement() != 0) {
+                return;
+            }
+
+            do {
+                emit();
+            } while (pending.decrementAndGet() != 0);
+        }
+
+        private void emit() {
+            /*
+             * The stream could not be opened, the subscriber has been notified already.
+             */
+            if (Objects.isNull(iterator)) {
+                return;
+            }
+
+            if (done.get()) {
+                close();
+                return;
+            }
+
+            if (Objects.nonNull(invalidRequest)) {
+                fail(invalidRequest);
+                return;
+            }
+
+            try {
+                while (demand.get() > 0 && !done.get()) {
+                    if (!iterator.hasNext()) {
+                        if (done.compareAndSet(false, true)) {
+                            close();
+                            subscriber.onComplete();
+                        }
+
+                        return;
+                    }
+
+                    subscriber.onNext(iterator.next());
+                    demand.decrementAndGet();
+                }
+
+                if (done.get()) {
+                    close();
+                }
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable cause) {
+            if (done.compareAndSet(false, true)) {
+                close();
+                subscriber.onError(cause);
+            }
+        }
+
+        private void close() {
+            if (Objects.nonNull(stream)) {
+                stream.close();
+                stream = null;
+            }
+        }
+
+    }
+
+}
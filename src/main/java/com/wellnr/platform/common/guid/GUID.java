@@ -46,12 +46,14 @@ import java.util.stream.Collectors;
  * ```
  * /modules/school-management/course[id='abc',name='foo']/students/student[id='xyz']
  * ```
+ * <p>
+ * GUIDs are ordered by their string representation, the same order as databases which store them as strings.
  */
 @Value
 @JsonSerialize(using = GUID.Serializer.class)
 @JsonDeserialize(using = GUID.Deserializer.class)
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
-public class GUID {
+public class GUID implements Comparable<GUID> {
 
     List<GUIDElement> elements;
 
@@ -99,6 +101,11 @@ public class GUID {
         return this.toString().startsWith(other.toString());
     }
 
+    @Override
+    public int compareTo(GUID other) {
+        return this.toString().compareTo(other.toString());
+    }
+
     /**
      * Creates a new instance from GUID's string representation.
      *
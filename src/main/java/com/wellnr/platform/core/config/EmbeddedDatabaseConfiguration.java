@@ -0,0 +1,55 @@
+package com.wellnr.platform.core.config;
+
+import com.wellnr.platform.common.config.annotations.ConfigurationProperties;
+import com.wellnr.platform.common.config.annotations.Value;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Configures the storage of the embedded repository, see
+ * {@link com.wellnr.platform.core.persistence.embedded.EmbeddedRepository}.
+ */
+@Getter
+@ConfigurationProperties
+@NoArgsConstructor(access = AccessLevel.PRIVATE, force = true)
+@AllArgsConstructor(staticName = "apply")
+public class EmbeddedDatabaseConfiguration {
+
+    /**
+     * The directory in which journals and snapshots are stored. Each collection is stored in a sub-directory.
+     */
+    @Value("directory")
+    String directory;
+
+    /**
+     * Whether the journal is flushed to the storage device (fsync) before a write is acknowledged. If disabled,
+     * acknowledged writes may be lost if the operating system crashes.
+     */
+    @Value("sync")
+    boolean sync;
+
+    /**
+     * The maximum number of writes which are flushed to the journal together (group commit).
+     */
+    @Value("max-batch-size")
+    int maxBatchSize;
+
+    /**
+     * The number of journal entries after which a new snapshot is written and the journal is truncated.
+     */
+    @Value("snapshot-after-entries")
+    long snapshotAfterEntries;
+
+    /**
+     * Creates a new instance with default settings.
+     *
+     * @param directory See {@link EmbeddedDatabaseConfiguration#directory}.
+     * @return A new instance.
+     */
+    public static EmbeddedDatabaseConfiguration apply(String directory) {
+        return apply(directory, true, 1000, 100_000);
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.wellnr.platform.core.config;
+
+import com.wellnr.platform.common.config.annotations.ConfigurationProperties;
+import com.wellnr.platform.common.config.annotations.Value;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+
+/**
+ * Configures how long root entities are kept in memory by the platform context, see
+ * {@link com.wellnr.platform.core.context.RootEntity}. Entities which are removed from memory (passivated) are
+ * created again when they are requested next.
+ */
+@Getter
+@ConfigurationProperties
+@NoArgsConstructor(access = AccessLevel.PRIVATE, force = true)
+@AllArgsConstructor(staticName = "apply")
+public class EntitiesConfiguration {
+
+    /**
+     * Entities which have not been requested for this duration are passivated.
+     */
+    @Value("passivate-after")
+    Duration passivateAfter;
+
+    /**
+     * The maximum number of entities kept in memory; if exceeded, the least recently requested entities are
+     * passivated.
+     */
+    @Value("max-resident-entities")
+    int maxResidentEntities;
+
+    /**
+     * Creates a new instance with default settings.
+     *
+     * @return A new instance.
+     */
+    public static EntitiesConfiguration apply() {
+        return apply(Duration.ofMinutes(10), 100_000);
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.wellnr.platform.core.config;
+
+import com.wellnr.platform.common.config.annotations.ConfigurationProperties;
+import com.wellnr.platform.common.config.annotations.Value;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Configures the connection of the JDBC repository, see
+ * {@link com.wellnr.platform.core.persistence.jdbc.JdbcRepository}.
+ */
+@Getter
+@ConfigurationProperties
+@NoArgsConstructor(access = AccessLevel.PRIVATE, force = true)
+@AllArgsConstructor(staticName = "apply")
+public class JdbcDatabaseConfiguration {
+
+    /**
+     * The JDBC URL of the database, e.g. `jdbc:h2:./data/users`. There is no default; the driver is not shipped with
+     * the platform and must be added to the application's classpath.
+     */
+    @Value("url")
+    String url;
+
+    @Value("user")
+    String user;
+
+    @Value("password")
+    String password;
+
+    /**
+     * The maximum number of connections which are opened concurrently.
+     */
+    @Value("max-connections")
+    int maxConnections;
+
+    /**
+     * The maximum number of prepared statements which are kept open per connection.
+     */
+    @Value("statement-cache-size")
+    int statementCacheSize;
+
+    /**
+     * The number of rows which are fetched at once while results are streamed.
+     */
+    @Value("fetch-size")
+    int fetchSize;
+
+    /**
+     * The maximum number of rows which are written within a single JDBC batch.
+     */
+    @Value("batch-size")
+    int batchSize;
+
+    /**
+     * Creates a new instance with default settings.
+     *
+     * @param url See {@link JdbcDatabaseConfiguration#url}.
+     * @return A new instance.
+     */
+    public static JdbcDatabaseConfiguration apply(String url) {
+        return apply(url, "", "", 10, 256, 100, 1000);
+    }
+
+}
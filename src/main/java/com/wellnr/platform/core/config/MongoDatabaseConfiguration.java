@@ -4,15 +4,20 @@ import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.connection.ConnectionPoolSettings;
 import com.wellnr.platform.common.config.annotations.ConfigurationProperties;
 import com.wellnr.platform.common.config.annotations.Optional;
 import com.wellnr.platform.common.config.annotations.Value;
+import com.wellnr.platform.core.persistence.mongo.MongoClientRegistry;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
+import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Configure a connection to a Mongo Database.
@@ -45,6 +50,27 @@ public class MongoDatabaseConfiguration {
     @Value("connection-string")
     String connectionString;
 
+    /**
+     * Settings of the connection pool. If not set, the defaults of the Mongo driver are used.
+     */
+    @Optional
+    @Value("connection-pool")
+    ConnectionPoolProperties connectionPool;
+
+    /**
+     * Creates a new instance with the default connection pool settings.
+     *
+     * @param databaseName         See {@link MongoDatabaseConfiguration#databaseName}.
+     * @param connectionProperties See {@link MongoDatabaseConfiguration#connectionProperties}.
+     * @param connectionString     See {@link MongoDatabaseConfiguration#connectionString}.
+     * @return A new instance.
+     */
+    public static MongoDatabaseConfiguration apply(
+        String databaseName, ConnectionProperties connectionProperties, String connectionString) {
+
+        return apply(databaseName, connectionProperties, connectionString, null);
+    }
+
     /**
      * Creates a new instance from connection properties.
      *
@@ -53,7 +79,7 @@ public class MongoDatabaseConfiguration {
      * @return A new instance.
      */
     public static MongoDatabaseConfiguration apply(String databaseName, ConnectionProperties connectionProperties) {
-        return apply(databaseName, connectionProperties, null);
+        return apply(databaseName, connectionProperties, null, null);
     }
 
     /**
@@ -64,7 +90,7 @@ public class MongoDatabaseConfiguration {
      * @return A new instance.
      */
     public static MongoDatabaseConfiguration apply(String databaseName, String connectionString) {
-        return apply(databaseName, null, connectionString);
+        return apply(databaseName, null, connectionString, null);
     }
 
     /**
@@ -86,30 +112,121 @@ public class MongoDatabaseConfiguration {
     }
 
     /**
-     * This method will create a Mongo database client based on the configuration.
+     * See @{@link MongoDatabaseConfiguration#connectionPool}.
      *
-     * @return A new Mongo Database client.
+     * @return The connection pool settings, if configured.
      */
-    public MongoDatabase getClient() {
-        var connectionString = this.connectionString;
-
-        if (Objects.isNull(connectionString)) {
-            if (Objects.isNull(this.connectionProperties)) {
-                throw new IllegalStateException(
-                    "Either `connection-string` or `connection-properties` must be set, but both are `null`-"
-                );
-            }
+    public java.util.Optional<ConnectionPoolProperties> getConnectionPool() {
+        return java.util.Optional.ofNullable(this.connectionPool);
+    }
 
-            connectionString = connectionProperties.getConnectionString();
+    /**
+     * Returns the connection string, either the configured connection string or the connection string built from
+     * the connection properties.
+     *
+     * @return The connection string to connect to the database host.
+     */
+    public String getEffectiveConnectionString() {
+        if (Objects.nonNull(this.connectionString)) {
+            return this.connectionString;
+        } else if (Objects.nonNull(this.connectionProperties)) {
+            return this.connectionProperties.getConnectionString();
+        } else {
+            throw new IllegalStateException(
+                "Either `connection-string` or `connection-properties` must be set, but both are `null`-"
+            );
         }
+    }
 
+    /**
+     * Creates the settings for a Mongo client based on the configuration.
+     *
+     * @return The client settings.
+     */
+    public MongoClientSettings getClientSettings() {
         var settings = MongoClientSettings
             .builder()
-            .applyConnectionString(new ConnectionString(connectionString))
-            .build();
+            .applyConnectionString(new ConnectionString(getEffectiveConnectionString()));
+
+        getConnectionPool().ifPresent(pool -> settings.applyToConnectionPoolSettings(pool::applyTo));
+
+        return settings.build();
+    }
+
+    /**
+     * This method will create a Mongo database client based on the configuration. Repositories share the clients
+     * of their platform context instead, see {@link MongoClientRegistry}.
+     *
+     * @return A new Mongo Database client.
+     */
+    public MongoDatabase getClient() {
+        return MongoClients.create(getClientSettings()).getDatabase(databaseName);
+    }
+
+    /**
+     * This method will create a Mongo database client of the reactive streams driver based on the configuration.
+     * Repositories share the clients of their platform context instead, see {@link MongoClientRegistry}.
+     *
+     * @return A new Mongo Database client.
+     */
+    public com.mongodb.reactivestreams.client.MongoDatabase getReactiveClient() {
+        return com.mongodb.reactivestreams.client.MongoClients.create(getClientSettings()).getDatabase(databaseName);
+    }
+
+    /**
+     * Settings of the connection pool of a Mongo client.
+     */
+    @Getter
+    @EqualsAndHashCode
+    @ConfigurationProperties
+    @NoArgsConstructor(access = AccessLevel.PRIVATE, force = true)
+    @AllArgsConstructor(staticName = "apply")
+    public static class ConnectionPoolProperties {
+
+        /**
+         * The maximum number of connections of the pool, including connections which are in use.
+         */
+        @Value("max-size")
+        int maxSize;
+
+        /**
+         * The minimum number of connections which are kept open, even if they are idle.
+         */
+        @Value("min-size")
+        int minSize;
+
+        /**
+         * The maximum number of connections which are established concurrently.
+         */
+        @Value("max-connecting")
+        int maxConnecting;
+
+        /**
+         * The maximum time a request waits for a connection if all connections are in use (the wait queue).
+         */
+        @Value("max-wait-time")
+        Duration maxWaitTime;
+
+        /**
+         * The maximum time a connection may be idle before it is closed, `0` means no limit.
+         */
+        @Value("max-connection-idle-time")
+        Duration maxConnectionIdleTime;
+
+        /**
+         * Applies the settings to the pool settings of a Mongo client.
+         *
+         * @param builder The builder of the pool settings.
+         */
+        public void applyTo(ConnectionPoolSettings.Builder builder) {
+            builder
+                .maxSize(maxSize)
+                .minSize(minSize)
+                .maxConnecting(maxConnecting)
+                .maxWaitTime(maxWaitTime.toMillis(), TimeUnit.MILLISECONDS)
+                .maxConnectionIdleTime(maxConnectionIdleTime.toMillis(), TimeUnit.MILLISECONDS);
+        }
 
-        var client = MongoClients.create(settings);
-        return client.getDatabase(databaseName);
     }
 
     /**
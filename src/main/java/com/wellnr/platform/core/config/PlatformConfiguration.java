@@ -86,6 +86,18 @@ public class PlatformConfiguration {
     @Value("auth-token-secret-header-name")
     String authTokenSecretHeaderName;
 
+    /**
+     * The scheduler which executes calls to root entities.
+     */
+    @Value("scheduler")
+    SchedulerConfiguration scheduler;
+
+    /**
+     * How long root entities are kept in memory.
+     */
+    @Value("entities")
+    EntitiesConfiguration entities;
+
     public static PlatformConfiguration apply() {
         return Configs.mapToConfigClass(PlatformConfiguration.class, "platform");
     }
@@ -5,6 +5,34 @@ package com.wellnr.platform.core.config;
  */
 public enum RepositoryMode {
 
-    in_memory, mongo
+    /**
+     * In-memory repository, not safe for concurrent writes from multiple entities.
+     */
+    in_memory,
+
+    /**
+     * Thread-safe in-memory repository.
+     */
+    in_memory_concurrent,
+
+    /**
+     * In-memory repository which persists all changes in a local directory.
+     */
+    embedded,
+
+    /**
+     * Repository which stores entities in tables of a JDBC data source.
+     */
+    jdbc,
+
+    /**
+     * Repository which stores entities in a Mongo database.
+     */
+    mongo,
+
+    /**
+     * Repository which stores entities in a Mongo database, using the non-blocking reactive streams driver.
+     */
+    mongo_reactive
 
 }
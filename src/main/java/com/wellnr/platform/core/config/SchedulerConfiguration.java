@@ -0,0 +1,53 @@
+package com.wellnr.platform.core.config;
+
+import com.wellnr.platform.common.async.AsyncBoundaryProxy;
+import com.wellnr.platform.common.config.annotations.ConfigurationProperties;
+import com.wellnr.platform.common.config.annotations.Value;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Configures the scheduler which executes the calls to all root entities, see
+ * {@link com.wellnr.platform.core.context.RootEntity} and {@link AsyncBoundaryProxy}.
+ */
+@Getter
+@ConfigurationProperties
+@NoArgsConstructor(access = AccessLevel.PRIVATE, force = true)
+@AllArgsConstructor(staticName = "apply")
+public class SchedulerConfiguration {
+
+    /**
+     * The number of threads which execute calls to entities. If `0`, the number of available processors is used.
+     */
+    @Value("parallelism")
+    int parallelism;
+
+    /**
+     * The maximum number of threads, including threads which are added while other threads are blocked.
+     */
+    @Value("max-pool-size")
+    int maxPoolSize;
+
+    /**
+     * Creates a new instance with default settings.
+     *
+     * @return A new instance.
+     */
+    public static SchedulerConfiguration apply() {
+        return apply(0, AsyncBoundaryProxy.DEFAULT_MAX_POOL_SIZE);
+    }
+
+    /**
+     * @return The number of threads which execute calls to entities.
+     */
+    public int getEffectiveParallelism() {
+        if (parallelism > 0) {
+            return parallelism;
+        } else {
+            return Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+}
@@ -0,0 +1,409 @@
+package com.wellnr.platform.core.context;
+
+import com.wellnr.platform.common.async.AsyncBoundaryProxy;
+import com.wellnr.platform.common.functions.Function0;
+import com.wellnr.platform.common.functions.Function1;
+import com.wellnr.platform.common.guid.GUID;
+import com.wellnr.platform.core.config.EntitiesConfiguration;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the root entities of a platform context in memory, each entity wrapped within an
+ * {@link AsyncBoundaryProxy}.
+ * <p>
+ * Lookups do not acquire locks: entities are stored within a concurrent map, singleton entities are additionally
+ * indexed by their type. Each entity is created exactly once, concurrent requests for the same GUID wait for the
+ * creation.
+ * <p>
+ * Entities which have not been requested for the configured duration, and the least recently requested entities
+ * beyond the configured maximum number of entities, are passivated: they are removed from the registry and
+ * created again when they are requested next. Entities with queued or running calls are not passivated. Requests
+ * schedule the passivation on the entities' scheduler, thus the registry does not require a background thread.
+ * While the maximum is exceeded but no entity can be passivated, passivation is scheduled at most once per
+ * {@link #MIN_PASSIVATION_INTERVAL}.
+ * <p>
+ * Calls to a passivated entity, e.g. via a reference kept by a caller, are forwarded to the entity which is
+ * created again, see {@link AsyncBoundaryProxy#passivate(Supplier)}.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class EntityRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntityRegistry.class);
+
+    /**
+     * Marks an entry which has been passivated (or whose entity could not be created), instead of the time of the
+     * last request.
+     */
+    private static final long PASSIVATED = Long.MIN_VALUE;
+
+    /**
+     * The minimum time between passivations which are scheduled because the maximum number of entities is
+     * exceeded, see {@link #passivateIfRequired(long)}.
+     */
+    private static final Duration MIN_PASSIVATION_INTERVAL = Duration.ofMillis(10);
+
+    /**
+     * The maximum time to wait for queued and running calls when the registry is stopped.
+     */
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ConcurrentHashMap<GUID, Entry> entities;
+
+    /**
+     * The GUIDs of singleton entities by their type, see {@link #getOrActivateSingleton(Class, Function0)}.
+     */
+    private final ConcurrentHashMap<Class<?>, GUID> singletons;
+
+    /**
+     * Ensures that singleton entities of a type are created only once.
+     */
+    private final ConcurrentHashMap<Class<?>, Object> singletonLocks;
+
+    /**
+     * Executes the calls to all entities.
+     */
+    private final ExecutorService scheduler;
+
+    private final EntityStatistics statistics;
+
+    private final long passivateAfterNanos;
+
+    private final int maxResidentEntities;
+
+    /**
+     * Returns the current time in nanoseconds, see {@link System#nanoTime()}.
+     */
+    private final LongSupplier clock;
+
+    private final AtomicLong lastPassivationAt;
+
+    private final AtomicBoolean passivationScheduled;
+
+    private final ReentrantLock passivationLock;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param config     The configuration of passivation.
+     * @param scheduler  The scheduler to execute calls to entities.
+     * @param statistics The statistics to update.
+     * @return A new instance.
+     */
+    public static EntityRegistry apply(
+        EntitiesConfiguration config, ExecutorService scheduler, EntityStatistics statistics) {
+
+        return apply(config, scheduler, statistics, System::nanoTime);
+    }
+
+    static EntityRegistry apply(
+        EntitiesConfiguration config, ExecutorService scheduler, EntityStatistics statistics, LongSupplier clock) {
+
+        return new EntityRegistry(
+            new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), scheduler, statistics,
+            config.getPassivateAfter().toNanos(), config.getMaxResidentEntities(), clock,
+            new AtomicLong(clock.getAsLong()), new AtomicBoolean(), new ReentrantLock()
+        );
+    }
+
+    /**
+     * Returns an entity and marks it as recently requested.
+     *
+     * @param guid The GUID of the entity.
+     * @return The entity, empty if it does not exist or if it has been passivated.
+     */
+    public Optional<RootEntity> get(GUID guid) {
+        var entry = entities.get(guid);
+        var now = clock.getAsLong();
+
+        if (Objects.isNull(entry) || Objects.isNull(entry.entity) || !entry.touch(now)) {
+            return Optional.empty();
+        }
+
+        passivateIfRequired(now);
+        return Optional.of(entry.entity);
+    }
+
+    /**
+     * Returns an entity and marks it as recently requested. If the entity does not exist, it is created, wrapped
+     * within an {@link AsyncBoundaryProxy} and registered.
+     *
+     * @param guid           The GUID of the entity.
+     * @param entityType     The type of the entity, used if it is created.
+     * @param createInstance Creates the plain entity.
+     * @param <T>            The type of the entity.
+     * @return The entity; it may have another type if an entity with the GUID has been registered before.
+     */
+    public <T extends RootEntity> RootEntity getOrActivate(
+        GUID guid, Class<T> entityType, Function1<GUID, T> createInstance) {
+
+        return getOrActivateEntry(guid, entityType, createInstance).entity;
+    }
+
+    /**
+     * Returns the singleton entity of a type and marks it as recently requested.
+     *
+     * @param entityType The type of the entity.
+     * @param <T>        The type of the entity.
+     * @return The entity, empty if no singleton entity of the type exists or if it has been passivated.
+     */
+    public <T extends RootEntity> Optional<T> find(Class<T> entityType) {
+        return Optional
+            .ofNullable(singletons.get(entityType))
+            .flatMap(this::get)
+            .filter(entityType::isInstance)
+            .map(entityType::cast);
+    }
+
+    /**
+     * Returns the singleton entity of a type. If it does not exist, it is created, wrapped within an
+     * {@link AsyncBoundaryProxy} and registered.
+     *
+     * @param entityType     The type of the entity.
+     * @param createInstance Creates the plain entity.
+     * @param <T>            The type of the entity.
+     * @return The entity.
+     */
+    public <T extends RootEntity> T getOrActivateSingleton(Class<T> entityType, Function0<T> createInstance) {
+        var existing = find(entityType);
+
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        synchronized (singletonLocks.computeIfAbsent(entityType, type -> new Object())) {
+            existing = find(entityType);
+
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+
+            var plainEntity = createInstance.get();
+            var entity = getOrActivate(plainEntity.getGUID(), entityType, guid -> plainEntity);
+
+            singletons.put(entityType, plainEntity.getGUID());
+            return entityType.cast(entity);
+        }
+    }
+
+    /**
+     * Stops the scheduler of entities; calls which are already queued are executed. Waits until they have been
+     * executed (at most {@link #STOP_TIMEOUT}), thus resources used by entities can be released afterwards.
+     */
+    public void stop() {
+        scheduler.shutdown();
+
+        try {
+            if (!scheduler.awaitTermination(STOP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                LOG.warn("Calls to entities have not completed within {}.", STOP_TIMEOUT);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Passivates expired entities which are idle and, if the maximum number of entities is exceeded, the least
+     * recently requested idle entities.
+     */
+    void passivate() {
+        passivationLock.lock();
+
+        try {
+            var now = clock.getAsLong();
+            var candidates = new ArrayList<Candidate>();
+
+            for (var entry : entities.entrySet()) {
+                var lastRequestedAt = entry.getValue().lastRequestedAt.get();
+
+                if (Objects.nonNull(entry.getValue().entity) && lastRequestedAt != PASSIVATED) {
+                    candidates.add(new Candidate(entry.getKey(), entry.getValue(), lastRequestedAt));
+                }
+            }
+
+            /*
+             * Once the maximum is exceeded, entities are passivated until 10% below the maximum, thus sorting all
+             * entities is amortized over many activations.
+             */
+            var excess = entities.size() > maxResidentEntities
+                ? entities.size() - (maxResidentEntities - maxResidentEntities / 10) : 0;
+
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.lastRequestedAt));
+
+            for (var candidate : candidates) {
+                var expired = now - candidate.lastRequestedAt > passivateAfterNanos;
+
+                if (!expired && excess <= 0) {
+                    /*
+                     * Candidates are ordered by their last request, thus following candidates are neither expired.
+                     */
+                    return;
+                }
+
+                var entry = candidate.entry;
+
+                if (!entry.lastRequestedAt.compareAndSet(candidate.lastRequestedAt, PASSIVATED)) {
+                    continue;
+                }
+
+                /*
+                 * The entry is marked before the proxy is passivated, thus calls which are forwarded by the proxy
+                 * wait until the entry has been removed and a new entity is created.
+                 */
+                if (entry.handler.passivate(entry.successor)) {
+                    entities.remove(candidate.guid, entry);
+                    singletons.values().remove(candidate.guid);
+                    statistics.recordPassivation();
+                    excess--;
+                } else {
+                    entry.lastRequestedAt.set(candidate.lastRequestedAt);
+                }
+            }
+        } finally {
+            passivationLock.unlock();
+        }
+    }
+
+    private <T extends RootEntity> Entry getOrActivateEntry(
+        GUID guid, Class<T> entityType, Function1<GUID, T> createInstance) {
+
+        while (true) {
+            var entry = entities.get(guid);
+
+            if (Objects.isNull(entry)) {
+                entry = entities.computeIfAbsent(guid, id -> new Entry(new AtomicLong(clock.getAsLong())));
+            }
+
+            if (Objects.isNull(entry.entity)) {
+                synchronized (entry) {
+                    if (entry.lastRequestedAt.get() == PASSIVATED) {
+                        continue;
+                    } else if (Objects.isNull(entry.entity)) {
+                        activate(guid, entry, entityType, createInstance);
+                    }
+                }
+            }
+
+            var now = clock.getAsLong();
+
+            if (entry.touch(now)) {
+                passivateIfRequired(now);
+                return entry;
+            }
+        }
+    }
+
+    private <T extends RootEntity> void activate(
+        GUID guid, Entry entry, Class<T> entityType, Function1<GUID, T> createInstance) {
+
+        try {
+            var proxy = AsyncBoundaryProxy.createProxyWithHandler(createInstance.get(guid), entityType, scheduler);
+
+            entry.successor = () -> getOrActivateEntry(guid, entityType, createInstance).handler;
+            entry.handler = proxy._2;
+            entry.entity = proxy._1;
+            statistics.recordActivation();
+        } catch (RuntimeException ex) {
+            entry.lastRequestedAt.set(PASSIVATED);
+            entities.remove(guid, entry);
+            throw ex;
+        }
+    }
+
+    /**
+     * Schedules the passivation if the maximum number of entities is exceeded (at most once per
+     * {@link #MIN_PASSIVATION_INTERVAL}), or to check for expired entities at most four times per configured
+     * duration.
+     */
+    private void passivateIfRequired(long now) {
+        var sinceLastPassivation = now - lastPassivationAt.get();
+        var minInterval = Math.min(MIN_PASSIVATION_INTERVAL.toNanos(), passivateAfterNanos / 4);
+        var required = (entities.size() > maxResidentEntities && sinceLastPassivation >= minInterval) ||
+            sinceLastPassivation >= passivateAfterNanos / 4;
+
+        if (required && passivationScheduled.compareAndSet(false, true)) {
+            lastPassivationAt.set(now);
+
+            try {
+                scheduler.execute(() -> {
+                    try {
+                        passivate();
+                    } finally {
+                        passivationScheduled.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                passivationScheduled.set(false);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        /**
+         * The time of the last request, or {@link #PASSIVATED}.
+         */
+        private final AtomicLong lastRequestedAt;
+
+        private volatile RootEntity entity;
+
+        private volatile AsyncBoundaryProxy handler;
+
+        /**
+         * Provides the proxy of the entity which is created again, see
+         * {@link AsyncBoundaryProxy#passivate(Supplier)}.
+         */
+        private volatile Supplier<AsyncBoundaryProxy> successor;
+
+        private Entry(AtomicLong lastRequestedAt) {
+            this.lastRequestedAt = lastRequestedAt;
+        }
+
+        /**
+         * Updates the time of the last request.
+         *
+         * @return False, if the entry has been passivated.
+         */
+        private boolean touch(long now) {
+            while (true) {
+                var current = lastRequestedAt.get();
+
+                if (current == PASSIVATED) {
+                    return false;
+                } else if (current >= now || lastRequestedAt.compareAndSet(current, now)) {
+                    return true;
+                }
+            }
+        }
+
+    }
+
+    @AllArgsConstructor
+    private static final class Candidate {
+
+        private final GUID guid;
+
+        private final Entry entry;
+
+        private final long lastRequestedAt;
+
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.wellnr.platform.core.context;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+import java.text.MessageFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the root entities kept in memory by the platform context. The instance is registered within the
+ * context, reading the counters returns the current values.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class EntityStatistics {
+
+    private final AtomicLong residents;
+
+    private final LongAdder activations;
+
+    private final LongAdder passivations;
+
+    /**
+     * Creates a new instance.
+     *
+     * @return A new instance with all counters set to zero.
+     */
+    public static EntityStatistics apply() {
+        return new EntityStatistics(new AtomicLong(), new LongAdder(), new LongAdder());
+    }
+
+    /**
+     * @return The number of entities which are currently kept in memory.
+     */
+    public long getResidentEntities() {
+        return residents.get();
+    }
+
+    /**
+     * @return The number of entities which have been created (including entities created again after passivation).
+     */
+    public long getActivations() {
+        return activations.sum();
+    }
+
+    /**
+     * @return The number of entities which have been removed from memory, as they have been idle or to keep the
+     * maximum number of entities.
+     */
+    public long getPassivations() {
+        return passivations.sum();
+    }
+
+    void recordActivation() {
+        activations.increment();
+        residents.incrementAndGet();
+    }
+
+    void recordPassivation() {
+        passivations.increment();
+        residents.decrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format(
+            "EntityStatistics(residents={0}, activations={1}, passivations={2})",
+            getResidentEntities(), getActivations(), getPassivations()
+        );
+    }
+
+}
@@ -1,8 +1,5 @@
 package com.wellnr.platform.core.context;
 
-import com.google.common.collect.Maps;
-import com.wellnr.platform.common.Operators;
-import com.wellnr.platform.common.async.AsyncBoundaryProxy;
 import com.wellnr.platform.common.functions.Function0;
 import com.wellnr.platform.common.functions.Function1;
 import com.wellnr.platform.common.guid.GUID;
@@ -33,43 +30,38 @@ final class InitializedPlatformContext implements PlatformContextInternal {
 
     private final Set<Role> roles;
 
-    private final Map<GUID, RootEntity> entities;
+    private final EntityRegistry entities;
 
     public static InitializedPlatformContext apply(
         Map<Class<?>, Object> values, Map<Class<? extends PlatformModule>, PlatformModule> modules,
-        Map<String, Class<Command>> commands, Set<Role> roles
+        Map<String, Class<Command>> commands, Set<Role> roles, EntityRegistry entities
     ) {
 
         return new InitializedPlatformContext(
-            Map.copyOf(values), Map.copyOf(modules), Map.copyOf(commands), Set.copyOf(roles), Maps.newHashMap()
+            Map.copyOf(values), Map.copyOf(modules), Map.copyOf(commands), Set.copyOf(roles), entities
         );
     }
 
     @Override
     @SuppressWarnings("unchecked")
-    public synchronized <T extends RootEntity> T getEntitySingleton(Class<T> entityType, T plainEntity) {
-        if (entities.containsKey(plainEntity.getGUID())) {
-            var existingEntity = entities.get(plainEntity.getGUID());
-
-            if (entityType.isInstance(existingEntity)) {
-                return (T) existingEntity;
-            } else {
-                throw new IllegalArgumentException(MessageFormat.format(
-                    "Entity with GUID `{0}` already exists, but with different type. Existing type: `{1}`, requested " +
-                        "type: `{2}``",
-                    plainEntity.getGUID(), existingEntity.getClass(), entityType
-                ));
-            }
-        } else {
+    public <T extends RootEntity> T getEntitySingleton(Class<T> entityType, T plainEntity) {
+        var entity = entities.getOrActivate(plainEntity.getGUID(), entityType, guid -> {
             LOG.debug(
                 "Creating new singleton entity instance for GUID `{}` of type `{}`",
-                plainEntity.getGUID(), entityType
+                guid, entityType
             );
 
-            var newEntity = AsyncBoundaryProxy.createProxy(plainEntity, entityType);
-            this.entities.put(newEntity.getGUID(), newEntity);
+            return plainEntity;
+        });
 
-            return newEntity;
+        if (entityType.isInstance(entity)) {
+            return (T) entity;
+        } else {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "Entity with GUID `{0}` already exists, but with different type. Existing type: `{1}`, requested " +
+                    "type: `{2}``",
+                plainEntity.getGUID(), entity.getClass(), entityType
+            ));
         }
     }
 
@@ -111,21 +103,18 @@ final class InitializedPlatformContext implements PlatformContextInternal {
 
     @Override
     @SuppressWarnings("unchecked")
-    public synchronized <T extends RootEntity> T getOrCreateEntity(Class<T> entityType, GUID guid, Function1<GUID, T> createInstance) {
-        if (!this.entities.containsKey(guid)) {
-            var entity = createInstance.get(guid);
+    public <T extends RootEntity> T getOrCreateEntity(Class<T> entityType, GUID guid, Function1<GUID, T> createInstance) {
+        var entity = this.entities.getOrActivate(guid, entityType, id -> {
+            var newEntity = createInstance.get(id);
 
-            if (!entity.getGUID().equals(guid)) {
+            if (!newEntity.getGUID().equals(id)) {
                 throw new IllegalStateException(MessageFormat.format(
-                    "Returned entity must have the specified GUID `{0}`", guid
+                    "Returned entity must have the specified GUID `{0}`", id
                 ));
             }
 
-            var asyncEntity = AsyncBoundaryProxy.createProxy(entity, entityType);
-            this.entities.put(guid, asyncEntity);
-        }
-
-        var entity = this.entities.get(guid);
+            return newEntity;
+        });
 
         if (!entityType.isInstance(entity)) {
             throw new IllegalArgumentException(MessageFormat.format(
@@ -139,28 +128,8 @@ final class InitializedPlatformContext implements PlatformContextInternal {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
-    public synchronized <T extends RootEntity> T getOrCreateEntity(Class<T> entityType, Function0<T> createInstance) {
-        var maybeExistingEntity = this
-            .entities
-            .values()
-            .stream()
-            .filter(entityType::isInstance)
-            .findFirst();
-
-        return Operators
-            .when(maybeExistingEntity.isEmpty())
-            .then(() -> {
-                var entity = createInstance.get();
-                var asyncEntity = AsyncBoundaryProxy.createProxy(entity, entityType);
-
-                this.entities.put(entity.getGUID(), asyncEntity);
-
-                return asyncEntity;
-            })
-            .otherwise(
-                () -> (T) maybeExistingEntity.orElseThrow()
-            );
+    public <T extends RootEntity> T getOrCreateEntity(Class<T> entityType, Function0<T> createInstance) {
+        return this.entities.getOrActivateSingleton(entityType, createInstance);
     }
 
     @Override
@@ -180,4 +149,12 @@ final class InitializedPlatformContext implements PlatformContextInternal {
     public Map<Class<?>, Object> getInstances() {
         return this.instances;
     }
+
+    /**
+     * Stops the scheduler of entities and waits until calls which are already queued have been executed.
+     */
+    @Override
+    public void stop() {
+        this.entities.stop();
+    }
 }
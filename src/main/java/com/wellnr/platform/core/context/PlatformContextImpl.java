@@ -6,14 +6,20 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.wellnr.platform.common.Operators;
 import com.wellnr.platform.common.ReflectionUtils;
+import com.wellnr.platform.common.async.AsyncBoundaryProxy;
 import com.wellnr.platform.common.databind.ObjectMapperFactory;
 import com.wellnr.platform.common.functions.Function0;
 import com.wellnr.platform.common.functions.Function1;
 import com.wellnr.platform.common.guid.GUID;
 import com.wellnr.platform.core.commands.Command;
+import com.wellnr.platform.core.config.EntitiesConfiguration;
 import com.wellnr.platform.core.config.PlatformConfiguration;
+import com.wellnr.platform.core.config.SchedulerConfiguration;
 import com.wellnr.platform.core.modules.PlatformModule;
 import com.wellnr.platform.core.modules.users.values.rbac.Role;
+import com.wellnr.platform.core.persistence.embedded.EmbeddedQueryEngineRegistry;
+import com.wellnr.platform.core.persistence.jdbc.JdbcConnectionPoolRegistry;
+import com.wellnr.platform.core.persistence.mongo.MongoClientRegistry;
 import io.javalin.Javalin;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -33,6 +39,10 @@ final class PlatformContextImpl implements PlatformContext {
 
     public static PlatformContextImpl apply() {
         var initializing = InitializingPlatformContext.apply();
+        initializing.withSingletonInstance(MongoClientRegistry.apply(), MongoClientRegistry.class);
+        initializing.withSingletonInstance(EmbeddedQueryEngineRegistry.apply(), EmbeddedQueryEngineRegistry.class);
+        initializing.withSingletonInstance(JdbcConnectionPoolRegistry.apply(), JdbcConnectionPoolRegistry.class);
+
         return new PlatformContextImpl(initializing);
     }
 
@@ -127,8 +137,27 @@ final class PlatformContextImpl implements PlatformContext {
                 delegate.getInstance(ObjectMapper.class).registerSubtypes(type);
             });
 
+            /*
+             * Calls to all entities are executed by a shared scheduler.
+             */
+            var config = this.findInstance(PlatformConfiguration.class);
+            var schedulerConfig = config
+                .map(PlatformConfiguration::getScheduler)
+                .orElseGet(SchedulerConfiguration::apply);
+
+            var scheduler = AsyncBoundaryProxy.createScheduler(
+                schedulerConfig.getEffectiveParallelism(), schedulerConfig.getMaxPoolSize()
+            );
+
+            var entityStatistics = EntityStatistics.apply();
+            var entities = EntityRegistry.apply(
+                config.map(PlatformConfiguration::getEntities).orElseGet(EntitiesConfiguration::apply),
+                scheduler, entityStatistics
+            );
+
+            this.delegate.withSingletonInstance(entityStatistics, EntityStatistics.class);
             this.delegate = InitializedPlatformContext.apply(
-                init.instances, init.modules, commands, roles
+                init.instances, init.modules, commands, roles, entities
             );
 
         } else {
@@ -226,6 +255,15 @@ final class PlatformContextImpl implements PlatformContext {
                 module.stop();
             });
 
+        /*
+         * Shared resources are released after all modules have been stopped and calls to entities, which may
+         * still use them, have completed.
+         */
+        delegate.stop();
+        this.getInstance(MongoClientRegistry.class).close();
+        this.getInstance(EmbeddedQueryEngineRegistry.class).close();
+        this.getInstance(JdbcConnectionPoolRegistry.class).close();
+
         LOG.info("{} has stopped", config.getName());
 
     }
@@ -1,8 +1,6 @@
 package com.wellnr.platform.core.modules.users;
 
-import com.wellnr.platform.common.Operators;
 import com.wellnr.platform.common.guid.GUID;
-import com.wellnr.platform.core.config.RepositoryMode;
 import com.wellnr.platform.core.context.PlatformContext;
 import com.wellnr.platform.core.modules.PlatformModule;
 import com.wellnr.platform.core.modules.users.auth.AuthenticatedUserAuthenticationHandler;
@@ -15,7 +13,10 @@ import com.wellnr.platform.core.modules.users.entities.RegisteredUsersRootEntity
 import com.wellnr.platform.core.modules.users.ports.RegisteredUsersRepositoryPort;
 import com.wellnr.platform.core.modules.users.values.resources.AboutResource;
 import com.wellnr.platform.core.modules.users.values.users.RegisteredUser;
+import com.wellnr.platform.core.persistence.embedded.EmbeddedRepository;
+import com.wellnr.platform.core.persistence.inmemory.ConcurrentInMemoryRepository;
 import com.wellnr.platform.core.persistence.inmemory.InMemoryRepository;
+import com.wellnr.platform.core.persistence.jdbc.JdbcRepository;
 import com.wellnr.platform.core.persistence.mongo.MongoRepository;
 import io.javalin.Javalin;
 import lombok.AccessLevel;
@@ -43,18 +44,26 @@ public class UsersModule implements PlatformModule {
     public static UsersModule apply(PlatformContext context) {
         var config = UsersConfiguration.apply();
 
-        var repo = Operators
-            .when(
-                config.getMode().equals(RepositoryMode.in_memory)
-            )
-            .then(
-                () -> InMemoryRepository.create(context, RegisteredUsersRepositoryPort.class, RegisteredUser.class)
-            )
-            .otherwise(
-                () -> MongoRepository.create(
-                    context, RegisteredUsersRepositoryPort.class, config.getDatabase(), RegisteredUser.class
-                )
+        var repo = switch (config.getMode()) {
+            case in_memory -> InMemoryRepository.create(
+                context, RegisteredUsersRepositoryPort.class, RegisteredUser.class
             );
+            case in_memory_concurrent -> ConcurrentInMemoryRepository.create(
+                context, RegisteredUsersRepositoryPort.class, RegisteredUser.class
+            );
+            case embedded -> EmbeddedRepository.create(
+                context, RegisteredUsersRepositoryPort.class, config.getEmbedded(), RegisteredUser.class
+            );
+            case jdbc -> JdbcRepository.create(
+                context, RegisteredUsersRepositoryPort.class, config.getJdbc(), RegisteredUser.class
+            );
+            case mongo -> MongoRepository.create(
+                context, RegisteredUsersRepositoryPort.class, config.getDatabase(), RegisteredUser.class
+            );
+            case mongo_reactive -> MongoRepository.createReactive(
+                context, RegisteredUsersRepositoryPort.class, config.getDatabase(), RegisteredUser.class
+            );
+        };
 
         return apply(context, repo);
     }
@@ -3,6 +3,8 @@ package com.wellnr.platform.core.modules.users.configuration;
 import com.wellnr.platform.common.config.Configs;
 import com.wellnr.platform.common.config.annotations.ConfigurationProperties;
 import com.wellnr.platform.common.config.annotations.Value;
+import com.wellnr.platform.core.config.EmbeddedDatabaseConfiguration;
+import com.wellnr.platform.core.config.JdbcDatabaseConfiguration;
 import com.wellnr.platform.core.config.MongoDatabaseConfiguration;
 import com.wellnr.platform.core.config.RepositoryMode;
 import lombok.AccessLevel;
@@ -25,6 +27,18 @@ public class UsersConfiguration {
     @Value("database")
     MongoDatabaseConfiguration database;
 
+    /**
+     * Storage settings, if mode is `embedded`.
+     */
+    @Value("embedded")
+    EmbeddedDatabaseConfiguration embedded;
+
+    /**
+     * Connection settings, if mode is `jdbc`.
+     */
+    @Value("jdbc")
+    JdbcDatabaseConfiguration jdbc;
+
     public static UsersConfiguration apply() {
         return Configs.mapToConfigClass(UsersConfiguration.class, "platform.users");
     }
@@ -8,10 +8,12 @@ import com.wellnr.platform.core.modules.users.UsersModule;
 import com.wellnr.platform.core.modules.users.exceptions.UserAlreadyRegisteredException;
 import com.wellnr.platform.core.modules.users.ports.RegisteredUsersRepositoryPort;
 import com.wellnr.platform.core.modules.users.values.users.RegisteredUser;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
 import lombok.AllArgsConstructor;
 
 import java.text.MessageFormat;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletionStage;
 
@@ -36,12 +38,17 @@ public class RegisteredUsersRootEntity implements RootEntity {
         return repository.findOneRegisteredUserByExternalUserId(externalUserId);
     }
 
+    @AsyncMethod(pure = true)
+    public CompletionStage<List<RegisteredUser>> findAll(QueryOptions options) {
+        return repository.findAllRegisteredUsersOrderByDisplayNameAndGUID(options);
+    }
+
     @AsyncMethod(pure = false)
     public CompletionStage<Done> registerUser(String userId, String displayName) {
         return repository
-            .findOneRegisteredUserByExternalUserId(userId)
-            .thenCompose(maybeUser -> {
-                if (maybeUser.isPresent()) {
+            .existsRegisteredUserByExternalUserId(userId)
+            .thenCompose(exists -> {
+                if (exists) {
                     throw UserAlreadyRegisteredException.byUserId(userId);
                 } else {
                     // TODO mw: Get initial Roles from configuration.
@@ -33,9 +33,9 @@ public class RoleAssignmentsRootEntityImpl implements RootEntity {
     @AsyncMethod(pure = false)
     public CompletionStage<Done> createRoleAssignment(User executor, RoleAssignment assignment) {
         return repository
-            .findGrantedRoleAssignment(assignment)
-            .thenCompose(maybeExisting -> {
-                if (maybeExisting.isPresent()) {
+            .existsGrantedRoleAssignment(assignment)
+            .thenCompose(exists -> {
+                if (exists) {
                     return completed(Done.getInstance());
                 } else {
                     var event = EventMetadata.apply(executor.getGUID());
@@ -4,6 +4,7 @@ import com.wellnr.platform.common.guid.GUID;
 import com.wellnr.platform.common.tuples.Done;
 import com.wellnr.platform.core.modules.users.exceptions.UserNotFoundException;
 import com.wellnr.platform.core.modules.users.values.users.RegisteredUser;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
 
 import java.util.List;
 import java.util.Optional;
@@ -13,10 +14,27 @@ public interface RegisteredUsersRepositoryPort {
 
     CompletionStage<List<RegisteredUser>> findAllRegisteredUsersByUsername(String username);
 
+    /**
+     * Returns a page of all registered users, sorted by display name. The page is selected by the options,
+     * use offset or keyset pagination with `after(displayName, guid)` of the last user of the previous page.
+     *
+     * @param options Paging options.
+     * @return The selected users.
+     */
+    CompletionStage<List<RegisteredUser>> findAllRegisteredUsersOrderByDisplayNameAndGUID(QueryOptions options);
+
     CompletionStage<Optional<RegisteredUser>> findOneRegisteredUserByGUID(GUID id);
 
     CompletionStage<Optional<RegisteredUser>> findOneRegisteredUserByExternalUserId(String id);
 
+    /**
+     * Checks whether a user with the given external id is registered, without reading the user.
+     *
+     * @param id The external user id.
+     * @return True, if a user is registered with this id.
+     */
+    CompletionStage<Boolean> existsRegisteredUserByExternalUserId(String id);
+
     default CompletionStage<RegisteredUser> getRegisteredUserById(GUID id) {
         return findOneRegisteredUserByGUID(id).thenApply(maybeUser ->
             maybeUser.orElseThrow(() -> UserNotFoundException.byGUID(id))
@@ -28,14 +28,52 @@ public interface RoleAssignmentsRepositoryPort {
      * @param role {@link RoleAssignment#getRole()}.
      * @return The stored {@link GrantedRoleAssignment} if found.
      */
-    CompletionStage<Optional<GrantedRoleAssignment>> findGrantedRoleAssignment(
+    CompletionStage<Optional<GrantedRoleAssignment>> findOneGrantedRoleAssignmentByAssignedToAndSubjectAndRole(
         GUID assignedTo, GUID subject, GUID role
     );
 
+    /**
+     * Find a matching {@link GrantedRoleAssignment}.
+     *
+     * @param assignedTo {@link RoleAssignment#getAssignedTo()}.
+     * @param subject {@link RoleAssignment#getSubject()}.
+     * @param role {@link RoleAssignment#getRole()}.
+     * @return The stored {@link GrantedRoleAssignment} if found.
+     */
+    default CompletionStage<Optional<GrantedRoleAssignment>> findGrantedRoleAssignment(
+        GUID assignedTo, GUID subject, GUID role
+    ) {
+        return findOneGrantedRoleAssignmentByAssignedToAndSubjectAndRole(assignedTo, subject, role);
+    }
+
     CompletionStage<Optional<GrantedRoleAssignment>> findGrantedRoleAssignmentByGUID(
         GUID subject
     );
 
+    /**
+     * Checks whether a matching {@link GrantedRoleAssignment} exists, without reading it.
+     *
+     * @param assignedTo {@link RoleAssignment#getAssignedTo()}.
+     * @param subject {@link RoleAssignment#getSubject()}.
+     * @param role {@link RoleAssignment#getRole()}.
+     * @return True, if the role assignment has been granted.
+     */
+    CompletionStage<Boolean> existsGrantedRoleAssignmentByAssignedToAndSubjectAndRole(
+        GUID assignedTo, GUID subject, GUID role
+    );
+
+    /**
+     * Checks whether a matching {@link GrantedRoleAssignment} exists, without reading it.
+     *
+     * @param roleAssignment {@link RoleAssignment}.
+     * @return True, if the role assignment has been granted.
+     */
+    default CompletionStage<Boolean> existsGrantedRoleAssignment(RoleAssignment roleAssignment) {
+        return existsGrantedRoleAssignmentByAssignedToAndSubjectAndRole(
+            roleAssignment.getAssignedTo(), roleAssignment.getSubject(), roleAssignment.getRole().getGUID()
+        );
+    }
+
     /**
      * Find a matching {@link GrantedRoleAssignment}.
      *
@@ -58,8 +96,22 @@ public interface RoleAssignmentsRepositoryPort {
      * @param role {@link RoleAssignment#getRole()}.
      * @return Done.
      */
-    CompletionStage<Done> removeGrantedRoleAssignment(
+    CompletionStage<Done> removeGrantedRoleAssignmentByAssignedToAndSubjectAndRole(
         GUID assignedTo, GUID subject, GUID role
     );
 
+    /**
+     * Removes granted role assignment.
+     *
+     * @param assignedTo {@link RoleAssignment#getAssignedTo()}.
+     * @param subject {@link RoleAssignment#getSubject()}.
+     * @param role {@link RoleAssignment#getRole()}.
+     * @return Done.
+     */
+    default CompletionStage<Done> removeGrantedRoleAssignment(
+        GUID assignedTo, GUID subject, GUID role
+    ) {
+        return removeGrantedRoleAssignmentByAssignedToAndSubjectAndRole(assignedTo, subject, role);
+    }
+
 }
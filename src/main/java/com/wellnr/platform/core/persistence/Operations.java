@@ -6,9 +6,15 @@ public final class Operations {
 
     public static final String FIND_ALL = "findAll";
     public static final String FIND_ONE = "findOne";
+    public static final String COUNT = "count";
+    public static final String EXISTS = "exists";
     public static final String UPSERT = "insertOrUpdate";
+    public static final String UPSERT_ALL = "insertOrUpdateAll";
     public static final String REMOVE = "remove";
+    public static final String REMOVE_ALL = "removeAll";
 
-    public static final List<String> ALL_OPERATIONS = List.of(FIND_ALL, FIND_ONE, UPSERT, REMOVE);
+    public static final List<String> ALL_OPERATIONS = List.of(
+        FIND_ALL, FIND_ONE, COUNT, EXISTS, UPSERT_ALL, UPSERT, REMOVE_ALL, REMOVE
+    );
 
 }
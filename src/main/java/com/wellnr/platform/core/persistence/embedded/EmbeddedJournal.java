@@ -0,0 +1,447 @@
+package com.wellnr.platform.core.persistence.embedded;
+
+import com.google.common.collect.Lists;
+import com.wellnr.platform.common.functions.Procedure1;
+import com.wellnr.platform.common.tuples.Done;
+import com.wellnr.platform.core.config.EmbeddedDatabaseConfiguration;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal, split into numbered segment files (`journal-{n}.log`).
+ * <p>
+ * Writes are committed in groups: Callers enqueue entries, a single writer thread takes all pending entries (up to
+ * {@link EmbeddedDatabaseConfiguration#getMaxBatchSize()}), writes them with a single write call and flushes the
+ * file once before all entries of the group are acknowledged. Thus, the cost of flushing is shared by all
+ * concurrent writers.
+ * <p>
+ * Each entry is stored as a frame of its length, a CRC32 checksum and the payload. A torn frame at the end of
+ * a segment (e.g. after a crash) is detected when reading the segment and ignored.
+ * <p>
+ * Entries are acknowledged in the order in which they have been appended. Once an entry could not be written
+ * (or the journal has been closed), all later entries fail as well.
+ */
+final class EmbeddedJournal implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmbeddedJournal.class);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Size of length and checksum of a frame.
+     */
+    private static final int FRAME_HEADER_SIZE = 8;
+
+    /**
+     * Marks the end of the writer thread's work.
+     */
+    private static final PendingWrite CLOSE = PendingWrite.apply(null, null, null);
+
+    private final Path directory;
+
+    private final EmbeddedDatabaseConfiguration configuration;
+
+    private final BlockingQueue<PendingWrite> queue;
+
+    private final Thread writer;
+
+    /**
+     * The current segment file. Only accessed by the writer thread after construction.
+     */
+    private FileChannel channel;
+
+    /**
+     * The number of the current segment. Only written by the writer thread after construction.
+     */
+    private volatile long segment;
+
+    /**
+     * The number of entries written since the last rotation. Only written by the writer thread after construction.
+     */
+    private volatile long entries;
+
+    /**
+     * Set, if the journal cannot be written anymore.
+     */
+    private volatile IOException failure;
+
+    private volatile boolean closed;
+
+    /**
+     * Set by the writer thread before it exits; entries which are appended afterwards are failed immediately.
+     */
+    private volatile boolean stopped;
+
+    private EmbeddedJournal(Path directory, long segment, long entries, EmbeddedDatabaseConfiguration configuration)
+        throws IOException {
+
+        this.directory = directory;
+        this.configuration = configuration;
+        this.queue = new LinkedBlockingQueue<>();
+        this.segment = segment;
+        this.entries = entries;
+        this.channel = openSegment(directory, segment);
+        this.writer = new Thread(this::run, "embedded-journal-" + directory.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Creates a new instance and starts the writer thread.
+     *
+     * @param directory     The directory of the journal.
+     * @param segment       The number of the segment to write to. The segment must not exist yet.
+     * @param entries       The number of entries which have been written to previous segments since the
+     *                      last snapshot, see {@link #getEntries()}.
+     * @param configuration The storage configuration.
+     * @return A new instance.
+     * @throws IOException If the segment cannot be created.
+     */
+    public static EmbeddedJournal apply(
+        Path directory, long segment, long entries, EmbeddedDatabaseConfiguration configuration) throws IOException {
+
+        return new EmbeddedJournal(directory, segment, entries, configuration);
+    }
+
+    /**
+     * Returns the numbers of all existing segments within a directory.
+     *
+     * @param directory The directory of the journal.
+     * @return The segment numbers, sorted ascending.
+     * @throws IOException If the directory cannot be listed.
+     */
+    public static List<Long> getSegments(Path directory) throws IOException {
+        return getFileNumbers(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Returns the path of a segment file.
+     *
+     * @param directory The directory of the journal.
+     * @param segment   The segment number.
+     * @return The path of the segment.
+     */
+    public static Path getSegmentPath(Path directory, long segment) {
+        return directory.resolve(SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Returns the numbers of all files within a directory with a given prefix and suffix, e.g. `journal-{n}.log`.
+     *
+     * @param directory The directory to list.
+     * @param prefix    The prefix of the file names.
+     * @param suffix    The suffix of the file names.
+     * @return The numbers, sorted ascending.
+     * @throws IOException If the directory cannot be listed.
+     */
+    public static List<Long> getFileNumbers(Path directory, String prefix, String suffix) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files
+                .map(file -> file.getFileName().toString())
+                .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                .map(name -> name.substring(prefix.length(), name.length() - suffix.length()))
+                .filter(number -> number.matches("\\d+"))
+                .map(Long::parseLong)
+                .sorted()
+                .toList();
+        }
+    }
+
+    /**
+     * Writes a single frame to a stream.
+     *
+     * @param out     The stream to write to.
+     * @param payload The payload of the frame.
+     * @throws IOException If the frame cannot be written.
+     */
+    public static void writeFrame(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.writeInt(checksum(payload));
+        out.write(payload);
+    }
+
+    /**
+     * Reads all frames of a file. Reading stops at the first incomplete or corrupt frame.
+     *
+     * @param file    The file to read.
+     * @param consume A function which is called with the payload of each frame.
+     * @return The number of frames read.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long readFrames(Path file, Procedure1<byte[]> consume) throws IOException {
+        var frames = 0L;
+
+        try (var in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            while (true) {
+                var header = in.readNBytes(FRAME_HEADER_SIZE);
+
+                if (header.length == 0) {
+                    return frames;
+                } else if (header.length < FRAME_HEADER_SIZE) {
+                    LOG.warn("Ignoring incomplete frame after {} frames in `{}`", frames, file);
+                    return frames;
+                }
+
+                var length = ByteBuffer.wrap(header).getInt();
+                var checksum = ByteBuffer.wrap(header).getInt(4);
+                var payload = in.readNBytes(Math.max(length, 0));
+
+                if (length < 0 || payload.length < length || checksum(payload) != checksum) {
+                    LOG.warn("Ignoring incomplete or corrupt frame after {} frames in `{}`", frames, file);
+                    return frames;
+                }
+
+                consume.run(payload);
+                frames++;
+            }
+        }
+    }
+
+    /**
+     * Appends an entry to the journal.
+     *
+     * @param payload The entry.
+     * @return A future which completes when the entry is persisted (flushed, if configured).
+     */
+    public CompletableFuture<Done> append(byte[] payload) {
+        var write = PendingWrite.apply(payload, new CompletableFuture<>(), null);
+        enqueue(write);
+        return write.written;
+    }
+
+    /**
+     * Starts a new segment after all previously appended entries have been written.
+     *
+     * @return A future with the number of the new segment. All entries written before are in lower segments.
+     */
+    public CompletableFuture<Long> rotate() {
+        var write = PendingWrite.apply(null, null, new CompletableFuture<>());
+        enqueue(write);
+        return write.rotated;
+    }
+
+    /**
+     * Returns the number of entries which have been written since the last rotation (or since the last snapshot
+     * when the journal has been opened).
+     *
+     * @return The number of entries.
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        queue.add(CLOSE);
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        failPending(new IOException("Journal has been closed."));
+        channel.close();
+    }
+
+    private void enqueue(PendingWrite write) {
+        if (closed) {
+            throw new IllegalStateException(MessageFormat.format(
+                "Journal `{0}` is closed.", directory
+            ));
+        }
+
+        queue.add(write);
+
+        if (stopped) {
+            failPending(new IOException("Journal has been closed."));
+        }
+    }
+
+    private void run() {
+        var batch = Lists.<PendingWrite>newArrayListWithCapacity(configuration.getMaxBatchSize());
+
+        try {
+            while (true) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    LOG.warn("Journal writer for `{}` has been interrupted.", directory);
+                    return;
+                }
+
+                queue.drainTo(batch, configuration.getMaxBatchSize() - 1);
+
+                var group = Lists.<PendingWrite>newArrayList();
+
+                for (var write : batch) {
+                    if (write == CLOSE) {
+                        commit(group);
+                        return;
+                    } else if (Objects.nonNull(write.rotated)) {
+                        commit(group);
+                        group.clear();
+                        rotateSegment(write.rotated);
+                    } else {
+                        group.add(write);
+                    }
+                }
+
+                commit(group);
+                batch.clear();
+            }
+        } finally {
+            /*
+             * Fail the entries behind `CLOSE` within the current batch and all entries which are still queued;
+             * futures of entries which have been written are already completed.
+             */
+            var cause = new IOException("Journal has been closed.");
+
+            stopped = true;
+            fail(batch, cause);
+            failPending(cause);
+        }
+    }
+
+    /**
+     * Writes a group of entries to the current segment and flushes it. Executed by the writer thread.
+     *
+     * @param group The entries to write.
+     */
+    private void commit(List<PendingWrite> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+
+        if (Objects.nonNull(failure)) {
+            group.forEach(write -> write.written.completeExceptionally(failure));
+            return;
+        }
+
+        try {
+            var size = group.stream().mapToInt(write -> FRAME_HEADER_SIZE + write.payload.length).sum();
+            var buffer = ByteBuffer.allocate(size);
+
+            for (var write : group) {
+                buffer.putInt(write.payload.length);
+                buffer.putInt(checksum(write.payload));
+                buffer.put(write.payload);
+            }
+
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            if (configuration.isSync()) {
+                channel.force(false);
+            }
+
+            entries += group.size();
+            group.forEach(write -> write.written.complete(Done.getInstance()));
+        } catch (IOException e) {
+            /*
+             * The segment may contain a torn frame now; no further entries must be appended after it.
+             */
+            LOG.error("Failed to write journal `{}`. The journal does not accept further writes.", directory, e);
+            failure = e;
+            group.forEach(write -> write.written.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Closes the current segment and starts the next segment. Executed by the writer thread.
+     *
+     * @param rotated The future to complete with the number of the new segment.
+     */
+    private void rotateSegment(CompletableFuture<Long> rotated) {
+        try {
+            if (Objects.nonNull(failure)) {
+                throw failure;
+            }
+
+            channel.force(true);
+            channel.close();
+            channel = openSegment(directory, segment + 1);
+            segment = segment + 1;
+            entries = 0;
+
+            rotated.complete(segment);
+        } catch (IOException e) {
+            LOG.error("Failed to rotate journal `{}`. The journal does not accept further writes.", directory, e);
+            failure = e;
+            rotated.completeExceptionally(e);
+        }
+    }
+
+    private void failPending(IOException cause) {
+        var pending = Lists.<PendingWrite>newArrayList();
+        queue.drainTo(pending);
+        fail(pending, cause);
+    }
+
+    private static void fail(List<PendingWrite> writes, IOException cause) {
+        writes.forEach(write -> {
+            if (Objects.nonNull(write.written)) {
+                write.written.completeExceptionally(cause);
+            } else if (Objects.nonNull(write.rotated)) {
+                write.rotated.completeExceptionally(cause);
+            }
+        });
+    }
+
+    private static FileChannel openSegment(Path directory, long segment) throws IOException {
+        return FileChannel.open(
+            getSegmentPath(directory, segment),
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE
+        );
+    }
+
+    private static int checksum(byte[] payload) {
+        var crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * An entry which has been appended, but not yet written; or a request to rotate the segment.
+     */
+    @AllArgsConstructor(staticName = "apply")
+    private static class PendingWrite {
+
+        @Nullable
+        final byte[] payload;
+
+        @Nullable
+        final CompletableFuture<Done> written;
+
+        @Nullable
+        final CompletableFuture<Long> rotated;
+
+    }
+
+}
@@ -0,0 +1,503 @@
+package com.wellnr.platform.core.persistence.embedded;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import com.wellnr.platform.common.Operators;
+import com.wellnr.platform.common.ReflectionUtils;
+import com.wellnr.platform.common.databind.DefaultObjectMapperFactory;
+import com.wellnr.platform.common.tuples.Done;
+import com.wellnr.platform.core.config.EmbeddedDatabaseConfiguration;
+import com.wellnr.platform.core.persistence.inmemory.ConcurrentInMemoryQueryEngine;
+import com.wellnr.platform.core.persistence.inmemory.ConcurrentInMemoryQueryEngine.Change;
+import com.wellnr.platform.core.persistence.inmemory.InMemoryQueryEngine;
+import com.wellnr.platform.core.persistence.query.Index;
+import com.wellnr.platform.core.persistence.query.QueryEngineWithoutCustomQueries;
+import com.wellnr.platform.core.persistence.query.filter.Query;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * {@link EmbeddedQueryEngine} keeps all items in memory (see {@link ConcurrentInMemoryQueryEngine}) and persists
+ * all changes in a local directory, thus reads have the same performance as with the in-memory engine.
+ * <p>
+ * Each write operation is appended to a journal (see {@link EmbeddedJournal}) before it returns; concurrent
+ * writes are committed in groups, batch writes are appended as a single journal entry. If the journal cannot be
+ * written, the write operation fails and its changes are rolled back in memory. After a configured number
+ * of journal entries, a snapshot of all items is written in the background and older journal segments are
+ * deleted. At startup, the state is recovered from the latest snapshot and the journal segments written after it.
+ * <p>
+ * An engine holds an exclusive lock on its directory until it is closed, thus a directory cannot be used by multiple
+ * engines (within the same or another process) at the same time.
+ * <p>
+ * Items are stored as JSON, thus the stored type must be serializable with Jackson.
+ *
+ * @param <T> The type of the items stored within the engine.
+ */
+public final class EmbeddedQueryEngine<T> implements QueryEngineWithoutCustomQueries<T>, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmbeddedQueryEngine.class);
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+
+    private static final String LOCK_FILE = "engine.lock";
+
+    /**
+     * The number of items which are written within a single frame of a snapshot.
+     */
+    private static final int SNAPSHOT_BATCH_SIZE = 1000;
+
+    private final Class<T> type;
+
+    private final Path directory;
+
+    private final EmbeddedDatabaseConfiguration configuration;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Reads the primary key of an item. Empty, if the type does not provide a primary key field; in this case
+     * the generated keys of {@link ConcurrentInMemoryQueryEngine} are stored along with the items.
+     */
+    private final Optional<Function<Object, Object>> primaryKey;
+
+    private final EmbeddedJournal journal;
+
+    /**
+     * The exclusive lock on {@link #directory}, released when the engine is closed.
+     */
+    private final FileLock lock;
+
+    private final ConcurrentInMemoryQueryEngine<T> engine;
+
+    /**
+     * Executes the creation of snapshots.
+     */
+    private final ExecutorService snapshots;
+
+    /**
+     * Set while a snapshot is created.
+     */
+    private final AtomicBoolean snapshotRunning;
+
+    private EmbeddedQueryEngine(
+        Class<T> type, Path directory, EmbeddedDatabaseConfiguration configuration, ObjectMapper objectMapper,
+        Optional<Function<Object, Object>> primaryKey, EmbeddedJournal journal, FileLock lock) {
+
+        this.type = type;
+        this.directory = directory;
+        this.configuration = configuration;
+        this.objectMapper = objectMapper;
+        this.primaryKey = primaryKey;
+        this.journal = journal;
+        this.lock = lock;
+        this.engine = ConcurrentInMemoryQueryEngine.apply(type, this::onChanges);
+        this.snapshotRunning = new AtomicBoolean(false);
+        this.snapshots = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "embedded-snapshots-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a new instance. The state is recovered from the directory if it contains data.
+     *
+     * @param type          The type of the stored items.
+     * @param directory     The directory to store journals and snapshots of this engine.
+     * @param configuration The storage configuration.
+     * @param <T>           The type of the stored items.
+     * @return A new instance.
+     * @throws IllegalStateException If the directory is used by another engine.
+     */
+    public static <T> EmbeddedQueryEngine<T> apply(
+        Class<T> type, Path directory, EmbeddedDatabaseConfiguration configuration) {
+
+        var objectMapper = DefaultObjectMapperFactory.apply().createJsonMapper(false);
+        var primaryKey = Operators.exceptionToNone(() ->
+            ReflectionUtils.getFieldAccessor(type, InMemoryQueryEngine.PRIMARY_KEY_FIELD)
+        );
+
+        var lock = Operators.suppressExceptions(() -> lock(directory));
+
+        try {
+            return recover(type, directory, configuration, objectMapper, primaryKey, lock);
+        } catch (RuntimeException ex) {
+            Operators.suppressExceptions(() -> lock.channel().close());
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates the directory if required, and acquires an exclusive lock on it.
+     *
+     * @param directory The directory of an engine.
+     * @return The acquired lock.
+     * @throws IOException           If the lock file cannot be opened.
+     * @throws IllegalStateException If the directory is locked by another engine.
+     */
+    private static FileLock lock(Path directory) throws IOException {
+        Files.createDirectories(directory);
+
+        var channel = FileChannel.open(
+            directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE
+        );
+
+        FileLock lock;
+
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            lock = null;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+
+        if (Objects.isNull(lock)) {
+            channel.close();
+
+            throw new IllegalStateException(MessageFormat.format(
+                "Directory `{0}` is used by another embedded query engine.", directory
+            ));
+        }
+
+        return lock;
+    }
+
+    /**
+     * Recovers the state of an engine from its directory.
+     */
+    private static <T> EmbeddedQueryEngine<T> recover(
+        Class<T> type, Path directory, EmbeddedDatabaseConfiguration configuration, ObjectMapper objectMapper,
+        Optional<Function<Object, Object>> primaryKey, FileLock lock) {
+
+        return Operators.suppressExceptions(() -> {
+            var startedAt = System.nanoTime();
+            var state = Maps.<Object, Change<T>>newHashMap();
+            var entriesType = objectMapper.getTypeFactory().constructCollectionType(
+                List.class, objectMapper.getTypeFactory().constructParametricType(Entry.class, type)
+            );
+
+            var decode = (Function<byte[], List<Change<T>>>) payload ->
+                decode(payload, objectMapper, entriesType, primaryKey);
+
+            /*
+             * Read latest snapshot, and all journal segments written after the snapshot. A snapshot `n`
+             * contains all changes of segments < n.
+             */
+            var snapshot = EmbeddedJournal
+                .getFileNumbers(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)
+                .stream()
+                .reduce((first, second) -> second);
+
+            if (snapshot.isPresent()) {
+                EmbeddedJournal.readFrames(
+                    getSnapshotPath(directory, snapshot.get()),
+                    payload -> decode.apply(payload).forEach(change -> merge(state, change))
+                );
+            }
+
+            var segments = EmbeddedJournal
+                .getSegments(directory)
+                .stream()
+                .filter(segment -> segment >= snapshot.orElse(0L))
+                .toList();
+
+            var entries = 0L;
+
+            for (var segment : segments) {
+                entries += EmbeddedJournal.readFrames(
+                    EmbeddedJournal.getSegmentPath(directory, segment),
+                    payload -> decode.apply(payload).forEach(change -> merge(state, change))
+                );
+            }
+
+            /*
+             * Never append to existing segments, they might end with a torn frame.
+             */
+            var nextSegment = Math.max(
+                segments.stream().reduce((first, second) -> second).map(s -> s + 1).orElse(1L),
+                snapshot.orElse(1L)
+            );
+
+            var journal = EmbeddedJournal.apply(directory, nextSegment, entries, configuration);
+            var instance = new EmbeddedQueryEngine<>(
+                type, directory, configuration, objectMapper, primaryKey, journal, lock
+            );
+
+            state
+                .values()
+                .stream()
+                .sorted(Comparator.comparingLong(Change::getSequence))
+                .forEach(instance.engine::restore);
+
+            LOG.info(
+                "Recovered {} items of type `{}` from `{}` in {} ms ({} journal entries).",
+                state.values().stream().filter(change -> !change.isRemoved()).count(), type.getName(), directory,
+                (System.nanoTime() - startedAt) / 1_000_000, entries
+            );
+
+            return instance;
+        });
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return true;
+    }
+
+    @Override
+    public void ensureIndex(Index index) {
+        engine.ensureIndex(index);
+    }
+
+    @Override
+    public void prepare(Query query) {
+        engine.prepare(query);
+    }
+
+    @Override
+    public void insertOrUpdate(T item, Query match, List<Object> parameters) {
+        engine.insertOrUpdate(item, match, parameters);
+    }
+
+    @Override
+    public void insertOrUpdateAll(List<T> items, Query match, List<List<Object>> parameters) {
+        engine.insertOrUpdateAll(items, match, parameters);
+    }
+
+    @Override
+    public List<T> findAll(Query query, List<Object> parameters) {
+        return engine.findAll(query, parameters);
+    }
+
+    @Override
+    public List<T> findAll(Query query, QueryOptions options, List<Object> parameters) {
+        return engine.findAll(query, options, parameters);
+    }
+
+    @Override
+    public Optional<T> findOne(Query query, List<Object> parameters) {
+        return engine.findOne(query, parameters);
+    }
+
+    @Override
+    public long count(Query query, List<Object> parameters) {
+        return engine.count(query, parameters);
+    }
+
+    @Override
+    public boolean exists(Query query, List<Object> parameters) {
+        return engine.exists(query, parameters);
+    }
+
+    @Override
+    public long remove(Query query, List<Object> parameters) {
+        return engine.remove(query, parameters);
+    }
+
+    @Override
+    public long removeAll(Query query, List<List<Object>> parameters) {
+        return engine.removeAll(query, parameters);
+    }
+
+    /**
+     * Writes a snapshot of the current state and truncates the journal. Returns when the snapshot is written.
+     */
+    public void snapshot() {
+        journal
+            .rotate()
+            .thenAcceptAsync(segment -> Operators.suppressExceptions(() -> writeSnapshot(segment)), snapshots)
+            .join();
+    }
+
+    @Override
+    public void close() throws IOException {
+        snapshots.shutdown();
+
+        try {
+            snapshots.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        journal.close();
+        lock.channel().close();
+    }
+
+    /**
+     * Persists the changes of a write operation, see {@link ConcurrentInMemoryQueryEngine.ChangeListener}.
+     *
+     * @param changes The changes of the write operation.
+     * @return A future which completes when the changes are written to the journal.
+     */
+    private CompletableFuture<Done> onChanges(List<Change<T>> changes) {
+        var written = journal.append(encode(changes));
+        var snapshotRequired = journal.getEntries() >= configuration.getSnapshotAfterEntries();
+
+        if (snapshotRequired && snapshotRunning.compareAndSet(false, true)) {
+            /*
+             * The changes have been appended already, thus the snapshot must not fail the write operation.
+             */
+            CompletableFuture
+                .completedFuture(Done.getInstance())
+                .thenCompose(done -> journal.rotate())
+                .thenAcceptAsync(segment -> Operators.suppressExceptions(() -> writeSnapshot(segment)), snapshots)
+                .whenComplete((done, ex) -> {
+                    snapshotRunning.set(false);
+
+                    if (Objects.nonNull(ex)) {
+                        LOG.error("Failed to create snapshot in `{}`.", directory, ex);
+                    }
+                });
+        }
+
+        return written;
+    }
+
+    /**
+     * Writes a snapshot of all items and deletes older snapshots and journal segments.
+     *
+     * @param segment The first journal segment which is not covered by the snapshot. All lower segments must be
+     *                closed, before.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    private void writeSnapshot(long segment) throws IOException {
+        var startedAt = System.nanoTime();
+        var file = getSnapshotPath(directory, segment);
+        var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        /*
+         * The items are read while writes continue. The snapshot may contain changes of segment `segment`
+         * or later, these are resolved by the sequence numbers during recovery.
+         */
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            var batches = Iterators.partition(engine.getItems().iterator(), SNAPSHOT_BATCH_SIZE);
+
+            while (batches.hasNext()) {
+                EmbeddedJournal.writeFrame(out, encode(batches.next()));
+            }
+        }
+
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (var previous : EmbeddedJournal.getFileNumbers(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (previous < segment) {
+                Files.deleteIfExists(getSnapshotPath(directory, previous));
+            }
+        }
+
+        for (var previous : EmbeddedJournal.getSegments(directory)) {
+            if (previous < segment) {
+                Files.deleteIfExists(EmbeddedJournal.getSegmentPath(directory, previous));
+            }
+        }
+
+        LOG.debug("Created snapshot `{}` in {} ms.", file, (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    private byte[] encode(List<Change<T>> changes) {
+        var entries = changes
+            .stream()
+            .map(change -> Entry.apply(
+                change.getSequence(),
+                change.isRemoved(),
+                primaryKey.isPresent() ? null : (Long) change.getKey(),
+                change.getItem()
+            ))
+            .toList();
+
+        return Operators.suppressExceptions(() -> objectMapper.writeValueAsBytes(entries));
+    }
+
+    private static <T> List<Change<T>> decode(
+        byte[] payload, ObjectMapper objectMapper, JavaType entriesType,
+        Optional<Function<Object, Object>> primaryKey) {
+
+        List<Entry<T>> entries = Operators.suppressExceptions(() -> objectMapper.readValue(payload, entriesType));
+        var changes = new ArrayList<Change<T>>(entries.size());
+
+        for (var entry : entries) {
+            var key = primaryKey.isPresent() ? primaryKey.get().apply(entry.item) : entry.key;
+            changes.add(Change.apply(key, entry.sequence, entry.item, entry.removed));
+        }
+
+        return changes;
+    }
+
+    /**
+     * Keeps the latest change (the change with the highest sequence number) per item.
+     */
+    private static <T> void merge(Map<Object, Change<T>> state, Change<T> change) {
+        state.merge(change.getKey(), change, (existing, next) -> {
+            if (next.getSequence() > existing.getSequence()) {
+                return next;
+            } else {
+                return existing;
+            }
+        });
+    }
+
+    private static Path getSnapshotPath(Path directory, long segment) {
+        return directory.resolve(SNAPSHOT_PREFIX + segment + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * The persisted representation of a {@link Change}.
+     */
+    @NoArgsConstructor(access = AccessLevel.PRIVATE)
+    @AllArgsConstructor(staticName = "apply")
+    private static class Entry<T> {
+
+        long sequence;
+
+        boolean removed;
+
+        /**
+         * The key of the item, only stored if the type does not provide a primary key.
+         */
+        @Nullable
+        Long key;
+
+        T item;
+
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.wellnr.platform.core.persistence.embedded;
+
+import com.wellnr.platform.core.config.EmbeddedDatabaseConfiguration;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares {@link EmbeddedQueryEngine}s between all repositories of a platform context.
+ * <p>
+ * An engine owns its directory (journal segments and snapshots) and a writer thread. The registry creates a single
+ * engine per directory, thus repositories which are created for the same type and configuration use the same
+ * engine instead of writing to the same journal concurrently.
+ * <p>
+ * Each platform context owns an instance (see {@link com.wellnr.platform.core.context.PlatformContext#getInstance}),
+ * its engines are closed when the context is stopped, see {@link #close()}.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class EmbeddedQueryEngineRegistry implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmbeddedQueryEngineRegistry.class);
+
+    /**
+     * The engines, keyed by their absolute directory.
+     */
+    private final ConcurrentHashMap<Path, EmbeddedQueryEngine<?>> engines;
+
+    /**
+     * Creates a new, independent instance.
+     *
+     * @return A new instance.
+     */
+    public static EmbeddedQueryEngineRegistry apply() {
+        return new EmbeddedQueryEngineRegistry(new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Returns the engine for the directory. The engine is created (and its state is recovered) if it does not
+     * exist yet.
+     *
+     * @param type          The type of the stored items.
+     * @param directory     The directory to store journals and snapshots of the engine.
+     * @param configuration The storage configuration, used if the engine is created.
+     * @param <T>           The type of the stored items.
+     * @return The shared engine.
+     * @throws IllegalArgumentException If the engine of the directory stores another type.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> EmbeddedQueryEngine<T> getEngine(
+        Class<T> type, Path directory, EmbeddedDatabaseConfiguration configuration) {
+
+        var engine = engines.computeIfAbsent(
+            directory.toAbsolutePath().normalize(), d -> EmbeddedQueryEngine.apply(type, d, configuration)
+        );
+
+        if (!engine.getType().equals(type)) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "Directory `{0}` is used for items of type `{1}`, can't use it for type `{2}`.",
+                directory, engine.getType().getName(), type.getName()
+            ));
+        }
+
+        return (EmbeddedQueryEngine<T>) engine;
+    }
+
+    /**
+     * Returns the number of open engines.
+     *
+     * @return The number of engines.
+     */
+    public int size() {
+        return engines.size();
+    }
+
+    /**
+     * Closes all engines. Engines requested afterwards are created again, recovering their state.
+     */
+    @Override
+    public void close() {
+        List.copyOf(engines.keySet()).forEach(directory -> {
+            var engine = engines.remove(directory);
+
+            if (Objects.nonNull(engine)) {
+                LOG.info("Closing embedded query engine for `{}`.", directory);
+
+                try {
+                    engine.close();
+                } catch (IOException ex) {
+                    LOG.error("Failed to close embedded query engine for `{}`.", directory, ex);
+                }
+            }
+        });
+    }
+
+}
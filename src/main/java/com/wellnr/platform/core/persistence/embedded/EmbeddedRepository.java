@@ -0,0 +1,52 @@
+package com.wellnr.platform.core.persistence.embedded;
+
+import com.wellnr.platform.common.tuples.Nothing;
+import com.wellnr.platform.core.config.EmbeddedDatabaseConfiguration;
+import com.wellnr.platform.core.context.PlatformContext;
+import com.wellnr.platform.core.persistence.query.AbstractQueryEngineRepositoryFactory;
+import com.wellnr.platform.core.persistence.query.QueryEngine;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Creates repositories which keep all items in memory and persist them in a local directory,
+ * see {@link EmbeddedQueryEngine}. The engines are shared and closed by the platform context,
+ * see {@link EmbeddedQueryEngineRegistry}.
+ */
+public final class EmbeddedRepository extends AbstractQueryEngineRepositoryFactory<Object, Nothing> {
+
+    private final EmbeddedDatabaseConfiguration configuration;
+
+    private final EmbeddedQueryEngineRegistry engines;
+
+    private EmbeddedRepository(PlatformContext ctx, EmbeddedDatabaseConfiguration configuration) {
+        super(ctx);
+        this.configuration = configuration;
+        this.engines = ctx.getInstance(EmbeddedQueryEngineRegistry.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <R> R create(
+        PlatformContext ctx, Class<R> repositoryType, EmbeddedDatabaseConfiguration configuration,
+        Class<?>... entityTypes
+    ) {
+        var factory = new EmbeddedRepository(ctx, configuration);
+
+        return factory.create(
+            ctx,
+            repositoryType,
+            Arrays.stream(entityTypes).map(t -> (Class<Object>) t).toList()
+        );
+    }
+
+    @Override
+    protected QueryEngine<Object, Nothing> createQueryEngine(Class<Object> entityType, Class<Object> mementoType) {
+        var directory = Path
+            .of(configuration.getDirectory())
+            .resolve(mementoType.getSimpleName().toLowerCase());
+
+        return engines.getEngine(mementoType, directory, configuration);
+    }
+
+}
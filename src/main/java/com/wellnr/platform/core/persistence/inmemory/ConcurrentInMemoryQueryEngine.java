@@ -0,0 +1,782 @@
+package com.wellnr.platform.core.persistence.inmemory;
+
+import com.google.common.collect.Lists;
+import com.wellnr.platform.common.Operators;
+import com.wellnr.platform.common.ReflectionUtils;
+import com.wellnr.platform.common.tuples.Done;
+import com.wellnr.platform.core.persistence.query.Index;
+import com.wellnr.platform.core.persistence.query.QueryEngineWithoutCustomQueries;
+import com.wellnr.platform.core.persistence.query.filter.Query;
+import com.wellnr.platform.core.persistence.query.filter.True;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.text.MessageFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A thread-safe variant of {@link InMemoryQueryEngine}, which can be used by multiple threads (e.g. multiple
+ * entities behind {@link com.wellnr.platform.common.async.AsyncBoundaryProxy}) at the same time.
+ * <p>
+ * Items are stored within a {@link ConcurrentHashMap} keyed by their primary key (see {@link InMemoryQueryEngine}),
+ * items of types which provide a primary key field must provide a value for it.
+ * Reads of single items (queries which match exactly on `guid`) do not take any lock.
+ * <p>
+ * Keys are assigned to a fixed number of stripes, each guarded by a {@link StampedLock}. A write holds the write
+ * locks of the stripes of all items it changes while it updates the items along with their secondary index entries.
+ * Thus, writes of items in different stripes (e.g. writes by primary key) run in parallel, while writes of the same
+ * item are serialized. Writes which need to scan the collection (e.g. removals by a secondary field) lock all
+ * stripes. Queries which need to scan the collection (or a secondary index) read optimistically and are repeated
+ * with the read locks of all stripes if a write happened in the meantime. Thus, a query never observes a partially
+ * applied write.
+ * <p>
+ * Like {@link InMemoryQueryEngine}, results are returned in the order in which the items have been inserted or
+ * updated.
+ * <p>
+ * Applied changes can be observed with a {@link ChangeListener}, e.g. to persist them. A write operation returns
+ * once the listener has accepted its changes; if the listener rejects them, they are rolled back.
+ *
+ * @param <T> The type of the items stored within the engine.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ConcurrentInMemoryQueryEngine<T> implements QueryEngineWithoutCustomQueries<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConcurrentInMemoryQueryEngine.class);
+
+    /**
+     * The number of lock stripes, must be a power of two.
+     */
+    private static final int STRIPES = 32;
+
+    private static final int[] ALL_STRIPES = IntStream.range(0, STRIPES).toArray();
+
+    private final Class<T> type;
+
+    /**
+     * All stored items, keyed by their primary key.
+     */
+    private final ConcurrentHashMap<Object, StoredItem<T>> items;
+
+    /**
+     * A function to read the primary key of an item. Empty, if the type does not provide a primary key field.
+     */
+    private final Optional<Function<Object, Object>> primaryKey;
+
+    /**
+     * Secondary indexes which are maintained along with {@link #items}.
+     */
+    private final ConcurrentHashMap<Index, InMemoryIndex<T>> indexes;
+
+    /**
+     * Provides the sequence numbers of written items, used to retain the order of insertion.
+     */
+    private final AtomicLong sequence;
+
+    /**
+     * The locks of the stripes, see class documentation.
+     */
+    private final StampedLock[] locks;
+
+    /**
+     * Receives the changes of all write operations.
+     */
+    private final ChangeListener<T> listener;
+
+    /**
+     * Write operations which have been applied, but not yet accepted by the listener, in the order in which they
+     * have been applied.
+     */
+    private final ConcurrentLinkedDeque<Transaction<T>> pending;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param type       The type of the stored items.
+     * @param collection The initial items.
+     * @param listener   A listener which receives all changes applied by write operations.
+     * @param <T>        The type of the stored items.
+     * @return A new instance.
+     */
+    public static <T> ConcurrentInMemoryQueryEngine<T> apply(
+        Class<T> type, Collection<T> collection, ChangeListener<T> listener
+    ) {
+        var primaryKey = Operators.exceptionToNone(() ->
+            ReflectionUtils.getFieldAccessor(type, InMemoryQueryEngine.PRIMARY_KEY_FIELD)
+        );
+
+        var engine = new ConcurrentInMemoryQueryEngine<>(
+            type, new ConcurrentHashMap<>(), primaryKey, new ConcurrentHashMap<>(), new AtomicLong(),
+            Stream.generate(StampedLock::new).limit(STRIPES).toArray(StampedLock[]::new), listener,
+            new ConcurrentLinkedDeque<>()
+        );
+
+        collection.forEach(item -> engine.put(engine.getKey(item), item, Lists.newArrayList()));
+        return engine;
+    }
+
+    public static <T> ConcurrentInMemoryQueryEngine<T> apply(Class<T> type, ChangeListener<T> listener) {
+        return apply(type, Lists.newArrayList(), listener);
+    }
+
+    public static <T> ConcurrentInMemoryQueryEngine<T> apply(Class<T> type, Collection<T> collection) {
+        return apply(type, collection, changes -> CompletableFuture.completedFuture(Done.getInstance()));
+    }
+
+    public static <T> ConcurrentInMemoryQueryEngine<T> apply(Class<T> type) {
+        return apply(type, Lists.newArrayList());
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Returns whether the stored type provides a primary key. If not, items are stored with generated keys.
+     *
+     * @return True, if the stored type provides a primary key field.
+     */
+    public boolean hasPrimaryKey() {
+        return primaryKey.isPresent();
+    }
+
+    /**
+     * Returns all stored items along with their keys and sequence numbers, e.g. to persist them. The result
+     * is weakly consistent, it may or may not reflect concurrent writes.
+     *
+     * @return The stored items, unordered.
+     */
+    public Stream<Change<T>> getItems() {
+        return items
+            .values()
+            .stream()
+            .map(stored -> Change.apply(stored.getKey(), stored.getSequence(), stored.getItem(), false));
+    }
+
+    /**
+     * Restores an item (e.g. read from persistent storage) with its original key and sequence number. Removals
+     * are not applied, but their sequence numbers are taken into account for subsequent writes. The listener
+     * is not notified.
+     * <p>
+     * Restoring items must not be mixed with other write operations.
+     *
+     * @param change The change to restore.
+     */
+    public void restore(Change<T> change) {
+        sequence.accumulateAndGet(change.getSequence(), Math::max);
+
+        if (!change.isRemoved()) {
+            items.compute(change.getKey(), (k, existing) -> {
+                if (Objects.nonNull(existing)) {
+                    indexes.values().forEach(index -> index.remove(k, existing.getItem()));
+                }
+
+                indexes.values().forEach(index -> index.add(k, change.getItem()));
+                return StoredItem.apply(k, change.getItem(), change.getSequence());
+            });
+        }
+    }
+
+    @Override
+    public void ensureIndex(Index index) {
+        var isPrimaryKey = primaryKey.isPresent() &&
+            index.getFields().size() == 1 &&
+            index.getFields().get(0).getFQN().equalsIgnoreCase(InMemoryQueryEngine.PRIMARY_KEY_FIELD);
+
+        if (isPrimaryKey || indexes.containsKey(index)) {
+            return;
+        }
+
+        var maybeIndex = Operators.exceptionToNone(() -> InMemoryIndex.concurrent(index, type));
+
+        if (maybeIndex.isEmpty()) {
+            LOG.warn(
+                "Can't create index `{}` for type `{}`. Queries using these fields will scan all items.",
+                index, type.getName()
+            );
+
+            return;
+        }
+
+        var stamps = lock(ALL_STRIPES);
+
+        try {
+            var inMemoryIndex = maybeIndex.get();
+
+            if (Objects.nonNull(indexes.putIfAbsent(index, inMemoryIndex))) {
+                return;
+            }
+
+            items.forEach((key, stored) -> inMemoryIndex.add(key, stored.getItem()));
+        } finally {
+            unlock(ALL_STRIPES, stamps);
+        }
+    }
+
+    @Override
+    public void insertOrUpdate(T item, Query match, List<Object> parameters) {
+        var plan = InMemoryQueryPlan.compile(match, type);
+        var maybeKey = plan.getPrimaryKey(parameters);
+        var key = getKey(item);
+        var byKey = maybeKey.isPresent() && primaryKey.isPresent() && maybeKey.get().equals(key);
+
+        write(byKey ? getStripes(List.of(key)) : ALL_STRIPES, undo -> {
+            var changes = Lists.<Change<T>>newArrayList();
+
+            if (!byKey) {
+                changes.addAll(deleteAll(plan, parameters, undo));
+            }
+
+            changes.add(put(key, item, undo));
+            return changes;
+        });
+    }
+
+    /**
+     * Applies all writes while holding the write locks of all affected stripes, thus concurrent queries observe
+     * either none or all of them. The listener is notified once with the changes of all items.
+     */
+    @Override
+    public void insertOrUpdateAll(List<T> items, Query match, List<List<Object>> parameters) {
+        var plan = InMemoryQueryPlan.compile(match, type);
+        var keys = items.stream().map(this::getKey).toList();
+        var byKey = primaryKey.isPresent() && IntStream
+            .range(0, items.size())
+            .allMatch(i -> plan.getPrimaryKey(parameters.get(i)).filter(keys.get(i)::equals).isPresent());
+
+        write(byKey ? getStripes(keys) : ALL_STRIPES, undo -> {
+            var changes = Lists.<Change<T>>newArrayList();
+
+            for (var i = 0; i < items.size(); i++) {
+                var key = keys.get(i);
+
+                if (!byKey) {
+                    changes.addAll(deleteAll(plan, parameters.get(i), undo));
+                }
+
+                changes.add(put(key, items.get(i), undo));
+            }
+
+            return changes;
+        });
+    }
+
+    @Override
+    public List<T> findAll(Query query, List<Object> parameters) {
+        return read(query, parameters, matches -> matches
+            .sorted(Comparator.comparingLong(StoredItem::getSequence))
+            .map(StoredItem::getItem)
+            .toList());
+    }
+
+    @Override
+    public List<T> findAll(Query query, QueryOptions options, List<Object> parameters) {
+        var after = options.<T>getAfterCondition(parameters);
+        var order = Comparator
+            .comparing(StoredItem<T>::getItem, options.getComparator())
+            .thenComparingLong(StoredItem::getSequence);
+
+        return read(query, parameters, matches -> options
+            .select(matches.filter(stored -> after.test(stored.getItem())), order)
+            .stream()
+            .map(StoredItem::getItem)
+            .toList());
+    }
+
+    @Override
+    public Optional<T> findOne(Query query, List<Object> parameters) {
+        return read(query, parameters, matches -> matches
+            .min(Comparator.comparingLong(StoredItem::getSequence))
+            .map(StoredItem::getItem));
+    }
+
+    @Override
+    public long count(Query query, List<Object> parameters) {
+        if (query instanceof True) {
+            return items.mappingCount();
+        }
+
+        var plan = InMemoryQueryPlan.compile(query, type);
+        var maybeIndex = plan
+            .selectIndex(indexes.keySet())
+            .filter(plan::isCoveredBy);
+
+        if (maybeIndex.isPresent()) {
+            var values = plan.getIndexValues(maybeIndex.get(), parameters);
+            return read(() -> (long) indexes.get(maybeIndex.get()).get(values).size());
+        }
+
+        return read(query, parameters, Stream::count);
+    }
+
+    @Override
+    public boolean exists(Query query, List<Object> parameters) {
+        return read(query, parameters, matches -> matches.findAny().isPresent());
+    }
+
+    @Override
+    public long remove(Query query, List<Object> parameters) {
+        var plan = InMemoryQueryPlan.compile(query, type);
+        var maybeKey = plan.getPrimaryKey(parameters);
+        var stripes = maybeKey.map(key -> getStripes(List.of(key))).orElse(ALL_STRIPES);
+
+        return write(stripes, undo -> {
+            if (maybeKey.isPresent()) {
+                return delete(maybeKey.get(), undo).stream().toList();
+            } else {
+                return deleteAll(plan, parameters, undo);
+            }
+        }).size();
+    }
+
+    /**
+     * Applies all removals while holding the write locks of all affected stripes, see
+     * {@link #insertOrUpdateAll(List, Query, List)}.
+     */
+    @Override
+    public long removeAll(Query query, List<List<Object>> parameters) {
+        var plan = InMemoryQueryPlan.compile(query, type);
+        var keys = parameters.stream().map(plan::getPrimaryKey).toList();
+        var stripes = keys.stream().allMatch(Optional::isPresent)
+            ? getStripes(keys.stream().map(Optional::get).toList())
+            : ALL_STRIPES;
+
+        return write(stripes, undo -> {
+            var changes = Lists.<Change<T>>newArrayList();
+
+            for (var p : parameters) {
+                var maybeKey = plan.getPrimaryKey(p);
+
+                if (maybeKey.isPresent()) {
+                    delete(maybeKey.get(), undo).ifPresent(changes::add);
+                } else {
+                    changes.addAll(deleteAll(plan, p, undo));
+                }
+            }
+
+            return changes;
+        }).size();
+    }
+
+    /**
+     * Applies a write operation while holding the write locks of the given stripes and passes its changes to the
+     * listener. Returns when the listener has accepted the changes.
+     * <p>
+     * Calls of the listener are serialized (and recorded in {@link #pending} in the same order). If the operation
+     * fails or the listener rejects the changes, the changes are rolled back. As the listener accepts changes in
+     * order (see {@link ChangeListener}), all later operations which have not been accepted yet are rejected as
+     * well; these are rolled back along with the operation, latest first.
+     *
+     * @param stripes   The stripes of all items which may be changed by the operation, in ascending order.
+     * @param operation Applies the changes, and records the previous state of all changed items.
+     * @return The applied changes.
+     */
+    private List<Change<T>> write(int[] stripes, Function<List<Undo<T>>, List<Change<T>>> operation) {
+        var transaction = Transaction.<T>apply(Lists.newArrayList());
+        List<Change<T>> changes;
+        CompletableFuture<?> accepted;
+        var stamps = lock(stripes);
+
+        try {
+            try {
+                changes = operation.apply(transaction.getUndo());
+
+                synchronized (pending) {
+                    accepted = changes.isEmpty()
+                        ? CompletableFuture.completedFuture(Done.getInstance())
+                        : listener.onChanges(changes).toCompletableFuture();
+
+                    if (!accepted.isDone() || accepted.isCompletedExceptionally()) {
+                        pending.add(transaction);
+                        accepted.thenRun(() -> pending.remove(transaction));
+                    }
+                }
+            } catch (RuntimeException ex) {
+                rollback(transaction);
+                throw ex;
+            }
+        } finally {
+            unlock(stripes, stamps);
+        }
+
+        try {
+            accepted.join();
+        } catch (CompletionException | CancellationException ex) {
+            rollbackPending();
+            throw ex;
+        }
+
+        return changes;
+    }
+
+    /**
+     * Rolls back all write operations which have not been accepted by the listener, latest first.
+     */
+    private void rollbackPending() {
+        var stamps = lock(ALL_STRIPES);
+
+        try {
+            for (var transaction = pending.pollLast(); Objects.nonNull(transaction); transaction = pending.pollLast()) {
+                rollback(transaction);
+            }
+        } finally {
+            unlock(ALL_STRIPES, stamps);
+        }
+    }
+
+    /**
+     * Restores the previous state of all items changed by a write operation. Must be called while holding the
+     * write locks of the stripes of these items.
+     *
+     * @param transaction The write operation to roll back.
+     */
+    private void rollback(Transaction<T> transaction) {
+        for (var undo : Lists.reverse(transaction.getUndo())) {
+            items.compute(undo.getKey(), (k, current) -> {
+                if (Objects.nonNull(current)) {
+                    indexes.values().forEach(index -> index.remove(k, current.getItem()));
+                }
+
+                if (Objects.nonNull(undo.getPrevious())) {
+                    indexes.values().forEach(index -> index.add(k, undo.getPrevious().getItem()));
+                }
+
+                return undo.getPrevious();
+            });
+        }
+    }
+
+    /**
+     * Executes a read. Reads of single items by primary key are executed without lock, scans are executed
+     * optimistically, and repeated with a read lock if a write happened concurrently.
+     *
+     * @param query      The query to filter items.
+     * @param parameters The parameters which may be referenced by the query.
+     * @param collect    A function to collect the result from the matching items.
+     * @param <R>        The type of the result.
+     * @return The result.
+     */
+    private <R> R read(Query query, List<Object> parameters, Function<Stream<StoredItem<T>>, R> collect) {
+        var plan = InMemoryQueryPlan.compile(query, type);
+        var maybeKey = plan.getPrimaryKey(parameters);
+
+        if (maybeKey.isPresent()) {
+            return collect.apply(Stream.ofNullable(items.get(maybeKey.get())));
+        }
+
+        var condition = plan.bind(parameters);
+        return read(() -> collect.apply(select(plan, parameters, condition)));
+    }
+
+    /**
+     * Executes a read which may observe multiple items optimistically, and repeats it with the read locks of all
+     * stripes if a write happened concurrently.
+     *
+     * @param read The read to execute.
+     * @param <R>  The type of the result.
+     * @return The result.
+     */
+    private <R> R read(Supplier<R> read) {
+        var stamps = new long[STRIPES];
+        var optimistic = true;
+
+        for (var i = 0; i < STRIPES && optimistic; i++) {
+            stamps[i] = locks[i].tryOptimisticRead();
+            optimistic = stamps[i] != 0L;
+        }
+
+        if (optimistic) {
+            var result = read.get();
+
+            for (var i = 0; i < STRIPES && optimistic; i++) {
+                optimistic = locks[i].validate(stamps[i]);
+            }
+
+            if (optimistic) {
+                return result;
+            }
+        }
+
+        for (var i = 0; i < STRIPES; i++) {
+            stamps[i] = locks[i].readLock();
+        }
+
+        try {
+            return read.get();
+        } finally {
+            for (var i = STRIPES - 1; i >= 0; i--) {
+                locks[i].unlockRead(stamps[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the stripes of the given keys.
+     *
+     * @param keys The keys of items.
+     * @return The distinct stripes, in ascending order.
+     */
+    private static int[] getStripes(Collection<Object> keys) {
+        return keys
+            .stream()
+            .mapToInt(key -> {
+                var hash = key.hashCode();
+                return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+            })
+            .sorted()
+            .distinct()
+            .toArray();
+    }
+
+    /**
+     * Acquires the write locks of the given stripes. Locks are always acquired in ascending order, thus concurrent
+     * writes cannot deadlock.
+     *
+     * @param stripes The stripes, in ascending order.
+     * @return The stamps of the acquired locks.
+     */
+    private long[] lock(int[] stripes) {
+        var stamps = new long[stripes.length];
+
+        for (var i = 0; i < stripes.length; i++) {
+            stamps[i] = locks[stripes[i]].writeLock();
+        }
+
+        return stamps;
+    }
+
+    private void unlock(int[] stripes, long[] stamps) {
+        for (var i = stripes.length - 1; i >= 0; i--) {
+            locks[stripes[i]].unlockWrite(stamps[i]);
+        }
+    }
+
+    /**
+     * Selects all stored items matching the query. A secondary index is used if possible, otherwise all items are
+     * scanned.
+     *
+     * @param plan       The compiled query.
+     * @param parameters The parameters which may be referenced by the query.
+     * @param condition  The bound condition of the query.
+     * @return The matching items, unordered.
+     */
+    private Stream<StoredItem<T>> select(InMemoryQueryPlan<T> plan, List<Object> parameters, Predicate<T> condition) {
+        var candidates = plan
+            .selectIndex(indexes.keySet())
+            .map(index -> indexes
+                .get(index)
+                .get(plan.getIndexValues(index, parameters))
+                .stream()
+                .map(items::get)
+                .filter(Objects::nonNull))
+            .orElseGet(() -> items.values().stream());
+
+        return candidates.filter(stored -> condition.test(stored.getItem()));
+    }
+
+    /**
+     * Returns the key of an item within {@link #items}, its primary key or a new generated key if the type does not
+     * provide a primary key field.
+     *
+     * @param item The item.
+     * @return The key of the item.
+     * @throws IllegalArgumentException If the type provides a primary key field, but the item has no primary key.
+     */
+    private Object getKey(T item) {
+        if (primaryKey.isEmpty()) {
+            return sequence.incrementAndGet();
+        }
+
+        var key = primaryKey.get().apply(item);
+
+        if (Objects.isNull(key)) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "Item of type `{0}` must provide a value for its primary key field `{1}`.",
+                type.getName(), InMemoryQueryEngine.PRIMARY_KEY_FIELD
+            ));
+        }
+
+        return key;
+    }
+
+    /**
+     * Stores an item. An existing item with the same key is replaced. Must be called while holding the write lock of
+     * the item's stripe.
+     *
+     * @param key  The key of the item, see {@link #getKey(Object)}.
+     * @param item The item to store.
+     * @param undo Receives the previous state of the item.
+     * @return The applied change.
+     */
+    private Change<T> put(Object key, T item, List<Undo<T>> undo) {
+        var stored = items.compute(key, (k, existing) -> {
+            if (Objects.nonNull(existing)) {
+                indexes.values().forEach(index -> index.remove(k, existing.getItem()));
+            }
+
+            undo.add(Undo.apply(k, existing));
+            indexes.values().forEach(index -> index.add(k, item));
+            return StoredItem.apply(k, item, sequence.incrementAndGet());
+        });
+
+        return Change.apply(key, stored.getSequence(), item, false);
+    }
+
+    /**
+     * Removes an item and its entries in the secondary indexes. Must be called while holding the write lock of the
+     * item's stripe.
+     *
+     * @param key  The key of the item.
+     * @param undo Receives the previous state of the item.
+     * @return The applied change, if the item existed.
+     */
+    private Optional<Change<T>> delete(Object key, List<Undo<T>> undo) {
+        var removed = new AtomicReference<Change<T>>();
+
+        items.computeIfPresent(key, (k, existing) -> {
+            undo.add(Undo.apply(k, existing));
+            indexes.values().forEach(index -> index.remove(k, existing.getItem()));
+            removed.set(Change.apply(k, sequence.incrementAndGet(), existing.getItem(), true));
+            return null;
+        });
+
+        return Optional.ofNullable(removed.get());
+    }
+
+    /**
+     * Removes all items matching the query. Must be called while holding the write locks of all stripes.
+     *
+     * @param plan       The compiled query.
+     * @param parameters The parameters which may be referenced by the query.
+     * @param undo       Receives the previous state of the removed items.
+     * @return The applied changes.
+     */
+    private List<Change<T>> deleteAll(InMemoryQueryPlan<T> plan, List<Object> parameters, List<Undo<T>> undo) {
+        return select(plan, parameters, plan.bind(parameters))
+            .toList()
+            .stream()
+            .flatMap(stored -> delete(stored.getKey(), undo).stream())
+            .toList();
+    }
+
+    /**
+     * Receives the changes applied by write operations, e.g. to persist them.
+     *
+     * @param <T> The type of the stored items.
+     */
+    @FunctionalInterface
+    public interface ChangeListener<T> {
+
+        /**
+         * Called with all changes of a write operation, after the operation has been applied and while the write
+         * locks of the changed items are held. Calls are not concurrent, and changes of the same item are reported
+         * in the order in which they have been applied; changes of different items may be reported in any order.
+         * The operation returns to its caller when the returned stage completes. If the listener throws or the stage
+         * completes exceptionally, the changes are rolled back and the exception is passed to the caller.
+         * <p>
+         * The listener must not block (e.g. it should only enqueue the changes to persist them). Stages must
+         * complete in the order of the calls, and once a stage completed exceptionally, the stages of all later
+         * calls must complete exceptionally, too. Concurrent reads may observe changes before their stage
+         * completes.
+         *
+         * @param changes The applied changes.
+         * @return A stage which completes when the changes are accepted, e.g. when they are persisted.
+         */
+        CompletionStage<?> onChanges(List<Change<T>> changes);
+
+    }
+
+    /**
+     * Describes a change of a single item.
+     *
+     * @param <T> The type of the stored items.
+     */
+    @lombok.Value
+    @AllArgsConstructor(staticName = "apply")
+    public static class Change<T> {
+
+        /**
+         * The key of the item; the primary key, or a generated key if the type does not provide a primary key.
+         */
+        Object key;
+
+        /**
+         * The sequence number of the change. Changes of the same item with higher sequence numbers override
+         * changes with lower sequence numbers.
+         */
+        long sequence;
+
+        /**
+         * The stored item, or the removed item if the change is a removal.
+         */
+        T item;
+
+        boolean removed;
+
+    }
+
+    /**
+     * A stored item along with its key and the sequence number of its last write.
+     *
+     * @param <T> The type of the item.
+     */
+    @lombok.Value
+    @AllArgsConstructor(staticName = "apply")
+    private static class StoredItem<T> {
+
+        Object key;
+
+        T item;
+
+        long sequence;
+
+    }
+
+    /**
+     * The state of an item before it has been changed by a write operation.
+     *
+     * @param <T> The type of the item.
+     */
+    @lombok.Value
+    @AllArgsConstructor(staticName = "apply")
+    private static class Undo<T> {
+
+        Object key;
+
+        /**
+         * The previous state, `null` if the item did not exist.
+         */
+        @Nullable
+        StoredItem<T> previous;
+
+    }
+
+    /**
+     * The previous states of all items changed by a write operation, in the order of the changes. Compared by
+     * identity.
+     *
+     * @param <T> The type of the items.
+     */
+    @Getter
+    @AllArgsConstructor(staticName = "apply")
+    private static final class Transaction<T> {
+
+        private final List<Undo<T>> undo;
+
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.wellnr.platform.core.persistence.inmemory;
+
+import com.wellnr.platform.common.tuples.Nothing;
+import com.wellnr.platform.core.context.PlatformContext;
+import com.wellnr.platform.core.persistence.query.AbstractQueryEngineRepositoryFactory;
+import com.wellnr.platform.core.persistence.query.QueryEngine;
+
+import java.util.Arrays;
+
+/**
+ * Creates in-memory repositories which can be used by multiple threads concurrently,
+ * see {@link ConcurrentInMemoryQueryEngine}.
+ */
+public final class ConcurrentInMemoryRepository extends AbstractQueryEngineRepositoryFactory<Object, Nothing> {
+
+    public ConcurrentInMemoryRepository(PlatformContext ctx) {
+        super(ctx);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <R> R create(
+        PlatformContext ctx, Class<R> repositoryType, Class<?>... entityTypes
+    ) {
+        var factory = new ConcurrentInMemoryRepository(ctx);
+
+        return factory.create(
+            ctx,
+            repositoryType,
+            Arrays.stream(entityTypes).map(t -> (Class<Object>) t).toList()
+        );
+    }
+
+    @Override
+    protected QueryEngine<Object, Nothing> createQueryEngine(Class<Object> entityType, Class<Object> mementoType) {
+        return ConcurrentInMemoryQueryEngine.apply(mementoType);
+    }
+}
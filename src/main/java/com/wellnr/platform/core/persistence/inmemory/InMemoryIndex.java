@@ -0,0 +1,135 @@
+package com.wellnr.platform.core.persistence.inmemory;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.wellnr.platform.common.ReflectionUtils;
+import com.wellnr.platform.core.persistence.query.Index;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A hash index maintained by {@link InMemoryQueryEngine} and {@link ConcurrentInMemoryQueryEngine}. The index maps
+ * the values of the indexed fields to the keys of the items within the engine.
+ * <p>
+ * The key of a single field index is the field's value, the key of a compound index is the list of the fields'
+ * values (in the order of {@link Index#getFields()}).
+ *
+ * @param <T> The type of the indexed items.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class InMemoryIndex<T> {
+
+    /**
+     * Key used for `null` values, as concurrent maps do not support `null` keys.
+     */
+    private static final Object NULL_KEY = new Object();
+
+    private final Index index;
+
+    private final List<Function<Object, Object>> getters;
+
+    private final Map<Object, Set<Object>> entries;
+
+    private final Supplier<Set<Object>> createEntry;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param index The index definition.
+     * @param type  The type of the indexed items.
+     * @param <T>   The type of the indexed items.
+     * @return A new instance.
+     */
+    public static <T> InMemoryIndex<T> apply(Index index, Class<T> type) {
+        return new InMemoryIndex<>(index, getGetters(index, type), Maps.newHashMap(), Sets::newLinkedHashSet);
+    }
+
+    /**
+     * Creates a new instance which can be accessed and updated concurrently.
+     *
+     * @param index The index definition.
+     * @param type  The type of the indexed items.
+     * @param <T>   The type of the indexed items.
+     * @return A new instance.
+     */
+    public static <T> InMemoryIndex<T> concurrent(Index index, Class<T> type) {
+        return new InMemoryIndex<>(
+            index, getGetters(index, type), new ConcurrentHashMap<>(), ConcurrentHashMap::newKeySet
+        );
+    }
+
+    public Index getIndex() {
+        return index;
+    }
+
+    /**
+     * Adds an item to the index.
+     *
+     * @param itemKey The key of the item within the engine.
+     * @param item    The item.
+     */
+    public void add(Object itemKey, T item) {
+        entries.compute(getKey(item), (key, itemKeys) -> {
+            if (Objects.isNull(itemKeys)) {
+                itemKeys = createEntry.get();
+            }
+
+            itemKeys.add(itemKey);
+            return itemKeys;
+        });
+    }
+
+    /**
+     * Removes an item from the index.
+     *
+     * @param itemKey The key of the item within the engine.
+     * @param item    The item, as it has been added to the index.
+     */
+    public void remove(Object itemKey, T item) {
+        entries.computeIfPresent(getKey(item), (key, itemKeys) -> {
+            itemKeys.remove(itemKey);
+
+            if (itemKeys.isEmpty()) {
+                return null;
+            } else {
+                return itemKeys;
+            }
+        });
+    }
+
+    /**
+     * Returns the keys of all items whose indexed fields are equal to the given values.
+     *
+     * @param values The values of the indexed fields, in the order of {@link Index#getFields()}.
+     * @return The keys of the matching items within the engine.
+     */
+    public Set<Object> get(List<Object> values) {
+        return entries.getOrDefault(toKey(values), Set.of());
+    }
+
+    private static List<Function<Object, Object>> getGetters(Index index, Class<?> type) {
+        return index
+            .getFields()
+            .stream()
+            .map(field -> ReflectionUtils.getFieldAccessor(type, field.getFQN()))
+            .toList();
+    }
+
+    private Object getKey(T item) {
+        return toKey(getters.stream().map(getter -> getter.apply(item)).toList());
+    }
+
+    private Object toKey(List<Object> values) {
+        if (values.size() == 1) {
+            return Objects.requireNonNullElse(values.get(0), NULL_KEY);
+        } else {
+            return Arrays.asList(values.toArray());
+        }
+    }
+
+}
@@ -1,231 +1,259 @@
 package com.wellnr.platform.core.persistence.inmemory;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.wellnr.platform.common.Operators;
 import com.wellnr.platform.common.ReflectionUtils;
-import com.wellnr.platform.common.functions.Function1;
-import com.wellnr.platform.common.tuples.Nothing;
-import com.wellnr.platform.core.persistence.query.QueryEngine;
+import com.wellnr.platform.core.persistence.query.Index;
 import com.wellnr.platform.core.persistence.query.QueryEngineWithoutCustomQueries;
-import com.wellnr.platform.core.persistence.query.filter.*;
-import com.wellnr.platform.core.persistence.query.values.*;
+import com.wellnr.platform.core.persistence.query.filter.Query;
+import com.wellnr.platform.core.persistence.query.filter.True;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.text.MessageFormat;
-import java.util.Collection;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
-@lombok.Value
-@AllArgsConstructor(staticName = "apply")
-public class InMemoryQueryEngine<T> implements QueryEngineWithoutCustomQueries<T> {
-
-    Class<T> type;
-
-    Collection<T> collection;
+/**
+ * {@link InMemoryQueryEngine} executes {@link Query} expressions against Java objects held in memory.
+ * <p>
+ * If the stored type provides a `guid` field (or getter), items are stored in a hash index keyed by this field.
+ * Queries which match exactly on `guid` (e.g. the queries created from `insertOrUpdate`-methods) are resolved
+ * with a single lookup instead of scanning the whole collection. Items of such types must provide a primary key,
+ * items without (e.g. with `guid` being `null`) are rejected. The insertion order is retained for queries
+ * which need to scan all items. Queries are compiled into cached {@link InMemoryQueryPlan}s, a scan only reads
+ * and compares the fields referenced by the query.
+ * <p>
+ * Additional hash indexes can be registered with {@link #ensureIndex(Index)}. Queries which match all fields
+ * of an index for equality only visit the items found within the index. Such queries are counted from the
+ * index directly, if they don't contain any other filters.
+ * <p>
+ * Limited queries (see {@link QueryOptions}) keep only the requested page in a bounded heap while the matching
+ * items are visited.
+ *
+ * @param <T> The type of the items stored within the engine.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class InMemoryQueryEngine<T> implements QueryEngineWithoutCustomQueries<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InMemoryQueryEngine.class);
+
+    /**
+     * The name of the field which is used as primary key, if present within the stored type.
+     */
+    public static final String PRIMARY_KEY_FIELD = "guid";
+
+    private final Class<T> type;
+
+    /**
+     * All stored items in insertion order, keyed by their primary key.
+     */
+    private final LinkedHashMap<Object, T> items;
+
+    /**
+     * A function to read the primary key of an item. Empty, if the type does not provide a primary key field.
+     */
+    private final Optional<Function<Object, Object>> primaryKey;
+
+    /**
+     * Secondary indexes which are maintained along with {@link #items}.
+     */
+    private final Map<Index, InMemoryIndex<T>> indexes;
+
+    public static <T> InMemoryQueryEngine<T> apply(Class<T> type, Collection<T> collection) {
+        var primaryKey = Operators.exceptionToNone(() ->
+            ReflectionUtils.getFieldAccessor(type, PRIMARY_KEY_FIELD)
+        );
+
+        var engine = new InMemoryQueryEngine<>(type, Maps.newLinkedHashMap(), primaryKey, Maps.newHashMap());
+        collection.forEach(engine::put);
+
+        return engine;
+    }
 
     public static <T> InMemoryQueryEngine<T> apply(Class<T> type) {
         return apply(type, Lists.newArrayList());
     }
 
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Override
+    public void ensureIndex(Index index) {
+        var isPrimaryKey = primaryKey.isPresent() &&
+            index.getFields().size() == 1 &&
+            index.getFields().get(0).getFQN().equalsIgnoreCase(PRIMARY_KEY_FIELD);
+
+        if (isPrimaryKey || indexes.containsKey(index)) {
+            return;
+        }
+
+        var maybeIndex = Operators.exceptionToNone(() -> InMemoryIndex.apply(index, type));
+
+        if (maybeIndex.isEmpty()) {
+            LOG.warn(
+                "Can't create index `{}` for type `{}`. Queries using these fields will scan all items.",
+                index, type.getName()
+            );
+
+            return;
+        }
+
+        var inMemoryIndex = maybeIndex.get();
+        items.forEach(inMemoryIndex::add);
+        indexes.put(index, inMemoryIndex);
+    }
+
     @Override
     public void insertOrUpdate(T item, Query match, List<Object> parameters) {
-        var condition = mapToCondition(match, parameters);
-
-        var newItems = Stream
-            .concat(
-                collection
-                    .stream()
-                    .filter(i -> !condition.get(i)),
-                Stream.of(item)
-            )
-            .toList();
+        var key = getKey(item);
+
+        selectKeys(match, parameters)
+            .toList()
+            .forEach(this::delete);
 
-        collection.clear();
-        collection.addAll(newItems);
+        put(key, item);
     }
 
     @Override
     public List<T> findAll(Query query, List<Object> parameters) {
-        var condition = mapToCondition(query, parameters);
-
-        return collection
-            .stream()
-            .filter(condition::get)
+        return selectKeys(query, parameters)
+            .map(items::get)
             .toList();
     }
 
     @Override
-    public Optional<T> findOne(Query query, List<Object> parameters) {
-        var condition = mapToCondition(query, parameters);
+    public List<T> findAll(Query query, QueryOptions options, List<Object> parameters) {
+        return options.select(selectKeys(query, parameters).map(items::get), parameters);
+    }
 
-        return collection
-            .stream()
-            .filter(condition::get)
+    @Override
+    public Optional<T> findOne(Query query, List<Object> parameters) {
+        return selectKeys(query, parameters)
+            .map(items::get)
             .findFirst();
     }
 
     @Override
-    public void remove(Query query, List<Object> parameters) {
-        var condition = mapToCondition(query, parameters);
+    public long count(Query query, List<Object> parameters) {
+        if (query instanceof True) {
+            return items.size();
+        }
 
-        var newItems = collection
-            .stream()
-            .filter(i -> !condition.get(i))
-            .toList();
+        var plan = InMemoryQueryPlan.compile(query, type);
+        var maybeIndex = plan
+            .selectIndex(indexes.keySet())
+            .filter(plan::isCoveredBy);
 
-        collection.clear();
-        collection.addAll(newItems);
-    }
-
-    private Function1<T, Boolean> mapToCondition(Query query, List<Object> parameters) {
-        return mapToCondition(query, type, parameters);
-    }
-
-    private <U> Function1<U, Boolean> mapToCondition(Query query, Class<U> type, List<Object> parameters) {
-        if (query instanceof ElemMatch elemMatch) {
-            return resolveElemMatch(elemMatch, parameters);
-        } else if (query instanceof Match match) {
-            return resolveMatch(match, parameters);
-        } else if (query instanceof Equals equals) {
-            return resolveEquals(equals, type, parameters);
-        } else if (query instanceof And and) {
-            return resolveAnd(and, type, parameters);
-        } else if (query instanceof Or or) {
-            return resolveOr(or, type, parameters);
-        } else if (query instanceof True) {
-            return obj -> true;
-        } else if (query instanceof False) {
-            return obj -> false;
+        if (maybeIndex.isPresent()) {
+            return indexes
+                .get(maybeIndex.get())
+                .get(plan.getIndexValues(maybeIndex.get(), parameters))
+                .size();
         }
 
-        throw new IllegalArgumentException(MessageFormat.format(
-            "Can''t handle query type `{0}`",
-            query.getClass().getName()
-        ));
+        return selectKeys(query, parameters).count();
     }
 
-    private <U> Function1<U, Boolean> resolveOr(Or or, Class<U> type, List<Object> parameters) {
-        var getters = or
-            .getFilters()
-            .stream()
-            .map(query -> mapToCondition(query, type, parameters))
-            .toList();
-
-        return obj -> getters.stream().anyMatch(cond -> cond.get(obj));
+    @Override
+    public boolean exists(Query query, List<Object> parameters) {
+        return selectKeys(query, parameters)
+            .findAny()
+            .isPresent();
     }
 
-    private <U> Function1<U, Boolean> resolveAnd(And and, Class<U> type, List<Object> parameters) {
-        var getters = and.getFilters()
-            .stream()
-            .map(query -> mapToCondition(query, type, parameters))
-            .toList();
+    @Override
+    public long remove(Query query, List<Object> parameters) {
+        var keys = selectKeys(query, parameters).toList();
+        keys.forEach(this::delete);
 
-        return obj -> getters.stream().allMatch(cond -> cond.get(obj));
-    }
-
-    private <U> Function1<U, Boolean> resolveEquals(Equals eq, Class<U> type, List<Object> parameters) {
-        var value = resolveValue(eq.getValue(), type, parameters);
-
-        return obj -> obj.equals(value.apply(obj));
-    }
-
-    @SuppressWarnings("unchecked")
-    private <U> Function1<U, Boolean> resolveMatch(Match elemMatch, List<Object> parameters) {
-        return obj -> {
-            var getLeft = resolveValue(elemMatch.getSelector(), (Class<Object>) obj.getClass(), parameters);
-            var left = getLeft.apply(obj);
-            var getRight = mapToCondition(elemMatch.getQuery(), (Class<Object>) obj.getClass(), parameters);
-            return getRight.apply(left);
-        };
-    }
-
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    private <U> Function1<U, Boolean> resolveElemMatch(ElemMatch elemMatch, List<Object> parameters) {
-        return obj -> {
-            var getLeft = resolveValue(elemMatch.getSelector(), (Class<Object>) obj.getClass(), parameters);
-            var left = getLeft.apply(obj);
-
-            if (left instanceof Collection col) {
-                if (col.isEmpty()) {
-                    return false;
-                }
-
-                return col
-                    .stream()
-                    .anyMatch(item -> {
-                        var getRight = mapToCondition(elemMatch.getQuery(), (Class<Object>) item.getClass(), parameters);
-                        return getRight.get(item);
-                    });
-            } else {
-                throw new IllegalArgumentException(MessageFormat.format(
-                    "ElemMatch selector did not resolve to a collection. ElemMatch requires a collection to be " +
-                        "selected." +
-                        " The following ElemMatch query cannot be parsed: `{0}`",
-                    elemMatch
-                ));
-            }
-        };
-    }
-
-    @SuppressWarnings("rawtypes")
-    private <U> Function1<U, Object> resolveValue(Value value, Class<U> type, List<Object> parameters) {
-        if (value instanceof Field f) {
-            return resolveValueFromField(f, type);
-        } else if (value instanceof ParameterReference ref) {
-            return resolveValueFromParameterReference(ref, parameters);
-        } else if (value instanceof StaticValue val) {
-            return resolveValueFromStaticValue(val);
-        } else if (value instanceof Uppercase upper) {
-            return resolveValueFromUppercase(upper, type, parameters);
-        } else if (value instanceof Select select) {
-            return resolveValueFromSelect(select, type, parameters);
-        }
+        return keys.size();
+    }
 
-        throw new IllegalArgumentException(MessageFormat.format(
-            "Can''t handle value type `{0}`",
-            value.getClass().getName()
-        ));
+    /**
+     * Stores an item at the end of the collection. An existing item with the same primary key is replaced.
+     *
+     * @param item The item to store.
+     */
+    private void put(T item) {
+        put(getKey(item), item);
     }
 
-    @SuppressWarnings("unchecked")
-    private <U> Function1<U, Object> resolveValueFromSelect(Select select, Class<U> type, List<Object> parameters) {
-        var getValue = resolveValue(select.getValue(), type, parameters);
+    private void put(Object key, T item) {
+        delete(key);
+        items.put(key, item);
+        indexes.values().forEach(index -> index.add(key, item));
+    }
 
-        return obj -> {
-            var value = getValue.apply(obj);
+    /**
+     * Returns the key of an item within {@link #items}, its primary key or a new unique key if the type does not
+     * provide a primary key field.
+     *
+     * @param item The item.
+     * @return The key of the item.
+     * @throws IllegalArgumentException If the type provides a primary key field, but the item has no primary key.
+     */
+    private Object getKey(T item) {
+        if (primaryKey.isEmpty()) {
+            return new Object();
+        }
 
-            if (Objects.isNull(value)) {
-                return null;
-            } else {
-                var selectFunc = resolveValueFromField(select.getSelect(), (Class<Object>) value.getClass());
-                return selectFunc.get(value);
-            }
-        };
-    }
+        var key = primaryKey.get().apply(item);
 
-    private <U> Function1<U, Object> resolveValueFromUppercase(Uppercase upper, Class<U> type,
-                                                               List<Object> parameters) {
-        var getValue = resolveValue(upper.getValue(), type, parameters);
-        return obj -> {
-            var value = getValue.apply(obj);
-            return value.toString().toUpperCase();
-        };
-    }
+        if (Objects.isNull(key)) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "Item of type `{0}` must provide a value for its primary key field `{1}`.",
+                type.getName(), PRIMARY_KEY_FIELD
+            ));
+        }
 
-    private <U> Function1<U, Object> resolveValueFromStaticValue(StaticValue<?> val) {
-        return obj -> val.getValue();
+        return key;
     }
 
-    private <U> Function1<U, Object> resolveValueFromParameterReference(ParameterReference ref,
-                                                                        List<Object> parameters) {
-        var result = parameters.get(ref.getIndex());
-        return obj -> result;
+    /**
+     * Removes an item from the collection and all indexes.
+     *
+     * @param key The key of the item.
+     */
+    private void delete(Object key) {
+        if (items.containsKey(key)) {
+            var item = items.remove(key);
+            indexes.values().forEach(index -> index.remove(key, item));
+        }
     }
 
-    private <U> Function1<U, Object> resolveValueFromField(Field field, Class<U> type) {
-        return ReflectionUtils.getValueGetterForNestedFieldForClass(field.getFQN(), type);
+    /**
+     * Selects the keys of all items matching the query. The primary key or secondary indexes are used if
+     * possible, otherwise all items are scanned.
+     *
+     * @param query      The query to filter items.
+     * @param parameters The parameters which may be referenced by the query.
+     * @return The keys of the matching items, in insertion order.
+     */
+    private Stream<Object> selectKeys(Query query, List<Object> parameters) {
+        var plan = InMemoryQueryPlan.compile(query, type);
+        var maybeKey = plan.getPrimaryKey(parameters);
+
+        if (maybeKey.isPresent()) {
+            return maybeKey
+                .filter(items::containsKey)
+                .stream();
+        }
+
+        var condition = plan.bind(parameters);
+        var candidates = plan
+            .selectIndex(indexes.keySet())
+            .map(index -> indexes.get(index).get(plan.getIndexValues(index, parameters)))
+            .map(Collection::stream)
+            .orElseGet(() -> items.keySet().stream());
+
+        return candidates.filter(key -> condition.test(items.get(key)));
     }
 
 }
@@ -0,0 +1,580 @@
+package com.wellnr.platform.core.persistence.inmemory;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Maps;
+import com.wellnr.platform.common.Operators;
+import com.wellnr.platform.common.ReflectionUtils;
+import com.wellnr.platform.core.persistence.query.Index;
+import com.wellnr.platform.core.persistence.query.Queries;
+import com.wellnr.platform.core.persistence.query.filter.*;
+import com.wellnr.platform.core.persistence.query.values.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+import java.text.MessageFormat;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Query} compiled into a reusable predicate for items of a given type.
+ * <p>
+ * Compiling a query walks the query AST once and resolves field accessors once per (runtime) class. Parameters
+ * are bound with {@link #bind(List)} when the query is executed; values which do not depend on the tested item
+ * (parameters, static values and selections from these) are evaluated once during binding. Testing an item
+ * then only reads the referenced fields and compares them.
+ * <p>
+ * Besides the predicate, a plan provides the information to answer a query from the primary key or from
+ * secondary indexes, see {@link #getPrimaryKey(List)} and {@link #selectIndex(Collection)}.
+ * <p>
+ * Compiled plans are cached per query and type, see {@link #compile(Query, Class)}.
+ *
+ * @param <T> The type of the items the plan is applied to.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class InMemoryQueryPlan<T> {
+
+    /**
+     * The maximum number of compiled plans per type which are kept in the cache.
+     */
+    private static final int MAX_CACHED_PLANS = 1024;
+
+    /**
+     * The compiled plans by type and query. The cache is keyed with a {@link ClassValue} and does not prevent
+     * classes (and their class loaders) from being unloaded.
+     */
+    private static final ClassValue<LoadingCache<Query, InMemoryQueryPlan<?>>> PLANS = new ClassValue<>() {
+
+        @Override
+        protected LoadingCache<Query, InMemoryQueryPlan<?>> computeValue(Class<?> type) {
+            return CacheBuilder
+                .newBuilder()
+                .maximumSize(MAX_CACHED_PLANS)
+                .build(CacheLoader.from(query -> create(query, type)));
+        }
+
+    };
+
+    private final Query query;
+
+    private final Class<T> type;
+
+    private final CompiledCondition condition;
+
+    /**
+     * The value of the primary key, if the query selects an item by its primary key only.
+     */
+    private final Optional<CompiledValue> primaryKey;
+
+    /**
+     * Fields which are matched for equality with values independent of the item; these can be looked up in
+     * secondary indexes.
+     */
+    private final Map<Field, CompiledValue> equalities;
+
+    /**
+     * True, if the query consists of the matches within {@link #equalities} only.
+     */
+    private final boolean equalitiesOnly;
+
+    /**
+     * Returns the compiled plan for a query. Plans are compiled once and cached per query and type.
+     *
+     * @param query The query to compile.
+     * @param type  The type of the items the query is applied to.
+     * @param <T>   The type of the items the query is applied to.
+     * @return The compiled plan.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> InMemoryQueryPlan<T> compile(Query query, Class<T> type) {
+        return (InMemoryQueryPlan<T>) PLANS.get(type).getUnchecked(query);
+    }
+
+    private static <T> InMemoryQueryPlan<T> create(Query query, Class<T> type) {
+        var hasPrimaryKey = Operators
+            .exceptionToNone(() -> ReflectionUtils.getFieldAccessor(type, InMemoryQueryEngine.PRIMARY_KEY_FIELD))
+            .isPresent();
+
+        var primaryKey = Optional
+            .of(query)
+            .filter(q -> hasPrimaryKey)
+            .flatMap(InMemoryQueryPlan::getPrimaryKeyFromQuery)
+            .map(InMemoryQueryPlan::compileValue);
+
+        var equalities = getEqualitiesFromQuery(query);
+
+        return new InMemoryQueryPlan<>(
+            query, type, compileCondition(query), primaryKey, equalities, isEqualitiesOnly(query, equalities)
+        );
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Binds the parameters of the query.
+     *
+     * @param parameters The parameters which may be referenced by the query.
+     * @return A predicate which tests whether an item matches the query.
+     */
+    @SuppressWarnings("unchecked")
+    public Predicate<T> bind(List<Object> parameters) {
+        return (Predicate<T>) condition.bind(parameters);
+    }
+
+    /**
+     * Returns the primary key of the selected item, if the query selects an item by its primary key only.
+     *
+     * @param parameters The parameters which may be referenced by the query.
+     * @return The primary key value if the query can be answered by a primary key lookup.
+     */
+    public Optional<Object> getPrimaryKey(List<Object> parameters) {
+        return primaryKey.map(value -> value.bind(parameters).apply(null));
+    }
+
+    /**
+     * Selects an index which can be used to look up candidates for this query. All fields of the index
+     * must be matched for equality. If multiple indexes are suitable, the one with the most fields is used.
+     *
+     * @param indexes The available indexes.
+     * @return The selected index, if any.
+     */
+    public Optional<Index> selectIndex(Collection<Index> indexes) {
+        if (equalities.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return indexes
+            .stream()
+            .filter(index -> equalities.keySet().containsAll(index.getFields()))
+            .max(Comparator.comparing(index -> index.getFields().size()));
+    }
+
+    /**
+     * Returns the values to look up within an index, see {@link #selectIndex(Collection)}.
+     *
+     * @param index      The index selected for this query.
+     * @param parameters The parameters which may be referenced by the query.
+     * @return The values of the index' fields, in the order of {@link Index#getFields()}.
+     */
+    public List<Object> getIndexValues(Index index, List<Object> parameters) {
+        return index
+            .getFields()
+            .stream()
+            .map(field -> equalities.get(field).bind(parameters).apply(null))
+            .toList();
+    }
+
+    /**
+     * Checks whether the items found within an index are exactly the items matching the query, i.e. the query
+     * doesn't contain any other filters than the equality matches of the index' fields. In this case the index
+     * entries can be counted without testing the items.
+     *
+     * @param index An index selected by {@link #selectIndex(Collection)}.
+     * @return True, if the index covers the query.
+     */
+    public boolean isCoveredBy(Index index) {
+        return equalitiesOnly && equalities.keySet().equals(Set.copyOf(index.getFields()));
+    }
+
+    /*
+     * Analysis
+     */
+
+    /**
+     * Checks whether a query selects an item by its primary key only, e.g. `match($("guid"), eq(p(0)))` or
+     * `match($("guid"), eq($("guid", p(0))))`.
+     *
+     * @param query The query to analyze.
+     * @return The value of the primary key if the query can be answered by a primary key lookup.
+     */
+    private static Optional<Value> getPrimaryKeyFromQuery(Query query) {
+        if (
+            !(query instanceof Match match) ||
+                !(match.getSelector() instanceof Field field) ||
+                !field.getFQN().equalsIgnoreCase(InMemoryQueryEngine.PRIMARY_KEY_FIELD) ||
+                !(match.getQuery() instanceof Equals equals)
+        ) {
+            return Optional.empty();
+        }
+
+        var value = equals.getValue();
+
+        if (
+            value instanceof Select select &&
+                select.getSelect().getFQN().equalsIgnoreCase(InMemoryQueryEngine.PRIMARY_KEY_FIELD) &&
+                isParameterOrStaticValue(select.getValue())
+        ) {
+            return Optional.of(value);
+        } else if (isParameterOrStaticValue(value)) {
+            return Optional.of(value);
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    private static boolean isParameterOrStaticValue(Value value) {
+        return value instanceof ParameterReference || value instanceof StaticValue<?>;
+    }
+
+    /**
+     * Collects the equality matches of a single match or of a conjunction of matches (along with other
+     * filters), see {@link Queries#getIndexedField(Match)}.
+     *
+     * @param query The query to analyze.
+     * @return The fields matched for equality along with their compiled values.
+     */
+    private static Map<Field, CompiledValue> getEqualitiesFromQuery(Query query) {
+        List<Query> conjunction;
+
+        if (query instanceof And and) {
+            conjunction = and.getFilters();
+        } else {
+            conjunction = List.of(query);
+        }
+
+        var equalities = Maps.<Field, CompiledValue>newHashMap();
+
+        conjunction
+            .stream()
+            .filter(Match.class::isInstance)
+            .map(Match.class::cast)
+            .forEach(match -> Queries
+                .getIndexedField(match)
+                .ifPresent(field -> equalities.putIfAbsent(
+                    field, compileValue(((Equals) match.getQuery()).getValue())
+                )));
+
+        return Map.copyOf(equalities);
+    }
+
+    /**
+     * Checks whether a query only consists of equality matches which are contained in `equalities`. Conjunctions
+     * which match the same field multiple times are not, as only the first match is kept in `equalities`.
+     *
+     * @param query      The query to analyze.
+     * @param equalities The equalities collected from the query, see {@link #getEqualitiesFromQuery(Query)}.
+     * @return True, if the query consists of the equalities only.
+     */
+    private static boolean isEqualitiesOnly(Query query, Map<Field, CompiledValue> equalities) {
+        var conjunction = query instanceof And and ? and.getFilters() : List.of(query);
+
+        return !equalities.isEmpty() && conjunction.size() == equalities.size() && conjunction
+            .stream()
+            .allMatch(q -> q instanceof Match match && Queries.getIndexedField(match).isPresent());
+    }
+
+    /*
+     * Compilation
+     */
+
+    private static CompiledCondition compileCondition(Query query) {
+        if (query instanceof ElemMatch elemMatch) {
+            return compileElemMatch(elemMatch);
+        } else if (query instanceof Match match) {
+            return compileMatch(match);
+        } else if (query instanceof Equals equals) {
+            return compileEquals(equals);
+        } else if (query instanceof IsIn isIn) {
+            return compileIsIn(isIn);
+        } else if (query instanceof And and) {
+            return compileAnd(and);
+        } else if (query instanceof Or or) {
+            return compileOr(or);
+        } else if (query instanceof True) {
+            return parameters -> obj -> true;
+        } else if (query instanceof False) {
+            return parameters -> obj -> false;
+        }
+
+        throw new IllegalArgumentException(MessageFormat.format(
+            "Can''t handle query type `{0}`",
+            query.getClass().getName()
+        ));
+    }
+
+    private static CompiledCondition compileOr(Or or) {
+        var conditions = or
+            .getFilters()
+            .stream()
+            .map(InMemoryQueryPlan::compileCondition)
+            .toList();
+
+        return parameters -> {
+            var bound = bindAll(conditions, parameters);
+
+            return obj -> {
+                for (var condition : bound) {
+                    if (condition.test(obj)) {
+                        return true;
+                    }
+                }
+
+                return false;
+            };
+        };
+    }
+
+    private static CompiledCondition compileAnd(And and) {
+        var conditions = and
+            .getFilters()
+            .stream()
+            .map(InMemoryQueryPlan::compileCondition)
+            .toList();
+
+        return parameters -> {
+            var bound = bindAll(conditions, parameters);
+
+            return obj -> {
+                for (var condition : bound) {
+                    if (!condition.test(obj)) {
+                        return false;
+                    }
+                }
+
+                return true;
+            };
+        };
+    }
+
+    private static CompiledCondition compileEquals(Equals equals) {
+        var value = compileValue(equals.getValue());
+
+        return parameters -> {
+            var getValue = value.bind(parameters);
+
+            if (value.isConstant()) {
+                var expected = getValue.apply(null);
+                return obj -> Objects.equals(obj, expected);
+            } else {
+                return obj -> Objects.equals(obj, getValue.apply(obj));
+            }
+        };
+    }
+
+    private static CompiledCondition compileIsIn(IsIn isIn) {
+        var values = isIn
+            .getValues()
+            .stream()
+            .map(InMemoryQueryPlan::compileValue)
+            .toList();
+
+        return parameters -> {
+            var bound = values
+                .stream()
+                .map(value -> value.bind(parameters))
+                .toList();
+
+            return obj -> {
+                for (var getValue : bound) {
+                    var value = getValue.apply(obj);
+
+                    if (value instanceof Collection<?> col ? col.contains(obj) : Objects.equals(obj, value)) {
+                        return true;
+                    }
+                }
+
+                return false;
+            };
+        };
+    }
+
+    private static CompiledCondition compileMatch(Match match) {
+        var selector = compileValue(match.getSelector());
+        var condition = compileCondition(match.getQuery());
+
+        return parameters -> {
+            var getLeft = selector.bind(parameters);
+            var test = condition.bind(parameters);
+
+            return obj -> test.test(getLeft.apply(obj));
+        };
+    }
+
+    private static CompiledCondition compileElemMatch(ElemMatch elemMatch) {
+        var selector = compileValue(elemMatch.getSelector());
+        var condition = compileCondition(elemMatch.getQuery());
+
+        return parameters -> {
+            var getLeft = selector.bind(parameters);
+            var test = condition.bind(parameters);
+
+            return obj -> {
+                var left = getLeft.apply(obj);
+
+                if (left instanceof Collection<?> col) {
+                    for (var item : col) {
+                        if (test.test(item)) {
+                            return true;
+                        }
+                    }
+
+                    return false;
+                } else {
+                    throw new IllegalArgumentException(MessageFormat.format(
+                        "ElemMatch selector did not resolve to a collection. ElemMatch requires a collection to be " +
+                            "selected." +
+                            " The following ElemMatch query cannot be parsed: `{0}`",
+                        elemMatch
+                    ));
+                }
+            };
+        };
+    }
+
+    private static CompiledValue compileValue(Value value) {
+        if (value instanceof Field field) {
+            var getter = FieldAccessor.apply(field);
+            return CompiledValue.apply(false, parameters -> getter::get);
+        } else if (value instanceof ParameterReference ref) {
+            return CompiledValue.apply(true, parameters -> {
+                var result = parameters.get(ref.getIndex());
+                return obj -> result;
+            });
+        } else if (value instanceof StaticValue<?> val) {
+            var result = val.getValue();
+            return CompiledValue.apply(true, parameters -> obj -> result);
+        } else if (value instanceof Uppercase upper) {
+            return compileUppercase(upper);
+        } else if (value instanceof Select select) {
+            return compileSelect(select);
+        }
+
+        throw new IllegalArgumentException(MessageFormat.format(
+            "Can''t handle value type `{0}`",
+            value.getClass().getName()
+        ));
+    }
+
+    private static CompiledValue compileUppercase(Uppercase upper) {
+        var value = compileValue(upper.getValue());
+
+        return CompiledValue.apply(value.isConstant(), parameters -> {
+            var getValue = value.bind(parameters);
+
+            return obj -> {
+                var result = getValue.apply(obj);
+
+                if (Objects.isNull(result)) {
+                    return null;
+                } else {
+                    return result.toString().toUpperCase();
+                }
+            };
+        }).memoizeIfConstant();
+    }
+
+    private static CompiledValue compileSelect(Select select) {
+        var value = compileValue(select.getValue());
+        var getter = FieldAccessor.apply(select.getSelect());
+
+        return CompiledValue.apply(value.isConstant(), parameters -> {
+            var getValue = value.bind(parameters);
+
+            return obj -> getter.get(getValue.apply(obj));
+        }).memoizeIfConstant();
+    }
+
+    private static List<Predicate<Object>> bindAll(List<CompiledCondition> conditions, List<Object> parameters) {
+        return conditions
+            .stream()
+            .map(condition -> condition.bind(parameters))
+            .toList();
+    }
+
+    /**
+     * A compiled condition; returns a predicate once parameters are bound.
+     */
+    @FunctionalInterface
+    private interface CompiledCondition {
+
+        Predicate<Object> bind(List<Object> parameters);
+
+    }
+
+    /**
+     * Binds the parameters of a compiled value.
+     */
+    @FunctionalInterface
+    private interface ValueBinder {
+
+        Function<Object, Object> bind(List<Object> parameters);
+
+    }
+
+    /**
+     * A compiled value; returns a function to read the value from an item once parameters are bound.
+     */
+    @AllArgsConstructor(staticName = "apply")
+    private static final class CompiledValue {
+
+        /**
+         * Whether the value is independent of the tested item.
+         */
+        private final boolean constant;
+
+        private final ValueBinder binder;
+
+        public boolean isConstant() {
+            return constant;
+        }
+
+        public Function<Object, Object> bind(List<Object> parameters) {
+            return binder.bind(parameters);
+        }
+
+        /**
+         * If the value is independent of the tested item, it is evaluated once when parameters are bound.
+         *
+         * @return The optimized value.
+         */
+        public CompiledValue memoizeIfConstant() {
+            if (!constant) {
+                return this;
+            }
+
+            return CompiledValue.apply(true, parameters -> {
+                var result = binder.bind(parameters).apply(null);
+                return obj -> result;
+            });
+        }
+
+    }
+
+    /**
+     * Reads a (nested) field from objects. The getter is resolved once per runtime class of the objects.
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    private static final class FieldAccessor {
+
+        private final ClassValue<Function<Object, Object>> getters;
+
+        public static FieldAccessor apply(Field field) {
+            return new FieldAccessor(new ClassValue<>() {
+
+                @Override
+                protected Function<Object, Object> computeValue(Class<?> type) {
+                    return ReflectionUtils.getFieldAccessor(type, field.getFQN());
+                }
+
+            });
+        }
+
+        public Object get(Object obj) {
+            if (Objects.isNull(obj)) {
+                return null;
+            }
+
+            return getters.get(obj.getClass()).apply(obj);
+        }
+
+    }
+
+}
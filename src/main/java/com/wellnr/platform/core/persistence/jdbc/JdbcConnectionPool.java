@@ -0,0 +1,144 @@
+package com.wellnr.platform.core.persistence.jdbc;
+
+import com.wellnr.platform.common.Operators;
+import com.wellnr.platform.core.config.JdbcDatabaseConfiguration;
+
+import java.io.Closeable;
+import java.sql.DriverManager;
+import java.text.MessageFormat;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A fixed-size pool of {@link JdbcSession}s. Connections are opened on demand with {@link DriverManager} and kept
+ * open along with their prepared statements, see {@link JdbcSession}.
+ * <p>
+ * Once the pool is closed, no sessions can be acquired anymore and sessions which are still in use are closed when
+ * they are released.
+ */
+final class JdbcConnectionPool implements Closeable {
+
+    private final JdbcDatabaseConfiguration configuration;
+
+    private final Semaphore permits;
+
+    private final ConcurrentLinkedQueue<JdbcSession> idle;
+
+    private volatile boolean closed;
+
+    private JdbcConnectionPool(JdbcDatabaseConfiguration configuration) {
+        this.configuration = configuration;
+        this.permits = new Semaphore(configuration.getMaxConnections(), true);
+        this.idle = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param configuration The connection configuration.
+     * @return A new instance.
+     */
+    public static JdbcConnectionPool apply(JdbcDatabaseConfiguration configuration) {
+        if (configuration.getMaxConnections() < 1) {
+            throw new IllegalArgumentException("A JDBC connection pool requires at least one connection.");
+        }
+
+        if (Objects.isNull(configuration.getUrl()) || configuration.getUrl().isBlank()) {
+            throw new IllegalArgumentException("A JDBC connection pool requires a JDBC URL.");
+        }
+
+        return new JdbcConnectionPool(configuration);
+    }
+
+    /**
+     * Acquires a session, waits if all connections are in use. The session must be released with
+     * {@link #release(JdbcSession)}.
+     *
+     * @return The session.
+     * @throws IllegalStateException If the pool is closed.
+     */
+    public JdbcSession acquire() {
+        permits.acquireUninterruptibly();
+
+        try {
+            if (closed) {
+                throw new IllegalStateException(MessageFormat.format(
+                    "Connection pool for `{0}` is closed.", configuration.getUrl()
+                ));
+            }
+
+            for (var session = idle.poll(); session != null; session = idle.poll()) {
+                if (session.isValid()) {
+                    return session;
+                } else {
+                    session.close();
+                }
+            }
+
+            var connection = Operators.suppressExceptions(() -> DriverManager.getConnection(
+                configuration.getUrl(), configuration.getUser(), configuration.getPassword()
+            ));
+
+            return JdbcSession.apply(connection, configuration.getStatementCacheSize());
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a session to the pool. The session is closed if the pool is closed.
+     *
+     * @param session The session acquired with {@link #acquire()}.
+     */
+    public void release(JdbcSession session) {
+        if (!closed && session.isValid()) {
+            idle.add(session);
+
+            /*
+             * The pool might have been closed concurrently, after its idle sessions have been closed.
+             */
+            if (closed) {
+                closeIdleSessions();
+            }
+        } else {
+            session.close();
+        }
+
+        permits.release();
+    }
+
+    /**
+     * Executes an operation with a session of the pool.
+     *
+     * @param operation The operation.
+     * @param <T>       The result type of the operation.
+     * @return The result of the operation.
+     */
+    public <T> T withSession(Operators.ExceptionalFunction<JdbcSession, T> operation) {
+        var session = acquire();
+
+        try {
+            return Operators.suppressExceptions(() -> operation.apply(session));
+        } finally {
+            release(session);
+        }
+    }
+
+    /**
+     * Closes all idle sessions. Sessions which are in use are closed when they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeIdleSessions();
+    }
+
+    private void closeIdleSessions() {
+        for (var session = idle.poll(); session != null; session = idle.poll()) {
+            session.close();
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.wellnr.platform.core.persistence.jdbc;
+
+import com.wellnr.platform.core.config.JdbcDatabaseConfiguration;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps track of the connection pools of all JDBC repositories of a platform context.
+ * <p>
+ * Each platform context owns an instance (see {@link com.wellnr.platform.core.context.PlatformContext#getInstance}),
+ * its pools (and thus their connections) are closed when the context is stopped, see {@link #close()}.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class JdbcConnectionPoolRegistry implements Closeable {
+
+    private final ConcurrentLinkedQueue<JdbcConnectionPool> pools;
+
+    /**
+     * Creates a new, independent instance.
+     *
+     * @return A new instance.
+     */
+    public static JdbcConnectionPoolRegistry apply() {
+        return new JdbcConnectionPoolRegistry(new ConcurrentLinkedQueue<>());
+    }
+
+    /**
+     * Creates a new connection pool which is closed along with the registry.
+     *
+     * @param configuration The connection configuration.
+     * @return The new pool.
+     */
+    JdbcConnectionPool createPool(JdbcDatabaseConfiguration configuration) {
+        var pool = JdbcConnectionPool.apply(configuration);
+        pools.add(pool);
+        return pool;
+    }
+
+    /**
+     * Returns the number of open pools.
+     *
+     * @return The number of pools.
+     */
+    public int size() {
+        return pools.size();
+    }
+
+    /**
+     * Closes all pools. Sessions which are in use are closed when they are released.
+     */
+    @Override
+    public void close() {
+        for (var pool = pools.poll(); pool != null; pool = pools.poll()) {
+            pool.close();
+        }
+    }
+
+}
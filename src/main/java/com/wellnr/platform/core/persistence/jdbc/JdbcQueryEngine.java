@@ -0,0 +1,641 @@
+package com.wellnr.platform.core.persistence.jdbc;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+import com.wellnr.platform.common.Operators;
+import com.wellnr.platform.common.databind.DefaultObjectMapperFactory;
+import com.wellnr.platform.common.tuples.Nothing;
+import com.wellnr.platform.core.config.JdbcDatabaseConfiguration;
+import com.wellnr.platform.core.persistence.jdbc.sql.Column;
+import com.wellnr.platform.core.persistence.jdbc.sql.Sql;
+import com.wellnr.platform.core.persistence.query.Index;
+import com.wellnr.platform.core.persistence.query.QueryEngineWithoutCustomQueries;
+import com.wellnr.platform.core.persistence.query.filter.Query;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link JdbcQueryEngine} stores items within a table of a JDBC data source, see {@link JdbcTableMapping}. The
+ * table is created when the engine is created; columns which are missing in an existing table are added and filled
+ * from the stored documents.
+ * <p>
+ * Queries are translated into parameterized SQL statements (see {@link JdbcQueryTemplate}); templates are compiled
+ * once per query. Connections are pooled and keep their prepared statements open, thus repeated queries are not
+ * prepared again (see {@link JdbcSession}). Filters which can't be expressed in SQL are applied to the selected
+ * rows in memory.
+ * <p>
+ * Batch writes are executed as JDBC batches within a single transaction. Items selected by their `guid` are
+ * written with a batch of upsert statements (`MERGE` or `INSERT ... ON CONFLICT`) if the database is known to
+ * support them, see {@link JdbcTableMapping#getUpsertStatement(String)}. Otherwise they are updated with a batch of
+ * `UPDATE` statements and items which don't exist yet are inserted with a batch of `INSERT` statements; rows whose
+ * update count is not reported by the driver are updated again one by one. This fallback is not atomic: concurrent
+ * inserts of the same new item fail with a constraint violation instead of overwriting each other.
+ * <p>
+ * Streamed results (see {@link #stream(Query, QueryOptions, List)}) are fetched from the result set while the stream
+ * is consumed; the connection is returned to the pool when the stream is consumed or closed.
+ * <p>
+ * Items are stored as JSON, thus the stored type must be serializable with Jackson.
+ *
+ * @param <T> The type of the items stored within the engine.
+ */
+public final class JdbcQueryEngine<T> implements QueryEngineWithoutCustomQueries<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcQueryEngine.class);
+
+    /**
+     * The maximum number of compiled templates which are kept in the cache.
+     */
+    private static final int MAX_CACHED_TEMPLATES = 1024;
+
+    private final JdbcTableMapping<T> mapping;
+
+    private final JdbcConnectionPool pool;
+
+    private final JdbcDatabaseConfiguration configuration;
+
+    /**
+     * The statement to insert or update a row at once, empty if the database is not known to support it.
+     */
+    private final Optional<String> upsertStatement;
+
+    private final LoadingCache<Query, JdbcQueryTemplate<T>> templates;
+
+    private JdbcQueryEngine(
+        JdbcTableMapping<T> mapping, JdbcConnectionPool pool, JdbcDatabaseConfiguration configuration,
+        Optional<String> upsertStatement) {
+
+        this.mapping = mapping;
+        this.pool = pool;
+        this.configuration = configuration;
+        this.upsertStatement = upsertStatement;
+        this.templates = CacheBuilder
+            .newBuilder()
+            .maximumSize(MAX_CACHED_TEMPLATES)
+            .build(CacheLoader.from(query -> JdbcQueryTemplate.compile(query, mapping)));
+    }
+
+    /**
+     * Creates a new instance with its own connection pool. The table of the type is created if it does not exist.
+     *
+     * @param type          The type of the stored items.
+     * @param configuration The connection configuration.
+     * @param <T>           The type of the stored items.
+     * @return A new instance.
+     */
+    public static <T> JdbcQueryEngine<T> apply(Class<T> type, JdbcDatabaseConfiguration configuration) {
+        return apply(type, JdbcConnectionPool.apply(configuration), configuration);
+    }
+
+    /**
+     * Creates a new instance which shares a connection pool, e.g. with other engines of the same repository.
+     *
+     * @param type          The type of the stored items.
+     * @param pool          The connection pool.
+     * @param configuration The connection configuration.
+     * @param <T>           The type of the stored items.
+     * @return A new instance.
+     */
+    static <T> JdbcQueryEngine<T> apply(
+        Class<T> type, JdbcConnectionPool pool, JdbcDatabaseConfiguration configuration) {
+
+        var mapping = JdbcTableMapping.apply(type, DefaultObjectMapperFactory.apply().createJsonMapper(false));
+        var upsertStatement = pool.withSession(session ->
+            mapping.getUpsertStatement(session.getConnection().getMetaData().getDatabaseProductName()));
+
+        var engine = new JdbcQueryEngine<>(mapping, pool, configuration, upsertStatement);
+
+        engine.createTable();
+        return engine;
+    }
+
+    @Override
+    public void insertOrUpdate(T item, Query match, List<Object> parameters) {
+        insertOrUpdateAll(List.of(item), match, List.of(parameters));
+    }
+
+    @Override
+    public void insertOrUpdateAll(List<T> items, Query match, List<List<Object>> parameters) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        var template = getTemplate(match);
+        var rows = items.stream().map(mapping::getRow).toList();
+
+        /*
+         * If each item is selected by its own `guid`, rows are updated in place (or inserted); otherwise the matching
+         * rows are replaced.
+         */
+        var isUpsert = mapping.hasPrimaryKey();
+
+        for (var i = 0; i < rows.size() && isUpsert; i++) {
+            isUpsert = template.getPrimaryKey(parameters.get(i)).filter(rows.get(i).get(0)::equals).isPresent();
+        }
+
+        var upsert = isUpsert;
+
+        pool.withSession(session -> session.transaction(() -> {
+            if (upsert) {
+                upsert(session, rows);
+            } else {
+                for (var i = 0; i < rows.size(); i++) {
+                    remove(session, template, parameters.get(i));
+                    insert(session, List.of(rows.get(i)));
+                }
+            }
+
+            return Nothing.getInstance();
+        }));
+    }
+
+    @Override
+    public List<T> findAll(Query query, List<Object> parameters) {
+        return findAll(query, QueryOptions.apply(), parameters);
+    }
+
+    @Override
+    public List<T> findAll(Query query, QueryOptions options, List<Object> parameters) {
+        if (options.getLimit().filter(limit -> limit == 0).isPresent()) {
+            return List.of();
+        }
+
+        var template = getTemplate(query);
+
+        var items = pool.withSession(session -> {
+            try (var resultSet = session.prepare(template.select(options, parameters)).executeQuery()) {
+                var result = new ArrayList<T>();
+
+                while (resultSet.next()) {
+                    result.add(mapping.read(resultSet.getString(2)));
+                }
+
+                return result;
+            }
+        });
+
+        return select(template, options, parameters, items.stream());
+    }
+
+    @Override
+    public Stream<T> stream(Query query, QueryOptions options, List<Object> parameters) {
+        var template = getTemplate(query);
+
+        if (options.getLimit().filter(limit -> limit == 0).isPresent()) {
+            return Stream.empty();
+        } else if (!template.isExecutedByDatabase(options)) {
+            return findAll(query, options, parameters).stream();
+        }
+
+        var rows = new RowSpliterator(pool.acquire());
+
+        try {
+            rows.open(template.select(options, parameters));
+        } catch (RuntimeException e) {
+            rows.close();
+            throw e;
+        }
+
+        return StreamSupport
+            .stream(rows, false)
+            .filter(template.getResidualFilter(parameters))
+            .onClose(rows::close);
+    }
+
+    @Override
+    public Optional<T> findOne(Query query, List<Object> parameters) {
+        if (getTemplate(query).isExact()) {
+            return findAll(query, QueryOptions.apply().withLimit(1), parameters).stream().findFirst();
+        }
+
+        try (var items = stream(query, QueryOptions.apply(), parameters)) {
+            return items.findFirst();
+        }
+    }
+
+    @Override
+    public long count(Query query, List<Object> parameters) {
+        var template = getTemplate(query);
+
+        if (!template.isExact()) {
+            try (var items = stream(query, QueryOptions.apply(), parameters)) {
+                return items.count();
+            }
+        }
+
+        return pool.withSession(session -> {
+            try (var resultSet = session.prepare(template.count(parameters)).executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        });
+    }
+
+    @Override
+    public long remove(Query query, List<Object> parameters) {
+        var template = getTemplate(query);
+        return pool.withSession(session -> session.transaction(() -> remove(session, template, parameters)));
+    }
+
+    @Override
+    public long removeAll(Query query, List<List<Object>> parameters) {
+        var template = getTemplate(query);
+
+        return pool.withSession(session -> session.transaction(() -> {
+            if (!template.isExact()) {
+                var removed = 0L;
+
+                for (var p : parameters) {
+                    removed += remove(session, template, p);
+                }
+
+                return removed;
+            }
+
+            /*
+             * Statements with the same SQL are executed as batch.
+             */
+            var statements = parameters
+                .stream()
+                .map(template::delete)
+                .collect(Collectors.groupingBy(SqlFragment::getSql, LinkedHashMap::new, Collectors.toList()));
+
+            var removed = 0L;
+
+            for (var entry : statements.entrySet()) {
+                removed += executeBatch(session.prepare(entry.getKey()), entry.getValue(), (statement, fragment) ->
+                    JdbcSession.bind(statement, fragment.getValues())
+                );
+            }
+
+            return removed;
+        }));
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return true;
+    }
+
+    @Override
+    public void ensureIndex(Index index) {
+        var columns = index
+            .getFields()
+            .stream()
+            .map(mapping::getColumn)
+            .toList();
+
+        if (columns.stream().anyMatch(Optional::isEmpty)) {
+            LOG.debug("Index `{}` is not created, as not all of its fields are stored in columns.", index);
+            return;
+        }
+
+        var names = columns
+            .stream()
+            .map(Optional::orElseThrow)
+            .filter(column -> column != mapping.getTable().getPrimaryKey())
+            .map(Column::getName)
+            .distinct()
+            .toList();
+
+        if (names.isEmpty()) {
+            return;
+        }
+
+        var table = mapping.getTable();
+        var sql = "CREATE INDEX IF NOT EXISTS " + Sql.quote("idx_" + table.getName() + "_" + String.join("_", names)) +
+            " ON " + table.getQuotedName() + " (" + names.stream().map(Sql::quote).collect(Collectors.joining(", ")) +
+            ")";
+
+        pool.withSession(session -> execute(session, sql));
+    }
+
+    @Override
+    public void prepare(Query query) {
+        getTemplate(query);
+    }
+
+    private JdbcQueryTemplate<T> getTemplate(Query query) {
+        return templates.getUnchecked(query);
+    }
+
+    /**
+     * Applies the parts of a query and its options which have not been executed by the database.
+     */
+    private List<T> select(JdbcQueryTemplate<T> template, QueryOptions options, List<Object> parameters,
+                           Stream<T> items) {
+
+        var filtered = items.filter(template.getResidualFilter(parameters));
+
+        if (template.isExecutedByDatabase(options)) {
+            return filtered.toList();
+        } else {
+            return options.select(filtered, parameters);
+        }
+    }
+
+    /**
+     * Removes the rows matching a query.
+     */
+    private long remove(JdbcSession session, JdbcQueryTemplate<T> template, List<Object> parameters)
+        throws SQLException {
+
+        if (template.isExact()) {
+            return session.prepare(template.delete(parameters)).executeUpdate();
+        }
+
+        var keys = new ArrayList<>();
+        var filter = template.getResidualFilter(parameters);
+
+        try (var resultSet = session.prepare(template.select(QueryOptions.apply(), parameters)).executeQuery()) {
+            while (resultSet.next()) {
+                if (filter.test(mapping.read(resultSet.getString(2)))) {
+                    keys.add(resultSet.getObject(1));
+                }
+            }
+        }
+
+        var table = mapping.getTable();
+        var statement = session.prepare(
+            "DELETE FROM " + table.getQuotedName() + " WHERE " + table.getPrimaryKey().getQuotedName() + " = ?"
+        );
+
+        return executeBatch(statement, keys, (s, key) -> s.setObject(1, key));
+    }
+
+    /**
+     * Updates rows by their primary key, rows which don't exist yet are inserted. If the same key is written
+     * multiple times, the last row is written.
+     */
+    private void upsert(JdbcSession session, List<List<Object>> rows) throws SQLException {
+        var distinct = new LinkedHashMap<Object, List<Object>>();
+        rows.forEach(row -> distinct.put(row.get(0), row));
+
+        if (upsertStatement.isPresent()) {
+            executeBatch(
+                session.prepare(upsertStatement.get()), List.copyOf(distinct.values()),
+                (s, row) -> bindRow(s, row, false)
+            );
+
+            return;
+        }
+
+        var update = session.prepare(mapping.getUpdateStatement());
+        var missing = new ArrayList<List<Object>>();
+
+        for (var batch : Lists.partition(List.copyOf(distinct.values()), configuration.getBatchSize())) {
+            for (var row : batch) {
+                bindRow(update, row, true);
+                update.addBatch();
+            }
+
+            var counts = update.executeBatch();
+
+            for (var i = 0; i < counts.length; i++) {
+                /*
+                 * Drivers may not report the count of each statement within a batch, the row is updated again on
+                 * its own to find out whether it exists.
+                 */
+                if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                    bindRow(update, batch.get(i), true);
+
+                    if (update.executeUpdate() == 0) {
+                        missing.add(batch.get(i));
+                    }
+                } else if (counts[i] == 0) {
+                    missing.add(batch.get(i));
+                }
+            }
+        }
+
+        insert(session, missing);
+    }
+
+    private void insert(JdbcSession session, List<List<Object>> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        executeBatch(session.prepare(mapping.getInsertStatement()), rows, (s, row) -> bindRow(s, row, false));
+    }
+
+    /**
+     * Binds the values of a row, see {@link JdbcTableMapping#getInsertStatement()} and
+     * {@link JdbcTableMapping#getUpdateStatement()}.
+     */
+    private void bindRow(PreparedStatement statement, List<Object> row, boolean update) throws SQLException {
+        var columns = mapping.getTable().getColumns();
+
+        for (var i = 0; i < row.size(); i++) {
+            var index = update ? (i == 0 ? row.size() : i) : i + 1;
+            var value = row.get(i);
+
+            if (Objects.isNull(value)) {
+                statement.setNull(index, columns.get(i).getType().getJdbcType());
+            } else {
+                statement.setObject(index, value);
+            }
+        }
+    }
+
+    /**
+     * Executes a statement for each value in batches of {@link JdbcDatabaseConfiguration#getBatchSize()}.
+     *
+     * @return The number of affected rows.
+     */
+    private <V> long executeBatch(PreparedStatement statement, List<V> values, Binder<V> binder)
+        throws SQLException {
+
+        var result = 0L;
+
+        for (var batch : Lists.partition(values, configuration.getBatchSize())) {
+            for (var value : batch) {
+                binder.bind(statement, value);
+                statement.addBatch();
+            }
+
+            for (var count : statement.executeBatch()) {
+                result += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates the table; adds missing columns to an existing table and fills them from the stored documents.
+     */
+    private void createTable() {
+        var table = mapping.getTable();
+
+        pool.withSession(session -> {
+            execute(session, table.getCreateStatement());
+
+            var existing = getExistingColumns(session);
+            var missing = table
+                .getColumns()
+                .stream()
+                .filter(column -> !existing.contains(column.getName().toLowerCase(Locale.ROOT)))
+                .toList();
+
+            // Column names might not be reported as expected by all drivers, in this case the table is not migrated.
+            if (existing.isEmpty() || missing.isEmpty()) {
+                return Nothing.getInstance();
+            }
+
+            LOG.info(
+                "Adding columns {} to table `{}`.", missing.stream().map(Column::getName).toList(), table.getName()
+            );
+
+            return session.transaction(() -> {
+                for (var column : missing) {
+                    execute(session, "ALTER TABLE " + table.getQuotedName() + " ADD COLUMN " + column.getDefinition());
+                }
+
+                var rows = new ArrayList<List<Object>>();
+                var select = "SELECT " + table.getPrimaryKey().getQuotedName() + ", " +
+                    Sql.quote(JdbcTableMapping.DOCUMENT_COLUMN) + " FROM " + table.getQuotedName();
+
+                try (var statement = session.getConnection().createStatement();
+                     var resultSet = statement.executeQuery(select)) {
+
+                    while (resultSet.next()) {
+                        var row = new ArrayList<>(mapping.getRow(mapping.read(resultSet.getString(2))));
+                        row.set(0, resultSet.getObject(1));
+                        rows.add(row);
+                    }
+                }
+
+                executeBatch(session.prepare(mapping.getUpdateStatement()), rows, (s, row) -> bindRow(s, row, true));
+                return Nothing.getInstance();
+            });
+        });
+    }
+
+    /**
+     * Returns the lower-cased names of the table's columns within the connection's catalog and schema. The table
+     * name is passed as stored by the database, e.g. upper-cased by databases which fold quoted identifiers.
+     */
+    private Set<String> getExistingColumns(JdbcSession session) throws SQLException {
+        var connection = session.getConnection();
+        var metaData = connection.getMetaData();
+        var tableName = mapping.getTable().getName();
+
+        if (metaData.storesUpperCaseQuotedIdentifiers()) {
+            tableName = tableName.toUpperCase(Locale.ROOT);
+        } else if (metaData.storesLowerCaseQuotedIdentifiers()) {
+            tableName = tableName.toLowerCase(Locale.ROOT);
+        }
+
+        var escape = metaData.getSearchStringEscape();
+
+        if (Objects.nonNull(escape) && !escape.isEmpty()) {
+            tableName = tableName
+                .replace(escape, escape + escape)
+                .replace("_", escape + "_")
+                .replace("%", escape + "%");
+        }
+
+        var catalog = Operators.exceptionToNone(connection::getCatalog).orElse(null);
+        var schema = Operators.exceptionToNone(connection::getSchema).orElse(null);
+        var existing = new HashSet<String>();
+
+        try (var columns = metaData.getColumns(catalog, schema, tableName, null)) {
+            while (columns.next()) {
+                existing.add(columns.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+            }
+        }
+
+        return existing;
+    }
+
+    private static Nothing execute(JdbcSession session, String sql) throws SQLException {
+        try (var statement = session.getConnection().createStatement()) {
+            statement.execute(sql);
+        }
+
+        return Nothing.getInstance();
+    }
+
+    @FunctionalInterface
+    private interface Binder<V> {
+
+        void bind(PreparedStatement statement, V value) throws SQLException;
+
+    }
+
+    /**
+     * Reads items from a result set while it is consumed. The session is released when the result set is consumed
+     * or the stream is closed.
+     */
+    private final class RowSpliterator extends Spliterators.AbstractSpliterator<T> {
+
+        private final JdbcSession session;
+
+        private final AtomicBoolean closed;
+
+        private ResultSet resultSet;
+
+        private RowSpliterator(JdbcSession session) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.session = session;
+            this.closed = new AtomicBoolean(false);
+        }
+
+        public void open(SqlFragment select) {
+            resultSet = Operators.suppressExceptions(() -> {
+                var statement = session.prepare(select);
+                statement.setFetchSize(configuration.getFetchSize());
+                return statement.executeQuery();
+            });
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed.get()) {
+                return false;
+            }
+
+            var next = Operators.suppressExceptions(() -> {
+                if (resultSet.next()) {
+                    return Optional.of(mapping.read(resultSet.getString(2)));
+                } else {
+                    return Optional.<T>empty();
+                }
+            });
+
+            if (next.isPresent()) {
+                action.accept(next.get());
+                return true;
+            } else {
+                close();
+                return false;
+            }
+        }
+
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                if (Objects.nonNull(resultSet)) {
+                    Operators.ignoreExceptions(resultSet::close, LOG);
+                }
+
+                pool.release(session);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,559 @@
+package com.wellnr.platform.core.persistence.jdbc;
+
+import com.wellnr.platform.common.ReflectionUtils;
+import com.wellnr.platform.common.tuples.Nothing;
+import com.wellnr.platform.core.persistence.inmemory.InMemoryQueryPlan;
+import com.wellnr.platform.core.persistence.jdbc.sql.Column;
+import com.wellnr.platform.core.persistence.jdbc.sql.Sql;
+import com.wellnr.platform.core.persistence.query.Queries;
+import com.wellnr.platform.core.persistence.query.filter.*;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
+import com.wellnr.platform.core.persistence.query.values.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+import javax.annotation.Nullable;
+import java.text.MessageFormat;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link Query} compiled into a template for parameterized SQL statements.
+ * <p>
+ * Compiling a query walks the query AST once and translates all filters on fields which are stored within their
+ * own columns (see {@link JdbcTableMapping}) into SQL conditions: `eq` is translated to `=` (or `IS NULL`),
+ * `isIn` to `IN`, matches on uppercase fields to `UPPER(column)`, `and`, `or`, `true` and `false` to their SQL
+ * counterparts. Comparisons with other fields of the item compare the columns.
+ * <p>
+ * Filters which can't be expressed in SQL (e.g. `elemMatch` on collections, which are only stored within the JSON
+ * document) are left out; the condition selects a superset of the matching rows in this case, and the query is
+ * additionally evaluated in memory, see {@link #isExact()} and {@link #getResidualFilter(List)}. Sorting and
+ * paging are executed by the database if the condition is exact and all sort fields are stored in columns.
+ * <p>
+ * When the statement is executed, the parameters are bound, see {@link #select(QueryOptions, List)}. The SQL of
+ * a statement only depends on the structure of the parameters (`null` values and sizes of collections within
+ * `isIn`), thus prepared statements can be reused.
+ *
+ * @param <T> The type of the items.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class JdbcQueryTemplate<T> {
+
+    private static final String TRUE = "1 = 1";
+
+    private static final String FALSE = "1 = 0";
+
+    private final JdbcTableMapping<T> mapping;
+
+    private final Query query;
+
+    /**
+     * The SQL condition, empty if no filter of the query can be expressed in SQL.
+     */
+    private final Optional<CompiledCondition> condition;
+
+    /**
+     * True, if the condition selects exactly the items matching the query.
+     */
+    private final boolean exact;
+
+    /**
+     * Compiles a query.
+     *
+     * @param query   The query.
+     * @param mapping The mapping of the queried table.
+     * @param <T>     The type of the items.
+     * @return The compiled template.
+     */
+    public static <T> JdbcQueryTemplate<T> compile(Query query, JdbcTableMapping<T> mapping) {
+        var compiled = compileCondition(query, Scope.apply(List.of(), false), mapping);
+        return new JdbcQueryTemplate<>(mapping, query, Optional.ofNullable(compiled.condition), compiled.exact);
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    /**
+     * @return True, if the SQL condition selects exactly the items matching the query. Otherwise, the selected rows
+     * must be filtered with {@link #getResidualFilter(List)}.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Checks whether the query selects a single item by its primary key.
+     *
+     * @return True, if at most one row matches the query.
+     */
+    public boolean isPrimaryKeyMatch() {
+        return query instanceof Match match &&
+            match.getSelector() instanceof Field field &&
+            mapping.getColumn(field).filter(column -> column == mapping.getTable().getPrimaryKey()).isPresent() &&
+            match.getQuery() instanceof Equals;
+    }
+
+    /**
+     * Returns the primary key of the selected row, if the query selects a single item by its primary key.
+     *
+     * @param parameters The parameters which may be referenced by the query.
+     * @return The value of the `_id` column.
+     */
+    public Optional<Object> getPrimaryKey(List<Object> parameters) {
+        if (
+            isPrimaryKeyMatch() &&
+                query instanceof Match match &&
+                match.getQuery() instanceof Equals equals &&
+                !Queries.referencesItem(equals.getValue())
+        ) {
+            return Optional
+                .ofNullable(compileValue(equals.getValue()).apply(parameters))
+                .filter(value -> !(value instanceof Nothing))
+                .map(value -> mapping.getTable().getPrimaryKey().getType().toSqlValue(value));
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Checks whether sorting and paging of the options can be executed by the database.
+     *
+     * @param options The query options.
+     * @return True, if the condition is exact and all sort fields are stored in columns.
+     */
+    public boolean isExecutedByDatabase(QueryOptions options) {
+        return options.isEmpty() || (exact && options
+            .getSort()
+            .stream()
+            .allMatch(sort -> mapping.getColumn(sort.getField()).isPresent()));
+    }
+
+    /**
+     * Returns the filter which must be applied to the selected rows, if the condition is not exact.
+     *
+     * @param parameters The parameters which may be referenced by the query.
+     * @return The predicate.
+     */
+    public Predicate<T> getResidualFilter(List<Object> parameters) {
+        if (exact) {
+            return item -> true;
+        } else {
+            return InMemoryQueryPlan.compile(query, mapping.getType()).bind(parameters);
+        }
+    }
+
+    /**
+     * Binds the SQL condition.
+     *
+     * @param parameters The parameters which may be referenced by the query.
+     * @return The condition.
+     */
+    public SqlFragment bind(List<Object> parameters) {
+        return condition
+            .map(c -> c.bind(parameters))
+            .orElseGet(() -> SqlFragment.apply(TRUE));
+    }
+
+    /**
+     * Creates the statement to select the `_id` and `_document` columns of matching rows. If sorting and paging can
+     * be executed by the database (see {@link #isExecutedByDatabase(QueryOptions)}), they are included within the
+     * statement; otherwise they must be applied to the selected rows.
+     *
+     * @param options    The query options.
+     * @param parameters The parameters which may be referenced by the query and the options.
+     * @return The statement.
+     */
+    public SqlFragment select(QueryOptions options, List<Object> parameters) {
+        var table = mapping.getTable();
+        var columns = table.getPrimaryKey().getQuotedName() + ", " + Sql.quote(JdbcTableMapping.DOCUMENT_COLUMN);
+        var where = bind(parameters);
+
+        if (!isExecutedByDatabase(options) || options.isEmpty()) {
+            return SqlFragment
+                .apply("SELECT " + columns + " FROM " + table.getQuotedName() + " WHERE ")
+                .append(where);
+        }
+
+        if (!options.getAfter().isEmpty()) {
+            where = SqlFragment.and(List.of(where, getKeysetCondition(options, parameters)));
+        }
+
+        var statement = SqlFragment
+            .apply("SELECT " + columns + " FROM " + table.getQuotedName() + " WHERE ")
+            .append(where);
+
+        if (!options.getSort().isEmpty()) {
+            statement = statement.append(SqlFragment.apply(" ORDER BY " + options
+                .getSort()
+                .stream()
+                .map(sort -> {
+                    var column = mapping.getColumn(sort.getField()).orElseThrow().getQuotedName();
+                    return sort.isAscending() ? column + " ASC NULLS FIRST" : column + " DESC NULLS LAST";
+                })
+                .collect(Collectors.joining(", "))));
+        }
+
+        if (options.getLimit().isPresent() || options.getOffset() > 0) {
+            statement = statement.append(SqlFragment.apply(
+                " LIMIT ? OFFSET ?", List.of(options.getLimit().map(Long::valueOf).orElse(Long.MAX_VALUE),
+                    (long) options.getOffset())
+            ));
+        }
+
+        return statement;
+    }
+
+    /**
+     * @param parameters The parameters which may be referenced by the query.
+     * @return The statement to count the matching rows, only valid if the condition is exact.
+     */
+    public SqlFragment count(List<Object> parameters) {
+        return SqlFragment
+            .apply("SELECT COUNT(*) FROM " + mapping.getTable().getQuotedName() + " WHERE ")
+            .append(bind(parameters));
+    }
+
+    /**
+     * @param parameters The parameters which may be referenced by the query.
+     * @return The statement to delete the matching rows, only valid if the condition is exact.
+     */
+    public SqlFragment delete(List<Object> parameters) {
+        return SqlFragment
+            .apply("DELETE FROM " + mapping.getTable().getQuotedName() + " WHERE ")
+            .append(bind(parameters));
+    }
+
+    /**
+     * Creates the condition to select the rows sorted after the keyset values, e.g. for sort fields `a` (ascending)
+     * and `b` (descending): `a > a0 OR (a = a0 AND b < b0)`.
+     */
+    private SqlFragment getKeysetCondition(QueryOptions options, List<Object> parameters) {
+        var values = options.getAfterValues(parameters);
+        var conditions = new ArrayList<SqlFragment>();
+
+        for (var i = 0; i < values.size(); i++) {
+            var condition = new ArrayList<SqlFragment>();
+
+            for (var j = 0; j <= i; j++) {
+                var sort = options.getSort().get(j);
+                var column = mapping.getColumn(sort.getField()).orElseThrow();
+                var operator = j < i ? " = ?" : (sort.isAscending() ? " > ?" : " < ?");
+
+                condition.add(SqlFragment.apply(
+                    column.getQuotedName() + operator,
+                    Collections.singletonList(JdbcTableMapping.toSqlValue(column, values.get(j)))
+                ));
+            }
+
+            conditions.add(SqlFragment.and(condition));
+        }
+
+        return SqlFragment.or(conditions);
+    }
+
+    /*
+     * Compilation
+     */
+
+    private static <T> Compiled compileCondition(Query query, Scope scope, JdbcTableMapping<T> mapping) {
+        if (query instanceof Match match) {
+            return compileMatch(match, scope, mapping);
+        } else if (query instanceof Equals equals) {
+            return compileEquals(equals, scope, mapping);
+        } else if (query instanceof IsIn isIn) {
+            return compileIsIn(isIn, scope, mapping);
+        } else if (query instanceof And and) {
+            /*
+             * Filters which can't be translated are left out, the remaining conditions select a superset.
+             */
+            var filters = and
+                .getFilters()
+                .stream()
+                .map(filter -> compileCondition(filter, scope, mapping))
+                .toList();
+
+            var conditions = filters
+                .stream()
+                .map(Compiled::getCondition)
+                .filter(Objects::nonNull)
+                .toList();
+
+            return Compiled.apply(
+                conditions.isEmpty() ? null : parameters -> SqlFragment.and(bindAll(conditions, parameters)),
+                filters.stream().allMatch(Compiled::isExact)
+            );
+        } else if (query instanceof Or or) {
+            var filters = or
+                .getFilters()
+                .stream()
+                .map(filter -> compileCondition(filter, scope, mapping))
+                .toList();
+
+            if (filters.stream().anyMatch(filter -> Objects.isNull(filter.getCondition()))) {
+                return Compiled.none();
+            }
+
+            var conditions = filters.stream().map(Compiled::getCondition).toList();
+
+            return Compiled.apply(
+                parameters -> SqlFragment.or(bindAll(conditions, parameters)),
+                filters.stream().allMatch(Compiled::isExact)
+            );
+        } else if (query instanceof True) {
+            return Compiled.apply(parameters -> SqlFragment.apply(TRUE), true);
+        } else if (query instanceof False) {
+            return Compiled.apply(parameters -> SqlFragment.apply(FALSE), true);
+        } else {
+            // `elemMatch` - collections are only stored within the document.
+            return Compiled.none();
+        }
+    }
+
+    private static <T> Compiled compileMatch(Match match, Scope scope, JdbcTableMapping<T> mapping) {
+        if (match.getSelector() instanceof Field field && !scope.isUppercase()) {
+            return compileCondition(match.getQuery(), scope.select(field), mapping);
+        } else if (
+            match.getSelector() instanceof Uppercase uppercase &&
+                uppercase.getValue() instanceof Field field &&
+                !scope.isUppercase() &&
+                (match.getQuery() instanceof Equals || match.getQuery() instanceof IsIn)
+        ) {
+            return compileCondition(match.getQuery(), scope.select(field).uppercase(), mapping);
+        } else {
+            return Compiled.none();
+        }
+    }
+
+    private static <T> Compiled compileEquals(Equals equals, Scope scope, JdbcTableMapping<T> mapping) {
+        var maybeColumn = scope.getColumn(mapping);
+
+        if (maybeColumn.isEmpty()) {
+            return Compiled.none();
+        }
+
+        var column = maybeColumn.get();
+        var left = scope.isUppercase() ? "UPPER(" + column.getQuotedName() + ")" : column.getQuotedName();
+
+        if (Queries.referencesItem(equals.getValue())) {
+            var right = getExpression(equals.getValue(), mapping);
+
+            if (right.isEmpty()) {
+                return Compiled.none();
+            }
+
+            // `null` values are equal within queries executed in memory.
+            var sql = "(" + left + " = " + right.get() + " OR (" + left + " IS NULL AND " + right.get() +
+                " IS NULL))";
+
+            return Compiled.apply(parameters -> SqlFragment.apply(sql), true);
+        }
+
+        var value = compileValue(equals.getValue());
+
+        return Compiled.apply(parameters -> {
+            var bound = value.apply(parameters);
+
+            if (Objects.isNull(bound) || bound instanceof Nothing) {
+                return SqlFragment.apply(left + " IS NULL");
+            } else if (scope.isUppercase()) {
+                return SqlFragment.apply(left + " = ?", List.of(bound.toString()));
+            } else {
+                return SqlFragment.apply(left + " = ?", List.of(column.getType().toSqlValue(bound)));
+            }
+        }, true);
+    }
+
+    private static <T> Compiled compileIsIn(IsIn isIn, Scope scope, JdbcTableMapping<T> mapping) {
+        var maybeColumn = scope.getColumn(mapping);
+
+        if (maybeColumn.isEmpty() || isIn.getValues().stream().anyMatch(Queries::referencesItem)) {
+            return Compiled.none();
+        }
+
+        var column = maybeColumn.get();
+        var left = scope.isUppercase() ? "UPPER(" + column.getQuotedName() + ")" : column.getQuotedName();
+
+        var values = isIn
+            .getValues()
+            .stream()
+            .map(JdbcQueryTemplate::compileValue)
+            .toList();
+
+        return Compiled.apply(parameters -> {
+            var bound = new ArrayList<>();
+            var includesNull = false;
+
+            for (var value : values) {
+                var result = value.apply(parameters);
+                var items = result instanceof Collection<?> collection ? collection : Collections.singletonList(result);
+
+                for (var item : items) {
+                    if (Objects.isNull(item) || item instanceof Nothing) {
+                        includesNull = true;
+                    } else {
+                        bound.add(scope.isUppercase() ? item.toString() : column.getType().toSqlValue(item));
+                    }
+                }
+            }
+
+            var conditions = new ArrayList<SqlFragment>();
+
+            if (!bound.isEmpty()) {
+                var placeholders = bound.stream().map(v -> "?").collect(Collectors.joining(", "));
+                conditions.add(SqlFragment.apply(left + " IN (" + placeholders + ")", bound));
+            }
+
+            if (includesNull) {
+                conditions.add(SqlFragment.apply(left + " IS NULL"));
+            }
+
+            if (conditions.isEmpty()) {
+                return SqlFragment.apply(FALSE);
+            } else {
+                return SqlFragment.or(conditions);
+            }
+        }, true);
+    }
+
+    /**
+     * Returns the SQL expression of a value which is selected from the item, if it is stored in a column.
+     */
+    private static <T> Optional<String> getExpression(Value value, JdbcTableMapping<T> mapping) {
+        if (value instanceof Uppercase uppercase) {
+            return getExpression(uppercase.getValue(), mapping).map(expression -> "UPPER(" + expression + ")");
+        } else {
+            return getField(value).flatMap(mapping::getColumn).map(Column::getQuotedName);
+        }
+    }
+
+    /**
+     * Returns the field of a value which is selected from the item.
+     */
+    private static Optional<Field> getField(Value value) {
+        if (value instanceof Field field) {
+            return Optional.of(field);
+        } else if (value instanceof Select select) {
+            return getField(select.getValue())
+                .map(field -> Field.apply(field.getFQN() + "." + select.getSelect().getFQN()));
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    private static Function<List<Object>, Object> compileValue(Value value) {
+        if (value instanceof StaticValue<?> staticValue) {
+            var result = staticValue.getValue();
+            return parameters -> result;
+        } else if (value instanceof ParameterReference ref) {
+            var index = ref.getIndex();
+            return parameters -> parameters.get(index);
+        } else if (value instanceof Select select) {
+            var selectFrom = compileValue(select.getValue());
+            var path = select.getSelect().getFQN();
+
+            return parameters -> {
+                var from = selectFrom.apply(parameters);
+
+                if (Objects.isNull(from)) {
+                    return null;
+                } else {
+                    return ReflectionUtils.getFieldAccessor(from.getClass(), path).apply(from);
+                }
+            };
+        } else if (value instanceof Uppercase uppercase) {
+            var upperValue = compileValue(uppercase.getValue());
+
+            return parameters -> {
+                var result = upperValue.apply(parameters);
+                return Objects.isNull(result) ? null : result.toString().toUpperCase();
+            };
+        }
+
+        throw new IllegalArgumentException(MessageFormat.format(
+            "Value `{0}` cannot be resolved within this engine",
+            value
+        ));
+    }
+
+    private static List<SqlFragment> bindAll(List<CompiledCondition> conditions, List<Object> parameters) {
+        return conditions
+            .stream()
+            .map(condition -> condition.bind(parameters))
+            .toList();
+    }
+
+    /**
+     * The context in which a filter is compiled.
+     */
+    @lombok.Value
+    @AllArgsConstructor(staticName = "apply")
+    private static class Scope {
+
+        /**
+         * The path of the selected field.
+         */
+        List<String> path;
+
+        /**
+         * True, if the selected field is compared in upper case.
+         */
+        boolean uppercase;
+
+        public Scope select(Field field) {
+            var next = new ArrayList<>(path);
+            next.addAll(field.getElements());
+            return apply(List.copyOf(next), uppercase);
+        }
+
+        public Scope uppercase() {
+            return apply(path, true);
+        }
+
+        public <T> Optional<Column> getColumn(JdbcTableMapping<T> mapping) {
+            if (path.isEmpty()) {
+                return Optional.empty();
+            } else {
+                return mapping.getColumn(Field.apply(path));
+            }
+        }
+
+    }
+
+    /**
+     * The result of compiling a filter.
+     */
+    @lombok.Value
+    @AllArgsConstructor(staticName = "apply")
+    private static class Compiled {
+
+        /**
+         * The condition, `null` if the filter can't be expressed in SQL.
+         */
+        @Nullable
+        CompiledCondition condition;
+
+        /**
+         * True, if the condition selects exactly the items matching the filter, otherwise it selects a superset.
+         */
+        boolean exact;
+
+        public static Compiled none() {
+            return apply(null, false);
+        }
+
+    }
+
+    /**
+     * A compiled condition; returns the SQL condition once parameters are bound.
+     */
+    @FunctionalInterface
+    private interface CompiledCondition {
+
+        SqlFragment bind(List<Object> parameters);
+
+    }
+
+}
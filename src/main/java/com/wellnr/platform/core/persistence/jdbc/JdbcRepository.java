@@ -0,0 +1,47 @@
+package com.wellnr.platform.core.persistence.jdbc;
+
+import com.wellnr.platform.common.tuples.Nothing;
+import com.wellnr.platform.core.config.JdbcDatabaseConfiguration;
+import com.wellnr.platform.core.context.PlatformContext;
+import com.wellnr.platform.core.persistence.query.AbstractQueryEngineRepositoryFactory;
+import com.wellnr.platform.core.persistence.query.QueryEngine;
+
+import java.util.Arrays;
+
+/**
+ * Creates repositories which store items within tables of a JDBC data source, see {@link JdbcQueryEngine}. All
+ * entity types of a repository share a connection pool, which is closed by the platform context,
+ * see {@link JdbcConnectionPoolRegistry}.
+ */
+public final class JdbcRepository extends AbstractQueryEngineRepositoryFactory<Object, Nothing> {
+
+    private final JdbcDatabaseConfiguration configuration;
+
+    private final JdbcConnectionPool pool;
+
+    private JdbcRepository(PlatformContext ctx, JdbcDatabaseConfiguration configuration) {
+        super(ctx);
+        this.configuration = configuration;
+        this.pool = ctx.getInstance(JdbcConnectionPoolRegistry.class).createPool(configuration);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <R> R create(
+        PlatformContext ctx, Class<R> repositoryType, JdbcDatabaseConfiguration configuration,
+        Class<?>... entityTypes
+    ) {
+        var factory = new JdbcRepository(ctx, configuration);
+
+        return factory.create(
+            ctx,
+            repositoryType,
+            Arrays.stream(entityTypes).map(t -> (Class<Object>) t).toList()
+        );
+    }
+
+    @Override
+    protected QueryEngine<Object, Nothing> createQueryEngine(Class<Object> entityType, Class<Object> mementoType) {
+        return JdbcQueryEngine.apply(mementoType, pool, configuration);
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.wellnr.platform.core.persistence.jdbc;
+
+import com.wellnr.platform.common.Operators;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A connection of {@link JdbcConnectionPool} along with its prepared statements.
+ * <p>
+ * Prepared statements are cached per SQL string and reused until they are evicted as least recently used
+ * statement. Sessions are not thread-safe, each session is used by a single operation at a time.
+ */
+final class JdbcSession implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcSession.class);
+
+    private final Connection connection;
+
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    private JdbcSession(Connection connection, int statementCacheSize) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > statementCacheSize) {
+                    Operators.ignoreExceptions(() -> eldest.getValue().close(), LOG);
+                    return true;
+                }
+
+                return false;
+            }
+
+        };
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param connection         The connection, in auto-commit mode.
+     * @param statementCacheSize The maximum number of prepared statements which are kept open.
+     * @return A new instance.
+     */
+    public static JdbcSession apply(Connection connection, int statementCacheSize) {
+        return new JdbcSession(connection, statementCacheSize);
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns the prepared statement for an SQL string; the statement is prepared if it is not cached yet.
+     *
+     * @param sql The SQL string.
+     * @return The prepared statement, without parameters.
+     * @throws SQLException If the statement can't be prepared.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        var statement = statements.get(sql);
+
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        } else {
+            statement.clearParameters();
+        }
+
+        return statement;
+    }
+
+    /**
+     * Returns the prepared statement of a fragment and binds the fragment's values.
+     *
+     * @param fragment The SQL statement.
+     * @return The prepared statement.
+     * @throws SQLException If the statement can't be prepared.
+     */
+    public PreparedStatement prepare(SqlFragment fragment) throws SQLException {
+        var statement = prepare(fragment.getSql());
+        bind(statement, fragment.getValues());
+        return statement;
+    }
+
+    /**
+     * Executes an operation within a transaction. The transaction is rolled back if the operation fails.
+     *
+     * @param operation The operation.
+     * @param <T>       The result type of the operation.
+     * @return The result of the operation.
+     * @throws Exception If the operation fails.
+     */
+    public <T> T transaction(Operators.ExceptionalSupplier<T> operation) throws Exception {
+        connection.setAutoCommit(false);
+
+        try {
+            var result = operation.get();
+            connection.commit();
+            return result;
+        } catch (Exception e) {
+            Operators.ignoreExceptions(connection::rollback, LOG);
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Binds values to a prepared statement.
+     *
+     * @param statement The statement.
+     * @param values    The values, in the order of the statement's placeholders.
+     * @throws SQLException If the values can't be bound.
+     */
+    public static void bind(PreparedStatement statement, List<Object> values) throws SQLException {
+        for (var i = 0; i < values.size(); i++) {
+            var value = values.get(i);
+
+            if (value == null) {
+                statement.setNull(i + 1, Types.NULL);
+            } else {
+                statement.setObject(i + 1, value);
+            }
+        }
+    }
+
+    /**
+     * @return True, if the connection can still be used.
+     */
+    public boolean isValid() {
+        return Operators.ignoreExceptionsWithDefault(() -> !connection.isClosed() && connection.getAutoCommit(), false);
+    }
+
+    @Override
+    public void close() {
+        statements.values().forEach(statement -> Operators.ignoreExceptions(statement::close, LOG));
+        statements.clear();
+        Operators.ignoreExceptions(connection::close, LOG);
+    }
+
+}
@@ -0,0 +1,313 @@
+package com.wellnr.platform.core.persistence.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wellnr.platform.common.Operators;
+import com.wellnr.platform.common.ReflectionUtils;
+import com.wellnr.platform.common.guid.GUID;
+import com.wellnr.platform.core.persistence.inmemory.InMemoryQueryEngine;
+import com.wellnr.platform.core.persistence.jdbc.sql.Column;
+import com.wellnr.platform.core.persistence.jdbc.sql.Table;
+import com.wellnr.platform.core.persistence.jdbc.sql.types.*;
+import com.wellnr.platform.core.persistence.query.values.Field;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.Temporal;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Maps items of a type to the rows of a table.
+ * <p>
+ * Each item is stored as JSON document within the column `_document`, which is read to restore the item. The
+ * `guid` of an item is stored as primary key `_id`; for types without `guid` a random key is generated.
+ * Additionally, each field with a scalar value (numbers, booleans, strings, enums, GUIDs, ...), also of nested
+ * objects, is stored within its own column; these columns are used to translate queries into SQL (see
+ * {@link JdbcQueryTemplate}). Columns are named after the path of the field, e.g. `engine.type`. Collections and
+ * maps are only stored within the document.
+ *
+ * @param <T> The type of the items.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class JdbcTableMapping<T> {
+
+    public static final String ID_COLUMN = "_id";
+
+    public static final String DOCUMENT_COLUMN = "_document";
+
+    /**
+     * The maximum depth of nested objects whose fields are mapped to columns.
+     */
+    private static final int MAX_DEPTH = 3;
+
+    private final Class<T> type;
+
+    private final Table table;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Reads the primary key of an item, empty if the type does not have a `guid`.
+     */
+    private final Optional<Function<Object, Object>> primaryKey;
+
+    /**
+     * The columns of fields, keyed by the lower-case path of the field.
+     */
+    private final Map<String, Column> columns;
+
+    /**
+     * Reads the values of the field columns, in the order of the table's columns (after `_id` and `_document`).
+     */
+    private final List<Function<Object, Object>> accessors;
+
+    /**
+     * Creates the mapping of a type.
+     *
+     * @param type         The type of the items.
+     * @param objectMapper The mapper to write and read documents.
+     * @param <T>          The type of the items.
+     * @return A new instance.
+     */
+    public static <T> JdbcTableMapping<T> apply(Class<T> type, ObjectMapper objectMapper) {
+        var primaryKey = Operators.exceptionToNone(() ->
+            ReflectionUtils.getFieldAccessor(type, InMemoryQueryEngine.PRIMARY_KEY_FIELD)
+        );
+
+        var id = Column.apply(ID_COLUMN, new Text());
+        var fields = new LinkedHashMap<String, Type>();
+        collectFields(type, "", 0, Set.of(type), fields);
+
+        var tableColumns = new ArrayList<Column>();
+        tableColumns.add(id);
+        tableColumns.add(Column.apply(DOCUMENT_COLUMN, new Memo()));
+
+        var columns = new HashMap<String, Column>();
+        var accessors = new ArrayList<Function<Object, Object>>();
+
+        for (var field : fields.entrySet()) {
+            if (primaryKey.isPresent() && field.getKey().equalsIgnoreCase(InMemoryQueryEngine.PRIMARY_KEY_FIELD)) {
+                columns.put(field.getKey().toLowerCase(), id);
+            } else {
+                var column = Column.apply(field.getKey(), field.getValue());
+
+                tableColumns.add(column);
+                columns.put(field.getKey().toLowerCase(), column);
+                accessors.add(ReflectionUtils.getFieldAccessor(type, field.getKey()));
+            }
+        }
+
+        var table = Table.apply(type.getSimpleName().toLowerCase(), List.copyOf(tableColumns));
+        return new JdbcTableMapping<>(
+            type, table, objectMapper, primaryKey, Map.copyOf(columns), List.copyOf(accessors)
+        );
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    /**
+     * Returns the column of a field.
+     *
+     * @param field The field, relative to the item.
+     * @return The column, empty if the field is not stored within its own column.
+     */
+    public Optional<Column> getColumn(Field field) {
+        return Optional.ofNullable(columns.get(field.getFQN().toLowerCase()));
+    }
+
+    /**
+     * Returns the values of an item's row, in the order of the table's columns.
+     *
+     * @param item The item.
+     * @return The values, converted to the columns' types.
+     */
+    public List<Object> getRow(T item) {
+        var row = new ArrayList<>(table.getColumns().size());
+        row.add(getPrimaryKey(item));
+        row.add(Operators.suppressExceptions(() -> objectMapper.writeValueAsString(item)));
+
+        for (var i = 0; i < accessors.size(); i++) {
+            var value = accessors.get(i).apply(item);
+            row.add(toSqlValue(table.getColumns().get(i + 2), value));
+        }
+
+        return row;
+    }
+
+    /**
+     * Restores an item from the value of its `_document` column.
+     *
+     * @param document The JSON document.
+     * @return The item.
+     */
+    public T read(String document) {
+        return Operators.suppressExceptions(() -> objectMapper.readValue(document, type));
+    }
+
+    /**
+     * @return True, if the primary key is derived from the item (otherwise it is generated when an item is
+     * inserted).
+     */
+    public boolean hasPrimaryKey() {
+        return primaryKey.isPresent();
+    }
+
+    /**
+     * @return The statement to insert a row, values are bound in the order of {@link #getRow(Object)}.
+     */
+    public String getInsertStatement() {
+        return "INSERT INTO " + table.getQuotedName() + " (" + getColumnNames() + ") VALUES (" + getPlaceholders() +
+            ")";
+    }
+
+    /**
+     * Returns the statement to insert a row, or to update the row with the same primary key, within a single
+     * statement. Values are bound in the order of {@link #getRow(Object)}.
+     *
+     * @param databaseProductName The name of the database, see
+     *                            {@link java.sql.DatabaseMetaData#getDatabaseProductName()}.
+     * @return The statement; empty if the database is not known to support it.
+     */
+    public Optional<String> getUpsertStatement(String databaseProductName) {
+        var primaryKey = table.getPrimaryKey().getQuotedName();
+        var assignments = table
+            .getColumns()
+            .stream()
+            .skip(1)
+            .map(column -> column.getQuotedName() + " = EXCLUDED." + column.getQuotedName())
+            .collect(Collectors.joining(", "));
+
+        return switch (databaseProductName) {
+            case "H2" -> Optional.of(
+                "MERGE INTO " + table.getQuotedName() + " (" + getColumnNames() + ") KEY (" + primaryKey +
+                    ") VALUES (" + getPlaceholders() + ")"
+            );
+            case "PostgreSQL", "SQLite" -> Optional.of(
+                getInsertStatement() + " ON CONFLICT (" + primaryKey + ") DO UPDATE SET " + assignments
+            );
+            default -> Optional.empty();
+        };
+    }
+
+    /**
+     * @return The statement to update a row by its primary key; values are bound in the order of
+     * {@link #getRow(Object)}, but with the primary key as last value.
+     */
+    public String getUpdateStatement() {
+        var assignments = table
+            .getColumns()
+            .stream()
+            .skip(1)
+            .map(column -> column.getQuotedName() + " = ?")
+            .collect(Collectors.joining(", "));
+
+        return "UPDATE " + table.getQuotedName() + " SET " + assignments + " WHERE " +
+            table.getPrimaryKey().getQuotedName() + " = ?";
+    }
+
+    private String getColumnNames() {
+        return table
+            .getColumns()
+            .stream()
+            .map(Column::getQuotedName)
+            .collect(Collectors.joining(", "));
+    }
+
+    private String getPlaceholders() {
+        return table
+            .getColumns()
+            .stream()
+            .map(column -> "?")
+            .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Converts a value for a column.
+     *
+     * @param column The column.
+     * @param value  The value.
+     * @return The value to pass to JDBC, `null` if the value is `null`.
+     */
+    @Nullable
+    public static Object toSqlValue(Column column, @Nullable Object value) {
+        if (Objects.isNull(value)) {
+            return null;
+        } else {
+            return column.getType().toSqlValue(value);
+        }
+    }
+
+    private Object getPrimaryKey(T item) {
+        return primaryKey
+            .map(get -> get.apply(item))
+            .map(key -> table.getPrimaryKey().getType().toSqlValue(key))
+            .orElseGet(() -> UUID.randomUUID().toString());
+    }
+
+    /**
+     * Collects the fields of a type which are stored within columns, including the fields of nested objects.
+     */
+    private static void collectFields(
+        Class<?> type, String prefix, int depth, Set<Class<?>> visited, Map<String, Type> result) {
+
+        for (var current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (var field : current.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()) ||
+                    field.isSynthetic()) {
+
+                    continue;
+                }
+
+                var path = prefix + field.getName();
+                var columnType = getColumnType(field.getType());
+
+                if (columnType.isPresent()) {
+                    result.putIfAbsent(path, columnType.get());
+                } else if (isNested(field.getType()) && depth < MAX_DEPTH && !visited.contains(field.getType())) {
+                    var nextVisited = new HashSet<>(visited);
+                    nextVisited.add(field.getType());
+
+                    collectFields(field.getType(), path + ".", depth + 1, nextVisited, result);
+                }
+            }
+        }
+    }
+
+    private static Optional<Type> getColumnType(Class<?> type) {
+        if (type == boolean.class || type == Boolean.class) {
+            return Optional.of(new Bool());
+        } else if (type == byte.class || type == short.class || type == int.class || type == long.class ||
+            type == Byte.class || type == Short.class || type == Integer.class || type == Long.class ||
+            type == BigInteger.class) {
+
+            return Optional.of(new Numeric());
+        } else if (type == float.class || type == double.class || type == Float.class || type == Double.class ||
+            type == BigDecimal.class) {
+
+            return Optional.of(new Decimal());
+        } else if (type == char.class || type == Character.class || CharSequence.class.isAssignableFrom(type) ||
+            type.isEnum() || type == GUID.class || type == UUID.class || Temporal.class.isAssignableFrom(type)) {
+
+            return Optional.of(new Text());
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    private static boolean isNested(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && !type.isInterface() &&
+            !Modifier.isAbstract(type.getModifiers()) && !type.getName().startsWith("java.");
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.wellnr.platform.core.persistence.jdbc;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A part of an SQL statement with `?` placeholders, along with the values of the placeholders.
+ */
+@lombok.Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+class SqlFragment {
+
+    String sql;
+
+    /**
+     * The values of the placeholders, in the order of their occurrence; values may be `null`.
+     */
+    List<Object> values;
+
+    public static SqlFragment apply(String sql, List<?> values) {
+        return new SqlFragment(sql, Collections.unmodifiableList(new ArrayList<>(values)));
+    }
+
+    public static SqlFragment apply(String sql) {
+        return new SqlFragment(sql, List.of());
+    }
+
+    /**
+     * Combines conditions with `AND`.
+     *
+     * @param conditions The conditions, at least one.
+     * @return The combined condition.
+     */
+    public static SqlFragment and(List<SqlFragment> conditions) {
+        return combine(conditions, " AND ");
+    }
+
+    /**
+     * Combines conditions with `OR`.
+     *
+     * @param conditions The conditions, at least one.
+     * @return The combined condition.
+     */
+    public static SqlFragment or(List<SqlFragment> conditions) {
+        return combine(conditions, " OR ");
+    }
+
+    /**
+     * Appends another fragment.
+     *
+     * @param other The fragment to append.
+     * @return The concatenated fragment.
+     */
+    public SqlFragment append(SqlFragment other) {
+        var values = new ArrayList<>(this.values);
+        values.addAll(other.values);
+
+        return new SqlFragment(sql + other.sql, Collections.unmodifiableList(values));
+    }
+
+    private static SqlFragment combine(List<SqlFragment> conditions, String operator) {
+        if (conditions.size() == 1) {
+            return conditions.get(0);
+        }
+
+        var sql = conditions
+            .stream()
+            .map(condition -> "(" + condition.sql + ")")
+            .collect(Collectors.joining(operator));
+
+        var values = new ArrayList<>();
+        conditions.forEach(condition -> values.addAll(condition.values));
+
+        return new SqlFragment(sql, Collections.unmodifiableList(values));
+    }
+
+}
@@ -3,6 +3,7 @@ package com.wellnr.platform.core.persistence.jdbc.sql;
 import com.wellnr.platform.core.persistence.jdbc.sql.types.Type;
 import lombok.AllArgsConstructor;
 
+@lombok.Value
 @AllArgsConstructor(staticName = "apply")
 public class Column {
 
@@ -16,6 +17,18 @@ public class Column {
      */
     Type type;
 
+    /**
+     * @return The quoted name of the column, to be used within SQL statements.
+     */
+    public String getQuotedName() {
+        return Sql.quote(name);
+    }
 
+    /**
+     * @return The declaration of the column within a `CREATE TABLE` statement.
+     */
+    public String getDefinition() {
+        return getQuotedName() + " " + type.getSqlType();
+    }
 
 }
@@ -0,0 +1,23 @@
+package com.wellnr.platform.core.persistence.jdbc.sql;
+
+/**
+ * Helper functions to render SQL statements.
+ */
+public final class Sql {
+
+    private Sql() {
+
+    }
+
+    /**
+     * Quotes an identifier (e.g. a table or column name). Quoted identifiers are case-sensitive and may contain
+     * reserved words and any other characters.
+     *
+     * @param identifier The identifier.
+     * @return The quoted identifier.
+     */
+    public static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+}
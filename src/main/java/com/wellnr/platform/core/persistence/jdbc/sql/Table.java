@@ -1,10 +1,12 @@
 package com.wellnr.platform.core.persistence.jdbc.sql;
 
-import com.wellnr.platform.core.persistence.jdbc.sql.types.Type;
 import lombok.AllArgsConstructor;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
+@lombok.Value
 @AllArgsConstructor(staticName = "apply")
 public class Table {
 
@@ -14,10 +16,48 @@ public class Table {
     String name;
 
     /**
-     * The list of columns for the table.
+     * The list of columns for the table. The first column is the primary key of the table.
      */
     List<Column> columns;
 
+    /**
+     * @return The quoted name of the table, to be used within SQL statements.
+     */
+    public String getQuotedName() {
+        return Sql.quote(name);
+    }
+
+    /**
+     * @return The primary key column of the table.
+     */
+    public Column getPrimaryKey() {
+        return columns.get(0);
+    }
 
+    /**
+     * Returns a column by its name.
+     *
+     * @param name The name of the column.
+     * @return The column, if present.
+     */
+    public Optional<Column> getColumn(String name) {
+        return columns
+            .stream()
+            .filter(column -> column.getName().equals(name))
+            .findFirst();
+    }
+
+    /**
+     * @return The statement to create the table, if it does not exist yet.
+     */
+    public String getCreateStatement() {
+        var definitions = columns
+            .stream()
+            .map(Column::getDefinition)
+            .collect(Collectors.joining(", "));
+
+        return "CREATE TABLE IF NOT EXISTS " + getQuotedName() + " (" + definitions + ", PRIMARY KEY (" +
+            getPrimaryKey().getQuotedName() + "))";
+    }
 
 }
@@ -1,5 +1,5 @@
 /**
- * This package may contain JDBCRepository which allows to automatically create repositories for
- * JDBC data sources.
+ * The model of SQL tables, which is used by {@link com.wellnr.platform.core.persistence.jdbc.JdbcRepository} to
+ * store entities within JDBC data sources.
  */
-package com.wellnr.platform.core.persistence.jdbc.sql;
\ No newline at end of file
+package com.wellnr.platform.core.persistence.jdbc.sql;
@@ -1,7 +1,29 @@
 package com.wellnr.platform.core.persistence.jdbc.sql.types;
 
+import java.sql.Types;
+
 /**
  * Used for boolean values.
  */
 public final class Bool implements Type {
+
+    @Override
+    public String getSqlType() {
+        return "BOOLEAN";
+    }
+
+    @Override
+    public int getJdbcType() {
+        return Types.BOOLEAN;
+    }
+
+    @Override
+    public Object toSqlValue(Object value) {
+        if (value instanceof Boolean) {
+            return value;
+        } else {
+            return Boolean.parseBoolean(value.toString());
+        }
+    }
+
 }
@@ -1,7 +1,29 @@
 package com.wellnr.platform.core.persistence.jdbc.sql.types;
 
+import java.sql.Types;
+
 /**
  * Used for decimal (floating-point numbers).
  */
 public final class Decimal implements Type {
+
+    @Override
+    public String getSqlType() {
+        return "DOUBLE PRECISION";
+    }
+
+    @Override
+    public int getJdbcType() {
+        return Types.DOUBLE;
+    }
+
+    @Override
+    public Object toSqlValue(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        } else {
+            return value.toString();
+        }
+    }
+
 }
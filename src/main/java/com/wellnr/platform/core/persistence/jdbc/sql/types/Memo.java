@@ -1,7 +1,25 @@
 package com.wellnr.platform.core.persistence.jdbc.sql.types;
 
+import java.sql.Types;
+
 /**
  * Memo is used for larger amounts of text.
  */
 public final class Memo implements Type {
+
+    @Override
+    public String getSqlType() {
+        return "CLOB";
+    }
+
+    @Override
+    public int getJdbcType() {
+        return Types.CLOB;
+    }
+
+    @Override
+    public Object toSqlValue(Object value) {
+        return value.toString();
+    }
+
 }
@@ -1,7 +1,35 @@
 package com.wellnr.platform.core.persistence.jdbc.sql.types;
 
+import java.math.BigInteger;
+import java.sql.Types;
+
 /**
  * Used for whole numbers.
  */
 public final class Numeric implements Type {
+
+    @Override
+    public String getSqlType() {
+        return "BIGINT";
+    }
+
+    @Override
+    public int getJdbcType() {
+        return Types.BIGINT;
+    }
+
+    @Override
+    public Object toSqlValue(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte ||
+            value instanceof BigInteger) {
+
+            return ((Number) value).longValue();
+        } else if (value instanceof Number number) {
+            // compared numerically by the database, e.g. `1.5` never equals a whole number.
+            return number.doubleValue();
+        } else {
+            return value.toString();
+        }
+    }
+
 }
@@ -1,7 +1,29 @@
 package com.wellnr.platform.core.persistence.jdbc.sql.types;
 
+import java.sql.Types;
+
 /**
  * Use for text or combinations of text and numbers. 255 characters maximum.
  */
 public final class Text implements Type {
+
+    @Override
+    public String getSqlType() {
+        return "VARCHAR(255)";
+    }
+
+    @Override
+    public int getJdbcType() {
+        return Types.VARCHAR;
+    }
+
+    @Override
+    public Object toSqlValue(Object value) {
+        if (value instanceof Enum<?> e) {
+            return e.name();
+        } else {
+            return value.toString();
+        }
+    }
+
 }
@@ -1,4 +1,26 @@
 package com.wellnr.platform.core.persistence.jdbc.sql.types;
 
+/**
+ * The type of a column. Each type defines how it is declared within tables and how values are passed to JDBC.
+ */
 public sealed interface Type permits Bool, Decimal, Memo, Numeric, Text {
+
+    /**
+     * @return The SQL type which is used to declare columns of this type.
+     */
+    String getSqlType();
+
+    /**
+     * @return The JDBC type of the column, see {@link java.sql.Types}.
+     */
+    int getJdbcType();
+
+    /**
+     * Converts a value into the representation which is stored in columns of this type.
+     *
+     * @param value The value, not `null`.
+     * @return The value which is passed to JDBC.
+     */
+    Object toSqlValue(Object value);
+
 }
@@ -13,4 +13,10 @@ public @interface CustomMongoQuery {
 
     String methodName() default "";
 
+    /**
+     * The indexes required by the custom query. Other than for queries derived from method names, these can't
+     * be detected automatically. The indexes are ensured when the repository is created.
+     */
+    MongoIndex[] indexes() default {};
+
 }
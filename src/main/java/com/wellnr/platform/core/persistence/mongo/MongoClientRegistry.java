@@ -0,0 +1,159 @@
+package com.wellnr.platform.core.persistence.mongo;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import com.wellnr.platform.common.tuples.Tuple2;
+import com.wellnr.platform.core.config.MongoDatabaseConfiguration;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares Mongo clients between all repositories (and query engines) of a platform context.
+ * <p>
+ * A Mongo client maintains a connection pool and monitoring threads for its hosts. Instead of creating a client
+ * for each collection, the registry creates a single client per connection settings (connection string and
+ * connection pool settings), thus the number of connections does not grow with the number of entity types.
+ * Clients of the reactive streams driver (see {@link ReactiveMongoQueryEngine}) are shared the same way.
+ * <p>
+ * Each platform context owns an instance (see {@link com.wellnr.platform.core.context.PlatformContext#getInstance}),
+ * its clients are closed when the context is stopped, see {@link #close()}.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class MongoClientRegistry implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MongoClientRegistry.class);
+
+    /**
+     * The clients, keyed by connection string and connection pool settings.
+     */
+    private final ConcurrentHashMap<Tuple2<String, MongoDatabaseConfiguration.ConnectionPoolProperties>,
+        MongoClient> clients;
+
+    /**
+     * The clients of the reactive streams driver, keyed by connection string and connection pool settings.
+     */
+    private final ConcurrentHashMap<Tuple2<String, MongoDatabaseConfiguration.ConnectionPoolProperties>,
+        com.mongodb.reactivestreams.client.MongoClient> reactiveClients;
+
+    /**
+     * Creates a new, independent instance.
+     *
+     * @return A new instance.
+     */
+    public static MongoClientRegistry apply() {
+        return new MongoClientRegistry(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Returns the client for the connection settings of the configuration. The client is created if it does not
+     * exist yet.
+     *
+     * @param configuration The configuration of the database connection.
+     * @return The shared client.
+     */
+    public MongoClient getClient(MongoDatabaseConfiguration configuration) {
+        return clients.computeIfAbsent(getKey(configuration), k -> {
+            var settings = configuration.getClientSettings();
+            LOG.info("Creating Mongo client for `{}`.", settings.getClusterSettings().getHosts());
+            return MongoClients.create(settings);
+        });
+    }
+
+    /**
+     * Returns the database of the configuration, using the shared client,
+     * see {@link #getClient(MongoDatabaseConfiguration)}.
+     *
+     * @param configuration The configuration of the database connection.
+     * @return The database.
+     */
+    public MongoDatabase getDatabase(MongoDatabaseConfiguration configuration) {
+        return getClient(configuration).getDatabase(configuration.getDatabaseName());
+    }
+
+    /**
+     * Returns the client of the reactive streams driver for the connection settings of the configuration. The
+     * client is created if it does not exist yet.
+     *
+     * @param configuration The configuration of the database connection.
+     * @return The shared client.
+     */
+    public com.mongodb.reactivestreams.client.MongoClient getReactiveClient(
+        MongoDatabaseConfiguration configuration) {
+
+        return reactiveClients.computeIfAbsent(getKey(configuration), k -> {
+            var settings = configuration.getClientSettings();
+            LOG.info("Creating reactive Mongo client for `{}`.", settings.getClusterSettings().getHosts());
+            return com.mongodb.reactivestreams.client.MongoClients.create(settings);
+        });
+    }
+
+    /**
+     * Returns the database of the configuration, using the shared client of the reactive streams driver,
+     * see {@link #getReactiveClient(MongoDatabaseConfiguration)}.
+     *
+     * @param configuration The configuration of the database connection.
+     * @return The database.
+     */
+    public com.mongodb.reactivestreams.client.MongoDatabase getReactiveDatabase(
+        MongoDatabaseConfiguration configuration) {
+
+        return getReactiveClient(configuration).getDatabase(configuration.getDatabaseName());
+    }
+
+    /**
+     * Returns the number of open clients.
+     *
+     * @return The number of clients.
+     */
+    public int size() {
+        return clients.size() + reactiveClients.size();
+    }
+
+    /**
+     * Closes all clients. Clients requested afterwards are created again.
+     */
+    @Override
+    public void close() {
+        List.copyOf(clients.keySet()).forEach(key -> {
+            var client = clients.remove(key);
+
+            if (Objects.nonNull(client)) {
+                LOG.info(
+                    "Closing Mongo client for `{}`.",
+                    client.getClusterDescription().getClusterSettings().getHosts()
+                );
+                client.close();
+            }
+        });
+
+        List.copyOf(reactiveClients.keySet()).forEach(key -> {
+            var client = reactiveClients.remove(key);
+
+            if (Objects.nonNull(client)) {
+                LOG.info(
+                    "Closing reactive Mongo client for `{}`.",
+                    client.getClusterDescription().getClusterSettings().getHosts()
+                );
+                client.close();
+            }
+        });
+    }
+
+    private static Tuple2<String, MongoDatabaseConfiguration.ConnectionPoolProperties> getKey(
+        MongoDatabaseConfiguration configuration) {
+
+        return Tuple2.apply(
+            configuration.getEffectiveConnectionString(),
+            configuration.getConnectionPool().orElse(null)
+        );
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.wellnr.platform.core.persistence.mongo;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.wellnr.platform.common.guid.GUID;
+import com.wellnr.platform.common.guid.HasGUID;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Remembers the last loaded or persisted state of documents to update only changed fields.
+ * <p>
+ * Snapshots are the encoded documents, kept per GUID. When an entity is written again, its document is compared
+ * with the snapshot; changed fields are sent with `$set`, removed fields with `$unset`, see
+ * {@link #getUpdate(GUID, BsonDocument)}. Embedded documents are compared field by field, arrays are replaced
+ * as a whole. The number of snapshots is bounded, entities without snapshot are replaced completely.
+ * <p>
+ * Encoding and keeping documents is only worth it for collections whose entities are written by their GUID.
+ * Thus loaded entities are only remembered once an entity of the collection has been written by its GUID (see
+ * {@link #getUpdate(GUID, BsonDocument)}); before, collections which are only read, or written by other
+ * conditions, keep no snapshots.
+ *
+ * @param <T> The type of the entities.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class MongoDocumentSnapshots<T extends HasGUID> {
+
+    /**
+     * The maximum number of snapshots which are kept per collection.
+     */
+    private static final int MAX_SNAPSHOTS = 10_000;
+
+    private final Codec<T> codec;
+
+    /**
+     * The snapshots; empty if diff updates are disabled.
+     */
+    private final Optional<Cache<GUID, RawBsonDocument>> snapshots;
+
+    /**
+     * Whether an entity has been written by its GUID, see {@link #getUpdate(GUID, BsonDocument)}.
+     */
+    private final AtomicBoolean updatedByGUID;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param codec   The codec to encode entities.
+     * @param enabled Whether snapshots are kept, see {@link MongoQueryEngine.MongoCollectionProperties#diffUpdates}.
+     * @param <T>     The type of the entities.
+     * @return A new instance.
+     */
+    public static <T extends HasGUID> MongoDocumentSnapshots<T> apply(Codec<T> codec, boolean enabled) {
+        if (enabled) {
+            return new MongoDocumentSnapshots<>(
+                codec, Optional.of(CacheBuilder.newBuilder().maximumSize(MAX_SNAPSHOTS).build()), new AtomicBoolean()
+            );
+        } else {
+            return new MongoDocumentSnapshots<>(codec, Optional.empty(), new AtomicBoolean());
+        }
+    }
+
+    public boolean isEnabled() {
+        return snapshots.isPresent();
+    }
+
+    /**
+     * Encodes an entity into its document.
+     *
+     * @param item The entity.
+     * @return The encoded document.
+     */
+    public RawBsonDocument encode(T item) {
+        return new RawBsonDocument(item, codec);
+    }
+
+    /**
+     * Remembers the state of a loaded or persisted entity, if entities of the collection are written by their GUID.
+     *
+     * @param item The entity.
+     * @return The entity.
+     */
+    public T remember(T item) {
+        if (snapshots.isPresent() && updatedByGUID.get() && Objects.nonNull(item)) {
+            snapshots.get().put(item.getGUID(), encode(item));
+        }
+
+        return item;
+    }
+
+    /**
+     * Remembers the persisted document of an entity.
+     *
+     * @param guid     The GUID of the entity.
+     * @param document The document, see {@link #encode(HasGUID)}.
+     */
+    public void remember(GUID guid, RawBsonDocument document) {
+        snapshots.ifPresent(cache -> cache.put(guid, document));
+    }
+
+    /**
+     * Forgets all snapshots, e.g. after documents have been removed.
+     */
+    public void clear() {
+        snapshots.ifPresent(Cache::invalidateAll);
+    }
+
+    /**
+     * Creates the update from the snapshot of an entity to its new document. From now on, loaded entities are
+     * remembered.
+     *
+     * @param guid     The GUID of the entity.
+     * @param document The new document of the entity.
+     * @return The update with `$set` and `$unset` operators; an empty document if nothing changed. None, if no
+     * snapshot is known for the entity.
+     */
+    public Optional<BsonDocument> getUpdate(GUID guid, BsonDocument document) {
+        if (snapshots.isPresent() && !updatedByGUID.get()) {
+            updatedByGUID.set(true);
+        }
+
+        return snapshots
+            .map(cache -> cache.getIfPresent(guid))
+            .map(snapshot -> {
+                var set = new BsonDocument();
+                var unset = new BsonDocument();
+                diff("", snapshot, document, set, unset);
+
+                var update = new BsonDocument();
+
+                if (!set.isEmpty()) {
+                    update.append("$set", set);
+                }
+
+                if (!unset.isEmpty()) {
+                    update.append("$unset", unset);
+                }
+
+                return update;
+            });
+    }
+
+    private static void diff(String path, BsonDocument before, BsonDocument after, BsonDocument set,
+                             BsonDocument unset) {
+        after.forEach((key, value) -> {
+            var previous = before.get(key);
+
+            if (path.isEmpty() && key.equals("_id")) {
+                // `_id` is immutable.
+            } else if (previous != null && previous.isDocument() && value.isDocument()) {
+                diff(path + key + ".", previous.asDocument(), value.asDocument(), set, unset);
+            } else if (!value.equals(previous)) {
+                set.append(path + key, value);
+            }
+        });
+
+        before.keySet().forEach(key -> {
+            if (!after.containsKey(key)) {
+                unset.append(path + key, new BsonString(""));
+            }
+        });
+    }
+
+}
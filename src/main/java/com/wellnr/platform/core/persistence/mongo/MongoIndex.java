@@ -0,0 +1,19 @@
+package com.wellnr.platform.core.persistence.mongo;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an index which is required by a {@link CustomMongoQuery}, see {@link CustomMongoQuery#indexes()}.
+ * <p>
+ * Fields are referenced by their (dot-separated) names within the entity, e.g. `engine.type`. An index with
+ * multiple fields is created as compound index, in the order of the fields.
+ */
+@Target({})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface MongoIndex {
+
+    String[] value();
+
+}
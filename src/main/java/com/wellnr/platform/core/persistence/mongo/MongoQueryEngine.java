@@ -2,36 +2,51 @@ package com.wellnr.platform.core.persistence.mongo;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.DeleteOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import com.wellnr.platform.common.ReflectionUtils;
 import com.wellnr.platform.common.databind.DefaultObjectMapperFactory;
-import com.wellnr.platform.common.functions.Function1;
 import com.wellnr.platform.common.guid.HasGUID;
-import com.wellnr.platform.common.tuples.Either;
-import com.wellnr.platform.common.tuples.Nothing;
-import com.wellnr.platform.common.tuples.Tuple;
 import com.wellnr.platform.common.tuples.Tuple2;
 import com.wellnr.platform.core.config.MongoDatabaseConfiguration;
+import com.wellnr.platform.core.persistence.query.Index;
+import com.wellnr.platform.core.persistence.query.Queries;
 import com.wellnr.platform.core.persistence.query.QueryEngine;
+import com.wellnr.platform.core.persistence.query.cache.QueryCacheProperties;
 import com.wellnr.platform.core.persistence.query.filter.*;
-import com.wellnr.platform.core.persistence.query.values.*;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import lombok.With;
-import org.bson.Document;
 import org.bson.UuidRepresentation;
 import org.bson.conversions.Bson;
 import org.mongojack.JacksonMongoCollection;
 import org.mongojack.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-import static com.mongodb.client.model.Filters.*;
-
 /**
  * {@link MongoQueryEngine} translates {@link Query} expressions into Bson queries and executes them
  * towards a Mongo database.
@@ -39,6 +54,30 @@ import static com.mongodb.client.model.Filters.*;
  * Not all allowed expressions from {@link Query} can be mapped into Bson queries. In these cases the
  * class will throw exceptions.
  * <p>
+ * Queries are compiled once into Bson templates (see {@link MongoQueryTemplate}); executing a query only binds
+ * the parameters to the template. Queries derived from repository methods are compiled when the repository is
+ * created (see {@link #prepare(Query)}), thus unsupported queries are rejected early. Case-insensitive queries
+ * are executed with a collation, their indexes are created with the same collation.
+ * <p>
+ * Sorting and paging (see {@link QueryOptions}) are executed by the database (`sort`, `skip` and `limit`).
+ * Streamed results (see {@link QueryEngine#stream(Query, QueryOptions, List)}) are fetched batch-wise from the
+ * cursor while the stream is consumed. Counts and existence checks are executed with `countDocuments`, removals
+ * with a single `deleteOne` or `deleteMany`; no documents are transferred for these. Batch writes are executed
+ * as a single `bulkWrite`.
+ * <p>
+ * The engine remembers the last loaded or persisted state of entities (see {@link MongoDocumentSnapshots}). If
+ * an entity with known state is written again by its GUID, only changed fields are sent with `$set` and `$unset`
+ * instead of replacing the whole document; unchanged entities are not written. Entities without known state are
+ * replaced, also if the document has been removed in the meantime. Loaded entities are only remembered once the
+ * collection has been written by GUID, streamed entities are never remembered. Diff updates can be disabled with
+ * {@link MongoCollectionProperties#diffUpdates}.
+ * <p>
+ * Indexes registered with {@link #ensureIndex(Index)} (e.g. derived from repository methods) are created
+ * asynchronously by a dedicated background thread, thus creating the engine does not wait for the database to
+ * build them. Creating an existing index has no effect; if the creation of an index fails, it is requested again
+ * with the next call to {@link #ensureIndex(Index)}. Index creation can be disabled with
+ * {@link MongoCollectionProperties#ensureIndexes}, e.g. if indexes are managed by migrations.
+ * <p>
  * When using {@link MongoQueryEngine}, make sure that type <code>T</code> has annotated its
  * {@link com.wellnr.platform.common.guid.GUID} field, and the GUID parameter
  * {@link com.fasterxml.jackson.annotation.JsonCreator} if present, with {@link org.mongojack.ObjectId}.
@@ -48,27 +87,71 @@ import static com.mongodb.client.model.Filters.*;
 @AllArgsConstructor(access = AccessLevel.PACKAGE, staticName = "apply")
 public final class MongoQueryEngine<T extends HasGUID> implements QueryEngine<T, Bson> {
 
-    private static final Set<Class<?>> WRAPPER_TYPES;
+    private static final Logger LOG = LoggerFactory.getLogger(MongoQueryEngine.class);
+
+    /**
+     * The mongo database client.
+     */
+    JacksonMongoCollection<T> collection;
 
-    static {
-        Set<Class<?>> ret = new HashSet<Class<?>>();
-        ret.add(Boolean.class);
-        ret.add(Character.class);
-        ret.add(Byte.class);
-        ret.add(Short.class);
-        ret.add(Integer.class);
-        ret.add(Long.class);
-        ret.add(Float.class);
-        ret.add(Double.class);
-        ret.add(Void.class);
+    /**
+     * Whether batch writes are executed in order, see {@link MongoCollectionProperties#orderedBulkWrites}.
+     */
+    boolean orderedBulkWrites;
 
-        WRAPPER_TYPES = ret;
+    /**
+     * Whether indexes are created, see {@link MongoCollectionProperties#ensureIndexes}.
+     */
+    boolean ensureIndexes;
+
+    /**
+     * The indexes (and their collation) which have been requested, with the pending or completed creation of
+     * the index.
+     */
+    ConcurrentHashMap<Tuple2<Index, Optional<Collation>>, CompletableFuture<String>> indexes;
+
+    /**
+     * The last loaded or persisted state of entities, see {@link MongoCollectionProperties#diffUpdates}.
+     */
+    MongoDocumentSnapshots<T> snapshots;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param collection The collection to be used.
+     * @param <T>        The type of the collection.
+     * @return A new instance.
+     */
+    static <T extends HasGUID> MongoQueryEngine<T> apply(JacksonMongoCollection<T> collection) {
+        return apply(collection, true, true, true);
     }
 
     /**
-     * The mongo database client.
+     * Creates a new instance.
+     *
+     * @param collection        The collection to be used.
+     * @param orderedBulkWrites Whether batch writes are executed in order.
+     * @param ensureIndexes     Whether indexes are created.
+     * @param diffUpdates       Whether only changed fields are updated.
+     * @param <T>               The type of the collection.
+     * @return A new instance.
      */
-    JacksonMongoCollection<T> collection;
+    static <T extends HasGUID> MongoQueryEngine<T> apply(
+        JacksonMongoCollection<T> collection,
+        boolean orderedBulkWrites,
+        boolean ensureIndexes,
+        boolean diffUpdates) {
+
+        var codec = collection.getCodecRegistry().get(collection.getDocumentClass());
+
+        return apply(
+            collection,
+            orderedBulkWrites,
+            ensureIndexes,
+            new ConcurrentHashMap<>(),
+            MongoDocumentSnapshots.apply(codec, diffUpdates)
+        );
+    }
 
     /**
      * Creates a new instance.
@@ -84,25 +167,7 @@ public final class MongoQueryEngine<T extends HasGUID> implements QueryEngine<T,
         MongoDatabase database,
         MongoCollectionProperties collectionProperties
     ) {
-        /*
-         * Assert the type has required annotations for Jackson and Mongo.
-         */
-        var maybeObjectId = ReflectionUtils.getAnnotationForField(type, "guid", ObjectId.class);
-        var maybeIdName = ReflectionUtils.getAnnotationForField(type, "guid", JsonProperty.class);
-
-        if (maybeObjectId.isEmpty()) {
-            throw new IllegalArgumentException(MessageFormat.format(
-                "Missing @ObjectId annotation for type `{0}`. This is required on `guid` field for MongoQueryEngine.",
-                type.getName()
-            ));
-        }
-
-        if (maybeIdName.isEmpty() || !maybeIdName.get().value().equals("_id")) {
-            throw new IllegalArgumentException(MessageFormat.format(
-                "Missing or wrong @JsonProperty annotation for type `{0}`. `guid` requires @JsonProperty(\"_id\").",
-                type.getName()
-            ));
-        }
+        assertEntityType(type);
 
         /*
          * Create instance.
@@ -118,7 +183,12 @@ public final class MongoQueryEngine<T extends HasGUID> implements QueryEngine<T,
                 type,
                 UuidRepresentation.STANDARD);
 
-        return apply(collection);
+        return apply(
+            collection,
+            collectionProperties.getOrderedBulkWrites().orElse(true),
+            collectionProperties.getEnsureIndexes().orElse(true),
+            collectionProperties.getDiffUpdates().orElse(true)
+        );
     }
 
     /**
@@ -168,14 +238,70 @@ public final class MongoQueryEngine<T extends HasGUID> implements QueryEngine<T,
         return apply(type, configuration.getClient());
     }
 
+    /**
+     * Asserts that the type has the required annotations for Jackson and Mongo.
+     *
+     * @param type The type of the entities stored in Mongo.
+     * @throws IllegalArgumentException if annotations are missing.
+     */
+    static void assertEntityType(Class<?> type) {
+        var maybeObjectId = ReflectionUtils.getAnnotationForField(type, "guid", ObjectId.class);
+        var maybeIdName = ReflectionUtils.getAnnotationForField(type, "guid", JsonProperty.class);
+
+        if (maybeObjectId.isEmpty()) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "Missing @ObjectId annotation for type `{0}`. This is required on `guid` field for MongoQueryEngine.",
+                type.getName()
+            ));
+        }
+
+        if (maybeIdName.isEmpty() || !maybeIdName.get().value().equals("_id")) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "Missing or wrong @JsonProperty annotation for type `{0}`. `guid` requires @JsonProperty(\"_id\").",
+                type.getName()
+            ));
+        }
+    }
+
     @Override
     public void insertOrUpdate(
         T item,
         Query match,
         List<Object> parameters
     ) {
-        var options = new ReplaceOptions().upsert(true);
-        this.collection.replaceOne(mapToCondition(match, parameters), item, options);
+        var template = MongoQueryTemplate.compile(match);
+        var condition = template.bind(parameters);
+        var options = new ReplaceOptions().upsert(true).collation(template.getCollation().orElse(null));
+
+        if (!snapshots.isEnabled() || !template.isPrimaryKeyMatch()) {
+            this.collection.replaceOne(condition, item, options);
+            snapshots.remember(item);
+            return;
+        }
+
+        var document = snapshots.encode(item);
+        var update = snapshots.getUpdate(item.getGUID(), document);
+
+        /*
+         * The document might have been removed since its state was remembered; it is replaced in this case.
+         */
+        boolean updated;
+
+        if (update.isEmpty()) {
+            updated = false;
+        } else if (update.get().isEmpty()) {
+            var countOptions = new CountOptions().limit(1).collation(options.getCollation());
+            updated = this.collection.countDocuments(condition, countOptions) > 0;
+        } else {
+            var updateOptions = new UpdateOptions().collation(options.getCollation());
+            updated = this.collection.updateOne(condition, update.get(), updateOptions).getMatchedCount() > 0;
+        }
+
+        if (!updated) {
+            this.collection.replaceOne(condition, item, options);
+        }
+
+        snapshots.remember(item.getGUID(), document);
     }
 
     @Override
@@ -187,13 +313,26 @@ public final class MongoQueryEngine<T extends HasGUID> implements QueryEngine<T,
     }
 
     @Override
-    public List<T> findAll(Query query, List<Object> parameters) {
-        var bson = mapToCondition(query, parameters);
+    public void insertOrUpdateAll(List<T> items, Query match, List<List<Object>> parameters) {
+        var template = MongoQueryTemplate.compile(match);
+        var options = new ReplaceOptions().upsert(true).collation(template.getCollation().orElse(null));
+        var writes = new ArrayList<WriteModel<T>>(items.size());
+
+        for (var i = 0; i < items.size(); i++) {
+            writes.add(new ReplaceOneModel<>(template.bind(parameters.get(i)), items.get(i), options));
+        }
 
+        bulkWrite(writes);
+        items.forEach(snapshots::remember);
+    }
+
+    @Override
+    public List<T> findAll(Query query, List<Object> parameters) {
         return StreamSupport
             .stream(
-                this.collection.find(bson).spliterator(), false
+                this.find(query, QueryOptions.apply(), parameters).spliterator(), false
             )
+            .map(snapshots::remember)
             .toList();
     }
 
@@ -202,10 +341,47 @@ public final class MongoQueryEngine<T extends HasGUID> implements QueryEngine<T,
         return findAll(query, List.of());
     }
 
+    @Override
+    public List<T> findAll(Query query, QueryOptions options, List<Object> parameters) {
+        if (options.getLimit().filter(limit -> limit == 0).isPresent()) {
+            return List.of();
+        }
+
+        return StreamSupport
+            .stream(
+                this.find(query, options, parameters).spliterator(), false
+            )
+            .map(snapshots::remember)
+            .toList();
+    }
+
+    @Override
+    public Stream<T> stream(Query query, QueryOptions options, List<Object> parameters) {
+        if (options.getLimit().filter(limit -> limit == 0).isPresent()) {
+            return Stream.empty();
+        }
+
+        /*
+         * The cursor fetches further batches from the database while the stream is consumed.
+         */
+        var cursor = this.find(query, options, parameters).cursor();
+
+        return StreamSupport
+            .stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false)
+            .onClose(cursor::close);
+    }
+
     @Override
     public Optional<T> findOne(Query query, List<Object> parameters) {
         return Optional.ofNullable(
-            this.collection.findOne(mapToCondition(query, parameters))
+            snapshots.remember(this.find(query, QueryOptions.apply(), parameters).first())
+        );
+    }
+
+    @Override
+    public Optional<T> findOne(Query query, QueryOptions options, List<Object> parameters) {
+        return Optional.ofNullable(
+            snapshots.remember(this.find(query, options.withLimit(1), parameters).first())
         );
     }
 
@@ -215,25 +391,105 @@ public final class MongoQueryEngine<T extends HasGUID> implements QueryEngine<T,
     }
 
     @Override
-    public void remove(Query query, List<Object> parameters) {
-        // Handle common case ...
-        if ((query instanceof Match match) && match.getQuery() instanceof Equals eq){
-            var value = this.resolveValue(eq.getValue(), parameters);
-
-            if (value.isLeft()) {
-                collection.removeById(value.getLeft());
-            } else {
-                removeFromQuery(query, parameters);
-            }
+    public long count(Query query, List<Object> parameters) {
+        var template = MongoQueryTemplate.compile(query);
+        var options = new CountOptions().collation(template.getCollation().orElse(null));
+
+        return this.collection.countDocuments(template.bind(parameters), options);
+    }
+
+    @Override
+    public boolean exists(Query query, List<Object> parameters) {
+        var template = MongoQueryTemplate.compile(query);
+        var options = new CountOptions().limit(1).collation(template.getCollation().orElse(null));
+
+        return this.collection.countDocuments(template.bind(parameters), options) > 0;
+    }
+
+    @Override
+    public long remove(Query query, List<Object> parameters) {
+        var template = MongoQueryTemplate.compile(query);
+        var condition = template.bind(parameters);
+        var options = new DeleteOptions().collation(template.getCollation().orElse(null));
+
+        /*
+         * At most one document matches a condition on `_id`.
+         */
+        if (template.isPrimaryKeyMatch()) {
+            return this.collection.deleteOne(condition, options).getDeletedCount();
         } else {
-            removeFromQuery(query, parameters);
+            return this.collection.deleteMany(condition, options).getDeletedCount();
         }
     }
 
+    @Override
+    public boolean isBlocking() {
+        return true;
+    }
+
+    @Override
+    public void ensureIndex(Index index) {
+        ensureIndex(index, Optional.empty());
+    }
+
+    @Override
+    public void prepare(Query query) {
+        var template = MongoQueryTemplate.compile(query);
+
+        Queries.getIndexes(query).forEach(this::ensureIndex);
+        template.getCaseInsensitiveIndexes().forEach(index -> ensureIndex(index, template.getCollation()));
+    }
+
+    /**
+     * Creates an index asynchronously, if it has not been requested before.
+     *
+     * @param index     The index to create.
+     * @param collation The collation of the index, if other than the collection's default.
+     */
+    private void ensureIndex(Index index, Optional<Collation> collation) {
+        var keys = MongoQueryTemplate.getIndexKeys(index);
+
+        /*
+         * Mongo always maintains an index on `_id`.
+         */
+        if (!ensureIndexes || keys.isEmpty()) {
+            return;
+        }
+
+        var options = MongoQueryTemplate.getIndexOptions(keys, collation);
+        var key = Tuple2.apply(index, collation);
+        var created = new CompletableFuture<String>();
+
+        if (Objects.nonNull(indexes.putIfAbsent(key, created))) {
+            return;
+        }
+
+        CompletableFuture
+            .supplyAsync(() -> this.collection.createIndex(Indexes.ascending(keys), options), IndexCreation.EXECUTOR)
+            .whenComplete((name, ex) -> {
+                if (Objects.nonNull(ex)) {
+                    LOG.warn(
+                        "Can't create index `{}` for collection `{}`.",
+                        keys, this.collection.getNamespace().getFullName(), ex
+                    );
+
+                    /*
+                     * Removed before completing, thus callers which observe the failure can request it again.
+                     */
+                    indexes.remove(key, created);
+                    created.completeExceptionally(ex);
+                } else {
+                    LOG.debug("Ensured index `{}` for collection `{}`.", name, this.collection.getNamespace());
+                    created.complete(name);
+                }
+            });
+    }
+
     @Override
     public void insertOrUpdate(T item, Bson customQuery) {
         var options = new ReplaceOptions().upsert(true);
         this.collection.replaceOne(customQuery, item, options);
+        snapshots.remember(item);
     }
 
     @Override
@@ -242,206 +498,99 @@ public final class MongoQueryEngine<T extends HasGUID> implements QueryEngine<T,
             .stream(
                 this.collection.find(customQuery).spliterator(), false
             )
+            .map(snapshots::remember)
             .toList();
     }
 
     @Override
     public Optional<T> findOne(Bson customQuery) {
         return Optional.ofNullable(
-            this.collection.findOne(customQuery)
+            snapshots.remember(this.collection.findOne(customQuery))
         );
     }
 
     @Override
-    public void remove(Bson customQuery) {
-        this
-            .findAll(customQuery)
-            .forEach(entity -> {
-                collection.removeById(entity.getGUID().toString());
-            });
+    public long count(Bson customQuery) {
+        return this.collection.countDocuments(customQuery);
     }
 
-    private void removeFromQuery(Query query, List<Object> parameters) {
-        this
-            .findAll(query, parameters)
-            .forEach(entity -> {
-                collection.removeById(entity.getGUID().toString());
-            });
+    @Override
+    public boolean exists(Bson customQuery) {
+        return this.collection.countDocuments(customQuery, new CountOptions().limit(1)) > 0;
     }
 
-    private Bson mapToCondition(Query query, List<Object> parameters) {
-        if (query instanceof Match match) {
-            return resolveMatch(match, parameters);
-        } else if (query instanceof ElemMatch elemMatch) {
-            return resolveElemMatch(elemMatch, parameters);
-        } else if (query instanceof And and) {
-            return resolveAnd(and, parameters);
-        } else if (query instanceof Or or) {
-            return resolveOr(or, parameters);
-        } else if (query instanceof True) {
-            return empty();
-        }
-
-        throw new IllegalArgumentException(MessageFormat.format(
-            "Can''t handle query `{0}` at this level.",
-            query
-        ));
-    }
+    @Override
+    public long removeAll(Query query, List<List<Object>> parameters) {
+        var template = MongoQueryTemplate.compile(query);
+        var isPrimaryKeyMatch = template.isPrimaryKeyMatch();
+        var options = new DeleteOptions().collation(template.getCollation().orElse(null));
+
+        var writes = parameters
+            .stream()
+            .map(p -> isPrimaryKeyMatch ?
+                new DeleteOneModel<T>(template.bind(p), options) :
+                new DeleteManyModel<T>(template.bind(p), options))
+            .toList();
 
-    private Bson resolveOr(Or orQuery, List<Object> parameters) {
-        return or(
-            orQuery
-                .getFilters()
-                .stream()
-                .map(q -> this.mapToCondition(q, parameters))
-                .toList()
-        );
+        return bulkWrite(writes).map(BulkWriteResult::getDeletedCount).orElse(0).longValue();
     }
 
-    private Bson resolveAnd(And andQuery, List<Object> parameters) {
-        return and(
-            andQuery
-                .getFilters()
-                .stream()
-                .map(q -> this.mapToCondition(q, parameters))
-                .toList()
-        );
+    @Override
+    public long remove(Bson customQuery) {
+        return this.collection.deleteMany(customQuery).getDeletedCount();
     }
 
-    private Bson resolveElemMatch(ElemMatch elemMatch, List<Object> parameters) {
-        if (elemMatch.getSelector() instanceof Field field) {
-            return elemMatch(
-                field.getFQN(),
-                mapToCondition(elemMatch.getQuery(), parameters)
-            );
-        } else {
-            throw new IllegalArgumentException(MessageFormat.format(
-                "MongoQueryEngine does not support different selector's than field for `elemMatch` operator." +
-                    " The following query cannot be transformed to Mongo query: `{0}`",
-                elemMatch
-            ));
+    /**
+     * Executes writes with a single round trip to the database.
+     */
+    private Optional<BulkWriteResult> bulkWrite(List<WriteModel<T>> writes) {
+        if (writes.isEmpty()) {
+            return Optional.empty();
         }
+
+        return Optional.of(
+            this.collection.bulkWrite(writes, new BulkWriteOptions().ordered(orderedBulkWrites))
+        );
     }
 
-    private Bson resolveMatch(Match match, List<Object> parameters) {
-        if (match.getSelector() instanceof Field field) {
-            if (match.getQuery() instanceof Equals equals) {
-                var equalsValue = this.resolveValue(equals.getValue(), parameters);
+    /**
+     * Creates a cursor for a query; sorting and paging are executed by the database.
+     */
+    private FindIterable<T> find(Query query, QueryOptions options, List<Object> parameters) {
+        var template = MongoQueryTemplate.compile(query);
+        var result = this.collection.find(template.bind(options, parameters));
 
-                if (equalsValue.isLeft()) {
-                    return eq(
-                        resolveField(field),
-                        transformValueForQuery(equalsValue.getLeftForce())
-                    );
-                }
-            }
+        if (template.getCollation().isPresent()) {
+            result = result.collation(template.getCollation().get());
         }
 
-        throw new IllegalArgumentException(MessageFormat.format(
-            "Query `{0}` is not supported within this engine.",
-            match
-        ));
-    }
+        if (MongoQueryTemplate.getSort(options).isPresent()) {
+            result = result.sort(MongoQueryTemplate.getSort(options).get());
+        }
 
-    private String resolveField(Field field) {
-        if (field.getFQN().equalsIgnoreCase("guid")) {
-            return "_id";
-        } else {
-            return field.getFQN();
+        if (options.getOffset() > 0) {
+            result = result.skip(options.getOffset());
         }
-    }
 
-    @SuppressWarnings("rawtypes")
-    private Either<Object, Document> resolveValue(Value value, List<Object> parameters) {
-        if (value instanceof StaticValue staticValue) {
-            return Either.fromLeft(staticValue.getValue());
-        } else if (value instanceof ParameterReference ref) {
-            return Either.fromLeft(parameters.get(ref.getIndex()));
-        } else if (value instanceof Select select) {
-            var selectFromValue = resolveValue(select.getValue(), parameters);
-
-            if (selectFromValue.isLeft()) {
-                var object = selectFromValue.getLeftForce();
-                var field = select.getSelect();
-                return Either.fromLeft(resolveValueFromField(field, object));
-            }
-        } else if (value instanceof Uppercase uppercase) {
-            var upperValue = resolveValue(uppercase.getValue(), parameters);
-            return Either.fromLeft(upperValue.toString().toUpperCase());
+        if (options.getLimit().isPresent()) {
+            result = result.limit(options.getLimit().get());
         }
 
-        throw new IllegalArgumentException(MessageFormat.format(
-            "Value `{0}` cannot be resolved within this engine",
-            value
-        ));
+        return result;
     }
 
     /**
-     * Complex type should be mapped into string.
-     *
-     * @param value The value to transform.
-     * @return Actual value for primitive types. Otherwise {@link String}.
+     * Holds the executor which creates indexes in the background, shared by all engines. Indexes are created one
+     * at a time; the thread is started when an index is requested first.
      */
-    private Object transformValueForQuery(Object value) {
-        if (value.getClass().isPrimitive() || WRAPPER_TYPES.contains(value.getClass())) {
-            return value;
-        } else {
-            return value.toString();
-        }
-    }
-
-    @SuppressWarnings("unchecked")
-    private <U> Object resolveValueFromField(Field field, U obj) {
-        var objFieldTuple = getValueFromObject(field.getName(), (Class<U>) obj.getClass());
-        var objFieldGetter = objFieldTuple._1;
+    private static final class IndexCreation {
 
-        var childField = field.getChildField();
-        var nextObj = objFieldGetter.get(obj);
+        private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "mongo-index-creation");
+            thread.setDaemon(true);
+            return thread;
+        });
 
-        if (childField.isPresent()) {
-            return resolveValueFromField(childField.get(), nextObj);
-        } else {
-            if (Objects.nonNull(nextObj)) {
-                return nextObj;
-            } else {
-                return Nothing.getInstance();
-            }
-        }
-    }
-
-    private <U> Tuple2<Function1<U, Object>, Class<?>> getValueFromObject(String field, Class<U> type) {
-        /*
-         * Try to find getter.
-         */
-        var getter = Arrays
-            .stream(type.getMethods())
-            .filter(m -> m.getName().equalsIgnoreCase("get" + field))
-            .filter(m -> m.getParameters().length == 0)
-            .findFirst();
-
-        var objField = Arrays
-            .stream(type.getFields())
-            .filter(m -> m.getName().equalsIgnoreCase(field))
-            .findFirst();
-
-        if (getter.isPresent()) {
-            return Tuple.apply(
-                obj -> getter.get().invoke(obj),
-                getter.get().getReturnType()
-            );
-        } else if (objField.isPresent()) {
-            objField.get().setAccessible(true);
-
-            return Tuple.apply(
-                obj -> objField.get().get(obj),
-                objField.get().getType()
-            );
-        } else {
-            throw new RuntimeException(MessageFormat.format(
-                "Can''t find field `{0}` within type `{1}`",
-                field, type.getName()
-            ));
-        }
     }
 
     /**
@@ -463,6 +612,29 @@ public final class MongoQueryEngine<T extends HasGUID> implements QueryEngine<T,
          */
         ObjectMapper objectMapper;
 
+        /**
+         * Whether batch writes are executed in order (default). Ordered batches stop at the first failing
+         * write; unordered batches may be executed in parallel by the server and continue after failures.
+         */
+        Boolean orderedBulkWrites;
+
+        /**
+         * Whether indexes required by the repository's queries are created (default).
+         */
+        Boolean ensureIndexes;
+
+        /**
+         * Whether updates of entities with known state only send changed fields (default). Otherwise, documents
+         * are always replaced as a whole.
+         */
+        Boolean diffUpdates;
+
+        /**
+         * The configuration of a read-through cache for the collection, see
+         * {@link com.wellnr.platform.core.persistence.query.cache.CachingQueryEngine}. Not cached by default.
+         */
+        QueryCacheProperties cache;
+
         public Optional<String> getCollectionName() {
             return Optional.ofNullable(collectionName);
         }
@@ -471,6 +643,22 @@ public final class MongoQueryEngine<T extends HasGUID> implements QueryEngine<T,
             return Optional.ofNullable(objectMapper);
         }
 
+        public Optional<Boolean> getOrderedBulkWrites() {
+            return Optional.ofNullable(orderedBulkWrites);
+        }
+
+        public Optional<Boolean> getEnsureIndexes() {
+            return Optional.ofNullable(ensureIndexes);
+        }
+
+        public Optional<Boolean> getDiffUpdates() {
+            return Optional.ofNullable(diffUpdates);
+        }
+
+        public Optional<QueryCacheProperties> getCache() {
+            return Optional.ofNullable(cache);
+        }
+
     }
 
 }
@@ -0,0 +1,786 @@
+package com.wellnr.platform.core.persistence.mongo;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CollationStrength;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Sorts;
+import com.wellnr.platform.common.ReflectionUtils;
+import com.wellnr.platform.common.tuples.Nothing;
+import com.wellnr.platform.core.persistence.query.Index;
+import com.wellnr.platform.core.persistence.query.Queries;
+import com.wellnr.platform.core.persistence.query.filter.*;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
+import com.wellnr.platform.core.persistence.query.values.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.text.MessageFormat;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.mongodb.client.model.Filters.*;
+
+/**
+ * A {@link Query} compiled into a template for Bson conditions.
+ * <p>
+ * Compiling a query walks the query AST once, validates that it can be expressed in Bson and resolves field
+ * names as well as accessors for selected values. When the query is executed, only the leaves of the template
+ * (parameters and values selected from parameters) are bound, see {@link #bind(List)}. Queries which don't
+ * reference parameters are bound once during compilation.
+ * <p>
+ * All filters of the query AST are translated into conditions which are executed by the database:
+ * <p>
+ * * Nested matches (e.g. `match($("engine"), match($("type"), eq(p(0))))`) select nested fields, `elemMatch`
+ * is translated to `$elemMatch`. `and`, `or`, `true` and `false` may be nested within both.
+ * * `isIn` is translated to `$in`, collections passed as values are expanded.
+ * * Comparisons with values which reference the matched document (e.g. `match($("color"), eq($("brand")))`)
+ * are translated to `$expr`.
+ * * Matches on uppercase fields (e.g. `match(uppercase($("brand")), eq(p(0)))`) are case-insensitive. If all
+ * comparisons of a query are case-insensitive, the query is executed with a case-insensitive collation
+ * (see {@link #getCollation()}), which can use indexes created with the same collation
+ * (see {@link #getCaseInsensitiveIndexes()}). Otherwise, case-insensitive matches are translated to anchored,
+ * case-insensitive regular expressions.
+ * <p>
+ * Queries which can't be translated are rejected when they are compiled. Compiled templates are cached per
+ * query, see {@link #compile(Query)}.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class MongoQueryTemplate {
+
+    /**
+     * The collation used for queries which only consist of case-insensitive comparisons.
+     */
+    public static final Collation CASE_INSENSITIVE = Collation
+        .builder()
+        .locale("en")
+        .collationStrength(CollationStrength.SECONDARY)
+        .build();
+
+    /**
+     * The maximum number of compiled templates which are kept in the cache.
+     */
+    private static final int MAX_CACHED_TEMPLATES = 1024;
+
+    private static final LoadingCache<Query, MongoQueryTemplate> TEMPLATES = CacheBuilder
+        .newBuilder()
+        .maximumSize(MAX_CACHED_TEMPLATES)
+        .build(CacheLoader.from(MongoQueryTemplate::create));
+
+    private static final Set<Class<?>> WRAPPER_TYPES;
+
+    static {
+        Set<Class<?>> ret = new HashSet<Class<?>>();
+        ret.add(Boolean.class);
+        ret.add(Character.class);
+        ret.add(Byte.class);
+        ret.add(Short.class);
+        ret.add(Integer.class);
+        ret.add(Long.class);
+        ret.add(Float.class);
+        ret.add(Double.class);
+        ret.add(Void.class);
+
+        WRAPPER_TYPES = ret;
+    }
+
+    private final Query query;
+
+    private final CompiledCondition condition;
+
+    /**
+     * True, if the query is executed with the {@link #CASE_INSENSITIVE} collation.
+     */
+    private final boolean caseInsensitive;
+
+    /**
+     * The indexes which support the case-insensitive comparisons of the query.
+     */
+    private final List<Index> caseInsensitiveIndexes;
+
+    /**
+     * Returns the compiled template for a query. Templates are compiled once and cached per query.
+     *
+     * @param query The query to compile.
+     * @return The compiled template.
+     * @throws IllegalArgumentException if the query can't be expressed as Bson condition.
+     */
+    public static MongoQueryTemplate compile(Query query) {
+        try {
+            return TEMPLATES.getUnchecked(query);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    private static MongoQueryTemplate create(Query query) {
+        var caseInsensitive = isCaseInsensitive(query);
+        var condition = compileCondition(query, Scope.apply("", false, caseInsensitive)).memoizeIfConstant();
+        var indexes = caseInsensitive ? getCaseInsensitiveIndexes(query) : List.<Index>of();
+
+        return new MongoQueryTemplate(query, condition, caseInsensitive, indexes);
+    }
+
+    /**
+     * Returns the name of a field within Mongo documents. The `guid` of entities is stored as `_id`.
+     *
+     * @param field The field of the entity.
+     * @return The field's name within the document.
+     */
+    public static String getFieldName(Field field) {
+        if (field.getFQN().equalsIgnoreCase("guid")) {
+            return "_id";
+        } else {
+            return field.getFQN();
+        }
+    }
+
+    /**
+     * Complex type should be mapped into string.
+     *
+     * @param value The value to transform.
+     * @return Actual value for primitive types. Otherwise {@link String}.
+     */
+    public static Object getQueryValue(Object value) {
+        if (value.getClass().isPrimitive() || WRAPPER_TYPES.contains(value.getClass())) {
+            return value;
+        } else {
+            return value.toString();
+        }
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    /**
+     * Returns the collation which must be used to execute the query.
+     *
+     * @return The collation, if the query requires a collation other than the collection's default.
+     */
+    public Optional<Collation> getCollation() {
+        if (caseInsensitive) {
+            return Optional.of(CASE_INSENSITIVE);
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the indexes which support the case-insensitive comparisons of the query. These indexes must be
+     * created with the collation of the query, see {@link #getCollation()}.
+     *
+     * @return The indexes, might be empty.
+     */
+    public List<Index> getCaseInsensitiveIndexes() {
+        return caseInsensitiveIndexes;
+    }
+
+    /**
+     * Binds the parameters of the query.
+     *
+     * @param parameters The parameters which may be referenced by the query.
+     * @return The Bson condition.
+     */
+    public Bson bind(List<Object> parameters) {
+        return condition.bind(parameters);
+    }
+
+    /**
+     * Binds the parameters of the query, including the keyset condition of the options (if present).
+     *
+     * @param options    The query options.
+     * @param parameters The parameters which may be referenced by the query and the options.
+     * @return The Bson condition.
+     */
+    public Bson bind(QueryOptions options, List<Object> parameters) {
+        var result = bind(parameters);
+
+        if (!options.getAfter().isEmpty()) {
+            result = and(result, getKeysetCondition(options, parameters));
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks whether the query matches a single document by its `_id`.
+     *
+     * @return True, if at most one document matches the query.
+     */
+    public boolean isPrimaryKeyMatch() {
+        return query instanceof Match match &&
+            match.getSelector() instanceof Field field &&
+            getFieldName(field).equals("_id") &&
+            match.getQuery() instanceof Equals;
+    }
+
+    /**
+     * Returns the sort order of query options.
+     *
+     * @param options The query options.
+     * @return The Bson sort order, if the options define sorting.
+     */
+    public static Optional<Bson> getSort(QueryOptions options) {
+        if (options.getSort().isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(Sorts.orderBy(
+            options
+                .getSort()
+                .stream()
+                .map(sort -> sort.isAscending() ?
+                    Sorts.ascending(getFieldName(sort.getField())) :
+                    Sorts.descending(getFieldName(sort.getField())))
+                .toList()
+        ));
+    }
+
+    /**
+     * Returns the keys of an index within Mongo documents.
+     *
+     * @param index The index.
+     * @return The document fields of the index, empty if the index is covered by Mongo's `_id` index.
+     */
+    public static List<String> getIndexKeys(Index index) {
+        var keys = index
+            .getFields()
+            .stream()
+            .map(MongoQueryTemplate::getFieldName)
+            .distinct()
+            .toList();
+
+        if (keys.equals(List.of("_id"))) {
+            return List.of();
+        } else {
+            return keys;
+        }
+    }
+
+    /**
+     * Returns the options to create an index.
+     *
+     * @param keys      The keys of the index, see {@link #getIndexKeys(Index)}.
+     * @param collation The collation of the index, if other than the collection's default.
+     * @return The index options.
+     */
+    public static IndexOptions getIndexOptions(List<String> keys, Optional<Collation> collation) {
+        var options = new IndexOptions();
+
+        /*
+         * Indexes with a collation get a distinct name, as Mongo doesn't allow indexes with the same name
+         * but different options.
+         */
+        collation.ifPresent(c -> options
+            .collation(c)
+            .name(keys.stream().map(key -> key + "_1").collect(Collectors.joining("_")) + "_" + c.getLocale()));
+
+        return options;
+    }
+
+    /**
+     * Creates the condition to select the items sorted after the keyset values, e.g. for sort fields
+     * `a` (ascending) and `b` (descending): `a > a0 || (a == a0 && b < b0)`.
+     */
+    private static Bson getKeysetCondition(QueryOptions options, List<Object> parameters) {
+        var values = options
+            .getAfterValues(parameters)
+            .stream()
+            .map(MongoQueryTemplate::getQueryValue)
+            .toList();
+
+        var conditions = new ArrayList<Bson>();
+
+        for (var i = 0; i < values.size(); i++) {
+            var sort = options.getSort().get(i);
+            var field = getFieldName(sort.getField());
+            var condition = new ArrayList<Bson>();
+
+            for (var j = 0; j < i; j++) {
+                condition.add(eq(getFieldName(options.getSort().get(j).getField()), values.get(j)));
+            }
+
+            condition.add(sort.isAscending() ? gt(field, values.get(i)) : lt(field, values.get(i)));
+            conditions.add(and(condition));
+        }
+
+        return or(conditions);
+    }
+
+    /*
+     * Analysis
+     */
+
+    /**
+     * Checks whether all comparisons of a query are case-insensitive.
+     */
+    private static boolean isCaseInsensitive(Query query) {
+        var comparisons = getComparisons(query, false).toList();
+        return !comparisons.isEmpty() && comparisons.stream().allMatch(Boolean::booleanValue);
+    }
+
+    /**
+     * Collects the comparisons of a query; each comparison is represented by a flag whether it is case-insensitive.
+     */
+    private static Stream<Boolean> getComparisons(Query query, boolean caseInsensitive) {
+        if (query instanceof Match match) {
+            return getComparisons(match.getQuery(), match.getSelector() instanceof Uppercase);
+        } else if (query instanceof ElemMatch elemMatch) {
+            return getComparisons(elemMatch.getQuery(), false);
+        } else if (query instanceof And and) {
+            return and.getFilters().stream().flatMap(q -> getComparisons(q, caseInsensitive));
+        } else if (query instanceof Or or) {
+            return or.getFilters().stream().flatMap(q -> getComparisons(q, caseInsensitive));
+        } else if (query instanceof Equals || query instanceof IsIn) {
+            return Stream.of(caseInsensitive);
+        } else {
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Derives the indexes for case-insensitive comparisons, analogous to {@link Queries#getIndexes(Query)}.
+     */
+    private static List<Index> getCaseInsensitiveIndexes(Query query) {
+        if (query instanceof Match match) {
+            return getCaseInsensitiveField(match)
+                .map(field -> List.of(Index.apply(field)))
+                .orElseGet(List::of);
+        } else if (query instanceof And and) {
+            var fields = and
+                .getFilters()
+                .stream()
+                .filter(Match.class::isInstance)
+                .map(Match.class::cast)
+                .map(MongoQueryTemplate::getCaseInsensitiveField)
+                .flatMap(Optional::stream)
+                .distinct()
+                .toList();
+
+            if (fields.isEmpty()) {
+                return List.of();
+            } else {
+                return List.of(Index.apply(fields));
+            }
+        } else if (query instanceof Or or) {
+            return or
+                .getFilters()
+                .stream()
+                .flatMap(q -> getCaseInsensitiveIndexes(q).stream())
+                .distinct()
+                .toList();
+        } else {
+            return List.of();
+        }
+    }
+
+    private static Optional<Field> getCaseInsensitiveField(Match match) {
+        if (
+            match.getSelector() instanceof Uppercase uppercase &&
+                uppercase.getValue() instanceof Field field &&
+                match.getQuery() instanceof Equals equals &&
+                !Queries.referencesItem(equals.getValue())
+        ) {
+            return Optional.of(field);
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    /*
+     * Compilation
+     */
+
+    private static CompiledCondition compileCondition(Query query, Scope scope) {
+        if (query instanceof Match match) {
+            return compileMatch(match, scope);
+        } else if (query instanceof ElemMatch elemMatch) {
+            return compileElemMatch(elemMatch, scope);
+        } else if (query instanceof Equals equals) {
+            return compileEquals(equals, scope, false);
+        } else if (query instanceof IsIn isIn) {
+            return compileIsIn(isIn, scope, false);
+        } else if (query instanceof And and) {
+            var filters = compileAll(and.getFilters(), scope);
+            return CompiledCondition.apply(isConstant(filters), parameters -> and(bindAll(filters, parameters)));
+        } else if (query instanceof Or or) {
+            var filters = compileAll(or.getFilters(), scope);
+            return CompiledCondition.apply(isConstant(filters), parameters -> or(bindAll(filters, parameters)));
+        } else if (query instanceof True) {
+            return CompiledCondition.apply(true, parameters -> empty());
+        } else if (query instanceof False) {
+            return CompiledCondition.apply(true, parameters -> nor(empty()));
+        }
+
+        throw new IllegalArgumentException(MessageFormat.format(
+            "Can''t handle query `{0}` at this level.",
+            query
+        ));
+    }
+
+    private static CompiledCondition compileElemMatch(ElemMatch elemMatch, Scope scope) {
+        if (elemMatch.getSelector() instanceof Field field) {
+            var path = scope.select(field).getPath();
+            var condition = compileCondition(elemMatch.getQuery(), scope.elements());
+
+            return CompiledCondition.apply(
+                condition.isConstant(),
+                parameters -> elemMatch(path, condition.bind(parameters))
+            );
+        } else {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "MongoQueryEngine does not support different selector's than field for `elemMatch` operator." +
+                    " The following query cannot be transformed to Mongo query: `{0}`",
+                elemMatch
+            ));
+        }
+    }
+
+    private static CompiledCondition compileMatch(Match match, Scope scope) {
+        if (match.getSelector() instanceof Field field) {
+            return compileCondition(match.getQuery(), scope.select(field));
+        } else if (match.getSelector() instanceof Uppercase uppercase && uppercase.getValue() instanceof Field field) {
+            if (match.getQuery() instanceof Equals equals) {
+                return compileEquals(equals, scope.select(field), true);
+            } else if (match.getQuery() instanceof IsIn isIn) {
+                return compileIsIn(isIn, scope.select(field), true);
+            }
+        }
+
+        throw new IllegalArgumentException(MessageFormat.format(
+            "Query `{0}` is not supported within this engine.",
+            match
+        ));
+    }
+
+    private static CompiledCondition compileEquals(Equals equals, Scope scope, boolean uppercase) {
+        if (Queries.referencesItem(equals.getValue())) {
+            return compileExpr(equals, scope, uppercase);
+        }
+
+        var value = compileValue(equals.getValue());
+
+        if (uppercase && !scope.isCaseInsensitive()) {
+            return CompiledCondition.apply(
+                value.isConstant(),
+                parameters -> scope.compare("$regex", toCaseInsensitivePattern(value.bind(parameters)))
+            );
+        } else if (scope.getPath().isEmpty()) {
+            return CompiledCondition.apply(
+                value.isConstant(),
+                parameters -> scope.compare("$eq", getQueryValue(value.bind(parameters)))
+            );
+        } else {
+            var path = scope.getPath();
+
+            return CompiledCondition.apply(
+                value.isConstant(),
+                parameters -> eq(path, getQueryValue(value.bind(parameters)))
+            );
+        }
+    }
+
+    private static CompiledCondition compileIsIn(IsIn isIn, Scope scope, boolean uppercase) {
+        if (isIn.getValues().stream().anyMatch(Queries::referencesItem)) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "Values of `isIn` must not reference the matched document. The following query cannot be " +
+                    "transformed to Mongo query: `{0}`",
+                isIn
+            ));
+        }
+
+        var values = isIn
+            .getValues()
+            .stream()
+            .map(MongoQueryTemplate::compileValue)
+            .toList();
+
+        Function<Object, Object> toQueryValue = uppercase && !scope.isCaseInsensitive() ?
+            MongoQueryTemplate::toCaseInsensitivePattern : MongoQueryTemplate::getQueryValue;
+
+        return CompiledCondition.apply(values.stream().allMatch(CompiledValue::isConstant), parameters -> {
+            var bound = new ArrayList<>();
+
+            for (var value : values) {
+                var result = value.bind(parameters);
+
+                if (result instanceof Collection<?> collection) {
+                    collection.forEach(item -> bound.add(toQueryValue.apply(item)));
+                } else {
+                    bound.add(toQueryValue.apply(result));
+                }
+            }
+
+            return scope.compare("$in", bound);
+        });
+    }
+
+    /**
+     * Compiles a comparison with a value which references the matched document into an `$expr` condition.
+     */
+    private static CompiledCondition compileExpr(Equals equals, Scope scope, boolean uppercase) {
+        if (scope.isElements() || scope.getPath().isEmpty()) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "Comparisons with fields of the document are not supported within `elemMatch`. The following " +
+                    "query cannot be transformed to Mongo query: `{0}`",
+                equals
+            ));
+        }
+
+        Object left = "$" + scope.getPath();
+
+        if (uppercase) {
+            left = new Document("$toUpper", left);
+        }
+
+        var leftExpression = left;
+        var right = compileExpression(equals.getValue());
+
+        return CompiledCondition.apply(
+            right.isConstant(),
+            parameters -> expr(new Document("$eq", List.of(leftExpression, right.bind(parameters))))
+        );
+    }
+
+    /**
+     * Compiles a value into an aggregation expression, see {@link #compileExpr(Equals, Scope, boolean)}.
+     */
+    private static CompiledValue compileExpression(Value value) {
+        if (!Queries.referencesItem(value)) {
+            var compiled = compileValue(value);
+
+            return CompiledValue.apply(
+                compiled.isConstant(),
+                parameters -> new Document("$literal", getQueryValue(compiled.bind(parameters)))
+            );
+        } else if (value instanceof Uppercase uppercase) {
+            var compiled = compileExpression(uppercase.getValue());
+
+            return CompiledValue.apply(
+                compiled.isConstant(),
+                parameters -> new Document("$toUpper", compiled.bind(parameters))
+            );
+        } else {
+            var path = "$" + getDocumentPath(value);
+            return CompiledValue.apply(true, parameters -> path);
+        }
+    }
+
+    /**
+     * Returns the path of a value which is selected from the matched document.
+     */
+    private static String getDocumentPath(Value value) {
+        if (value instanceof Field field) {
+            return getFieldName(field);
+        } else if (value instanceof Select select) {
+            return getDocumentPath(select.getValue()) + "." + select.getSelect().getFQN();
+        }
+
+        throw new IllegalArgumentException(MessageFormat.format(
+            "Value `{0}` cannot be resolved within this engine",
+            value
+        ));
+    }
+
+    private static CompiledValue compileValue(Value value) {
+        if (value instanceof StaticValue<?> staticValue) {
+            var result = staticValue.getValue();
+            return CompiledValue.apply(true, parameters -> result);
+        } else if (value instanceof ParameterReference ref) {
+            var index = ref.getIndex();
+            return CompiledValue.apply(false, parameters -> parameters.get(index));
+        } else if (value instanceof Select select) {
+            var selectFrom = compileValue(select.getValue());
+            var getter = FieldAccessor.apply(select.getSelect());
+
+            return CompiledValue.apply(selectFrom.isConstant(), parameters -> {
+                var result = getter.get(selectFrom.bind(parameters));
+
+                if (Objects.nonNull(result)) {
+                    return result;
+                } else {
+                    return Nothing.getInstance();
+                }
+            });
+        } else if (value instanceof Uppercase uppercase) {
+            var upperValue = compileValue(uppercase.getValue());
+
+            return CompiledValue.apply(
+                upperValue.isConstant(),
+                parameters -> upperValue.bind(parameters).toString().toUpperCase()
+            );
+        }
+
+        throw new IllegalArgumentException(MessageFormat.format(
+            "Value `{0}` cannot be resolved within this engine",
+            value
+        ));
+    }
+
+    private static Pattern toCaseInsensitivePattern(Object value) {
+        return Pattern.compile("^" + Pattern.quote(value.toString()) + "$", Pattern.CASE_INSENSITIVE);
+    }
+
+    private static List<CompiledCondition> compileAll(List<Query> queries, Scope scope) {
+        return queries
+            .stream()
+            .map(query -> compileCondition(query, scope))
+            .toList();
+    }
+
+    private static boolean isConstant(List<CompiledCondition> conditions) {
+        return conditions.stream().allMatch(CompiledCondition::isConstant);
+    }
+
+    private static List<Bson> bindAll(List<CompiledCondition> conditions, List<Object> parameters) {
+        return conditions
+            .stream()
+            .map(condition -> condition.bind(parameters))
+            .toList();
+    }
+
+    /**
+     * The context in which a filter is compiled.
+     */
+    @lombok.Value
+    @AllArgsConstructor(staticName = "apply")
+    private static class Scope {
+
+        /**
+         * The path of the selected field, empty if the filter is applied to the document (or to an element of an
+         * array within `elemMatch`).
+         */
+        String path;
+
+        /**
+         * True, if the filter is applied to the elements of an array (within `elemMatch`).
+         */
+        boolean elements;
+
+        /**
+         * True, if the query is executed with the {@link #CASE_INSENSITIVE} collation.
+         */
+        boolean caseInsensitive;
+
+        public Scope select(Field field) {
+            if (path.isEmpty()) {
+                return apply(getFieldName(field), elements, caseInsensitive);
+            } else {
+                return apply(path + "." + field.getFQN(), elements, caseInsensitive);
+            }
+        }
+
+        public Scope elements() {
+            return apply("", true, caseInsensitive);
+        }
+
+        /**
+         * Creates a condition which compares the selected field with an operator, e.g. `{ path: { $in: [...] } }`.
+         */
+        public Bson compare(String operator, Object value) {
+            if (path.isEmpty()) {
+                return new Document(operator, value);
+            } else {
+                return new Document(path, new Document(operator, value));
+            }
+        }
+
+    }
+
+    /**
+     * A compiled condition; returns the Bson condition once parameters are bound.
+     */
+    @AllArgsConstructor(staticName = "apply")
+    private static final class CompiledCondition {
+
+        /**
+         * True, if the condition does not reference parameters.
+         */
+        private final boolean constant;
+
+        private final Function<List<Object>, Bson> binder;
+
+        public boolean isConstant() {
+            return constant;
+        }
+
+        public Bson bind(List<Object> parameters) {
+            return binder.apply(parameters);
+        }
+
+        /**
+         * Returns a condition which is bound only once, if the condition does not reference parameters.
+         */
+        public CompiledCondition memoizeIfConstant() {
+            if (!constant) {
+                return this;
+            }
+
+            var result = binder.apply(List.of());
+            return CompiledCondition.apply(true, parameters -> result);
+        }
+
+    }
+
+    /**
+     * A compiled value; returns the value once parameters are bound.
+     */
+    @AllArgsConstructor(staticName = "apply")
+    private static final class CompiledValue {
+
+        /**
+         * True, if the value does not reference parameters.
+         */
+        private final boolean constant;
+
+        private final Function<List<Object>, Object> binder;
+
+        public boolean isConstant() {
+            return constant;
+        }
+
+        public Object bind(List<Object> parameters) {
+            return binder.apply(parameters);
+        }
+
+    }
+
+    /**
+     * Reads a (nested) field from objects. The getter is resolved once per runtime class of the objects.
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    private static final class FieldAccessor {
+
+        private final ClassValue<Function<Object, Object>> getters;
+
+        public static FieldAccessor apply(Field field) {
+            return new FieldAccessor(new ClassValue<>() {
+
+                @Override
+                protected Function<Object, Object> computeValue(Class<?> type) {
+                    return ReflectionUtils.getFieldAccessor(type, field.getFQN());
+                }
+
+            });
+        }
+
+        public Object get(Object obj) {
+            return getters.get(obj.getClass()).apply(obj);
+        }
+
+    }
+
+}
@@ -7,7 +7,10 @@ import com.wellnr.platform.common.tuples.Tuple2;
 import com.wellnr.platform.core.config.MongoDatabaseConfiguration;
 import com.wellnr.platform.core.context.PlatformContext;
 import com.wellnr.platform.core.persistence.query.AbstractQueryEngineRepositoryFactory;
+import com.wellnr.platform.core.persistence.query.Index;
 import com.wellnr.platform.core.persistence.query.QueryEngine;
+import com.wellnr.platform.core.persistence.query.cache.QueryCacheProperties;
+import com.wellnr.platform.core.persistence.query.values.Field;
 import org.bson.conversions.Bson;
 
 import java.lang.reflect.Method;
@@ -22,29 +25,99 @@ public final class MongoRepository extends AbstractQueryEngineRepositoryFactory<
 
     private final MongoDatabaseConfiguration configuration;
 
+    /**
+     * The clients of the platform context, shared by all repositories of the context.
+     */
+    private final MongoClientRegistry clients;
+
     private final Map<Class<HasGUID>, MongoQueryEngine.MongoCollectionProperties> entityTypes;
 
+    /**
+     * Whether the repository uses the reactive streams driver, see {@link ReactiveMongoQueryEngine}.
+     */
+    private final boolean reactive;
+
     private MongoRepository(
         PlatformContext ctx,
         MongoDatabaseConfiguration configuration,
-        Map<Class<HasGUID>, MongoQueryEngine.MongoCollectionProperties> entityTypes) {
+        Map<Class<HasGUID>, MongoQueryEngine.MongoCollectionProperties> entityTypes,
+        boolean reactive) {
 
         super(ctx);
         this.configuration = configuration;
+        this.clients = ctx.getInstance(MongoClientRegistry.class);
         this.entityTypes = entityTypes;
+        this.reactive = reactive;
     }
 
-    @SuppressWarnings("unchecked")
     public static <R> R create(
         PlatformContext ctx,
         Class<R> repositoryType,
         MongoDatabaseConfiguration configuration,
         List<Tuple2<Class<? extends HasGUID>, MongoQueryEngine.MongoCollectionProperties>> entityTypes
+    ) {
+        return create(ctx, repositoryType, configuration, entityTypes, false);
+    }
+
+    /**
+     * Creates a repository which executes operations with the reactive streams driver, see
+     * {@link ReactiveMongoQueryEngine}. Repository methods with return type
+     * {@link java.util.concurrent.CompletionStage} don't block while the database operation is pending.
+     *
+     * @param ctx            The platform context.
+     * @param repositoryType The interface of the repository.
+     * @param configuration  Connection configuration for the Mongo database.
+     * @param entityTypes    The entity types stored in the repository, with configurations of their collections.
+     * @param <R>            The type of the repository.
+     * @return The repository.
+     */
+    public static <R> R createReactive(
+        PlatformContext ctx,
+        Class<R> repositoryType,
+        MongoDatabaseConfiguration configuration,
+        List<Tuple2<Class<? extends HasGUID>, MongoQueryEngine.MongoCollectionProperties>> entityTypes
+    ) {
+        return create(ctx, repositoryType, configuration, entityTypes, true);
+    }
+
+    /**
+     * Creates a repository which executes operations with the reactive streams driver, see
+     * {@link #createReactive(PlatformContext, Class, MongoDatabaseConfiguration, List)}.
+     *
+     * @param ctx            The platform context.
+     * @param repositoryType The interface of the repository.
+     * @param configuration  Connection configuration for the Mongo database.
+     * @param entityType     The entity type stored in the repository.
+     * @param <R>            The type of the repository.
+     * @return The repository.
+     */
+    public static <R> R createReactive(
+        PlatformContext ctx,
+        Class<R> repositoryType,
+        MongoDatabaseConfiguration configuration,
+        Class<? extends HasGUID> entityType
+    ) {
+        return createReactive(
+            ctx,
+            repositoryType,
+            configuration,
+            List.of(Tuple2.apply(entityType, MongoQueryEngine.MongoCollectionProperties.apply()))
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> R create(
+        PlatformContext ctx,
+        Class<R> repositoryType,
+        MongoDatabaseConfiguration configuration,
+        List<Tuple2<Class<? extends HasGUID>, MongoQueryEngine.MongoCollectionProperties>> entityTypes,
+        boolean reactive
     ) {
         var factory = new MongoRepository(
             ctx,
             configuration,
-            entityTypes.stream().collect(Collectors.toMap(t -> (Class<HasGUID>) t._1, Tuple2::get_2))
+            entityTypes.stream().collect(Collectors.toMap(t -> (Class<HasGUID>) t._1, Tuple2::get_2)),
+            reactive
         );
 
         return factory.create(
@@ -82,9 +155,15 @@ public final class MongoRepository extends AbstractQueryEngineRepositoryFactory<
 
     @Override
     protected QueryEngine<HasGUID, Bson> createQueryEngine(Class<HasGUID> entityType, Class<HasGUID> mementoType) {
-        return MongoQueryEngine.apply(
-            mementoType, configuration, this.entityTypes.get(entityType)
-        );
+        if (reactive) {
+            return ReactiveMongoQueryEngine.apply(
+                mementoType, clients.getReactiveDatabase(configuration), this.entityTypes.get(entityType)
+            );
+        } else {
+            return MongoQueryEngine.apply(
+                mementoType, clients.getDatabase(configuration), this.entityTypes.get(entityType)
+            );
+        }
     }
 
     @Override
@@ -115,4 +194,19 @@ public final class MongoRepository extends AbstractQueryEngineRepositoryFactory<
             return super.getCustomQueryFromMethod(m);
         }
     }
+
+    @Override
+    protected Optional<QueryCacheProperties> getQueryCacheProperties(Class<HasGUID> entityType) {
+        return this.entityTypes.get(entityType).getCache();
+    }
+
+    @Override
+    protected List<Index> getCustomQueryIndexesFromMethod(Method m) {
+        return Optional
+            .ofNullable(m.getAnnotation(CustomMongoQuery.class))
+            .stream()
+            .flatMap(annotation -> Arrays.stream(annotation.indexes()))
+            .map(index -> Index.apply(Arrays.stream(index.value()).map(Field::apply).toList()))
+            .toList();
+    }
 }
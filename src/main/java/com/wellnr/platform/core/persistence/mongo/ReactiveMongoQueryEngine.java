@@ -0,0 +1,601 @@
+package com.wellnr.platform.core.persistence.mongo;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.DeleteOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import com.wellnr.platform.common.Operators;
+import com.wellnr.platform.common.databind.DefaultObjectMapperFactory;
+import com.wellnr.platform.common.guid.HasGUID;
+import com.wellnr.platform.common.tuples.Done;
+import com.wellnr.platform.common.tuples.Tuple2;
+import com.wellnr.platform.core.config.MongoDatabaseConfiguration;
+import com.wellnr.platform.core.persistence.query.AsyncQueryEngine;
+import com.wellnr.platform.core.persistence.query.Index;
+import com.wellnr.platform.core.persistence.query.Queries;
+import com.wellnr.platform.core.persistence.query.QueryEngine;
+import com.wellnr.platform.core.persistence.query.filter.Query;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import org.bson.UuidRepresentation;
+import org.bson.conversions.Bson;
+import org.mongojack.JacksonCodecRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * {@link ReactiveMongoQueryEngine} executes queries towards a Mongo database using the reactive streams driver.
+ * <p>
+ * Queries are translated like in {@link MongoQueryEngine} (see {@link MongoQueryTemplate}), but operations don't
+ * block the calling thread: the stages returned by the operations of {@link AsyncQueryEngine} are completed by the
+ * driver's callbacks when the database responded. Repositories return these stages for methods with return type
+ * {@link CompletionStage}, thus no thread is blocked while a database operation is pending. The synchronous
+ * operations of {@link QueryEngine} wait for the corresponding asynchronous operation.
+ * <p>
+ * Streamed results (see {@link QueryEngine#stream(Query, QueryOptions, List)}) are requested batch-wise from the
+ * driver while the stream is consumed. Like {@link MongoQueryEngine}, the engine only sends changed fields when
+ * entities with known state are written again.
+ * <p>
+ * The same requirements for type <code>T</code> apply as for {@link MongoQueryEngine}.
+ *
+ * @param <T> The type of the entity class to store in Mongo.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE, staticName = "apply")
+public final class ReactiveMongoQueryEngine<T extends HasGUID> implements QueryEngine<T, Bson>,
+    AsyncQueryEngine<T, Bson> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReactiveMongoQueryEngine.class);
+
+    /**
+     * The number of documents requested at once from the driver when results are streamed.
+     */
+    private static final int STREAM_BATCH_SIZE = 100;
+
+    /**
+     * The mongo collection.
+     */
+    private final MongoCollection<T> collection;
+
+    /**
+     * Whether batch writes are executed in order, see
+     * {@link MongoQueryEngine.MongoCollectionProperties#orderedBulkWrites}.
+     */
+    private final boolean orderedBulkWrites;
+
+    /**
+     * Whether indexes are created, see {@link MongoQueryEngine.MongoCollectionProperties#ensureIndexes}.
+     */
+    private final boolean ensureIndexes;
+
+    /**
+     * The indexes (and their collation) which have been requested, with the pending or completed creation of
+     * the index.
+     */
+    private final ConcurrentHashMap<Tuple2<Index, Optional<Collation>>, CompletableFuture<String>> indexes;
+
+    /**
+     * The last loaded or persisted state of entities, see
+     * {@link MongoQueryEngine.MongoCollectionProperties#diffUpdates}.
+     */
+    private final MongoDocumentSnapshots<T> snapshots;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param type                 The type of the collection.
+     * @param database             The Mongo database to be used.
+     * @param collectionProperties Additional configurations for the collection.
+     * @param <T>                  The type of the collection.
+     * @return A new instance.
+     */
+    public static <T extends HasGUID> ReactiveMongoQueryEngine<T> apply(
+        Class<T> type,
+        MongoDatabase database,
+        MongoQueryEngine.MongoCollectionProperties collectionProperties
+    ) {
+        MongoQueryEngine.assertEntityType(type);
+
+        /*
+         * Create instance.
+         */
+        var objectMapper = collectionProperties.getObjectMapper().orElseGet(() ->
+            DefaultObjectMapperFactory.apply().createJsonMapper(true)
+        );
+
+        var codecRegistry = new JacksonCodecRegistry(
+            objectMapper, database.getCodecRegistry(), null, UuidRepresentation.STANDARD
+        );
+
+        codecRegistry.addCodecForClass(type);
+
+        var collection = database
+            .getCollection(
+                collectionProperties.getCollectionName().orElseGet(() -> type.getSimpleName().toLowerCase()),
+                type)
+            .withCodecRegistry(codecRegistry);
+
+        return apply(
+            collection,
+            collectionProperties.getOrderedBulkWrites().orElse(true),
+            collectionProperties.getEnsureIndexes().orElse(true),
+            new ConcurrentHashMap<>(),
+            MongoDocumentSnapshots.apply(
+                codecRegistry.get(type), collectionProperties.getDiffUpdates().orElse(true)
+            )
+        );
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param type     The type of the collection.
+     * @param database The Mongo database to be used.
+     * @param <T>      The type of the collection.
+     * @return A new instance.
+     */
+    public static <T extends HasGUID> ReactiveMongoQueryEngine<T> apply(
+        Class<T> type,
+        MongoDatabase database
+    ) {
+        return apply(type, database, MongoQueryEngine.MongoCollectionProperties.apply());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param type                 The type of the collection.
+     * @param configuration        Connection configuration for the Mongo database.
+     * @param collectionProperties Additional configurations for the collection.
+     * @param <T>                  The type of the collection.
+     * @return A new instance.
+     */
+    public static <T extends HasGUID> ReactiveMongoQueryEngine<T> apply(
+        Class<T> type,
+        MongoDatabaseConfiguration configuration,
+        MongoQueryEngine.MongoCollectionProperties collectionProperties) {
+
+        return apply(type, configuration.getReactiveClient(), collectionProperties);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param type          The type of the collection.
+     * @param configuration Connection configuration for the Mongo database.
+     * @param <T>           The type of the collection.
+     * @return A new instance.
+     */
+    public static <T extends HasGUID> ReactiveMongoQueryEngine<T> apply(
+        Class<T> type,
+        MongoDatabaseConfiguration configuration) {
+
+        return apply(type, configuration.getReactiveClient());
+    }
+
+    /*
+     * Asynchronous operations
+     */
+
+    @Override
+    public CompletionStage<Done> insertOrUpdateAsync(T item, Query match, List<Object> parameters) {
+        var template = MongoQueryTemplate.compile(match);
+        var condition = template.bind(parameters);
+        var options = new ReplaceOptions().upsert(true).collation(template.getCollation().orElse(null));
+
+        if (!snapshots.isEnabled() || !template.isPrimaryKeyMatch()) {
+            return ReactiveSubscribers
+                .toOptional(this.collection.replaceOne(condition, item, options))
+                .thenApply(result -> {
+                    snapshots.remember(item);
+                    return Done.getInstance();
+                });
+        }
+
+        var document = snapshots.encode(item);
+        var update = snapshots.getUpdate(item.getGUID(), document);
+
+        /*
+         * The document might have been removed since its state was remembered; it is replaced in this case.
+         */
+        CompletableFuture<Boolean> updated;
+
+        if (update.isEmpty()) {
+            updated = CompletableFuture.completedFuture(false);
+        } else if (update.get().isEmpty()) {
+            updated = count(condition, new CountOptions().limit(1).collation(options.getCollation()))
+                .thenApply(count -> count > 0);
+        } else {
+            var updateOptions = new UpdateOptions().collation(options.getCollation());
+            updated = ReactiveSubscribers
+                .toOptional(this.collection.updateOne(condition, update.get(), updateOptions))
+                .thenApply(result -> result.map(UpdateResult::getMatchedCount).orElse(0L) > 0);
+        }
+
+        return updated
+            .thenCompose(isUpdated -> isUpdated ?
+                CompletableFuture.completedFuture(Optional.<UpdateResult>empty()) :
+                ReactiveSubscribers.toOptional(this.collection.replaceOne(condition, item, options)))
+            .thenApply(result -> {
+                snapshots.remember(item.getGUID(), document);
+                return Done.getInstance();
+            });
+    }
+
+    @Override
+    public CompletionStage<Done> insertOrUpdateAllAsync(List<T> items, Query match, List<List<Object>> parameters) {
+        var template = MongoQueryTemplate.compile(match);
+        var options = new ReplaceOptions().upsert(true).collation(template.getCollation().orElse(null));
+        var writes = new ArrayList<WriteModel<T>>(items.size());
+
+        for (var i = 0; i < items.size(); i++) {
+            writes.add(new ReplaceOneModel<>(template.bind(parameters.get(i)), items.get(i), options));
+        }
+
+        return bulkWrite(writes).thenApply(result -> {
+            items.forEach(snapshots::remember);
+            return Done.getInstance();
+        });
+    }
+
+    @Override
+    public CompletionStage<List<T>> findAllAsync(Query query, QueryOptions options, List<Object> parameters) {
+        if (options.getLimit().filter(limit -> limit == 0).isPresent()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        return ReactiveSubscribers.toList(this.find(query, options, parameters)).thenApply(this::remember);
+    }
+
+    @Override
+    public CompletionStage<Optional<T>> findOneAsync(Query query, QueryOptions options, List<Object> parameters) {
+        return ReactiveSubscribers
+            .toOptional(this.find(query, options.withLimit(1), parameters).first())
+            .thenApply(result -> result.map(snapshots::remember));
+    }
+
+    @Override
+    public CompletionStage<Long> countAsync(Query query, List<Object> parameters) {
+        var template = MongoQueryTemplate.compile(query);
+        var options = new CountOptions().collation(template.getCollation().orElse(null));
+
+        return count(template.bind(parameters), options);
+    }
+
+    @Override
+    public CompletionStage<Boolean> existsAsync(Query query, List<Object> parameters) {
+        var template = MongoQueryTemplate.compile(query);
+        var options = new CountOptions().limit(1).collation(template.getCollation().orElse(null));
+
+        return count(template.bind(parameters), options).thenApply(count -> count > 0);
+    }
+
+    @Override
+    public CompletionStage<Long> removeAsync(Query query, List<Object> parameters) {
+        var template = MongoQueryTemplate.compile(query);
+        var condition = template.bind(parameters);
+        var options = new DeleteOptions().collation(template.getCollation().orElse(null));
+
+        /*
+         * At most one document matches a condition on `_id`.
+         */
+        if (template.isPrimaryKeyMatch()) {
+            return getDeletedCount(this.collection.deleteOne(condition, options));
+        } else {
+            return getDeletedCount(this.collection.deleteMany(condition, options));
+        }
+    }
+
+    @Override
+    public CompletionStage<Long> removeAllAsync(Query query, List<List<Object>> parameters) {
+        var template = MongoQueryTemplate.compile(query);
+        var isPrimaryKeyMatch = template.isPrimaryKeyMatch();
+        var options = new DeleteOptions().collation(template.getCollation().orElse(null));
+
+        var writes = parameters
+            .stream()
+            .map(p -> isPrimaryKeyMatch ?
+                new DeleteOneModel<T>(template.bind(p), options) :
+                new DeleteManyModel<T>(template.bind(p), options))
+            .toList();
+
+        return bulkWrite(writes).thenApply(result -> result
+            .map(BulkWriteResult::getDeletedCount)
+            .orElse(0)
+            .longValue());
+    }
+
+    @Override
+    public CompletionStage<Done> insertOrUpdateAsync(T item, Bson customQuery) {
+        var options = new ReplaceOptions().upsert(true);
+
+        return ReactiveSubscribers
+            .toOptional(this.collection.replaceOne(customQuery, item, options))
+            .thenApply(result -> {
+                snapshots.remember(item);
+                return Done.getInstance();
+            });
+    }
+
+    @Override
+    public CompletionStage<List<T>> findAllAsync(Bson customQuery) {
+        return ReactiveSubscribers.toList(this.collection.find(customQuery)).thenApply(this::remember);
+    }
+
+    @Override
+    public CompletionStage<Optional<T>> findOneAsync(Bson customQuery) {
+        return ReactiveSubscribers
+            .toOptional(this.collection.find(customQuery).first())
+            .thenApply(result -> result.map(snapshots::remember));
+    }
+
+    @Override
+    public CompletionStage<Long> countAsync(Bson customQuery) {
+        return count(customQuery, new CountOptions());
+    }
+
+    @Override
+    public CompletionStage<Boolean> existsAsync(Bson customQuery) {
+        return count(customQuery, new CountOptions().limit(1)).thenApply(count -> count > 0);
+    }
+
+    @Override
+    public CompletionStage<Long> removeAsync(Bson customQuery) {
+        return getDeletedCount(this.collection.deleteMany(customQuery));
+    }
+
+    /*
+     * Synchronous operations
+     */
+
+    @Override
+    public void insertOrUpdate(T item, Query match, List<Object> parameters) {
+        Operators.await(insertOrUpdateAsync(item, match, parameters));
+    }
+
+    @Override
+    public void insertOrUpdate(T item, Query match) {
+        insertOrUpdate(item, match, List.of());
+    }
+
+    @Override
+    public void insertOrUpdateAll(List<T> items, Query match, List<List<Object>> parameters) {
+        Operators.await(insertOrUpdateAllAsync(items, match, parameters));
+    }
+
+    @Override
+    public List<T> findAll(Query query, List<Object> parameters) {
+        return findAll(query, QueryOptions.apply(), parameters);
+    }
+
+    @Override
+    public List<T> findAll(Query query) {
+        return findAll(query, List.of());
+    }
+
+    @Override
+    public List<T> findAll(Query query, QueryOptions options, List<Object> parameters) {
+        return Operators.await(findAllAsync(query, options, parameters));
+    }
+
+    @Override
+    public Stream<T> stream(Query query, QueryOptions options, List<Object> parameters) {
+        if (options.getLimit().filter(limit -> limit == 0).isPresent()) {
+            return Stream.empty();
+        }
+
+        return ReactiveSubscribers
+            .toStream(this.find(query, options, parameters).batchSize(STREAM_BATCH_SIZE), STREAM_BATCH_SIZE);
+    }
+
+    @Override
+    public Optional<T> findOne(Query query, List<Object> parameters) {
+        return findOne(query, QueryOptions.apply(), parameters);
+    }
+
+    @Override
+    public Optional<T> findOne(Query query, QueryOptions options, List<Object> parameters) {
+        return Operators.await(findOneAsync(query, options, parameters));
+    }
+
+    @Override
+    public Optional<T> findOne(Query query) {
+        return findOne(query, List.of());
+    }
+
+    @Override
+    public long count(Query query, List<Object> parameters) {
+        return Operators.await(countAsync(query, parameters));
+    }
+
+    @Override
+    public boolean exists(Query query, List<Object> parameters) {
+        return Operators.await(existsAsync(query, parameters));
+    }
+
+    @Override
+    public long remove(Query query, List<Object> parameters) {
+        return Operators.await(removeAsync(query, parameters));
+    }
+
+    @Override
+    public long removeAll(Query query, List<List<Object>> parameters) {
+        return Operators.await(removeAllAsync(query, parameters));
+    }
+
+    @Override
+    public void insertOrUpdate(T item, Bson customQuery) {
+        Operators.await(insertOrUpdateAsync(item, customQuery));
+    }
+
+    @Override
+    public List<T> findAll(Bson customQuery) {
+        return Operators.await(findAllAsync(customQuery));
+    }
+
+    @Override
+    public Optional<T> findOne(Bson customQuery) {
+        return Operators.await(findOneAsync(customQuery));
+    }
+
+    @Override
+    public long count(Bson customQuery) {
+        return Operators.await(countAsync(customQuery));
+    }
+
+    @Override
+    public boolean exists(Bson customQuery) {
+        return Operators.await(existsAsync(customQuery));
+    }
+
+    @Override
+    public long remove(Bson customQuery) {
+        return Operators.await(removeAsync(customQuery));
+    }
+
+    /*
+     * Indexes
+     */
+
+    @Override
+    public void ensureIndex(Index index) {
+        ensureIndex(index, Optional.empty());
+    }
+
+    @Override
+    public void prepare(Query query) {
+        var template = MongoQueryTemplate.compile(query);
+
+        Queries.getIndexes(query).forEach(this::ensureIndex);
+        template.getCaseInsensitiveIndexes().forEach(index -> ensureIndex(index, template.getCollation()));
+    }
+
+    /**
+     * Creates an index asynchronously, if it has not been requested before.
+     *
+     * @param index     The index to create.
+     * @param collation The collation of the index, if other than the collection's default.
+     */
+    private void ensureIndex(Index index, Optional<Collation> collation) {
+        var keys = MongoQueryTemplate.getIndexKeys(index);
+
+        /*
+         * Mongo always maintains an index on `_id`.
+         */
+        if (!ensureIndexes || keys.isEmpty()) {
+            return;
+        }
+
+        var options = MongoQueryTemplate.getIndexOptions(keys, collation);
+        var key = Tuple2.apply(index, collation);
+        var created = new CompletableFuture<String>();
+
+        if (Objects.nonNull(indexes.putIfAbsent(key, created))) {
+            return;
+        }
+
+        ReactiveSubscribers
+            .toOptional(this.collection.createIndex(Indexes.ascending(keys), options))
+            .thenApply(name -> name.orElse(null))
+            .whenComplete((name, ex) -> {
+                if (Objects.nonNull(ex)) {
+                    LOG.warn(
+                        "Can't create index `{}` for collection `{}`.",
+                        keys, this.collection.getNamespace().getFullName(), ex
+                    );
+
+                    /*
+                     * Removed before completing, thus callers which observe the failure can request it again.
+                     */
+                    indexes.remove(key, created);
+                    created.completeExceptionally(ex);
+                } else {
+                    LOG.debug("Ensured index `{}` for collection `{}`.", name, this.collection.getNamespace());
+                    created.complete(name);
+                }
+            });
+    }
+
+    /*
+     * Helpers
+     */
+
+    /**
+     * Creates a publisher for a query; sorting and paging are executed by the database.
+     */
+    private FindPublisher<T> find(Query query, QueryOptions options, List<Object> parameters) {
+        var template = MongoQueryTemplate.compile(query);
+        var result = this.collection.find(template.bind(options, parameters));
+
+        if (template.getCollation().isPresent()) {
+            result = result.collation(template.getCollation().get());
+        }
+
+        if (MongoQueryTemplate.getSort(options).isPresent()) {
+            result = result.sort(MongoQueryTemplate.getSort(options).get());
+        }
+
+        if (options.getOffset() > 0) {
+            result = result.skip(options.getOffset());
+        }
+
+        if (options.getLimit().isPresent()) {
+            result = result.limit(options.getLimit().get());
+        }
+
+        return result;
+    }
+
+    private List<T> remember(List<T> items) {
+        items.forEach(snapshots::remember);
+        return items;
+    }
+
+    private CompletableFuture<Long> count(Bson condition, CountOptions options) {
+        return ReactiveSubscribers
+            .toOptional(this.collection.countDocuments(condition, options))
+            .thenApply(count -> count.orElse(0L));
+    }
+
+    private CompletableFuture<Long> getDeletedCount(org.reactivestreams.Publisher<DeleteResult> result) {
+        return ReactiveSubscribers
+            .toOptional(result)
+            .thenApply(deleted -> deleted.map(DeleteResult::getDeletedCount).orElse(0L));
+    }
+
+    /**
+     * Executes writes with a single round trip to the database.
+     */
+    private CompletableFuture<Optional<BulkWriteResult>> bulkWrite(List<WriteModel<T>> writes) {
+        if (writes.isEmpty()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        return ReactiveSubscribers.toOptional(
+            this.collection.bulkWrite(writes, new BulkWriteOptions().ordered(orderedBulkWrites))
+        );
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.wellnr.platform.core.persistence.mongo;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Subscribers to consume publishers of the reactive streams Mongo driver.
+ * <p>
+ * The futures returned by {@link #toList(Publisher)} and {@link #toOptional(Publisher)} are completed by the
+ * driver's callbacks, thus no thread is blocked while waiting for the database.
+ */
+final class ReactiveSubscribers {
+
+    private ReactiveSubscribers() {
+    }
+
+    /**
+     * Collects all elements of a publisher.
+     *
+     * @param publisher The publisher.
+     * @param <T>       The type of the elements.
+     * @return A future which is completed with the elements when the publisher completes.
+     */
+    public static <T> CompletableFuture<List<T>> toList(Publisher<T> publisher) {
+        var result = new CompletableFuture<List<T>>();
+
+        publisher.subscribe(new Subscriber<T>() {
+
+            /*
+             * Signals are delivered sequentially, see reactive streams spec, rule 1.3.
+             */
+            private final List<T> items = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T item) {
+                items.add(item);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                result.completeExceptionally(error);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(Collections.unmodifiableList(items));
+            }
+
+        });
+
+        return result;
+    }
+
+    /**
+     * Returns the first element of a publisher which emits at most one element (e.g. `first()`, `countDocuments`).
+     *
+     * @param publisher The publisher.
+     * @param <T>       The type of the element.
+     * @return A future which is completed with the element, if any, when the publisher completes.
+     */
+    public static <T> CompletableFuture<Optional<T>> toOptional(Publisher<T> publisher) {
+        return toList(publisher).thenApply(items -> items.stream().findFirst());
+    }
+
+    /**
+     * Returns a stream of the elements of a publisher. Elements are requested batch-wise while the stream is
+     * consumed; consuming the stream blocks until the next element is received.
+     *
+     * @param publisher The publisher.
+     * @param batchSize The number of elements which are requested at once.
+     * @param <T>       The type of the elements.
+     * @return The stream. Closing the stream cancels the subscription.
+     */
+    public static <T> Stream<T> toStream(Publisher<T> publisher, int batchSize) {
+        var subscriber = new BlockingSubscriber<T>(batchSize);
+        publisher.subscribe(subscriber);
+
+        return StreamSupport
+            .stream(Spliterators.spliteratorUnknownSize(subscriber, Spliterator.ORDERED), false)
+            .onClose(subscriber::cancel);
+    }
+
+    /**
+     * Buffers the received signals for a consuming thread.
+     */
+    private static final class BlockingSubscriber<T> implements Subscriber<T>, Iterator<T> {
+
+        private static final Object COMPLETE = new Object();
+
+        private final int batchSize;
+
+        private final BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+
+        private final CompletableFuture<Subscription> subscription = new CompletableFuture<>();
+
+        /*
+         * The following fields are only accessed by the consuming thread.
+         */
+
+        private Object next;
+
+        private int received;
+
+        private BlockingSubscriber(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription.complete(subscription);
+            subscription.request(batchSize);
+        }
+
+        @Override
+        public void onNext(T item) {
+            signals.add(item);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            signals.add(new Failure(error));
+        }
+
+        @Override
+        public void onComplete() {
+            signals.add(COMPLETE);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (Objects.isNull(next)) {
+                next = take();
+            }
+
+            if (next instanceof Failure failure) {
+                if (failure.error instanceof RuntimeException re) {
+                    throw re;
+                } else {
+                    throw new CompletionException(failure.error);
+                }
+            }
+
+            return next != COMPLETE;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            var result = (T) next;
+            next = null;
+
+            /*
+             * Request the next batch once the current batch has been received completely.
+             */
+            if (++received == batchSize) {
+                received = 0;
+                subscription.join().request(batchSize);
+            }
+
+            return result;
+        }
+
+        public void cancel() {
+            subscription.thenAccept(Subscription::cancel);
+        }
+
+        private Object take() {
+            try {
+                return signals.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }
+
+    }
+
+    private static final class Failure {
+
+        private final Throwable error;
+
+        private Failure(Throwable error) {
+            this.error = error;
+        }
+
+    }
+
+}
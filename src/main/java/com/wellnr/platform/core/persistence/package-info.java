@@ -8,7 +8,11 @@
  * language DSL so to say.
  *
  * **inmemory** contains an engine to execute queries against Java objects as well as an InMemoryRepository(-Factory)
- * to dynamically create an in-memory implementation for a repository interface.
+ * to dynamically create an in-memory implementation for a repository interface. ConcurrentInMemoryRepository creates
+ * a thread-safe variant.
+ *
+ * **embedded** contains an EmbeddedRepository(-Factory) which keeps all items in memory and persists changes in a
+ * local directory (journal and snapshots).
  *
  * Usage
  * -----
@@ -1,6 +1,7 @@
 package com.wellnr.platform.core.persistence.query;
 
 import com.wellnr.platform.common.Operators;
+import com.wellnr.platform.common.async.StreamPublisher;
 import com.wellnr.platform.common.functions.Function1;
 import com.wellnr.platform.common.tuples.Done;
 import com.wellnr.platform.common.tuples.Tuple;
@@ -10,18 +11,25 @@ import com.wellnr.platform.core.persistence.memento.HasMemento;
 import com.wellnr.platform.core.persistence.Operations;
 import com.wellnr.platform.core.persistence.memento.Mementos;
 import com.wellnr.platform.core.persistence.query.annotations.Entity;
+import com.wellnr.platform.core.persistence.query.cache.CachingQueryEngine;
+import com.wellnr.platform.core.persistence.query.cache.QueryCacheProperties;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
 import lombok.AllArgsConstructor;
 import org.apache.commons.lang3.NotImplementedException;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Abstract factory class to create repositories from query engines.
@@ -48,16 +56,16 @@ public abstract class AbstractQueryEngineRepositoryFactory<T, C> {
                         () -> entityType.getMethod("getMemento")
                     );
 
+                    var mementoType = (Class<T>) getMementoFunc.getReturnType();
+
                     return Tuple.apply(
                         entityType,
-                        createQueryEngine(
-                            entityType, (Class<T>) getMementoFunc.getReturnType()
-                        )
+                        createCachingQueryEngine(entityType, mementoType)
                     );
                 } else {
                     return Tuple.apply(
                         entityType,
-                        createQueryEngine(entityType, entityType));
+                        createCachingQueryEngine(entityType, entityType));
                 }
             })
             .collect(Collectors.toMap(Tuple2::get_1, Tuple2::get_2));
@@ -117,11 +125,19 @@ public abstract class AbstractQueryEngineRepositoryFactory<T, C> {
         }
 
         /*
-         * If method is not annotated, we search for the matching entity by name.
+         * If method is not annotated, we search for the matching entity by name. Longer names are checked first,
+         * e.g. `PurchaseOrder` before `Purchase`.
          */
-        for (var entityType : entityTypes) {
+        var byNameLength = entityTypes
+            .stream()
+            .sorted(Comparator.comparingInt((Class<T> type) -> type.getSimpleName().length()).reversed())
+            .toList();
+
+        for (var entityType : byNameLength) {
             var entityName = entityType.getSimpleName().replaceAll("y$","i");
-            var methodName = method.getName().replaceAll("y$", "i");
+            var methodName = Queries
+                .removeOptionsFromMethodName(method.getName(), entityType)
+                .replaceAll("y$", "i");
 
             var regex = MessageFormat.format(
                 "^({0}){1}(s|es)?(By[a-zA-Z0-9]+)?$",
@@ -155,57 +171,132 @@ public abstract class AbstractQueryEngineRepositoryFactory<T, C> {
     ) {
         Function1<List<Object>, Object> operation;
         var engine = collections.get(entityType);
+
+        /*
+         * Operations are executed asynchronously if the engine supports it, results are returned as
+         * `CompletionStage`.
+         */
+        var async = AsyncQueryEngine.apply(engine);
         var maybeCustomQuery = this.getCustomQueryFromMethod(method);
 
+        /*
+         * `findAll`-methods which return a `Stream` or a `Flow.Publisher` read the results lazily.
+         */
+        var isStreaming = method.getName().startsWith(Operations.FIND_ALL) && (
+            Stream.class.isAssignableFrom(method.getReturnType()) ||
+                Flow.Publisher.class.isAssignableFrom(method.getReturnType())
+        );
+
+        /*
+         * Batch operations are executed by the engine at once, each parameter is a collection.
+         */
+        var isBatch = isBatch(method);
+
+        /*
+         * `remove`-methods may return the number of removed entities.
+         */
+        Function1<Long, Object> removeResult = returnsCount(method) ? count -> count : count -> Done.getInstance();
+
         if (maybeCustomQuery.isPresent()) {
-            if (method.getName().startsWith(Operations.FIND_ALL)) {
-                operation = (args) -> engine.findAll(maybeCustomQuery.get().get(args));
+            getCustomQueryIndexesFromMethod(method).forEach(engine::ensureIndex);
+
+            if (isStreaming) {
+                operation = (args) -> engine.findAll(maybeCustomQuery.get().get(args)).stream();
+            } else if (method.getName().startsWith(Operations.FIND_ALL)) {
+                operation = (args) -> async.findAllAsync(maybeCustomQuery.get().get(args));
             } else if (method.getName().startsWith(Operations.FIND_ONE)) {
-                operation = (args) -> engine.findOne(maybeCustomQuery.get().get(args));
+                operation = (args) -> async.findOneAsync(maybeCustomQuery.get().get(args));
+            } else if (method.getName().startsWith(Operations.COUNT)) {
+                operation = (args) -> async.countAsync(maybeCustomQuery.get().get(args));
+            } else if (method.getName().startsWith(Operations.EXISTS)) {
+                operation = (args) -> async.existsAsync(maybeCustomQuery.get().get(args));
+            } else if (isBatch) {
+                throw new IllegalArgumentException(MessageFormat.format(
+                    "Method `{0}` is annotated with a custom query, but `{1}`- and `{2}`-methods do not support " +
+                        "custom queries.",
+                    method.getName(), Operations.UPSERT_ALL, Operations.REMOVE_ALL
+                ));
             } else if (method.getName().startsWith(Operations.UPSERT)) {
-                operation = (args) -> {
-                    engine.insertOrUpdate((T) args.get(0), maybeCustomQuery.get().get(args));
-                    return Done.getInstance();
-                };
+                operation = (args) -> async.insertOrUpdateAsync((T) args.get(0), maybeCustomQuery.get().get(args));
             } else if (method.getName().startsWith(Operations.REMOVE)) {
-                operation = (args) -> {
-                    engine.remove(maybeCustomQuery.get().get(args));
-                    return Done.getInstance();
-                };
+                operation = (args) -> async
+                    .removeAsync(maybeCustomQuery.get().get(args))
+                    .thenApply(removeResult::get);
             } else {
                 throw new IllegalArgumentException(MessageFormat.format(
                     "Can''t detect operation for method `{0}`. Please ensure to comply with Naming conventions." +
-                        " Methods must start with `findAll`, `findOne`, `upsert` or `remove`.",
+                        " Methods must start with `findAll`, `findOne`, `count`, `exists`, `insertOrUpdate(All)` or " +
+                        "`remove(All)`.",
                     method.getName()
                 ));
             }
         } else {
-            var query = Queries.fromMethod(method);
+            var query = QueryNormalizer.normalize(Queries.fromMethod(method, entityType));
+            var options = Queries.optionsFromMethod(method, entityType);
+            var hasOptionsParameter = Queries.getQueryParameters(method).size() < method.getParameterCount();
+
+            /*
+             * Queries derived from methods are known upfront, thus the engine can validate them and prepare indexes.
+             */
+            engine.prepare(query);
 
-            if (method.getName().startsWith(Operations.FIND_ALL)) {
-                operation = (args) -> engine.findAll(query, args);
+            /*
+             * Options passed as last parameter override the options derived from the method's name.
+             */
+            Function1<List<Object>, QueryOptions> getOptions = (args) -> {
+                if (hasOptionsParameter && args.get(args.size() - 1) instanceof QueryOptions passed) {
+                    return options.merge(passed);
+                } else {
+                    return options;
+                }
+            };
+
+            if (isStreaming) {
+                operation = (args) -> engine.stream(query, getOptions.get(args), args);
+            } else if (method.getName().startsWith(Operations.FIND_ALL)) {
+                operation = (args) -> async.findAllAsync(query, getOptions.get(args), args);
             } else if (method.getName().startsWith(Operations.FIND_ONE)) {
-                operation = (args) -> engine.findOne(query, args);
+                operation = (args) -> async.findOneAsync(query, getOptions.get(args), args);
+            } else if (method.getName().startsWith(Operations.COUNT)) {
+                operation = (args) -> async.countAsync(query, args);
+            } else if (method.getName().startsWith(Operations.EXISTS)) {
+                operation = (args) -> async.existsAsync(query, args);
+            } else if (method.getName().startsWith(Operations.UPSERT_ALL)) {
+                /*
+                 * The query is bound to each item, like the query of a single `insertOrUpdate`.
+                 */
+                operation = (args) -> {
+                    var items = getBatchParameters(method, args);
+                    var mementos = items
+                        .stream()
+                        .map(p -> p.get(0) instanceof HasMemento<?> hasMemento ? hasMemento.getMemento() : p.get(0))
+                        .map(item -> (T) item)
+                        .toList();
+
+                    return async.insertOrUpdateAllAsync(mementos, query, items);
+                };
             } else if (method.getName().startsWith(Operations.UPSERT)) {
                 operation = (args) -> {
                     if (args.get(0) instanceof HasMemento<?> hasMemento) {
                         var memento = hasMemento.getMemento();
-                        engine.insertOrUpdate((T) memento, query, args);
+                        return async.insertOrUpdateAsync((T) memento, query, args);
                     } else {
-                        engine.insertOrUpdate((T) args.get(0), query, args);
+                        return async.insertOrUpdateAsync((T) args.get(0), query, args);
                     }
-
-                    return Done.getInstance();
                 };
+            } else if (method.getName().startsWith(Operations.REMOVE_ALL)) {
+                operation = (args) -> async
+                    .removeAllAsync(query, getBatchParameters(method, args))
+                    .thenApply(removeResult::get);
             } else if (method.getName().startsWith(Operations.REMOVE)) {
-                operation = (args) -> {
-                    engine.remove(query, args);
-                    return Done.getInstance();
-                };
+                operation = (args) -> async
+                    .removeAsync(query, args)
+                    .thenApply(removeResult::get);
             } else {
                 throw new IllegalArgumentException(MessageFormat.format(
                     "Can''t detect operation for method `{0}`. Please ensure to comply with Naming conventions." +
-                        " Methods must start with `findAll`, `findOne`, `upsert` or `remove`.",
+                        " Methods must start with `findAll`, `findOne`, `count`, `exists`, `insertOrUpdate(All)` or " +
+                        "`remove(All)`.",
                     method.getName()
                 ));
             }
@@ -223,7 +314,22 @@ public abstract class AbstractQueryEngineRepositoryFactory<T, C> {
 
             Function1<Object, CompletionStage<?>> transformResult = CompletableFuture::completedFuture;
 
-            if (method.getName().startsWith(Operations.FIND_ALL)) {
+            if (isStreaming) {
+                // Entities are created one by one while the stream is consumed.
+                transformResult = r -> {
+                    if (r instanceof Stream<?> stream) {
+                        return CompletableFuture.completedFuture(stream.map(memento ->
+                            createFromMemento.get(ctx, memento).toCompletableFuture().join()
+                        ));
+                    } else {
+                        throw new IllegalArgumentException(MessageFormat.format(
+                            "Streaming `{0}`-Methods must return `Stream<T>` or `Flow.Publisher<T>`, but `{1}` " +
+                                "does not.",
+                            Operations.FIND_ALL, method.getName()
+                        ));
+                    }
+                };
+            } else if (method.getName().startsWith(Operations.FIND_ALL)) {
                 // Method must return a list.
                 transformResult = r -> {
                     if (r instanceof List<?> l) {
@@ -299,7 +405,24 @@ public abstract class AbstractQueryEngineRepositoryFactory<T, C> {
                 args = new Object[]{};
             }
 
-            var result = operationFinal.get(Arrays.stream(args).toList());
+            var argsList = Arrays.stream(args).toList();
+
+            /*
+             * Publishers open a new stream for each subscriber.
+             */
+            if (Flow.Publisher.class.isAssignableFrom(method.getReturnType())) {
+                return StreamPublisher.apply(() -> {
+                    var result = operationFinal.get(argsList);
+
+                    if (result instanceof CompletionStage<?> resultCS) {
+                        return (Stream<Object>) resultCS.toCompletableFuture().get();
+                    } else {
+                        return (Stream<Object>) result;
+                    }
+                });
+            }
+
+            var result = operationFinal.get(argsList);
 
             /*
              * Match the result type to the method return type (CompletionStage vs. immediate response).
@@ -307,7 +430,11 @@ public abstract class AbstractQueryEngineRepositoryFactory<T, C> {
             if ((result instanceof CompletionStage<?> resultCS) && method.getReturnType().isAssignableFrom(CompletionStage.class)) {
                 return resultCS;
             } else if (result instanceof CompletionStage<?> resultCS) {
-                return resultCS.toCompletableFuture().get();
+                try {
+                    return resultCS.toCompletableFuture().join();
+                } catch (CompletionException e) {
+                    throw Objects.requireNonNullElse(e.getCause(), e);
+                }
             } else if (method.getReturnType().isAssignableFrom(CompletionStage.class)) {
                 return CompletableFuture.completedFuture(result);
             } else {
@@ -316,6 +443,86 @@ public abstract class AbstractQueryEngineRepositoryFactory<T, C> {
         };
     }
 
+    /**
+     * Checks whether a method is a batch operation. The parameters of batch operations must be collections.
+     *
+     * @param method The method to check.
+     * @return True, if the method is a batch operation.
+     */
+    private static boolean isBatch(Method method) {
+        var isBatch = method.getName().startsWith(Operations.UPSERT_ALL) ||
+            method.getName().startsWith(Operations.REMOVE_ALL);
+
+        if (isBatch && !Arrays.stream(method.getParameterTypes()).allMatch(Collection.class::isAssignableFrom)) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "All parameters of `{0}`- and `{1}`-methods must be collections, but `{2}` has other parameters.",
+                Operations.UPSERT_ALL, Operations.REMOVE_ALL, method.getName()
+            ));
+        }
+
+        return isBatch;
+    }
+
+    /**
+     * Transposes the collections passed to a batch operation into the parameters of each operation of the batch,
+     * e.g. `[[a1, a2], [b1, b2]]` into `[[a1, b1], [a2, b2]]`.
+     *
+     * @param method The batch method.
+     * @param args   The arguments passed to the method.
+     * @return The parameters of each operation.
+     */
+    private static List<List<Object>> getBatchParameters(Method method, List<Object> args) {
+        var collections = args
+            .stream()
+            .map(arg -> (List<Object>) new ArrayList<Object>((Collection<?>) arg))
+            .toList();
+
+        var size = collections.isEmpty() ? 0 : collections.get(0).size();
+
+        if (collections.stream().anyMatch(collection -> collection.size() != size)) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "All collections passed to `{0}` must have the same size.",
+                method.getName()
+            ));
+        }
+
+        var parameters = new ArrayList<List<Object>>(size);
+
+        for (var i = 0; i < size; i++) {
+            var index = i;
+            parameters.add(collections.stream().<Object>map(collection -> collection.get(index)).toList());
+        }
+
+        return parameters;
+    }
+
+    /**
+     * Checks whether a method returns a count, i.e. `long`, `Long` or `CompletionStage<Long>`.
+     *
+     * @param method The method to check.
+     * @return True, if the method returns a count.
+     */
+    private static boolean returnsCount(Method method) {
+        if (method.getReturnType().equals(long.class) || method.getReturnType().equals(Long.class)) {
+            return true;
+        }
+
+        return method.getGenericReturnType() instanceof ParameterizedType type &&
+            CompletionStage.class.isAssignableFrom(method.getReturnType()) &&
+            type.getActualTypeArguments()[0].equals(Long.class);
+    }
+
+    /**
+     * Creates the query engine for an entity type, wrapped with a cache if enabled for the entity type.
+     */
+    private QueryEngine<T, C> createCachingQueryEngine(Class<T> entityType, Class<T> mementoType) {
+        var engine = createQueryEngine(entityType, mementoType);
+
+        return getQueryCacheProperties(entityType)
+            .<QueryEngine<T, C>>map(properties -> CachingQueryEngine.apply(engine, mementoType, properties))
+            .orElse(engine);
+    }
+
     /**
      * This method is called to create an instance of the query engine which is used to store/ query entities
      * for a specific types managed by the repository.
@@ -344,4 +551,31 @@ public abstract class AbstractQueryEngineRepositoryFactory<T, C> {
         return Optional.empty();
     }
 
+    /**
+     * This method might be overwritten by children, if custom queries may declare the indexes they need.
+     * <p>
+     * The indexes of queries derived from method names are detected automatically, see
+     * {@link Queries#getIndexes(com.wellnr.platform.core.persistence.query.filter.Query)}. Custom queries are
+     * opaque to the factory, thus their indexes must be declared explicitly.
+     *
+     * @param m The method to be analyzed, annotated with a custom query.
+     * @return The indexes which should be ensured for the custom query.
+     */
+    @SuppressWarnings("unused")
+    protected List<Index> getCustomQueryIndexesFromMethod(Method m) {
+        return List.of();
+    }
+
+    /**
+     * This method might be overwritten by children, if results of queries for an entity type should be cached,
+     * see {@link CachingQueryEngine}.
+     *
+     * @param entityType The type of the entity managed by the repository.
+     * @return The configuration of the cache; none, if results should not be cached (default).
+     */
+    @SuppressWarnings("unused")
+    protected Optional<QueryCacheProperties> getQueryCacheProperties(Class<T> entityType) {
+        return Optional.empty();
+    }
+
 }
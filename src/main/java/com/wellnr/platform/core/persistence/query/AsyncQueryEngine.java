@@ -0,0 +1,170 @@
+package com.wellnr.platform.core.persistence.query;
+
+import com.wellnr.platform.common.tuples.Done;
+import com.wellnr.platform.core.persistence.query.filter.Query;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The asynchronous operations of a {@link QueryEngine}, see the corresponding operations of {@link QueryEngine}
+ * for details.
+ * <p>
+ * Engines which execute operations without blocking the calling thread (e.g. based on a non-blocking database
+ * driver) implement this interface in addition to {@link QueryEngine}. The returned stages complete when the
+ * database responded, thus no thread is blocked while an operation is pending. Other engines are adapted with
+ * {@link #apply(QueryEngine)}, their operations are executed synchronously and return completed stages.
+ * <p>
+ * {@link AbstractQueryEngineRepositoryFactory} executes all operations of repositories through this interface.
+ *
+ * @param <T> The type of the items stored within the engine.
+ * @param <C> The type of custom queries.
+ */
+public interface AsyncQueryEngine<T, C> {
+
+    /**
+     * Returns the asynchronous operations of an engine.
+     *
+     * @param engine The engine.
+     * @param <T>    The type of the items stored within the engine.
+     * @param <C>    The type of custom queries.
+     * @return The engine itself, if it implements {@link AsyncQueryEngine}; otherwise an adapter which executes
+     * the operations synchronously.
+     */
+    @SuppressWarnings("unchecked")
+    static <T, C> AsyncQueryEngine<T, C> apply(QueryEngine<T, C> engine) {
+        if (engine instanceof AsyncQueryEngine<?, ?> async) {
+            return (AsyncQueryEngine<T, C>) async;
+        } else {
+            return SyncQueryEngineAdapter.apply(engine);
+        }
+    }
+
+    /**
+     * See {@link QueryEngine#insertOrUpdate(Object, Query, List)}.
+     *
+     * @param item       The item to be inserted/ updated.
+     * @param match      The query to identify the matching item to be updated if present.
+     * @param parameters The list of parameters which might be referenced in match.
+     * @return Done, when the item has been written.
+     */
+    CompletionStage<Done> insertOrUpdateAsync(T item, Query match, List<Object> parameters);
+
+    /**
+     * See {@link QueryEngine#insertOrUpdateAll(List, Query, List)}.
+     *
+     * @param items      The items to be inserted/ updated.
+     * @param match      The query to identify the matching item to be updated if present.
+     * @param parameters The parameters of each item which might be referenced in match.
+     * @return Done, when the items have been written.
+     */
+    CompletionStage<Done> insertOrUpdateAllAsync(List<T> items, Query match, List<List<Object>> parameters);
+
+    /**
+     * See {@link QueryEngine#findAll(Query, QueryOptions, List)}.
+     *
+     * @param query      The query to filter entities.
+     * @param options    Sorting and paging of the results.
+     * @param parameters Parameters which may be referenced in the query and the options.
+     * @return The list of results.
+     */
+    CompletionStage<List<T>> findAllAsync(Query query, QueryOptions options, List<Object> parameters);
+
+    /**
+     * See {@link QueryEngine#findOne(Query, QueryOptions, List)}.
+     *
+     * @param query      The query to filter entities.
+     * @param options    Sorting and paging of the results.
+     * @param parameters Parameters which may be referenced in the query and the options.
+     * @return The first result, if any.
+     */
+    CompletionStage<Optional<T>> findOneAsync(Query query, QueryOptions options, List<Object> parameters);
+
+    /**
+     * See {@link QueryEngine#count(Query, List)}.
+     *
+     * @param query      The query to filter entities.
+     * @param parameters Parameters which may be referenced in the query.
+     * @return The number of matches.
+     */
+    CompletionStage<Long> countAsync(Query query, List<Object> parameters);
+
+    /**
+     * See {@link QueryEngine#exists(Query, List)}.
+     *
+     * @param query      The query to filter entities.
+     * @param parameters Parameters which may be referenced in the query.
+     * @return True, if a match exists.
+     */
+    CompletionStage<Boolean> existsAsync(Query query, List<Object> parameters);
+
+    /**
+     * See {@link QueryEngine#remove(Query, List)}.
+     *
+     * @param query      The query to find items to be deleted.
+     * @param parameters Parameters which may be referenced in the query.
+     * @return The number of removed entities.
+     */
+    CompletionStage<Long> removeAsync(Query query, List<Object> parameters);
+
+    /**
+     * See {@link QueryEngine#removeAll(Query, List)}.
+     *
+     * @param query      The query to find items to be deleted.
+     * @param parameters The sets of parameters which may be referenced in the query.
+     * @return The number of removed entities.
+     */
+    CompletionStage<Long> removeAllAsync(Query query, List<List<Object>> parameters);
+
+    /**
+     * See {@link QueryEngine#insertOrUpdate(Object, Object)}.
+     *
+     * @param item        The item to be inserted/ updated.
+     * @param customQuery A custom query.
+     * @return Done, when the item has been written.
+     */
+    CompletionStage<Done> insertOrUpdateAsync(T item, C customQuery);
+
+    /**
+     * See {@link QueryEngine#findAll(Object)}.
+     *
+     * @param customQuery A custom query.
+     * @return The result of the query.
+     */
+    CompletionStage<List<T>> findAllAsync(C customQuery);
+
+    /**
+     * See {@link QueryEngine#findOne(Object)}.
+     *
+     * @param customQuery A custom query.
+     * @return The result of the query.
+     */
+    CompletionStage<Optional<T>> findOneAsync(C customQuery);
+
+    /**
+     * See {@link QueryEngine#count(Object)}.
+     *
+     * @param customQuery A custom query.
+     * @return The number of matches.
+     */
+    CompletionStage<Long> countAsync(C customQuery);
+
+    /**
+     * See {@link QueryEngine#exists(Object)}.
+     *
+     * @param customQuery A custom query.
+     * @return True, if a match exists.
+     */
+    CompletionStage<Boolean> existsAsync(C customQuery);
+
+    /**
+     * See {@link QueryEngine#remove(Object)}.
+     *
+     * @param customQuery A custom query.
+     * @return The number of removed entities.
+     */
+    CompletionStage<Long> removeAsync(C customQuery);
+
+}
@@ -0,0 +1,35 @@
+package com.wellnr.platform.core.persistence.query;
+
+import com.wellnr.platform.core.persistence.query.values.Field;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Describes an index over one or more fields of an entity. An index with multiple fields is a compound index,
+ * it can be used for queries which check all of its fields for equality.
+ * <p>
+ * Indexes are derived from queries with {@link Queries#getIndexes(com.wellnr.platform.core.persistence.query.filter.Query)}
+ * and registered at a {@link QueryEngine} with {@link QueryEngine#ensureIndex(Index)}.
+ */
+@lombok.Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class Index {
+
+    List<Field> fields;
+
+    public static Index apply(List<Field> fields) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("An index must contain at least one field.");
+        }
+
+        return new Index(List.copyOf(fields));
+    }
+
+    public static Index apply(Field... fields) {
+        return apply(Arrays.stream(fields).toList());
+    }
+
+}
@@ -7,16 +7,33 @@ import com.wellnr.platform.core.persistence.query.annotations.CustomQuery;
 import com.wellnr.platform.core.persistence.query.annotations.GUID;
 import com.wellnr.platform.core.persistence.query.annotations.Path;
 import com.wellnr.platform.core.persistence.query.filter.*;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
+import com.wellnr.platform.core.persistence.query.options.Sort;
 import com.wellnr.platform.core.persistence.query.values.*;
 import org.apache.commons.text.CaseUtils;
 
+import javax.annotation.Nullable;
 import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
 import java.text.MessageFormat;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class Queries {
 
+    /**
+     * Splits a method name into the query part and the optional sorting and paging options. The pattern is applied
+     * to the part of the name after the entity's name if the entity is known, see {@link #matchOptions(String, Class)}.
+     */
+    private static final Pattern OPTIONS_PATTERN = Pattern.compile(
+        "^(?<query>.*?)(OrderBy(?<sort>[A-Z][a-zA-Z0-9]*?))?(Top(?<limit>\\d+))?$"
+    );
+
     private Queries() {
 
     }
@@ -45,6 +62,10 @@ public class Queries {
         return Equals.apply(value);
     }
 
+    public static IsIn isIn(Value... values) {
+        return IsIn.apply(Arrays.stream(values).toList());
+    }
+
     public static Or or(Query... query) {
         return Or.apply(Arrays.stream(query).toList());
     }
@@ -61,6 +82,127 @@ public class Queries {
         return StaticValue.apply(value);
     }
 
+    public static Sort asc(String selector) {
+        return Sort.apply($(selector), Sort.Direction.ASC);
+    }
+
+    public static Sort desc(String selector) {
+        return Sort.apply($(selector), Sort.Direction.DESC);
+    }
+
+    public static QueryOptions orderBy(Sort... sort) {
+        return QueryOptions.apply().withSort(Arrays.stream(sort).toList());
+    }
+
+    /**
+     * Derives the indexes which support a query. The rules are:
+     * <p>
+     * * `match($("field"), eq(value))` is supported by a single field index on `field`.
+     * * `and(...)` is supported by a compound index over all fields which are matched for equality within
+     * the conjunction.
+     * * `or(...)` is supported by the indexes of its branches.
+     * <p>
+     * Only values which do not depend on the matched item (parameters or static values) are considered, as
+     * the index key must be computable before the items are visited.
+     *
+     * @param query The query to analyze.
+     * @return The list of indexes which may be used to answer the query, might be empty.
+     */
+    public static List<Index> getIndexes(Query query) {
+        if (query instanceof Match match) {
+            return getIndexedField(match)
+                .or(() -> getIndexedFieldOfIsIn(match))
+                .map(field -> List.of(Index.apply(field)))
+                .orElseGet(List::of);
+        } else if (query instanceof And and) {
+            var fields = and
+                .getFilters()
+                .stream()
+                .filter(Match.class::isInstance)
+                .map(Match.class::cast)
+                .map(Queries::getIndexedField)
+                .flatMap(Optional::stream)
+                .distinct()
+                .toList();
+
+            if (fields.isEmpty()) {
+                return and
+                    .getFilters()
+                    .stream()
+                    .flatMap(q -> getIndexes(q).stream())
+                    .distinct()
+                    .toList();
+            } else {
+                return List.of(Index.apply(fields));
+            }
+        } else if (query instanceof Or or) {
+            return or
+                .getFilters()
+                .stream()
+                .flatMap(q -> getIndexes(q).stream())
+                .distinct()
+                .toList();
+        } else {
+            return List.of();
+        }
+    }
+
+    /**
+     * Returns the field of a match expression if the field is compared for equality with a value which
+     * can be resolved without accessing the matched item.
+     *
+     * @param match The match expression.
+     * @return The field which can be indexed, if any.
+     */
+    public static Optional<Field> getIndexedField(Match match) {
+        if (
+            match.getSelector() instanceof Field field &&
+                match.getQuery() instanceof Equals equals &&
+                !referencesItem(equals.getValue())
+        ) {
+            return Optional.of(field);
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the field of a match expression if the field is compared with a list of values (see
+     * {@link QueryNormalizer}), which can be resolved without accessing the matched item.
+     *
+     * @param match The match expression.
+     * @return The field or empty.
+     */
+    private static Optional<Field> getIndexedFieldOfIsIn(Match match) {
+        if (
+            match.getSelector() instanceof Field field &&
+                match.getQuery() instanceof IsIn isIn &&
+                isIn.getValues().stream().noneMatch(Queries::referencesItem)
+        ) {
+            return Optional.of(field);
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Checks whether the value needs to access the queried item to be resolved.
+     *
+     * @param value The value to check.
+     * @return True if the value contains a {@link Field} selector which is applied to the item.
+     */
+    public static boolean referencesItem(Value value) {
+        if (value instanceof Field) {
+            return true;
+        } else if (value instanceof Select select) {
+            return referencesItem(select.getValue());
+        } else if (value instanceof Uppercase uppercase) {
+            return referencesItem(uppercase.getValue());
+        } else {
+            return false;
+        }
+    }
+
     /**
      * Creates a query from the methods name.
      * <p>
@@ -69,7 +211,7 @@ public class Queries {
      * ```
      * <p>
      * Where
-     * * `QUERY_TYPE` is `findAll|findOne|insertOrUpdate|remove`.
+     * * `QUERY_TYPE` is `findAll|findOne|count|exists|insertOrUpdate(All)|remove(All)`.
      * * `ENTITY_NAME` is the class name of the result type which should be returned.
      * * `QUERY_STRING` is the query string which is parsed by this method.
      * <p>
@@ -78,11 +220,26 @@ public class Queries {
      * ```
      * ${FIELD_NAME}((And|Or)${OTHER_FIELD_NAME})*
      * ```
+     * <p>
+     * The name might be followed by sorting and paging options, see {@link #optionsFromMethod(Method)}.
      *
      * @param method The method which should be parsed.
      * @return The query parsed from the method.
      */
     public static Query fromMethod(Method method) {
+        return fromMethod(method, null);
+    }
+
+    /**
+     * Creates a query from the methods name, see {@link #fromMethod(Method)}. Sorting and paging options are only
+     * searched after the name of the entity, thus the entity's name may contain `OrderBy`, e.g.
+     * `findAllPurchaseOrderByCustomer` for entity `PurchaseOrder`.
+     *
+     * @param method     The method which should be parsed.
+     * @param entityType The type of the entity the method refers to, if known.
+     * @return The query parsed from the method.
+     */
+    public static Query fromMethod(Method method, @Nullable Class<?> entityType) {
         /*
          * Check if method has @Query annotation.
          */
@@ -109,20 +266,158 @@ public class Queries {
         }
 
         /*
-         * Generate queries for read/ delete methods.
+         * Generate queries for read/ count/ delete methods.
          * Reading method pass only query parameters.
          */
         if (
             method.getName().startsWith(Operations.FIND_ALL) ||
                 method.getName().startsWith(Operations.FIND_ONE) ||
+                method.getName().startsWith(Operations.COUNT) ||
+                method.getName().startsWith(Operations.EXISTS) ||
                 method.getName().startsWith(Operations.REMOVE)
         ) {
-            return fromReadMethod(method);
+            return fromReadMethod(method, entityType);
         } else {
             return fromInsertMethod(method);
         }
     }
 
+    /**
+     * Creates sorting and paging options from the method's name. The options are defined as suffix of the
+     * method's name:
+     * <p>
+     * ```
+     * {QUERY_TYPE}{ENTITY_NAME}By{QUERY_STRING}OrderBy{SORT_STRING}Top{LIMIT}
+     * ```
+     * <p>
+     * Both parts are optional. The `SORT_STRING` has the form `${FIELD_NAME}(Asc|Desc)?(And${FIELD_NAME}(Asc|Desc)?)*`,
+     * e.g. `findAllRegisteredUsersByUsernameOrderByDisplayNameDescAndGUIDTop50`.
+     * <p>
+     * If the last parameter of the method is of type {@link QueryOptions}, the options passed by the caller are
+     * combined with the options from the name, see {@link QueryOptions#merge(QueryOptions)}.
+     *
+     * @param method The method which should be parsed.
+     * @return The options parsed from the method, might be empty.
+     */
+    public static QueryOptions optionsFromMethod(Method method) {
+        return optionsFromMethod(method, null);
+    }
+
+    /**
+     * Creates sorting and paging options from the method's name, see {@link #optionsFromMethod(Method)}. The
+     * options are only searched after the name of the entity, see {@link #fromMethod(Method, Class)}.
+     *
+     * @param method     The method which should be parsed.
+     * @param entityType The type of the entity the method refers to, if known.
+     * @return The options parsed from the method, might be empty.
+     */
+    public static QueryOptions optionsFromMethod(Method method, @Nullable Class<?> entityType) {
+        var matcher = matchOptions(method.getName(), entityType);
+
+        if (!matcher.matches()) {
+            return QueryOptions.apply();
+        }
+
+        var options = QueryOptions.apply();
+
+        if (Objects.nonNull(matcher.group("sort"))) {
+            var sort = Arrays
+                .stream(matcher.group("sort").split("And"))
+                .map(part -> {
+                    if (part.endsWith("Desc")) {
+                        return Sort.apply(
+                            $(decapitalize(part.substring(0, part.length() - 4))), Sort.Direction.DESC
+                        );
+                    } else if (part.endsWith("Asc")) {
+                        return Sort.apply($(decapitalize(part.substring(0, part.length() - 3))), Sort.Direction.ASC);
+                    } else {
+                        return Sort.apply($(decapitalize(part)), Sort.Direction.ASC);
+                    }
+                })
+                .toList();
+
+            options = options.withSort(sort);
+        }
+
+        if (Objects.nonNull(matcher.group("limit"))) {
+            options = options.withLimit(Integer.parseInt(matcher.group("limit")));
+        }
+
+        return options;
+    }
+
+    /**
+     * Removes sorting and paging options (see {@link #optionsFromMethod(Method)}) from a method name.
+     *
+     * @param methodName The name of a repository method.
+     * @return The name without options.
+     */
+    public static String removeOptionsFromMethodName(String methodName) {
+        return removeOptionsFromMethodName(methodName, null);
+    }
+
+    /**
+     * Removes sorting and paging options from a method name; options are only searched after the name of the
+     * entity, see {@link #fromMethod(Method, Class)}.
+     *
+     * @param methodName The name of a repository method.
+     * @param entityType The type of the entity the method refers to, if known.
+     * @return The name without options.
+     */
+    public static String removeOptionsFromMethodName(String methodName, @Nullable Class<?> entityType) {
+        var matcher = matchOptions(methodName, entityType);
+
+        if (matcher.matches()) {
+            return methodName.substring(0, matcher.end("query"));
+        } else {
+            return methodName;
+        }
+    }
+
+    /**
+     * Matches {@link #OPTIONS_PATTERN} against the part of a method name after the entity's name (or its plural
+     * stem, e.g. `Categor` for `Category`), if the entity is known and its name is part of the method name.
+     */
+    private static Matcher matchOptions(String methodName, @Nullable Class<?> entityType) {
+        var matcher = OPTIONS_PATTERN.matcher(methodName);
+
+        if (Objects.nonNull(entityType)) {
+            var stem = entityType.getSimpleName().replaceAll("y$", "");
+            var index = methodName.indexOf(stem);
+
+            if (index >= 0) {
+                matcher.region(index + stem.length(), methodName.length());
+            }
+        }
+
+        return matcher;
+    }
+
+    /**
+     * Returns the parameters of a method which are referenced by the query derived from the method's name.
+     * A trailing parameter of type {@link QueryOptions} is not part of the query.
+     *
+     * @param method The method to analyze.
+     * @return The query parameters.
+     */
+    public static List<Parameter> getQueryParameters(Method method) {
+        var parameters = Arrays.asList(method.getParameters());
+
+        if (!parameters.isEmpty() && parameters.get(parameters.size() - 1).getType().equals(QueryOptions.class)) {
+            return parameters.subList(0, parameters.size() - 1);
+        } else {
+            return parameters;
+        }
+    }
+
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(0)) && Character.isUpperCase(name.charAt(1))) {
+            return name;
+        } else {
+            return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+        }
+    }
+
     private static Query fromInsertMethod(Method method) {
         if (method.getParameters().length != 1) {
             throw new IllegalArgumentException(MessageFormat.format(
@@ -132,6 +427,7 @@ public class Queries {
         }
 
         var maybeGUIDDefinition = Optional.ofNullable(method.getParameters()[0].getAnnotation(GUID.class));
+        var insertedType = getInsertedType(method);
 
         if (maybeGUIDDefinition.isPresent()) {
             var guidDef = maybeGUIDDefinition.get();
@@ -160,12 +456,12 @@ public class Queries {
              */
 
             var maybeGUID = Arrays
-                .stream(method.getParameters()[0].getType().getFields())
+                .stream(insertedType.getFields())
                 .filter(m -> m.getName().equalsIgnoreCase("guid"))
                 .findFirst();
 
             var maybeGUIDGetter = Arrays
-                .stream(method.getParameters()[0].getType().getMethods())
+                .stream(insertedType.getMethods())
                 .filter(m -> m.getName().equalsIgnoreCase("getGUID"))
                 .findFirst();
 
@@ -173,7 +469,7 @@ public class Queries {
                 throw new IllegalArgumentException((MessageFormat.format(
                     "The entity does not contain a GUID field. Either add a GUID field to the entity `{0}` or " +
                         "manually specify a GUID using @GUID annotation.",
-                    method.getParameters()[0].getType().getName()
+                    insertedType.getName()
                 )));
             }
 
@@ -184,11 +480,33 @@ public class Queries {
         }
     }
 
-    private static Query fromReadMethod(Method method) {
+    /**
+     * Returns the type of the inserted entities; the element type of the collection passed to
+     * `insertOrUpdateAll`-methods, or the type of the parameter of `insertOrUpdate`-methods.
+     *
+     * @param method The insertion method.
+     * @return The type of the inserted entities.
+     */
+    private static Class<?> getInsertedType(Method method) {
+        var parameter = method.getParameters()[0];
+
+        if (
+            method.getName().startsWith(Operations.UPSERT_ALL) &&
+                parameter.getParameterizedType() instanceof ParameterizedType type &&
+                type.getActualTypeArguments()[0] instanceof Class<?> elementType
+        ) {
+            return elementType;
+        } else {
+            return parameter.getType();
+        }
+    }
+
+    private static Query fromReadMethod(Method method, @Nullable Class<?> entityType) {
         /*
          * Get `By` part of method.
          */
-        var parts = method.getName().split("By");
+        var parts = removeOptionsFromMethodName(method.getName(), entityType).split("By");
+        var parameters = getQueryParameters(method);
 
         if (parts.length < 2) {
             // No By Part defined.
@@ -224,16 +542,16 @@ public class Queries {
                     currentOperation = queryPart;
                 }
             } else {
-                if (method.getParameters().length < parametersCount) {
+                if (parameters.size() <= parametersCount) {
                     throw new IllegalArgumentException(MessageFormat.format(
                         "Method `{0}` is not compatible with the query defined from its name. The query expects at " +
                             "least `{1}` parameters.",
-                        method.getName(), parametersCount
+                        method.getName(), parametersCount + 1
                     ));
                 }
 
                 var pathAnnotation = Optional.ofNullable(
-                    method.getParameters()[parametersCount].getAnnotation(Path.class)
+                    parameters.get(parametersCount).getAnnotation(Path.class)
                 );
 
                 if (pathAnnotation.isPresent()) {
@@ -259,11 +577,11 @@ public class Queries {
         /*
          * Check parameter count.
          */
-        if (method.getParameters().length != parametersCount) {
+        if (parameters.size() != parametersCount) {
             throw new IllegalArgumentException(MessageFormat.format(
                 "Method `{0}` is not compatible with the query defined from its name. The query expects `{1}` " +
                     "parameter(s), but the method has `{2}`.",
-                method.getName(), parametersCount, method.getParameters().length
+                method.getName(), parametersCount, parameters.size()
             ));
         }
 
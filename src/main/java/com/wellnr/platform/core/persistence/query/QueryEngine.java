@@ -1,9 +1,11 @@
 package com.wellnr.platform.core.persistence.query;
 
 import com.wellnr.platform.core.persistence.query.filter.Query;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface QueryEngine<T, C> {
 
@@ -33,6 +35,27 @@ public interface QueryEngine<T, C> {
         insertOrUpdate(item, match, List.of());
     }
 
+    /**
+     * Inserts or updates multiple instances in a single batch.
+     * <p>
+     * The default implementation calls {@link #insertOrUpdate(Object, Query, List)} for each item. Engines should
+     * override it to apply the batch at once, e.g. with a single round trip to the database.
+     *
+     * @param items      The items to be inserted/ updated.
+     * @param match      The query to identify the matching item to be updated if present.
+     * @param parameters The parameters of each item which might be referenced in match, `parameters.get(i)`
+     *                   belongs to `items.get(i)`.
+     */
+    default void insertOrUpdateAll(
+        List<T> items,
+        Query match,
+        List<List<Object>> parameters
+    ) {
+        for (var i = 0; i < items.size(); i++) {
+            insertOrUpdate(items.get(i), match, parameters.get(i));
+        }
+    }
+
     /**
      * Find all matches of the query within the database.
      *
@@ -52,6 +75,53 @@ public interface QueryEngine<T, C> {
         return findAll(query, List.of());
     }
 
+    /**
+     * Find all matches of the query within the database, sorted and paged as defined by the options.
+     * <p>
+     * The default implementation applies the options to the complete result of
+     * {@link #findAll(Query, List)}. Engines should override it to apply the options while executing the query.
+     *
+     * @param query      The query to filter entities.
+     * @param options    Sorting and paging of the results.
+     * @param parameters Parameters which may be referenced in the query and the options.
+     * @return The list of results.
+     */
+    default List<T> findAll(Query query, QueryOptions options, List<Object> parameters) {
+        if (options.isEmpty()) {
+            return findAll(query, parameters);
+        } else {
+            return options.select(findAll(query, parameters).stream(), parameters);
+        }
+    }
+
+    /**
+     * Find all matches of the query within the database and return them as a stream. In contrast to
+     * {@link #findAll(Query, QueryOptions, List)}, engines may read the results lazily while the stream is consumed.
+     * The stream must be closed by the caller to release resources (e.g. database cursors).
+     * <p>
+     * The default implementation returns the result of {@link #findAll(Query, QueryOptions, List)}.
+     *
+     * @param query      The query to filter entities.
+     * @param options    Sorting and paging of the results.
+     * @param parameters Parameters which may be referenced in the query and the options.
+     * @return The results.
+     */
+    default Stream<T> stream(Query query, QueryOptions options, List<Object> parameters) {
+        return findAll(query, options, parameters).stream();
+    }
+
+    /**
+     * Find all matches of the query within the database and return them as a stream,
+     * see {@link #stream(Query, QueryOptions, List)}.
+     *
+     * @param query      The query to filter entities.
+     * @param parameters Parameters which may be referenced in the query.
+     * @return The results.
+     */
+    default Stream<T> stream(Query query, List<Object> parameters) {
+        return stream(query, QueryOptions.apply(), parameters);
+    }
+
     /**
      * Find at most one match of the query within the database.
      *
@@ -61,6 +131,22 @@ public interface QueryEngine<T, C> {
      */
     Optional<T> findOne(Query query, List<Object> parameters);
 
+    /**
+     * Find the first match of the query within the database, sorted and paged as defined by the options.
+     *
+     * @param query      The query to filter entities.
+     * @param options    Sorting and paging of the results.
+     * @param parameters Parameters which may be referenced in the query and the options.
+     * @return The first result, if any.
+     */
+    default Optional<T> findOne(Query query, QueryOptions options, List<Object> parameters) {
+        if (options.isEmpty()) {
+            return findOne(query, parameters);
+        } else {
+            return findAll(query, options.withLimit(1), parameters).stream().findFirst();
+        }
+    }
+
     /**
      * Find at most one match of the query within the database.
      *
@@ -71,21 +157,130 @@ public interface QueryEngine<T, C> {
         return findOne(query, List.of());
     }
 
+    /**
+     * Count all matches of the query within the database.
+     * <p>
+     * The default implementation counts the results of {@link #findAll(Query, List)}. Engines should override
+     * it to count the matches without reading (and deserializing) them.
+     *
+     * @param query      The query to filter entities.
+     * @param parameters Parameters which may be referenced in the query.
+     * @return The number of matches.
+     */
+    default long count(Query query, List<Object> parameters) {
+        return findAll(query, parameters).size();
+    }
+
+    /**
+     * Count all matches of the query within the database.
+     *
+     * @param query The query to filter entities.
+     * @return The number of matches.
+     */
+    default long count(Query query) {
+        return count(query, List.of());
+    }
+
+    /**
+     * Check whether the database contains at least one match of the query.
+     * <p>
+     * The default implementation checks the result of {@link #findOne(Query, List)}. Engines should override
+     * it to check for a match without reading (and deserializing) it.
+     *
+     * @param query      The query to filter entities.
+     * @param parameters Parameters which may be referenced in the query.
+     * @return True, if a match exists.
+     */
+    default boolean exists(Query query, List<Object> parameters) {
+        return findOne(query, parameters).isPresent();
+    }
+
+    /**
+     * Check whether the database contains at least one match of the query.
+     *
+     * @param query The query to filter entities.
+     * @return True, if a match exists.
+     */
+    default boolean exists(Query query) {
+        return exists(query, List.of());
+    }
+
     /**
      * Remove entities from the database matching a condition.
      *
      * @param query      The query to find items to be deleted.
      * @param parameters Parameters which may be referenced in the query.
+     * @return The number of removed entities.
      */
-    void remove(Query query, List<Object> parameters);
+    long remove(Query query, List<Object> parameters);
 
     /**
      * Remove entities from the database matching a condition.
      *
      * @param query The query to find items to be deleted.
+     * @return The number of removed entities.
+     */
+    default long remove(Query query) {
+        return remove(query, List.of());
+    }
+
+    /**
+     * Remove entities from the database matching a condition, executed once for each set of parameters in a
+     * single batch.
+     * <p>
+     * The default implementation calls {@link #remove(Query, List)} for each set of parameters. Engines should
+     * override it to apply the batch at once, e.g. with a single round trip to the database.
+     *
+     * @param query      The query to find items to be deleted.
+     * @param parameters The sets of parameters which may be referenced in the query.
+     * @return The number of removed entities.
+     */
+    default long removeAll(Query query, List<List<Object>> parameters) {
+        return parameters
+            .stream()
+            .mapToLong(p -> remove(query, p))
+            .sum();
+    }
+
+    /**
+     * Registers an index which should be maintained by the engine to speed up queries. The call must
+     * be idempotent, registering an existing index has no effect.
+     * <p>
+     * This function is used by {@link AbstractQueryEngineRepositoryFactory} to register the indexes derived from
+     * the repository's methods. Engines which do not support indexes may ignore the call.
+     *
+     * @param index The index to register.
+     */
+    default void ensureIndex(Index index) {
+        // do nothing by default
+    }
+
+    /**
+     * Indicates whether operations block the calling thread on I/O, e.g. on the network or on disk. Blocking
+     * operations are called as {@link java.util.concurrent.ForkJoinPool.ManagedBlocker} when the engine is used
+     * asynchronously (see {@link AsyncQueryEngine#apply(QueryEngine)}), thus a
+     * {@link java.util.concurrent.ForkJoinPool} adds threads while its threads are blocked.
+     *
+     * @return True, if operations block on I/O; the default is false.
      */
-    default void remove(Query query) {
-        remove(query, List.of());
+    default boolean isBlocking() {
+        return false;
+    }
+
+    /**
+     * Prepares the execution of a query which is known upfront. Engines may validate and compile the query and
+     * create the indexes it requires. Queries which can't be executed by the engine should be rejected here,
+     * instead of on their first execution.
+     * <p>
+     * This function is used by {@link AbstractQueryEngineRepositoryFactory} for the queries derived from the
+     * repository's methods. The default implementation registers the indexes derived from the query, see
+     * {@link Queries#getIndexes(Query)}.
+     *
+     * @param query The query to prepare.
+     * @throws IllegalArgumentException if the engine can't execute the query.
+     */
+    default void prepare(Query query) {
+        Queries.getIndexes(query).forEach(this::ensureIndex);
     }
 
     /**
@@ -123,6 +318,34 @@ public interface QueryEngine<T, C> {
      */
     Optional<T> findOne(C customQuery);
 
+    /**
+     * Count the matches within the database. The query will be extracted
+     * based on custom annotations of the method.
+     * <p>
+     * This function is used by {@link AbstractQueryEngineRepositoryFactory} when a method is detected to have a custom
+     * query annotation. The default implementation counts the results of {@link #findAll(Object)}.
+     *
+     * @param customQuery A custom query.
+     * @return The number of matches.
+     */
+    default long count(C customQuery) {
+        return findAll(customQuery).size();
+    }
+
+    /**
+     * Check whether the database contains a match. The query will be extracted
+     * based on custom annotations of the method.
+     * <p>
+     * This function is used by {@link AbstractQueryEngineRepositoryFactory} when a method is detected to have a custom
+     * query annotation. The default implementation checks the result of {@link #findOne(Object)}.
+     *
+     * @param customQuery A custom query.
+     * @return True, if a match exists.
+     */
+    default boolean exists(C customQuery) {
+        return findOne(customQuery).isPresent();
+    }
+
     /**
      * Remove an entity from the database. The query will be extracted
      * based on custom annotations of the method.
@@ -131,6 +354,7 @@ public interface QueryEngine<T, C> {
      * query annotation.
      *
      * @param customQuery A custom query.
+     * @return The number of removed entities.
      */
-    void remove(C customQuery);
+    long remove(C customQuery);
 }
@@ -62,8 +62,9 @@ public interface QueryEngineWithoutCustomQueries<T> extends QueryEngine<T, Nothi
      * query annotation.
      *
      * @param customQuery A custom query.
+     * @return The number of removed entities.
      */
-    default void remove(Nothing customQuery) {
+    default long remove(Nothing customQuery) {
         throw new IllegalStateException(
             "This QueryEngine does not support queries based on custom annotations."
         );
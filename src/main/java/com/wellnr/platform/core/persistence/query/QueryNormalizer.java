@@ -0,0 +1,234 @@
+package com.wellnr.platform.core.persistence.query;
+
+import com.wellnr.platform.core.persistence.inmemory.InMemoryQueryEngine;
+import com.wellnr.platform.core.persistence.query.filter.*;
+import com.wellnr.platform.core.persistence.query.values.Field;
+import com.wellnr.platform.core.persistence.query.values.StaticValue;
+import com.wellnr.platform.core.persistence.query.values.Uppercase;
+import com.wellnr.platform.core.persistence.query.values.Value;
+
+import java.util.*;
+
+/**
+ * Rewrites queries into an equivalent, normalized form before they are passed to a {@link QueryEngine}. Queries
+ * derived from method names (see {@link Queries#fromMethod(java.lang.reflect.Method)}) or built by hand often
+ * contain redundant nodes; normalized queries are smaller and thus cheaper to compile and to evaluate, and equal
+ * queries share compiled plans and cached results. Custom queries of engines (e.g. Mongo filters passed to
+ * repository methods) are passed to the engine as they are, they are not represented as {@link Query}.
+ * <p>
+ * The following rules are applied bottom-up:
+ * <p>
+ * * Nested `and` (`or`) nodes are flattened into their parent `and` (`or`), nodes with a single filter are
+ * replaced by the filter.
+ * * `true` and `false` are folded, e.g. `and(q, false)` is `false`, `or(q, false)` is `q`.
+ * * Duplicate filters within `and` and `or` are removed.
+ * * Alternatives which compare the same field for equality (or with `isIn`) with static values are merged into a
+ * single `isIn`, e.g. `or(match($("color"), eq(v("red"))), match($("color"), eq(v("blue"))))` is
+ * `match($("color"), isIn(v("red"), v("blue")))`. Comparisons with parameters are not merged: `isIn` treats a
+ * collection passed as parameter as list of alternatives, while `eq` compares with the collection itself.
+ * * Filters of `and` are ordered by their estimated cost and selectivity, thus engines which evaluate filters in
+ * order (e.g. {@link com.wellnr.platform.core.persistence.inmemory.InMemoryQueryEngine}) reject items early: the
+ * primary key comes first, followed by equality matches (which are supported by indexes, see
+ * {@link Queries#getIndexes(Query)}), `isIn`, case-insensitive matches, comparisons of fields, `or` and
+ * `elemMatch`. Filters with the same estimate keep their order.
+ */
+public final class QueryNormalizer {
+
+    private QueryNormalizer() {
+
+    }
+
+    /**
+     * Normalizes a query.
+     *
+     * @param query The query.
+     * @return The normalized, equivalent query.
+     */
+    public static Query normalize(Query query) {
+        if (query instanceof And and) {
+            return normalizeAnd(and);
+        } else if (query instanceof Or or) {
+            return normalizeOr(or);
+        } else if (query instanceof Match match) {
+            var filter = normalize(match.getQuery());
+
+            if (filter instanceof True || filter instanceof False) {
+                return filter;
+            } else {
+                return Match.apply(match.getSelector(), (Filter) filter);
+            }
+        } else if (query instanceof ElemMatch elemMatch) {
+            var filter = normalize(elemMatch.getQuery());
+
+            if (filter instanceof False) {
+                // No element can match.
+                return filter;
+            } else {
+                return ElemMatch.apply(elemMatch.getSelector(), (Filter) filter);
+            }
+        } else if (query instanceof IsIn isIn) {
+            return IsIn.apply(isIn.getValues().stream().distinct().toList());
+        } else {
+            return query;
+        }
+    }
+
+    private static Query normalizeAnd(And and) {
+        var filters = new LinkedHashSet<Query>();
+
+        for (var filter : and.getFilters()) {
+            var normalized = normalize(filter);
+
+            if (normalized instanceof False) {
+                return normalized;
+            } else if (normalized instanceof And nested) {
+                filters.addAll(nested.getFilters());
+            } else if (!(normalized instanceof True)) {
+                filters.add(normalized);
+            }
+        }
+
+        var sorted = filters
+            .stream()
+            .sorted(Comparator.comparingInt(QueryNormalizer::getCost))
+            .toList();
+
+        if (sorted.isEmpty()) {
+            return True.apply();
+        } else if (sorted.size() == 1) {
+            return sorted.get(0);
+        } else {
+            return And.apply(sorted);
+        }
+    }
+
+    private static Query normalizeOr(Or or) {
+        var filters = new LinkedHashSet<Query>();
+
+        for (var filter : or.getFilters()) {
+            var normalized = normalize(filter);
+
+            if (normalized instanceof True) {
+                return normalized;
+            } else if (normalized instanceof Or nested) {
+                filters.addAll(nested.getFilters());
+            } else if (!(normalized instanceof False)) {
+                filters.add(normalized);
+            }
+        }
+
+        var merged = mergeEqualities(List.copyOf(filters));
+
+        if (merged.isEmpty()) {
+            return False.apply();
+        } else if (merged.size() == 1) {
+            return merged.get(0);
+        } else {
+            return Or.apply(merged);
+        }
+    }
+
+    /**
+     * Merges alternatives which compare the same field with values into a single `isIn`. The merged filter
+     * replaces the first of the merged alternatives.
+     */
+    private static List<Query> mergeEqualities(List<Query> alternatives) {
+        var values = new LinkedHashMap<Value, LinkedHashSet<Value>>();
+
+        for (var alternative : alternatives) {
+            getComparedValues(alternative).ifPresent(compared -> values
+                .computeIfAbsent(((Match) alternative).getSelector(), selector -> new LinkedHashSet<>())
+                .addAll(compared));
+        }
+
+        var result = new ArrayList<Query>();
+        var merged = new HashSet<Value>();
+
+        for (var alternative : alternatives) {
+            if (getComparedValues(alternative).isEmpty()) {
+                result.add(alternative);
+                continue;
+            }
+
+            var selector = ((Match) alternative).getSelector();
+
+            if (merged.add(selector)) {
+                var compared = List.copyOf(values.get(selector));
+
+                if (compared.size() == 1) {
+                    result.add(Match.apply(selector, Equals.apply(compared.get(0))));
+                } else {
+                    result.add(Match.apply(selector, IsIn.apply(compared)));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the values a match compares a field with, if the match is an equality or `isIn` match with static
+     * values which are not collections.
+     */
+    private static Optional<List<Value>> getComparedValues(Query query) {
+        if (!(query instanceof Match match) || !(match.getSelector() instanceof Field)) {
+            return Optional.empty();
+        }
+
+        List<Value> values;
+
+        if (match.getQuery() instanceof Equals equals) {
+            values = List.of(equals.getValue());
+        } else if (match.getQuery() instanceof IsIn isIn) {
+            values = isIn.getValues();
+        } else {
+            return Optional.empty();
+        }
+
+        if (values.stream().allMatch(QueryNormalizer::isMergeable)) {
+            return Optional.of(values);
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    private static boolean isMergeable(Value value) {
+        return value instanceof StaticValue<?> staticValue && !(staticValue.getValue() instanceof Collection<?>);
+    }
+
+    /**
+     * Estimates the cost of evaluating a filter and the share of items it accepts; lower values are evaluated
+     * first.
+     */
+    private static int getCost(Query query) {
+        if (query instanceof Match match) {
+            if (match.getQuery() instanceof Equals equals && !Queries.referencesItem(equals.getValue())) {
+                if (match.getSelector() instanceof Field field &&
+                    field.getFQN().equalsIgnoreCase(InMemoryQueryEngine.PRIMARY_KEY_FIELD)) {
+
+                    return 0;
+                } else if (match.getSelector() instanceof Field) {
+                    return 1;
+                } else if (match.getSelector() instanceof Uppercase) {
+                    return 3;
+                }
+            } else if (
+                match.getQuery() instanceof IsIn isIn &&
+                    isIn.getValues().stream().noneMatch(Queries::referencesItem)
+            ) {
+                return 2;
+            } else if (match.getQuery() instanceof Equals) {
+                return 4;
+            }
+
+            return 5;
+        } else if (query instanceof Or) {
+            return 6;
+        } else if (query instanceof ElemMatch) {
+            return 7;
+        } else {
+            return 5;
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.wellnr.platform.core.persistence.query;
+
+import com.wellnr.platform.common.tuples.Done;
+import com.wellnr.platform.core.persistence.query.filter.Query;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Provides the operations of a synchronous {@link QueryEngine} as {@link AsyncQueryEngine}. The operations are
+ * executed on the calling thread; exceptions are thrown directly instead of completing the returned stage.
+ * <p>
+ * Operations of blocking engines (see {@link QueryEngine#isBlocking()}) are executed as
+ * {@link ForkJoinPool.ManagedBlocker}: if the calling thread belongs to a {@link ForkJoinPool}, e.g. the scheduler
+ * of entities, the pool adds threads while the operation blocks, thus blocked calls don't starve other calls.
+ *
+ * @param <T> The type of the items stored within the engine.
+ * @param <C> The type of custom queries.
+ */
+@AllArgsConstructor(staticName = "apply")
+final class SyncQueryEngineAdapter<T, C> implements AsyncQueryEngine<T, C> {
+
+    private final QueryEngine<T, C> engine;
+
+    @Override
+    public CompletionStage<Done> insertOrUpdateAsync(T item, Query match, List<Object> parameters) {
+        return CompletableFuture.completedFuture(call(() -> {
+            engine.insertOrUpdate(item, match, parameters);
+            return Done.getInstance();
+        }));
+    }
+
+    @Override
+    public CompletionStage<Done> insertOrUpdateAllAsync(List<T> items, Query match, List<List<Object>> parameters) {
+        return CompletableFuture.completedFuture(call(() -> {
+            engine.insertOrUpdateAll(items, match, parameters);
+            return Done.getInstance();
+        }));
+    }
+
+    @Override
+    public CompletionStage<List<T>> findAllAsync(Query query, QueryOptions options, List<Object> parameters) {
+        return CompletableFuture.completedFuture(call(() -> engine.findAll(query, options, parameters)));
+    }
+
+    @Override
+    public CompletionStage<Optional<T>> findOneAsync(Query query, QueryOptions options, List<Object> parameters) {
+        return CompletableFuture.completedFuture(call(() -> engine.findOne(query, options, parameters)));
+    }
+
+    @Override
+    public CompletionStage<Long> countAsync(Query query, List<Object> parameters) {
+        return CompletableFuture.completedFuture(call(() -> engine.count(query, parameters)));
+    }
+
+    @Override
+    public CompletionStage<Boolean> existsAsync(Query query, List<Object> parameters) {
+        return CompletableFuture.completedFuture(call(() -> engine.exists(query, parameters)));
+    }
+
+    @Override
+    public CompletionStage<Long> removeAsync(Query query, List<Object> parameters) {
+        return CompletableFuture.completedFuture(call(() -> engine.remove(query, parameters)));
+    }
+
+    @Override
+    public CompletionStage<Long> removeAllAsync(Query query, List<List<Object>> parameters) {
+        return CompletableFuture.completedFuture(call(() -> engine.removeAll(query, parameters)));
+    }
+
+    @Override
+    public CompletionStage<Done> insertOrUpdateAsync(T item, C customQuery) {
+        return CompletableFuture.completedFuture(call(() -> {
+            engine.insertOrUpdate(item, customQuery);
+            return Done.getInstance();
+        }));
+    }
+
+    @Override
+    public CompletionStage<List<T>> findAllAsync(C customQuery) {
+        return CompletableFuture.completedFuture(call(() -> engine.findAll(customQuery)));
+    }
+
+    @Override
+    public CompletionStage<Optional<T>> findOneAsync(C customQuery) {
+        return CompletableFuture.completedFuture(call(() -> engine.findOne(customQuery)));
+    }
+
+    @Override
+    public CompletionStage<Long> countAsync(C customQuery) {
+        return CompletableFuture.completedFuture(call(() -> engine.count(customQuery)));
+    }
+
+    @Override
+    public CompletionStage<Boolean> existsAsync(C customQuery) {
+        return CompletableFuture.completedFuture(call(() -> engine.exists(customQuery)));
+    }
+
+    @Override
+    public CompletionStage<Long> removeAsync(C customQuery) {
+        return CompletableFuture.completedFuture(call(() -> engine.remove(customQuery)));
+    }
+
+    /**
+     * Executes an operation, as {@link ForkJoinPool.ManagedBlocker} if the engine is blocking.
+     */
+    private <R> R call(Supplier<R> operation) {
+        if (!engine.isBlocking()) {
+            return operation.get();
+        }
+
+        var blocker = new Blocker<>(operation);
+
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a blocking query engine.", ex);
+        }
+
+        return blocker.result;
+    }
+
+    private static final class Blocker<R> implements ForkJoinPool.ManagedBlocker {
+
+        private final Supplier<R> operation;
+
+        private R result;
+
+        private boolean done;
+
+        private Blocker(Supplier<R> operation) {
+            this.operation = operation;
+        }
+
+        @Override
+        public boolean block() {
+            result = operation.get();
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+
+    }
+
+}
@@ -0,0 +1,851 @@
+package com.wellnr.platform.core.persistence.query.cache;
+
+import com.wellnr.platform.common.Operators;
+import com.wellnr.platform.common.ReflectionUtils;
+import com.wellnr.platform.common.guid.HasGUID;
+import com.wellnr.platform.common.tuples.Done;
+import com.wellnr.platform.common.tuples.Tuple2;
+import com.wellnr.platform.core.persistence.inmemory.InMemoryQueryPlan;
+import com.wellnr.platform.core.persistence.query.AsyncQueryEngine;
+import com.wellnr.platform.core.persistence.query.Index;
+import com.wellnr.platform.core.persistence.query.Queries;
+import com.wellnr.platform.core.persistence.query.QueryEngine;
+import com.wellnr.platform.core.persistence.query.filter.Query;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A read-through cache for the results of a {@link QueryEngine}.
+ * <p>
+ * Results of `findAll`, `findOne`, `count` and `exists` are cached by query, options and parameters. The cache is
+ * bounded by size; new results are admitted based on how frequently they are requested, see
+ * {@link FrequencyAwareCache}. Streamed results and custom queries are not cached.
+ * <p>
+ * Writes invalidate exactly the cached results which they may change. A cached list or single result is
+ * invalidated if
+ * <p>
+ * * it contains an item with the GUID of a written or removed item,
+ * * a written item matches its query (the item might be new to the result) or
+ * * one of its items matches the query of a write or removal.
+ * <p>
+ * Queries are evaluated in memory for this purpose, see {@link InMemoryQueryPlan}. If a result is invalidated,
+ * all cached pages of its query (with other options) are invalidated as well. Counts, existence checks and pages
+ * with an offset depend on items which they don't contain, they are invalidated by every write. Writes with custom
+ * queries invalidate all results. Queries which can't be evaluated in memory are not cached.
+ * <p>
+ * Cached results are read without locks. To find affected results, the engine indexes cached results by the keys
+ * (GUIDs) of their items and by their query and parameters; writes evaluate the queries of cached results once
+ * per query and parameters, and the queries of writes once per cached item, instead of once per result.
+ * <p>
+ * Only writes through this engine are observed. The cache must not be used for entities which are changed by other
+ * processes as well.
+ * <p>
+ * Hits, misses, evictions and invalidations are counted, see {@link #getStatistics()}.
+ *
+ * @param <T> The type of the items stored within the engine.
+ * @param <C> The type of custom queries.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CachingQueryEngine<T, C> implements QueryEngine<T, C>, AsyncQueryEngine<T, C> {
+
+    private final QueryEngine<T, C> engine;
+
+    private final AsyncQueryEngine<T, C> async;
+
+    private final Class<T> type;
+
+    private final FrequencyAwareCache<Key, Entry<T>> cache;
+
+    private final QueryCacheStatistics statistics;
+
+    /**
+     * Queries which can't be evaluated in memory.
+     */
+    private final Set<Query> uncacheable;
+
+    /**
+     * Guards changes of the cache, `results` and `version`. Reads of cached results don't acquire the lock.
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * Indexes the cached results to find results affected by writes. Guarded by `lock`.
+     */
+    private final CachedResults<T> results;
+
+    /**
+     * Incremented by every write; results which have been read before a write are not cached afterwards.
+     * Guarded by `lock`.
+     */
+    private long version;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param engine     The engine to cache.
+     * @param type       The type of the items stored within the engine.
+     * @param properties The configuration of the cache.
+     * @param <T>        The type of the items stored within the engine.
+     * @param <C>        The type of custom queries.
+     * @return A new instance.
+     */
+    public static <T, C> CachingQueryEngine<T, C> apply(
+        QueryEngine<T, C> engine,
+        Class<T> type,
+        QueryCacheProperties properties) {
+
+        var results = new CachedResults<>(type);
+
+        return new CachingQueryEngine<>(
+            engine,
+            AsyncQueryEngine.apply(engine),
+            type,
+            FrequencyAwareCache.apply(properties.getMaximumSize(), properties.getStatistics(), results::remove),
+            properties.getStatistics(),
+            ConcurrentHashMap.newKeySet(),
+            new ReentrantLock(),
+            results,
+            0
+        );
+    }
+
+    /**
+     * @return The counters of the cache.
+     */
+    public QueryCacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    /*
+     * Asynchronous operations
+     */
+
+    @Override
+    public CompletionStage<Done> insertOrUpdateAsync(T item, Query match, List<Object> parameters) {
+        return write(
+            () -> async.insertOrUpdateAsync(item, match, parameters),
+            getAffectedByUpsert(List.of(item), match, List.of(parameters))
+        );
+    }
+
+    @Override
+    public CompletionStage<Done> insertOrUpdateAllAsync(List<T> items, Query match, List<List<Object>> parameters) {
+        return write(
+            () -> async.insertOrUpdateAllAsync(items, match, parameters),
+            getAffectedByUpsert(items, match, parameters)
+        );
+    }
+
+    @Override
+    public CompletionStage<List<T>> findAllAsync(Query query, QueryOptions options, List<Object> parameters) {
+        return read(
+            Operation.FIND_ALL, query, options, parameters,
+            () -> async.findAllAsync(query, options, parameters).thenApply(List::copyOf),
+            Function.identity()
+        );
+    }
+
+    @Override
+    public CompletionStage<Optional<T>> findOneAsync(Query query, QueryOptions options, List<Object> parameters) {
+        return read(
+            Operation.FIND_ONE, query, options, parameters,
+            () -> async.findOneAsync(query, options, parameters),
+            result -> result.stream().toList()
+        );
+    }
+
+    @Override
+    public CompletionStage<Long> countAsync(Query query, List<Object> parameters) {
+        return read(
+            Operation.COUNT, query, QueryOptions.apply(), parameters,
+            () -> async.countAsync(query, parameters),
+            null
+        );
+    }
+
+    @Override
+    public CompletionStage<Boolean> existsAsync(Query query, List<Object> parameters) {
+        return read(
+            Operation.EXISTS, query, QueryOptions.apply(), parameters,
+            () -> async.existsAsync(query, parameters),
+            null
+        );
+    }
+
+    @Override
+    public CompletionStage<Long> removeAsync(Query query, List<Object> parameters) {
+        return write(
+            () -> async.removeAsync(query, parameters),
+            getAffectedByRemove(query, List.of(parameters))
+        );
+    }
+
+    @Override
+    public CompletionStage<Long> removeAllAsync(Query query, List<List<Object>> parameters) {
+        return write(
+            () -> async.removeAllAsync(query, parameters),
+            getAffectedByRemove(query, parameters)
+        );
+    }
+
+    @Override
+    public CompletionStage<Done> insertOrUpdateAsync(T item, C customQuery) {
+        return write(() -> async.insertOrUpdateAsync(item, customQuery), () -> results.getAll());
+    }
+
+    @Override
+    public CompletionStage<List<T>> findAllAsync(C customQuery) {
+        return async.findAllAsync(customQuery);
+    }
+
+    @Override
+    public CompletionStage<Optional<T>> findOneAsync(C customQuery) {
+        return async.findOneAsync(customQuery);
+    }
+
+    @Override
+    public CompletionStage<Long> countAsync(C customQuery) {
+        return async.countAsync(customQuery);
+    }
+
+    @Override
+    public CompletionStage<Boolean> existsAsync(C customQuery) {
+        return async.existsAsync(customQuery);
+    }
+
+    @Override
+    public CompletionStage<Long> removeAsync(C customQuery) {
+        return write(() -> async.removeAsync(customQuery), () -> results.getAll());
+    }
+
+    /*
+     * Synchronous operations
+     */
+
+    @Override
+    public void insertOrUpdate(T item, Query match, List<Object> parameters) {
+        Operators.await(insertOrUpdateAsync(item, match, parameters));
+    }
+
+    @Override
+    public void insertOrUpdateAll(List<T> items, Query match, List<List<Object>> parameters) {
+        Operators.await(insertOrUpdateAllAsync(items, match, parameters));
+    }
+
+    @Override
+    public List<T> findAll(Query query, List<Object> parameters) {
+        return findAll(query, QueryOptions.apply(), parameters);
+    }
+
+    @Override
+    public List<T> findAll(Query query, QueryOptions options, List<Object> parameters) {
+        return Operators.await(findAllAsync(query, options, parameters));
+    }
+
+    @Override
+    public Stream<T> stream(Query query, QueryOptions options, List<Object> parameters) {
+        return engine.stream(query, options, parameters);
+    }
+
+    @Override
+    public Optional<T> findOne(Query query, List<Object> parameters) {
+        return findOne(query, QueryOptions.apply(), parameters);
+    }
+
+    @Override
+    public Optional<T> findOne(Query query, QueryOptions options, List<Object> parameters) {
+        return Operators.await(findOneAsync(query, options, parameters));
+    }
+
+    @Override
+    public long count(Query query, List<Object> parameters) {
+        return Operators.await(countAsync(query, parameters));
+    }
+
+    @Override
+    public boolean exists(Query query, List<Object> parameters) {
+        return Operators.await(existsAsync(query, parameters));
+    }
+
+    @Override
+    public long remove(Query query, List<Object> parameters) {
+        return Operators.await(removeAsync(query, parameters));
+    }
+
+    @Override
+    public long removeAll(Query query, List<List<Object>> parameters) {
+        return Operators.await(removeAllAsync(query, parameters));
+    }
+
+    @Override
+    public void ensureIndex(Index index) {
+        engine.ensureIndex(index);
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return engine.isBlocking();
+    }
+
+    @Override
+    public void prepare(Query query) {
+        engine.prepare(query);
+    }
+
+    @Override
+    public void insertOrUpdate(T item, C customQuery) {
+        Operators.await(insertOrUpdateAsync(item, customQuery));
+    }
+
+    @Override
+    public List<T> findAll(C customQuery) {
+        return engine.findAll(customQuery);
+    }
+
+    @Override
+    public Optional<T> findOne(C customQuery) {
+        return engine.findOne(customQuery);
+    }
+
+    @Override
+    public long count(C customQuery) {
+        return engine.count(customQuery);
+    }
+
+    @Override
+    public boolean exists(C customQuery) {
+        return engine.exists(customQuery);
+    }
+
+    @Override
+    public long remove(C customQuery) {
+        return Operators.await(removeAsync(customQuery));
+    }
+
+    /*
+     * Helpers
+     */
+
+    /**
+     * Returns a cached result, or loads and caches the result.
+     *
+     * @param getItems Returns the items of a result; null for results which don't contain items.
+     */
+    @SuppressWarnings("unchecked")
+    private <R> CompletionStage<R> read(
+        Operation operation, Query query, QueryOptions options, List<Object> parameters,
+        Supplier<CompletionStage<R>> load, Function<R, List<T>> getItems) {
+
+        var predicate = getPredicate(query, parameters);
+
+        if (predicate.isEmpty()) {
+            return load.get();
+        }
+
+        var key = Key.apply(operation, query, options, Collections.unmodifiableList(new ArrayList<>(parameters)));
+        var cached = cache.get(key);
+
+        if (cached.isPresent()) {
+            statistics.recordHit();
+            return CompletableFuture.completedFuture((R) cached.get().getResult());
+        }
+
+        statistics.recordMiss();
+        long loadedAt;
+
+        lock.lock();
+
+        try {
+            loadedAt = version;
+        } finally {
+            lock.unlock();
+        }
+
+        return load.get().thenApply(result -> {
+            var items = Objects.isNull(getItems) ? null : getItems.apply(result);
+            var entry = Entry.apply(result, predicate.get(), items);
+
+            lock.lock();
+
+            try {
+                var previous = cache.peek(key);
+
+                if (version == loadedAt && cache.put(key, entry)) {
+                    previous.ifPresent(previousEntry -> results.remove(key, previousEntry));
+                    results.add(key, entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            return result;
+        });
+    }
+
+    /**
+     * Executes a write and invalidates the affected results afterwards, also if the write failed.
+     *
+     * @param affected Returns the keys of the affected results; called while the lock is held.
+     */
+    private <R> CompletionStage<R> write(Supplier<CompletionStage<R>> operation, Supplier<Set<Key>> affected) {
+        CompletionStage<R> result;
+
+        try {
+            result = operation.get();
+        } catch (RuntimeException e) {
+            invalidate(affected);
+            throw e;
+        }
+
+        return result.whenComplete((r, ex) -> invalidate(affected));
+    }
+
+    private void invalidate(Supplier<Set<Key>> affected) {
+        lock.lock();
+
+        try {
+            version++;
+
+            var invalidated = 0;
+
+            for (var key : results.withOtherPages(affected.get())) {
+                var entry = cache.peek(key);
+
+                if (entry.isPresent() && cache.remove(key)) {
+                    results.remove(key, entry.get());
+                    invalidated++;
+                }
+            }
+
+            statistics.recordInvalidations(invalidated);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Supplier<Set<Key>> getAffectedByUpsert(List<T> items, Query match, List<List<Object>> parameters) {
+        var replaced = getPredicateForAny(match, parameters);
+        var replacedKeys = getPrimaryKeys(match, parameters);
+
+        return () -> {
+            if (replaced.isEmpty()) {
+                return results.getAll();
+            }
+
+            var result = results.getInvalidatedByAnyWrite();
+            result.addAll(results.getContaining(getKeys(items)));
+            result.addAll(results.getMatching(items));
+            result.addAll(replacedKeys
+                .map(results::getContaining)
+                .orElseGet(() -> results.getContaining(replaced.get())));
+
+            return result;
+        };
+    }
+
+    private Supplier<Set<Key>> getAffectedByRemove(Query query, List<List<Object>> parameters) {
+        var removed = getPredicateForAny(query, parameters);
+        var removedKeys = getPrimaryKeys(query, parameters);
+
+        return () -> {
+            if (removed.isEmpty()) {
+                return results.getAll();
+            }
+
+            var result = results.getInvalidatedByAnyWrite();
+            result.addAll(removedKeys
+                .map(results::getContaining)
+                .orElseGet(() -> results.getContaining(removed.get())));
+
+            return result;
+        };
+    }
+
+    /**
+     * Returns a predicate which matches items matching the query with any of the parameter sets.
+     */
+    private Optional<Predicate<T>> getPredicateForAny(Query query, List<List<Object>> parameters) {
+        var predicates = new ArrayList<Predicate<T>>();
+
+        for (var p : parameters) {
+            var predicate = getPredicate(query, p);
+
+            if (predicate.isEmpty()) {
+                return Optional.empty();
+            }
+
+            predicates.add(predicate.get());
+        }
+
+        return Optional.of(item -> predicates.stream().anyMatch(p -> p.test(item)));
+    }
+
+    private Optional<Predicate<T>> getPredicate(Query query, List<Object> parameters) {
+        if (uncacheable.contains(query)) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(InMemoryQueryPlan.compile(query, type).bind(parameters));
+        } catch (RuntimeException e) {
+            uncacheable.add(query);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the GUIDs of the matched items, if the query selects items by their GUID only.
+     */
+    private Optional<Set<Object>> getPrimaryKeys(Query query, List<List<Object>> parameters) {
+        if (!HasGUID.class.isAssignableFrom(type) || uncacheable.contains(query)) {
+            return Optional.empty();
+        }
+
+        var plan = InMemoryQueryPlan.compile(query, type);
+        var keys = new HashSet<>();
+
+        for (var p : parameters) {
+            var key = plan.getPrimaryKey(p);
+
+            if (key.isEmpty()) {
+                return Optional.empty();
+            }
+
+            keys.add(key.get());
+        }
+
+        return Optional.of(keys);
+    }
+
+    private static Set<Object> getKeys(List<?> items) {
+        return items
+            .stream()
+            .map(CachingQueryEngine::getKey)
+            .collect(Collectors.toSet());
+    }
+
+    private static Object getKey(Object item) {
+        return item instanceof HasGUID hasGUID ? hasGUID.getGUID() : item;
+    }
+
+    /**
+     * Returns a list which may contain `null`, to be used as key.
+     */
+    private static List<Object> toKey(Stream<Object> values) {
+        return Arrays.asList(values.toArray());
+    }
+
+    private enum Operation {
+        FIND_ALL, FIND_ONE, COUNT, EXISTS
+    }
+
+    /**
+     * Keys are hashed by the cache, the order of entries and the sketch on each read; the hash of the query is
+     * computed once.
+     */
+    @lombok.Value
+    @EqualsAndHashCode(cacheStrategy = EqualsAndHashCode.CacheStrategy.LAZY)
+    @AllArgsConstructor(staticName = "apply")
+    private static class Key {
+
+        Operation operation;
+
+        Query query;
+
+        QueryOptions options;
+
+        List<Object> parameters;
+
+    }
+
+    @lombok.Value
+    @AllArgsConstructor(staticName = "apply")
+    private static class Entry<T> {
+
+        Object result;
+
+        /**
+         * Tests whether an item matches the query of the result.
+         */
+        Predicate<T> predicate;
+
+        /**
+         * The items of the result; null for counts and existence checks.
+         */
+        List<T> items;
+
+    }
+
+    /**
+     * Indexes cached results by the keys of their items and by their query and parameters. Bound queries are
+     * additionally indexed by the values which they match for equality, thus a written item is only tested with
+     * queries which it may match.
+     * <p>
+     * The class is not thread-safe, access is guarded by {@link CachingQueryEngine#lock}.
+     *
+     * @param <T> The type of the items.
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    private static final class CachedResults<T> {
+
+        private final Class<T> type;
+
+        /**
+         * The keys of cached results by the keys of the items which they contain.
+         */
+        private final Map<Object, IndexedItem<T>> byItem;
+
+        /**
+         * The keys of cached results by their query and parameters.
+         */
+        private final Map<Tuple2<Query, List<Object>>, BoundQuery<T>> byQuery;
+
+        /**
+         * The bound queries by query, and by the values which they match for equality.
+         */
+        private final Map<Query, QueryIndex<T>> byValues;
+
+        /**
+         * The keys of cached results which depend on items they don't contain: counts, existence checks and pages
+         * with an offset.
+         */
+        private final Set<Key> byAnyWrite;
+
+        private CachedResults(Class<T> type) {
+            this(type, new HashMap<>(), new HashMap<>(), new HashMap<>(), new HashSet<>());
+        }
+
+        public void add(Key key, Entry<T> entry) {
+            var query = Tuple2.apply(key.getQuery(), key.getParameters());
+            var bound = byQuery.get(query);
+
+            if (Objects.isNull(bound)) {
+                var queryIndex = byValues.computeIfAbsent(key.getQuery(), q -> QueryIndex.apply(q, type));
+                var values = queryIndex.getValues(key.getParameters());
+
+                bound = BoundQuery.apply(entry.getPredicate(), values, new HashSet<>());
+                byQuery.put(query, bound);
+                queryIndex.getBound().computeIfAbsent(values, v -> new HashSet<>()).add(key.getParameters());
+            }
+
+            bound.getKeys().add(key);
+
+            if (Objects.isNull(entry.getItems()) || key.getOptions().getOffset() > 0) {
+                byAnyWrite.add(key);
+                return;
+            }
+
+            for (var item : entry.getItems()) {
+                byItem
+                    .computeIfAbsent(getKey(item), k -> IndexedItem.apply(item, new HashSet<>()))
+                    .getKeys()
+                    .add(key);
+            }
+        }
+
+        public void remove(Key key, Entry<T> entry) {
+            var query = Tuple2.apply(key.getQuery(), key.getParameters());
+            var bound = byQuery.get(query);
+
+            if (Objects.nonNull(bound) && bound.getKeys().remove(key) && bound.getKeys().isEmpty()) {
+                byQuery.remove(query);
+
+                var queryIndex = byValues.get(key.getQuery());
+                var parameters = queryIndex.getBound().get(bound.getValues());
+                parameters.remove(key.getParameters());
+
+                if (parameters.isEmpty()) {
+                    queryIndex.getBound().remove(bound.getValues());
+                }
+
+                if (queryIndex.getBound().isEmpty()) {
+                    byValues.remove(key.getQuery());
+                }
+            }
+
+            byAnyWrite.remove(key);
+
+            if (Objects.isNull(entry.getItems())) {
+                return;
+            }
+
+            for (var item : entry.getItems()) {
+                var itemKey = getKey(item);
+                var indexed = byItem.get(itemKey);
+
+                if (Objects.nonNull(indexed) && indexed.getKeys().remove(key) && indexed.getKeys().isEmpty()) {
+                    byItem.remove(itemKey);
+                }
+            }
+        }
+
+        /**
+         * Returns the keys along with the keys of all cached pages of the same queries and parameters.
+         */
+        public Set<Key> withOtherPages(Set<Key> keys) {
+            var result = new HashSet<>(keys);
+
+            for (var key : keys) {
+                var bound = byQuery.get(Tuple2.apply(key.getQuery(), key.getParameters()));
+
+                if (Objects.nonNull(bound)) {
+                    result.addAll(bound.getKeys());
+                }
+            }
+
+            return result;
+        }
+
+        public Set<Key> getAll() {
+            var result = new HashSet<Key>();
+            byQuery.values().forEach(bound -> result.addAll(bound.getKeys()));
+            return result;
+        }
+
+        public Set<Key> getInvalidatedByAnyWrite() {
+            return new HashSet<>(byAnyWrite);
+        }
+
+        /**
+         * Returns the keys of cached results which contain an item with one of the given keys.
+         */
+        public Set<Key> getContaining(Set<Object> itemKeys) {
+            var result = new HashSet<Key>();
+
+            itemKeys
+                .stream()
+                .map(byItem::get)
+                .filter(Objects::nonNull)
+                .forEach(indexed -> result.addAll(indexed.getKeys()));
+
+            return result;
+        }
+
+        /**
+         * Returns the keys of cached results which contain an item matching the predicate.
+         */
+        public Set<Key> getContaining(Predicate<T> predicate) {
+            var result = new HashSet<Key>();
+
+            byItem
+                .values()
+                .stream()
+                .filter(indexed -> predicate.test(indexed.getItem()))
+                .forEach(indexed -> result.addAll(indexed.getKeys()));
+
+            return result;
+        }
+
+        /**
+         * Returns the keys of cached results whose query matches one of the items.
+         */
+        public Set<Key> getMatching(List<T> items) {
+            var result = new HashSet<Key>();
+
+            byValues.forEach((query, queryIndex) -> {
+                for (var item : items) {
+                    queryIndex
+                        .getBound()
+                        .getOrDefault(queryIndex.getValuesOf(item), Set.of())
+                        .stream()
+                        .map(parameters -> byQuery.get(Tuple2.apply(query, parameters)))
+                        .filter(bound -> bound.getPredicate().test(item))
+                        .forEach(bound -> result.addAll(bound.getKeys()));
+                }
+            });
+
+            return result;
+        }
+
+    }
+
+    /**
+     * A cached item and the keys of the cached results which contain it.
+     */
+    @lombok.Value
+    @AllArgsConstructor(staticName = "apply")
+    private static class IndexedItem<T> {
+
+        T item;
+
+        Set<Key> keys;
+
+    }
+
+    /**
+     * The keys of the cached results of a query with the same parameters.
+     */
+    @lombok.Value
+    @AllArgsConstructor(staticName = "apply")
+    private static class BoundQuery<T> {
+
+        /**
+         * The query bound to the parameters.
+         */
+        Predicate<T> predicate;
+
+        /**
+         * The values which the query matches for equality, see {@link QueryIndex}.
+         */
+        List<Object> values;
+
+        Set<Key> keys;
+
+    }
+
+    /**
+     * The parameters of the cached results of a query, by the values which the query matches for equality. Items
+     * whose fields have other values can't match the query. If the query doesn't match fields for equality, all
+     * parameters are kept with an empty list of values.
+     */
+    @lombok.Value
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    private static class QueryIndex<T> {
+
+        InMemoryQueryPlan<T> plan;
+
+        Optional<Index> index;
+
+        List<Function<Object, Object>> getters;
+
+        Map<List<Object>, Set<List<Object>>> bound;
+
+        public static <T> QueryIndex<T> apply(Query query, Class<T> type) {
+            var plan = InMemoryQueryPlan.compile(query, type);
+            var index = plan.selectIndex(Queries.getIndexes(query));
+            var getters = index
+                .map(Index::getFields)
+                .orElseGet(List::of)
+                .stream()
+                .map(field -> ReflectionUtils.getFieldAccessor(type, field.getFQN()))
+                .toList();
+
+            return new QueryIndex<>(plan, index, getters, new HashMap<>());
+        }
+
+        public List<Object> getValues(List<Object> parameters) {
+            return index
+                .map(i -> toKey(plan.getIndexValues(i, parameters).stream()))
+                .orElseGet(List::of);
+        }
+
+        public List<Object> getValuesOf(Object item) {
+            return toKey(getters.stream().map(getter -> getter.apply(item)));
+        }
+
+    }
+
+}
@@ -0,0 +1,322 @@
+package com.wellnr.platform.core.persistence.query.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * A size-bounded map which admits new entries based on their access frequency (TinyLFU).
+ * <p>
+ * Entries are kept in least-recently-used order. If the cache is full, a new entry is only admitted if its key
+ * has been requested more frequently than the key of the least-recently-used entry, which is evicted in this case.
+ * Thus, a burst of requests for rarely used keys does not evict the frequently used entries. Frequencies are
+ * estimated with a count-min sketch, which is aged periodically to follow changing access patterns.
+ * <p>
+ * The class is thread-safe. Reads don't acquire a lock: entries are stored within a concurrent map, accesses are
+ * recorded within a buffer and applied to the order of entries and to the sketch by the next write, or by a read
+ * which finds the buffer half full. If the buffer is full, accesses are dropped; thus frequencies and order are
+ * estimates under contention. Writes are serialized by a lock.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+final class FrequencyAwareCache<K, V> {
+
+    /**
+     * The maximum number of recorded accesses which are not yet applied; a power of two.
+     */
+    private static final int READ_BUFFER_SIZE = 128;
+
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+    private final int maximumSize;
+
+    private final ConcurrentHashMap<K, V> entries;
+
+    /**
+     * The keys of the entries in least-recently-used order. Guarded by `lock`.
+     */
+    private final LinkedHashMap<K, Boolean> order;
+
+    /**
+     * Guarded by `lock`.
+     */
+    private final FrequencySketch sketch;
+
+    /**
+     * A ring buffer of accesses which are not yet applied to `order` and `sketch`.
+     */
+    private final AtomicReferenceArray<K> reads;
+
+    /**
+     * The number of accesses which have been recorded within `reads`.
+     */
+    private final AtomicLong readsRecorded;
+
+    /**
+     * The number of accesses which have been applied; only changed while the lock is held.
+     */
+    private volatile long readsApplied;
+
+    private final ReentrantLock lock;
+
+    private final QueryCacheStatistics statistics;
+
+    /**
+     * Called for entries which are evicted in favor of new entries, while the lock is held.
+     */
+    private final BiConsumer<K, V> onEviction;
+
+    private FrequencyAwareCache(int maximumSize, QueryCacheStatistics statistics, BiConsumer<K, V> onEviction) {
+        this.maximumSize = maximumSize;
+        this.entries = new ConcurrentHashMap<>();
+        this.order = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new FrequencySketch(maximumSize);
+        this.reads = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        this.readsRecorded = new AtomicLong();
+        this.readsApplied = 0;
+        this.lock = new ReentrantLock();
+        this.statistics = statistics;
+        this.onEviction = onEviction;
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maximumSize The maximum number of entries.
+     * @param statistics  The counters for evictions and rejected entries.
+     * @param <K>         The type of the keys.
+     * @param <V>         The type of the values.
+     * @return A new instance.
+     */
+    public static <K, V> FrequencyAwareCache<K, V> apply(int maximumSize, QueryCacheStatistics statistics) {
+        return apply(maximumSize, statistics, (key, value) -> {
+        });
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maximumSize The maximum number of entries.
+     * @param statistics  The counters for evictions and rejected entries.
+     * @param onEviction  Called for entries which are evicted in favor of new entries.
+     * @param <K>         The type of the keys.
+     * @param <V>         The type of the values.
+     * @return A new instance.
+     */
+    public static <K, V> FrequencyAwareCache<K, V> apply(
+        int maximumSize, QueryCacheStatistics statistics, BiConsumer<K, V> onEviction) {
+
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("The maximum size of a cache must not be negative.");
+        }
+
+        return new FrequencyAwareCache<>(maximumSize, statistics, onEviction);
+    }
+
+    /**
+     * Returns the value of a key and records the access.
+     *
+     * @param key The key.
+     * @return The value, if present.
+     */
+    public Optional<V> get(K key) {
+        var value = entries.get(key);
+        var recorded = readsRecorded.get();
+        var pending = recorded - readsApplied;
+
+        if (pending < READ_BUFFER_SIZE && readsRecorded.compareAndSet(recorded, recorded + 1)) {
+            reads.set((int) (recorded & READ_BUFFER_MASK), key);
+        }
+
+        if (pending >= READ_BUFFER_SIZE / 2 && lock.tryLock()) {
+            try {
+                applyReads();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return Optional.ofNullable(value);
+    }
+
+    /**
+     * Returns the value of a key without recording the access.
+     *
+     * @param key The key.
+     * @return The value, if present.
+     */
+    public Optional<V> peek(K key) {
+        return Optional.ofNullable(entries.get(key));
+    }
+
+    /**
+     * Adds an entry, if it is admitted.
+     *
+     * @param key   The key.
+     * @param value The value.
+     * @return True, if the entry has been admitted.
+     */
+    public boolean put(K key, V value) {
+        lock.lock();
+
+        try {
+            applyReads();
+
+            if (entries.containsKey(key) || entries.size() < maximumSize) {
+                entries.put(key, value);
+                order.put(key, Boolean.TRUE);
+                return true;
+            }
+
+            if (maximumSize == 0) {
+                statistics.recordRejection();
+                return false;
+            }
+
+            var victim = order.keySet().iterator().next();
+
+            if (sketch.frequency(key) > sketch.frequency(victim)) {
+                order.remove(victim);
+                onEviction.accept(victim, entries.remove(victim));
+                entries.put(key, value);
+                order.put(key, Boolean.TRUE);
+                statistics.recordEviction();
+                return true;
+            } else {
+                statistics.recordRejection();
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @param key The key of the entry.
+     * @return True, if the entry was present.
+     */
+    public boolean remove(K key) {
+        lock.lock();
+
+        try {
+            order.remove(key);
+            return Objects.nonNull(entries.remove(key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Applies the recorded accesses to the order of entries and to the sketch. Must only be called while the lock
+     * is held.
+     */
+    private void applyReads() {
+        var applied = readsApplied;
+        var recorded = readsRecorded.get();
+
+        for (; applied < recorded; applied++) {
+            var key = reads.getAndSet((int) (applied & READ_BUFFER_MASK), null);
+
+            if (Objects.isNull(key)) {
+                // The access is recorded, but not yet written to the buffer.
+                break;
+            }
+
+            sketch.increment(key);
+            order.get(key);
+        }
+
+        readsApplied = applied;
+    }
+
+    /**
+     * A count-min sketch with 4 rows of 4-bit counters (stored in bytes).
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+
+        private static final int MAX_COUNT = 15;
+
+        private final byte[] counters;
+
+        private final int mask;
+
+        /**
+         * The number of increments after which all counters are halved.
+         */
+        private final int sampleSize;
+
+        private int increments;
+
+        private FrequencySketch(int maximumSize) {
+            var width = Integer.highestOneBit(Math.max(16, maximumSize - 1) * 2);
+
+            this.counters = new byte[width * SEEDS.length];
+            this.mask = width - 1;
+            this.sampleSize = Math.max(10 * maximumSize, 160);
+        }
+
+        public void increment(Object key) {
+            var hash = key.hashCode();
+            var incremented = false;
+
+            for (var row = 0; row < SEEDS.length; row++) {
+                var index = indexOf(hash, row);
+
+                if (counters[index] < MAX_COUNT) {
+                    counters[index]++;
+                    incremented = true;
+                }
+            }
+
+            if (incremented && ++increments >= sampleSize) {
+                age();
+            }
+        }
+
+        public int frequency(Object key) {
+            var hash = key.hashCode();
+            var result = MAX_COUNT;
+
+            for (var row = 0; row < SEEDS.length; row++) {
+                result = Math.min(result, counters[indexOf(hash, row)]);
+            }
+
+            return result;
+        }
+
+        private int indexOf(int hash, int row) {
+            var h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return row * (mask + 1) + ((int) h & mask);
+        }
+
+        /**
+         * Halves all counters, thus past accesses lose weight.
+         */
+        private void age() {
+            for (var i = 0; i < counters.length; i++) {
+                counters[i] = (byte) (counters[i] >>> 1);
+            }
+
+            increments /= 2;
+        }
+
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.wellnr.platform.core.persistence.query.cache;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Configuration of a {@link CachingQueryEngine}.
+ */
+@lombok.Value
+@AllArgsConstructor(staticName = "apply")
+public class QueryCacheProperties {
+
+    /**
+     * The maximum number of cached results.
+     */
+    int maximumSize;
+
+    /**
+     * The counters which are updated by the cache. Pass an instance to read the counters of the cache, e.g. to
+     * publish them as metrics.
+     */
+    QueryCacheStatistics statistics;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maximumSize See {@link QueryCacheProperties#maximumSize}.
+     * @return A new instance.
+     */
+    public static QueryCacheProperties apply(int maximumSize) {
+        return apply(maximumSize, QueryCacheStatistics.apply());
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.wellnr.platform.core.persistence.query.cache;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+import java.text.MessageFormat;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a {@link CachingQueryEngine}. The counters are updated concurrently, reading them returns the
+ * current values.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class QueryCacheStatistics {
+
+    private final LongAdder hits;
+
+    private final LongAdder misses;
+
+    private final LongAdder evictions;
+
+    private final LongAdder rejections;
+
+    private final LongAdder invalidations;
+
+    /**
+     * Creates a new instance.
+     *
+     * @return A new instance with all counters set to zero.
+     */
+    public static QueryCacheStatistics apply() {
+        return new QueryCacheStatistics(new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder(),
+            new LongAdder());
+    }
+
+    /**
+     * @return The number of reads answered from the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of reads passed to the query engine.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of results which have been evicted to admit more frequently requested results.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The number of results which have not been admitted, as they are requested less frequently than the
+     * result which would have been evicted.
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * @return The number of results which have been invalidated by writes.
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * @return The ratio of reads answered from the cache, 0 if nothing has been read yet.
+     */
+    public double getHitRate() {
+        var hits = getHits();
+        var total = hits + getMisses();
+
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    void recordRejection() {
+        rejections.increment();
+    }
+
+    void recordInvalidations(int count) {
+        invalidations.add(count);
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format(
+            "QueryCacheStatistics(hits={0}, misses={1}, evictions={2}, rejections={3}, invalidations={4})",
+            getHits(), getMisses(), getEvictions(), getRejections(), getInvalidations()
+        );
+    }
+
+}
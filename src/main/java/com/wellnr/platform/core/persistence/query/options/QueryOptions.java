@@ -0,0 +1,300 @@
+package com.wellnr.platform.core.persistence.query.options;
+
+import com.wellnr.platform.common.ReflectionUtils;
+import com.wellnr.platform.core.persistence.query.values.Field;
+import com.wellnr.platform.core.persistence.query.values.ParameterReference;
+import com.wellnr.platform.core.persistence.query.values.StaticValue;
+import com.wellnr.platform.core.persistence.query.values.Value;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+import javax.annotation.Nullable;
+import java.text.MessageFormat;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Options to sort and page the results of a query.
+ * <p>
+ * Pages can be selected by `offset` and `limit`, or by keyset pagination: `after` contains the values of the
+ * sort fields of the last item of the previous page, the next page starts with the first item which is sorted
+ * after these values. Keyset pagination requires a sort order which is unique for all items (e.g. sort by
+ * `guid` as last field).
+ */
+@lombok.Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class QueryOptions {
+
+    private static final QueryOptions EMPTY = new QueryOptions(List.of(), List.of(), 0, null);
+
+    /**
+     * The sort order of the results. If empty, the results are returned in the natural order of the engine.
+     */
+    List<Sort> sort;
+
+    /**
+     * Values of the first sort fields; only results which are sorted after these values are returned.
+     */
+    List<Value> after;
+
+    /**
+     * The number of results to skip.
+     */
+    int offset;
+
+    /**
+     * The maximum number of results to return.
+     */
+    @Nullable
+    Integer limit;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param sort   See {@link QueryOptions#sort}.
+     * @param after  See {@link QueryOptions#after}.
+     * @param offset See {@link QueryOptions#offset}.
+     * @param limit  See {@link QueryOptions#limit}, `null` if the results should not be limited.
+     * @return A new instance.
+     */
+    public static QueryOptions apply(List<Sort> sort, List<Value> after, int offset, @Nullable Integer limit) {
+        if (offset < 0 || (Objects.nonNull(limit) && limit < 0)) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "Offset and limit must not be negative, but got offset `{0}` and limit `{1}`.",
+                offset, limit
+            ));
+        }
+
+        return new QueryOptions(List.copyOf(sort), List.copyOf(after), offset, limit);
+    }
+
+    /**
+     * Creates a new instance without any sorting or paging.
+     *
+     * @return A new instance.
+     */
+    public static QueryOptions apply() {
+        return EMPTY;
+    }
+
+    public Optional<Integer> getLimit() {
+        return Optional.ofNullable(limit);
+    }
+
+    public QueryOptions withSort(List<Sort> sort) {
+        return apply(sort, after, offset, limit);
+    }
+
+    public QueryOptions withAfter(List<Value> after) {
+        return apply(sort, after, offset, limit);
+    }
+
+    public QueryOptions withOffset(int offset) {
+        return apply(sort, after, offset, limit);
+    }
+
+    public QueryOptions withLimit(int limit) {
+        return apply(sort, after, offset, limit);
+    }
+
+    /**
+     * Checks whether the options change the results of a query.
+     *
+     * @return True, if no sorting or paging is defined.
+     */
+    public boolean isEmpty() {
+        return sort.isEmpty() && after.isEmpty() && offset == 0 && Objects.isNull(limit);
+    }
+
+    /**
+     * Combines the options with other options, e.g. options passed to a repository method with the options derived
+     * from the method's name. Properties which are defined in `other` override the properties of this instance.
+     *
+     * @param other The options to combine with.
+     * @return The combined options.
+     */
+    public QueryOptions merge(QueryOptions other) {
+        return apply(
+            other.sort.isEmpty() ? sort : other.sort,
+            other.sort.isEmpty() && other.after.isEmpty() ? after : other.after,
+            other.offset > 0 ? other.offset : offset,
+            other.getLimit().orElse(limit)
+        );
+    }
+
+    /**
+     * Resolves the values of {@link QueryOptions#after}. The values must not exceed the sort fields.
+     *
+     * @param parameters The parameters which may be referenced by the values.
+     * @return The resolved values.
+     */
+    public List<Object> getAfterValues(List<Object> parameters) {
+        if (after.size() > sort.size()) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "Keyset pagination requires a sort field for each value, but got `{0}` values for `{1}` sort " +
+                    "field(s).",
+                after.size(), sort.size()
+            ));
+        }
+
+        var values = new ArrayList<>(after.size());
+
+        for (var value : after) {
+            if (value instanceof StaticValue<?> staticValue) {
+                values.add(staticValue.getValue());
+            } else if (value instanceof ParameterReference ref) {
+                values.add(parameters.get(ref.getIndex()));
+            } else {
+                throw new IllegalArgumentException(MessageFormat.format(
+                    "Value `{0}` is not supported for keyset pagination. Use static values or parameters.",
+                    value
+                ));
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Creates a comparator which sorts items as specified by {@link QueryOptions#sort}. Values of sort fields
+     * must be {@link Comparable}, `null` values are sorted first.
+     *
+     * @param <T> The type of the items.
+     * @return The comparator. If no sort order is specified, all items are equal.
+     */
+    public <T> Comparator<T> getComparator() {
+        Comparator<T> comparator = (left, right) -> 0;
+
+        for (var s : sort) {
+            Comparator<T> byField = (left, right) -> compare(
+                getValue(left, s.getField()), getValue(right, s.getField())
+            );
+            comparator = comparator.thenComparing(s.isAscending() ? byField : byField.reversed());
+        }
+
+        return comparator;
+    }
+
+    /**
+     * Creates a predicate which only accepts items which are sorted after {@link QueryOptions#after}.
+     *
+     * @param parameters The parameters which may be referenced by the values.
+     * @param <T>        The type of the items.
+     * @return The predicate.
+     */
+    public <T> Predicate<T> getAfterCondition(List<Object> parameters) {
+        if (after.isEmpty()) {
+            return item -> true;
+        }
+
+        var values = getAfterValues(parameters);
+
+        return item -> {
+            for (var i = 0; i < values.size(); i++) {
+                var s = sort.get(i);
+                var result = compare(getValue(item, s.getField()), values.get(i));
+
+                if (result != 0) {
+                    return s.isAscending() ? result > 0 : result < 0;
+                }
+            }
+
+            return false;
+        };
+    }
+
+    /**
+     * Applies the options to items which are filtered in memory.
+     *
+     * @param items      The items matching the query, in the natural order of the engine.
+     * @param parameters The parameters which may be referenced by the options.
+     * @param <T>        The type of the items.
+     * @return The selected items.
+     */
+    public <T> List<T> select(Stream<T> items, List<Object> parameters) {
+        return select(items.filter(getAfterCondition(parameters)), getComparator());
+    }
+
+    /**
+     * Sorts items and applies {@link QueryOptions#offset} and {@link QueryOptions#limit}. If a limit is given,
+     * only the first `offset + limit` items are kept in a bounded heap while the items are visited, instead of
+     * sorting all items. Items which are equal regarding the order keep their order within the stream.
+     *
+     * @param items The items to select from.
+     * @param order The order of the items.
+     * @param <E>   The type of the items.
+     * @return The selected items.
+     */
+    public <E> List<E> select(Stream<E> items, Comparator<? super E> order) {
+        if (Objects.isNull(limit)) {
+            return items.sorted(order).skip(offset).toList();
+        } else if (limit == 0) {
+            return List.of();
+        }
+
+        var capacity = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        Comparator<Candidate<E>> candidateOrder = (left, right) -> {
+            var result = order.compare(left.item, right.item);
+            return result != 0 ? result : Long.compare(left.position, right.position);
+        };
+
+        /*
+         * The head of the heap is the last item of the current selection; it's replaced if a lower item is found.
+         */
+        var heap = new PriorityQueue<Candidate<E>>(Math.min(capacity, 1024), candidateOrder.reversed());
+        var iterator = items.iterator();
+        var position = 0L;
+
+        while (iterator.hasNext()) {
+            var candidate = new Candidate<>(iterator.next(), position++);
+
+            if (heap.size() < capacity) {
+                heap.add(candidate);
+            } else if (candidateOrder.compare(candidate, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+
+        return heap
+            .stream()
+            .sorted(candidateOrder)
+            .skip(offset)
+            .map(candidate -> candidate.item)
+            .toList();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(@Nullable Object left, @Nullable Object right) {
+        if (Objects.isNull(left) || Objects.isNull(right)) {
+            return Objects.isNull(left) ? (Objects.isNull(right) ? 0 : -1) : 1;
+        } else if (left instanceof Comparable comparable) {
+            return comparable.compareTo(right);
+        } else {
+            throw new IllegalArgumentException(MessageFormat.format(
+                "Can''t sort by values of type `{0}`, values must be comparable.",
+                left.getClass().getName()
+            ));
+        }
+    }
+
+    @Nullable
+    private static Object getValue(@Nullable Object item, Field field) {
+        if (Objects.isNull(item)) {
+            return null;
+        }
+
+        return ReflectionUtils.getFieldAccessor(item.getClass(), field.getFQN()).apply(item);
+    }
+
+    @AllArgsConstructor
+    private static class Candidate<E> {
+
+        final E item;
+
+        final long position;
+
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.wellnr.platform.core.persistence.query.options;
+
+import com.wellnr.platform.core.persistence.query.values.Field;
+import lombok.AllArgsConstructor;
+
+/**
+ * Specifies the order of query results by a single field.
+ */
+@lombok.Value
+@AllArgsConstructor(staticName = "apply")
+public class Sort {
+
+    Field field;
+
+    Direction direction;
+
+    public static Sort apply(Field field) {
+        return apply(field, Direction.ASC);
+    }
+
+    public boolean isAscending() {
+        return direction.equals(Direction.ASC);
+    }
+
+    public enum Direction {
+
+        ASC,
+
+        DESC
+
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.wellnr.platform.common;
+
+import com.wellnr.platform.common.guid.GUID;
+import org.junit.jupiter.api.Test;
+import samples.data.car.Car;
+import samples.data.car.Engine;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReflectionUtilsTest {
+
+    @Test
+    public void getFieldAccessor() {
+        var car = Car.apply(GUID.apply("cars", "abc"), "bmw", "red", Engine.apply(300, "diesel"), List.of());
+
+        assertEquals("bmw", ReflectionUtils.getFieldAccessor(Car.class, "brand").apply(car));
+        assertEquals("diesel", ReflectionUtils.getFieldAccessor(Car.class, "engine.type").apply(car));
+        assertSame(
+            ReflectionUtils.getFieldAccessor(Car.class, "engine.type"),
+            ReflectionUtils.getFieldAccessor(Car.class, "engine.type"));
+
+        var carWithoutEngine = Car.apply(GUID.apply("cars", "xyz"), "vw", "blue", null, List.of());
+        assertNull(ReflectionUtils.getFieldAccessor(Car.class, "engine.type").apply(carWithoutEngine));
+    }
+
+    @Test
+    public void getFieldAccessorWithoutGetter() {
+        var sample = new Sample();
+
+        assertEquals(42, ReflectionUtils.getFieldAccessor(Sample.class, "value").apply(sample));
+        assertThrows(RuntimeException.class, () -> ReflectionUtils.getFieldAccessor(Sample.class, "unknown"));
+    }
+
+    private static class Sample {
+
+        @SuppressWarnings("unused")
+        private final int value = 42;
+
+    }
+
+}
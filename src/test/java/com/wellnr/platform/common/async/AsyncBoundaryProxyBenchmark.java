@@ -0,0 +1,96 @@
+package com.wellnr.platform.common.async;
+
+import com.wellnr.platform.common.tuples.Done;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures the throughput of calls to a single entity behind {@link AsyncBoundaryProxy} with an increasing number of
+ * calling threads, for pure methods (executed along with each other) and for methods which are executed exclusively.
+ * <p>
+ * Not executed as part of the test suite. Usage: {@code AsyncBoundaryProxyBenchmark [calls] [max-callers]},
+ * defaults to 1M calls per run and up to 16 callers.
+ */
+public final class AsyncBoundaryProxyBenchmark {
+
+    private AsyncBoundaryProxyBenchmark() {
+
+    }
+
+    public static void main(String[] args) {
+        var calls = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        var maxCallers = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+
+        var scheduler = AsyncBoundaryProxy.createScheduler(
+            Runtime.getRuntime().availableProcessors(), AsyncBoundaryProxy.DEFAULT_MAX_POOL_SIZE
+        );
+
+        var counter = AsyncBoundaryProxy.createProxy(Counter.apply(0), Counter.class, scheduler);
+
+        /*
+         * Warm up.
+         */
+        run(counter, calls, maxCallers, true);
+        run(counter, calls, maxCallers, false);
+
+        for (var callers = 1; callers <= maxCallers; callers *= 2) {
+            for (var pure : new boolean[]{true, false}) {
+                var startedAt = System.nanoTime();
+                run(counter, calls, callers, pure);
+                var duration = System.nanoTime() - startedAt;
+
+                System.out.printf(
+                    "%s calls, %2d callers: %d calls in %d ms (%.0f calls/s)%n",
+                    pure ? "Pure     " : "Exclusive", callers, calls, duration / 1_000_000, calls / (duration / 1e9)
+                );
+            }
+        }
+
+        scheduler.shutdown();
+    }
+
+    private static void run(Counter counter, int calls, int callers, boolean pure) {
+        var executor = Executors.newFixedThreadPool(callers);
+        var futures = new ArrayList<CompletableFuture<Void>>();
+
+        for (var caller = 0; caller < callers; caller++) {
+            var offset = caller;
+
+            futures.add(CompletableFuture.runAsync(() -> {
+                var pending = new ArrayList<CompletableFuture<Done>>();
+
+                for (var i = offset; i < calls; i += callers) {
+                    pending.add((pure ? counter.get() : counter.increment()).toCompletableFuture());
+                }
+
+                CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+            }, executor));
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        executor.shutdown();
+    }
+
+    @AllArgsConstructor(staticName = "apply")
+    public static class Counter {
+
+        long value;
+
+        @AsyncMethod(pure = true)
+        public CompletionStage<Done> get() {
+            return CompletableFuture.completedFuture(Done.getInstance());
+        }
+
+        @AsyncMethod(pure = false)
+        public CompletionStage<Done> increment() {
+            value++;
+            return CompletableFuture.completedFuture(Done.getInstance());
+        }
+
+    }
+
+}
@@ -3,11 +3,18 @@ package com.wellnr.platform.common.async;
 import com.wellnr.platform.common.Operators;
 import com.wellnr.platform.common.tuples.Done;
 import com.wellnr.platform.common.tuples.Tuple;
+import com.wellnr.platform.common.tuples.Tuple2;
 import lombok.AllArgsConstructor;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -59,6 +66,146 @@ class AsyncBoundaryProxyTest {
         assertEquals(0, finalResult);
     }
 
+    @Test
+    public void testSharedScheduler() {
+        var scheduler = AsyncBoundaryProxy.createScheduler(2, 4);
+        var threads = ConcurrentHashMap.<String>newKeySet();
+        var entities = new ArrayList<Journal>();
+
+        for (var i = 0; i < 1000; i++) {
+            entities.add(AsyncBoundaryProxy.createProxy(Journal.apply(threads), Journal.class, scheduler));
+        }
+
+        var calls = new ArrayList<CompletableFuture<Done>>();
+
+        for (var i = 0; i < 10; i++) {
+            for (var entity : entities) {
+                calls.add(entity.append(i).toCompletableFuture());
+            }
+        }
+
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+
+        /*
+         * Calls to each entity are executed in order, all entities share the threads of the scheduler.
+         */
+        for (var entity : entities) {
+            assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), entity.getEntries());
+        }
+
+        assertTrue(threads.size() <= 4);
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testDispatchTable() throws NoSuchMethodException {
+        var table = DispatchTable.forType(Journal.class);
+
+        var append = table.get(Journal.class.getMethod("append", int.class));
+        var getEntries = table.get(Journal.class.getMethod("getEntries"));
+
+        assertFalse(append.isPure());
+        assertTrue(append.isAsync());
+        assertTrue(getEntries.isPure());
+        assertFalse(getEntries.isAsync());
+        assertEquals(List.of(Journal.class.getMethod("size")), table.getUnannotatedMethods());
+
+        /*
+         * Unannotated methods are executed exclusively.
+         */
+        var journal = AsyncBoundaryProxy.createProxy(Journal.apply(ConcurrentHashMap.newKeySet()), Journal.class);
+        journal.append(42).toCompletableFuture().join();
+
+        assertEquals(1, journal.size());
+    }
+
+    @Test
+    public void testConcurrentCallers() throws InterruptedException {
+        var scheduler = AsyncBoundaryProxy.createScheduler(4, 8);
+        var register = AsyncBoundaryProxy.createProxy(Register.apply(), Register.class, scheduler);
+        var callers = Executors.newFixedThreadPool(8);
+        var calls = new ConcurrentLinkedQueue<CompletableFuture<?>>();
+
+        /*
+         * Each caller writes its own increasing sequence, mixed with reads.
+         */
+        for (var caller = 0; caller < 8; caller++) {
+            var id = caller;
+
+            callers.execute(() -> {
+                for (var i = 0; i < 500; i++) {
+                    calls.add(register.write(id, i).toCompletableFuture());
+                    calls.add(register.read().toCompletableFuture());
+                }
+            });
+        }
+
+        callers.shutdown();
+        assertTrue(callers.awaitTermination(30, TimeUnit.SECONDS));
+
+        /*
+         * No call is lost: all calls complete.
+         */
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).orTimeout(30, TimeUnit.SECONDS).join();
+
+        var entries = register.getEntries();
+        assertEquals(4000, entries.size());
+
+        /*
+         * Calls of each caller are executed in the order of their arrival.
+         */
+        for (var caller = 0; caller < 8; caller++) {
+            var id = caller;
+            var sequence = entries.stream().filter(entry -> entry._1 == id).map(entry -> entry._2).toList();
+
+            assertEquals(IntStream.range(0, 500).boxed().toList(), sequence);
+        }
+
+        /*
+         * Writes are executed exclusively, reads may overlap with other reads only.
+         */
+        assertEquals(0, register.getViolations());
+
+        /*
+         * Consecutive reads are executed along with each other: both reads only complete if they overlap.
+         */
+        var latch = new CountDownLatch(2);
+        var first = register.await(latch).toCompletableFuture();
+        var second = register.await(latch).toCompletableFuture();
+
+        assertTrue(first.orTimeout(10, TimeUnit.SECONDS).join() && second.orTimeout(10, TimeUnit.SECONDS).join());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testRejectedCalls() {
+        var reject = new AtomicBoolean(true);
+        Executor scheduler = task -> {
+            if (reject.get()) {
+                throw new RejectedExecutionException("Scheduler has been shut down.");
+            }
+
+            ForkJoinPool.commonPool().execute(task);
+        };
+
+        var journal = AsyncBoundaryProxy.createProxyWithHandler(
+            Journal.apply(ConcurrentHashMap.newKeySet()), Journal.class, scheduler
+        );
+
+        /*
+         * Rejected calls fail and release the mailbox, thus following calls are executed.
+         */
+        var rejected = journal._1.append(1).toCompletableFuture();
+
+        assertTrue(rejected.isCompletedExceptionally());
+        assertTrue(journal._2.isIdle());
+
+        reject.set(false);
+        journal._1.append(2).toCompletableFuture().join();
+
+        assertEquals(List.of(2), journal._1.getEntries());
+    }
+
     /*
      * Commenting test as this test can also fail by accident. It can be used for manually testing effects
      * when not using Async Boundary.
@@ -78,6 +225,96 @@ class AsyncBoundaryProxyTest {
     }
      */
 
+    @AllArgsConstructor(staticName = "apply")
+    public static class Journal {
+
+        Set<String> threads;
+
+        List<Integer> entries;
+
+        public static Journal apply(Set<String> threads) {
+            return apply(threads, new ArrayList<>());
+        }
+
+        @AsyncMethod(pure = false)
+        public CompletionStage<Done> append(int entry) {
+            threads.add(Thread.currentThread().getName());
+            entries.add(entry);
+            return CompletableFuture.completedFuture(Done.getInstance());
+        }
+
+        @AsyncMethod(pure = true)
+        public List<Integer> getEntries() {
+            return List.copyOf(entries);
+        }
+
+        public int size() {
+            return entries.size();
+        }
+
+    }
+
+    /**
+     * Records writes and detects calls which are executed along with a write.
+     */
+    @AllArgsConstructor(staticName = "apply")
+    public static class Register {
+
+        List<Tuple2<Integer, Integer>> entries;
+
+        AtomicInteger readers;
+
+        AtomicInteger writers;
+
+        AtomicInteger violations;
+
+        public static Register apply() {
+            return apply(new ArrayList<>(), new AtomicInteger(), new AtomicInteger(), new AtomicInteger());
+        }
+
+        @AsyncMethod(pure = false)
+        public CompletionStage<Done> write(int caller, int value) {
+            if (writers.incrementAndGet() != 1 || readers.get() != 0) {
+                violations.incrementAndGet();
+            }
+
+            entries.add(Tuple.apply(caller, value));
+            writers.decrementAndGet();
+            return CompletableFuture.completedFuture(Done.getInstance());
+        }
+
+        @AsyncMethod(pure = true)
+        public CompletionStage<Integer> read() {
+            readers.incrementAndGet();
+
+            if (writers.get() != 0) {
+                violations.incrementAndGet();
+            }
+
+            var size = entries.size();
+            readers.decrementAndGet();
+            return CompletableFuture.completedFuture(size);
+        }
+
+        @AsyncMethod(pure = true)
+        public CompletionStage<Boolean> await(CountDownLatch latch) {
+            latch.countDown();
+            return CompletableFuture.completedFuture(Operators.suppressExceptions(() ->
+                latch.await(10, TimeUnit.SECONDS)));
+        }
+
+        @AsyncMethod(pure = true)
+        public List<Tuple2<Integer, Integer>> getEntries() {
+            return List.copyOf(entries);
+        }
+
+        @AsyncMethod(pure = true)
+        public int getViolations() {
+            return violations.get();
+        }
+
+    }
+
     @AllArgsConstructor(staticName = "apply")
     public static class TestClass {
 
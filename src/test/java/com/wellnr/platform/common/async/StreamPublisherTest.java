@@ -0,0 +1,94 @@
+package com.wellnr.platform.common.async;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamPublisherTest {
+
+    @Test
+    public void test() {
+        var pulled = new AtomicInteger();
+        var closed = new AtomicBoolean();
+        var publisher = StreamPublisher.apply(() -> IntStream
+            .range(0, 10)
+            .peek(i -> pulled.incrementAndGet())
+            .boxed()
+            .onClose(() -> closed.set(true)));
+
+        var subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+
+        /*
+         * Elements are only pulled from the stream when requested.
+         */
+        assertEquals(0, pulled.get());
+
+        subscriber.subscription.request(3);
+        assertEquals(List.of(0, 1, 2), subscriber.received);
+        assertEquals(3, pulled.get());
+
+        subscriber.subscription.request(100);
+        assertEquals(10, subscriber.received.size());
+        assertTrue(subscriber.completed);
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testCancel() {
+        var closed = new AtomicBoolean();
+        var publisher = StreamPublisher.apply(() -> IntStream
+            .range(0, 10)
+            .boxed()
+            .onClose(() -> closed.set(true)));
+
+        var subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(2);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(2);
+
+        assertEquals(List.of(0, 1), subscriber.received);
+        assertFalse(subscriber.completed);
+        assertTrue(closed.get());
+    }
+
+    private static class TestSubscriber implements Flow.Subscriber<Integer> {
+
+        final List<Integer> received = new ArrayList<>();
+
+        Flow.Subscription subscription;
+
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+
+    }
+
+}
@@ -0,0 +1,268 @@
+package com.wellnr.platform.core.context;
+
+import com.wellnr.platform.common.Operators;
+import com.wellnr.platform.common.async.AsyncBoundaryProxy;
+import com.wellnr.platform.common.async.AsyncMethod;
+import com.wellnr.platform.common.guid.GUID;
+import com.wellnr.platform.common.tuples.Done;
+import com.wellnr.platform.core.config.EntitiesConfiguration;
+import lombok.AllArgsConstructor;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntityRegistryTest {
+
+    @Test
+    public void test() {
+        var clock = new AtomicLong();
+        var statistics = EntityStatistics.apply();
+        var scheduler = AsyncBoundaryProxy.createScheduler(1, 4);
+        var registry = EntityRegistry.apply(
+            EntitiesConfiguration.apply(Duration.ofNanos(100), 2), scheduler, statistics, clock::get
+        );
+
+        var a = GUID.apply("tests", "a");
+        var b = GUID.apply("tests", "b");
+        var c = GUID.apply("tests", "c");
+        var d = GUID.apply("tests", "d");
+
+        clock.set(1);
+        registry.getOrActivate(a, TestEntity.class, TestEntity::apply);
+        clock.set(2);
+        registry.getOrActivate(b, TestEntity.class, TestEntity::apply);
+        assertEquals(2, statistics.getResidentEntities());
+
+        /*
+         * The least recently requested entity is passivated if the maximum number of entities is exceeded.
+         */
+        clock.set(3);
+        registry.getOrActivate(c, TestEntity.class, TestEntity::apply);
+        registry.passivate();
+
+        assertTrue(registry.get(a).isEmpty());
+        assertEquals(1, statistics.getPassivations());
+
+        clock.set(4);
+        registry.get(b);
+        clock.set(5);
+        registry.getOrActivate(d, TestEntity.class, TestEntity::apply);
+        registry.passivate();
+
+        assertTrue(registry.get(c).isEmpty());
+        assertTrue(registry.get(b).isPresent());
+        assertEquals(2, statistics.getResidentEntities());
+
+        /*
+         * Entities are not passivated while calls are executed, but after they have been idle.
+         */
+        var call = new CompletableFuture<Done>();
+        var entity = (TestEntity) registry.get(b).orElseThrow();
+        var result = entity.await(call);
+
+        clock.addAndGet(1000);
+        registry.get(d);
+        registry.passivate();
+
+        assertTrue(registry.get(b).isPresent());
+        assertEquals(2, statistics.getPassivations());
+
+        call.complete(Done.getInstance());
+        result.toCompletableFuture().join();
+
+        /*
+         * The mailbox is released shortly after the result has been completed.
+         */
+        for (var i = 0; i < 100 && statistics.getPassivations() < 3; i++) {
+            Operators.suppressExceptions(() -> Thread.sleep(10));
+            clock.addAndGet(1000);
+            registry.get(d);
+            registry.passivate();
+        }
+
+        assertTrue(registry.get(b).isEmpty());
+        assertEquals(1, statistics.getResidentEntities());
+        assertEquals(4, statistics.getActivations());
+        assertEquals(3, statistics.getPassivations());
+
+        registry.stop();
+    }
+
+    @Test
+    public void testConcurrentActivation() {
+        var statistics = EntityStatistics.apply();
+        var scheduler = AsyncBoundaryProxy.createScheduler(4, 8);
+        var registry = EntityRegistry.apply(EntitiesConfiguration.apply(), scheduler, statistics);
+        var guid = GUID.apply("tests", "a");
+
+        /*
+         * Concurrent requests create each entity only once.
+         */
+        var requests = IntStream
+            .range(0, 100)
+            .mapToObj(i -> CompletableFuture.supplyAsync(
+                () -> registry.getOrActivate(guid, TestEntity.class, TestEntity::apply), scheduler
+            ))
+            .toList();
+
+        var entities = requests.stream().map(CompletableFuture::join).distinct().toList();
+
+        assertEquals(1, entities.size());
+        assertEquals(1, statistics.getActivations());
+
+        /*
+         * Singletons are looked up by their type.
+         */
+        var singleton = registry.getOrActivateSingleton(
+            SingletonEntity.class, () -> SingletonEntity.apply(GUID.apply("tests", "singleton"))
+        );
+
+        assertSame(singleton, registry.getOrActivateSingleton(SingletonEntity.class, () -> {
+            throw new IllegalStateException("Singleton must not be created again.");
+        }));
+
+        assertSame(singleton, registry.find(SingletonEntity.class).orElseThrow());
+        assertTrue(registry.find(TestEntity.class).isEmpty());
+        assertEquals(2, statistics.getResidentEntities());
+
+        registry.stop();
+    }
+
+    @Test
+    public void testCallsToPassivatedEntitiesAreForwarded() {
+        var clock = new AtomicLong();
+        var statistics = EntityStatistics.apply();
+        var scheduler = AsyncBoundaryProxy.createScheduler(1, 4);
+        var registry = EntityRegistry.apply(
+            EntitiesConfiguration.apply(Duration.ofNanos(100), 10), scheduler, statistics, clock::get
+        );
+
+        var guid = GUID.apply("tests", "a");
+        var stale = (TestEntity) registry.getOrActivate(guid, TestEntity.class, TestEntity::apply);
+
+        clock.set(1000);
+        registry.passivate();
+
+        assertTrue(registry.get(guid).isEmpty());
+        assertEquals(1, statistics.getPassivations());
+
+        /*
+         * Calls via a reference to the passivated entity are executed by the entity which is created again.
+         */
+        stale.await(CompletableFuture.completedFuture(Done.getInstance())).toCompletableFuture().join();
+
+        assertEquals(2, statistics.getActivations());
+        assertTrue(registry.get(guid).isPresent());
+
+        registry.stop();
+    }
+
+    @Test
+    public void testPassivationBackOff() {
+        var clock = new AtomicLong();
+        var passivations = new AtomicInteger();
+        var scheduler = new ForkJoinPool(1) {
+
+            @Override
+            public void execute(Runnable task) {
+                if (!(task instanceof CompletableFuture.AsynchronousCompletionTask)) {
+                    passivations.incrementAndGet();
+                }
+
+                super.execute(task);
+            }
+
+        };
+
+        var registry = EntityRegistry.apply(
+            EntitiesConfiguration.apply(Duration.ofMinutes(10), 1), scheduler, EntityStatistics.apply(), clock::get
+        );
+
+        /*
+         * Both entities execute calls, thus the maximum is exceeded but no entity can be passivated.
+         */
+        var call = new CompletableFuture<Done>();
+        var a = GUID.apply("tests", "a");
+        var b = GUID.apply("tests", "b");
+
+        ((TestEntity) registry.getOrActivate(a, TestEntity.class, TestEntity::apply)).await(call);
+        ((TestEntity) registry.getOrActivate(b, TestEntity.class, TestEntity::apply)).await(call);
+
+        for (var i = 0; i < 1000; i++) {
+            clock.addAndGet(1000);
+            registry.get(a);
+        }
+
+        assertEquals(0, passivations.get());
+
+        clock.addAndGet(Duration.ofMillis(10).toNanos());
+        registry.get(a);
+        registry.get(b);
+
+        assertEquals(1, passivations.get());
+
+        call.complete(Done.getInstance());
+        registry.stop();
+    }
+
+    @Test
+    public void testStopWaitsForCalls() {
+        var scheduler = AsyncBoundaryProxy.createScheduler(1, 4);
+        var registry = EntityRegistry.apply(EntitiesConfiguration.apply(), scheduler, EntityStatistics.apply());
+        var executed = new AtomicBoolean();
+
+        scheduler.execute(() -> {
+            Operators.suppressExceptions(() -> Thread.sleep(200));
+            executed.set(true);
+        });
+
+        registry.stop();
+
+        assertTrue(executed.get());
+        assertTrue(scheduler.isTerminated());
+    }
+
+    @AllArgsConstructor
+    public static class TestEntity implements RootEntity {
+
+        private final GUID guid;
+
+        public static TestEntity apply(GUID guid) {
+            return new TestEntity(guid);
+        }
+
+        @Override
+        @AsyncMethod(pure = true)
+        public GUID getGUID() {
+            return guid;
+        }
+
+        @AsyncMethod(pure = false)
+        public CompletionStage<Done> await(CompletableFuture<Done> call) {
+            return call;
+        }
+
+    }
+
+    public static class SingletonEntity extends TestEntity {
+
+        public SingletonEntity(GUID guid) {
+            super(guid);
+        }
+
+        public static SingletonEntity apply(GUID guid) {
+            return new SingletonEntity(guid);
+        }
+
+    }
+
+}
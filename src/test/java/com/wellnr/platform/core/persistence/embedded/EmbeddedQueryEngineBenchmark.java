@@ -0,0 +1,81 @@
+package com.wellnr.platform.core.persistence.embedded;
+
+import com.wellnr.platform.common.guid.GUID;
+import com.wellnr.platform.core.config.EmbeddedDatabaseConfiguration;
+import samples.data.car.Car;
+import samples.data.car.Engine;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import static com.wellnr.platform.core.persistence.query.Queries.*;
+
+/**
+ * Measures write throughput (with fsync per group commit) and recovery time of {@link EmbeddedQueryEngine}.
+ * <p>
+ * Not executed as part of the test suite. Usage: {@code EmbeddedQueryEngineBenchmark [records] [writers]},
+ * defaults to 10M records written by 16 concurrent writers.
+ */
+public final class EmbeddedQueryEngineBenchmark {
+
+    private EmbeddedQueryEngineBenchmark() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        var records = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        var writers = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+
+        var directory = Files.createTempDirectory("embedded-query-engine-benchmark");
+        var configuration = EmbeddedDatabaseConfiguration.apply(directory.toString(), true, 1000, records / 2);
+        var byGuid = match($("guid"), eq(p(0)));
+
+        System.out.printf("Writing %d records with %d writers to `%s` ...%n", records, writers, directory);
+
+        var engine = EmbeddedQueryEngine.apply(Car.class, directory, configuration);
+        var executor = Executors.newFixedThreadPool(writers);
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        var startedAt = System.nanoTime();
+
+        for (var writer = 0; writer < writers; writer++) {
+            var offset = writer;
+
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (var i = offset; i < records; i += writers) {
+                    var car = Car.apply(
+                        GUID.apply("cars", "car-" + i), "Brand-" + (i % 100), "red", Engine.apply(i, "gas"), List.of()
+                    );
+
+                    engine.insertOrUpdate(car, byGuid, List.of(car.getGUID()));
+                }
+            }, executor));
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        var writeDuration = System.nanoTime() - startedAt;
+        executor.shutdown();
+        engine.close();
+
+        System.out.printf(
+            "Write: %d records in %d ms (%.0f records/s)%n",
+            records, writeDuration / 1_000_000, records / (writeDuration / 1e9)
+        );
+
+        startedAt = System.nanoTime();
+        var recovered = EmbeddedQueryEngine.apply(Car.class, directory, configuration);
+        var recoveryDuration = System.nanoTime() - startedAt;
+
+        System.out.printf(
+            "Recovery: %d records in %d ms (%.0f records/s)%n",
+            recovered.findAll(match($("brand"), eq(v("Brand-0"))), List.of()).size() * 100L,
+            recoveryDuration / 1_000_000, records / (recoveryDuration / 1e9)
+        );
+
+        recovered.close();
+    }
+
+}
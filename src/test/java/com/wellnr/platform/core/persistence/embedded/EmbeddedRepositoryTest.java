@@ -0,0 +1,187 @@
+package com.wellnr.platform.core.persistence.embedded;
+
+import com.wellnr.platform.common.Operators;
+import com.wellnr.platform.common.guid.GUID;
+import com.wellnr.platform.core.config.EmbeddedDatabaseConfiguration;
+import com.wellnr.platform.core.context.PlatformContext;
+import com.wellnr.platform.core.persistence.query.AbstractQueryEngineRepositoryTest;
+import com.wellnr.platform.core.persistence.query.filter.True;
+import org.junit.jupiter.api.Test;
+import samples.data.car.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.wellnr.platform.core.persistence.query.Queries.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmbeddedRepositoryTest extends AbstractQueryEngineRepositoryTest {
+
+    @Override
+    public CarsRepository getCarsRepository(PlatformContext context) {
+        return EmbeddedRepository.create(context, CarsRepository.class, createConfiguration(), Car.class);
+    }
+
+    @Override
+    public LogbookEntryRepository getLogbookEntriesRepository(PlatformContext context) {
+        return EmbeddedRepository.create(
+            context, LogbookEntryRepository.class, createConfiguration(), LogbookEntry.class
+        );
+    }
+
+    /**
+     * A repository created on the same directory recovers all changes from the journal, once the engines of the
+     * previous repository have been closed.
+     */
+    @Test
+    public void testRecovery() {
+        var context = PlatformContext.apply();
+        var configuration = createConfiguration(100_000);
+        var repo = EmbeddedRepository.create(context, CarsRepository.class, configuration, Car.class);
+
+        for (var i = 0; i < 100; i++) {
+            repo.insertOrUpdateCar(Car.apply(
+                GUID.apply("cars", "car-" + i), "Brand-" + (i % 10), "red", Engine.apply(i, "gas"), List.of()
+            ));
+        }
+
+        repo.removeCarByGUID(GUID.apply("cars", "car-42"));
+        repo.insertOrUpdateCar(Car.apply(
+            GUID.apply("cars", "car-7"), "Tesla", "silver", Engine.apply(110, "electric"), List.of()
+        ));
+
+        var engines = context.getInstance(EmbeddedQueryEngineRegistry.class);
+        assertEquals(1, engines.size());
+        engines.close();
+
+        var recovered = EmbeddedRepository.create(context, CarsRepository.class, configuration, Car.class);
+
+        assertEquals(99, recovered.findAllCars().size());
+        assertTrue(recovered.findOneCarByGUID(GUID.apply("cars", "car-42")).isEmpty());
+        assertEquals("Tesla", recovered.getCarByGUID(GUID.apply("cars", "car-7")).getBrand());
+        assertEquals(9, recovered.findAllCarsByBrand("Brand-2").size());
+    }
+
+    /**
+     * Changes which are written before and after a snapshot are recovered.
+     */
+    @Test
+    public void testRecoveryFromSnapshot() throws IOException {
+        var directory = Files.createTempDirectory("embedded-query-engine-test");
+        var configuration = EmbeddedDatabaseConfiguration.apply(directory.toString());
+        var byGuid = match($("guid"), eq(p(0)));
+
+        var engine = EmbeddedQueryEngine.apply(Car.class, directory, configuration);
+        var bmw = Car.apply(GUID.apply("cars", "bmw"), "BMW", "red", Engine.apply(10, "gas"), List.of());
+        var audi = Car.apply(GUID.apply("cars", "audi"), "Audi", "yellow", Engine.apply(10, "gas"), List.of());
+
+        engine.insertOrUpdate(bmw, byGuid, List.of(bmw.getGUID()));
+        engine.insertOrUpdate(audi, byGuid, List.of(audi.getGUID()));
+        engine.snapshot();
+        engine.remove(byGuid, List.of(bmw.getGUID()));
+        engine.close();
+
+        var recovered = EmbeddedQueryEngine.apply(Car.class, directory, configuration);
+
+        assertEquals(List.of(audi), recovered.findAll(match($("brand"), eq(v("Audi"))), List.of()));
+        assertTrue(recovered.findOne(byGuid, List.of(bmw.getGUID())).isEmpty());
+        recovered.close();
+    }
+
+    /**
+     * A directory can only be used by a single engine at a time.
+     */
+    @Test
+    public void testDirectoryIsLocked() throws IOException {
+        var directory = Files.createTempDirectory("embedded-query-engine-test");
+        var configuration = EmbeddedDatabaseConfiguration.apply(directory.toString());
+        var engine = EmbeddedQueryEngine.apply(Car.class, directory, configuration);
+
+        assertThrows(IllegalStateException.class, () -> EmbeddedQueryEngine.apply(Car.class, directory, configuration));
+        engine.close();
+
+        var reopened = EmbeddedQueryEngine.apply(Car.class, directory, configuration);
+        assertEquals(0, reopened.count(True.apply(), List.of()));
+        reopened.close();
+    }
+
+    /**
+     * Writes which are not persisted when the engine is closed fail and are rolled back; no write is left waiting.
+     */
+    @Test
+    public void testCloseWhileWriting() throws Exception {
+        var directory = Files.createTempDirectory("embedded-query-engine-test");
+        var configuration = EmbeddedDatabaseConfiguration.apply(directory.toString(), true, 1000, 100_000);
+        var byGuid = match($("guid"), eq(p(0)));
+        var engine = EmbeddedQueryEngine.apply(Car.class, directory, configuration);
+        var executor = Executors.newFixedThreadPool(4);
+        var written = ConcurrentHashMap.<GUID>newKeySet();
+        var writers = new ArrayList<CompletableFuture<Void>>();
+
+        try {
+            for (var w = 0; w < 4; w++) {
+                var offset = w;
+
+                writers.add(CompletableFuture.runAsync(() -> {
+                    for (var i = offset; ; i += 4) {
+                        var car = Car.apply(
+                            GUID.apply("cars", "car-" + i), "VW", "red", Engine.apply(i, "gas"), List.of()
+                        );
+
+                        try {
+                            engine.insertOrUpdate(car, byGuid, List.of(car.getGUID()));
+                            written.add(car.getGUID());
+                        } catch (RuntimeException ex) {
+                            return;
+                        }
+                    }
+                }, executor));
+            }
+
+            while (written.size() < 100) {
+                Thread.sleep(1);
+            }
+
+            engine.close();
+            CompletableFuture.allOf(writers.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        var inMemory = engine
+            .findAll(True.apply(), List.of())
+            .stream()
+            .map(Car::getGUID)
+            .collect(Collectors.toSet());
+
+        var recovered = EmbeddedQueryEngine.apply(Car.class, directory, configuration);
+        var persisted = recovered
+            .findAll(True.apply(), List.of())
+            .stream()
+            .map(Car::getGUID)
+            .collect(Collectors.toSet());
+
+        assertEquals(written, inMemory);
+        assertEquals(written, persisted);
+        recovered.close();
+    }
+
+    private static EmbeddedDatabaseConfiguration createConfiguration() {
+        return createConfiguration(10);
+    }
+
+    private static EmbeddedDatabaseConfiguration createConfiguration(long snapshotAfterEntries) {
+        var directory = Operators.suppressExceptions(() -> Files.createTempDirectory("embedded-repository-test"));
+        return EmbeddedDatabaseConfiguration.apply(directory.toString(), true, 1000, snapshotAfterEntries);
+    }
+
+}
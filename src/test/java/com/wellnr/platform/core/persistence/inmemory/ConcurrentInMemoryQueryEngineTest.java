@@ -0,0 +1,38 @@
+package com.wellnr.platform.core.persistence.inmemory;
+
+import com.wellnr.platform.common.guid.GUID;
+import com.wellnr.platform.core.persistence.query.filter.True;
+import org.junit.jupiter.api.Test;
+import samples.data.car.Car;
+import samples.data.car.Engine;
+
+import java.util.List;
+
+import static com.wellnr.platform.core.persistence.query.Queries.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConcurrentInMemoryQueryEngineTest {
+
+    @Test
+    void itemsWithoutPrimaryKeyAreRejected() {
+        var engine = ConcurrentInMemoryQueryEngine.apply(Car.class);
+        var byGuid = match($("guid"), eq(p(0)));
+
+        var bmw = Car.apply(GUID.apply("cars", "bmw"), "BMW", "red", Engine.apply(200, "gas"), List.of());
+        var audi = Car.apply(null, "Audi", "blue", Engine.apply(150, "diesel"), List.of());
+        var vw = Car.apply(null, "VW", "green", Engine.apply(100, "diesel"), List.of());
+
+        engine.insertOrUpdate(bmw, byGuid, List.of(bmw.getGUID()));
+
+        assertThrows(IllegalArgumentException.class, () -> engine.insertOrUpdate(audi, True.apply(), List.of()));
+        assertThrows(IllegalArgumentException.class, () -> engine.insertOrUpdateAll(
+            List.of(bmw, vw), byGuid, List.of(List.of(bmw.getGUID()), List.of(GUID.apply("cars", "vw")))
+        ));
+        assertThrows(
+            IllegalArgumentException.class, () -> ConcurrentInMemoryQueryEngine.apply(Car.class, List.of(audi, vw))
+        );
+        assertEquals(List.of(bmw), engine.findAll(True.apply(), List.of()));
+    }
+
+}
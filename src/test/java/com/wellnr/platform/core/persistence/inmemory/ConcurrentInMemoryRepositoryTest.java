@@ -0,0 +1,99 @@
+package com.wellnr.platform.core.persistence.inmemory;
+
+import com.wellnr.platform.common.guid.GUID;
+import com.wellnr.platform.core.context.PlatformContext;
+import com.wellnr.platform.core.persistence.query.AbstractQueryEngineRepositoryTest;
+import com.wellnr.platform.core.persistence.query.Index;
+import org.junit.jupiter.api.Test;
+import samples.data.car.Car;
+import samples.data.car.CarsRepository;
+import samples.data.car.Engine;
+import samples.data.car.LogbookEntry;
+import samples.data.car.LogbookEntryRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.wellnr.platform.core.persistence.query.Queries.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConcurrentInMemoryRepositoryTest extends AbstractQueryEngineRepositoryTest {
+
+    @Override
+    public CarsRepository getCarsRepository(PlatformContext context) {
+        return ConcurrentInMemoryRepository.create(context, CarsRepository.class, Car.class);
+    }
+
+    @Override
+    public LogbookEntryRepository getLogbookEntriesRepository(PlatformContext context) {
+        return ConcurrentInMemoryRepository.create(context, LogbookEntryRepository.class, LogbookEntry.class);
+    }
+
+    @Test
+    void readersDoNotObservePartialWrites() throws Exception {
+        var cars = IntStream
+            .range(0, 10)
+            .mapToObj(i -> Car.apply(GUID.apply("cars", "car-" + i), "VW", "blue", Engine.apply(100, "gas"), List.of()))
+            .toList();
+
+        var engine = ConcurrentInMemoryQueryEngine.apply(Car.class, cars);
+        engine.ensureIndex(Index.apply($("color")));
+
+        var byGuid = match($("guid"), eq(p(0)));
+        var byColor = match($("color"), eq(p(0)));
+        var executor = Executors.newFixedThreadPool(4);
+        var done = new AtomicBoolean();
+        var inconsistentReads = new AtomicInteger();
+
+        try {
+            /*
+             * Writers update single items by their primary key, the color (and thus the indexed value) of each item
+             * stays the same. Readers must never observe an item while it is replaced within the index.
+             */
+            var writers = new ArrayList<CompletableFuture<Void>>();
+
+            for (var w = 0; w < 2; w++) {
+                var offset = w;
+
+                writers.add(CompletableFuture.runAsync(() -> {
+                    for (var i = 0; i < 20_000; i++) {
+                        var car = cars.get((i * 2 + offset) % cars.size());
+                        var updated = Car.apply(car.getGUID(), "VW", "blue", Engine.apply(i, "gas"), List.of());
+
+                        engine.insertOrUpdate(updated, byGuid, List.of(car.getGUID()));
+                    }
+                }, executor));
+            }
+
+            var readers = new ArrayList<CompletableFuture<Void>>();
+
+            for (var r = 0; r < 2; r++) {
+                readers.add(CompletableFuture.runAsync(() -> {
+                    while (!done.get()) {
+                        var count = engine.count(byColor, List.of("blue"));
+                        var found = engine.findAll(byColor, List.of("blue")).size();
+
+                        if (count != cars.size() || found != cars.size()) {
+                            inconsistentReads.incrementAndGet();
+                        }
+                    }
+                }, executor));
+            }
+
+            CompletableFuture.allOf(writers.toArray(CompletableFuture[]::new)).get();
+            done.set(true);
+            CompletableFuture.allOf(readers.toArray(CompletableFuture[]::new)).get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, inconsistentReads.get());
+        assertEquals(10, engine.count(byColor, List.of("blue")));
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.wellnr.platform.core.persistence.jdbc;
+
+import com.wellnr.platform.common.databind.DefaultObjectMapperFactory;
+import com.wellnr.platform.common.guid.GUID;
+import org.junit.jupiter.api.Test;
+import samples.data.car.Car;
+import samples.data.car.Driver;
+import samples.data.car.Engine;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.wellnr.platform.core.persistence.query.Queries.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcQueryTemplateTest {
+
+    private static final JdbcTableMapping<Car> MAPPING = JdbcTableMapping.apply(
+        Car.class, DefaultObjectMapperFactory.apply().createJsonMapper(false)
+    );
+
+    @Test
+    public void testTableMapping() {
+        var columns = MAPPING
+            .getTable()
+            .getColumns()
+            .stream()
+            .map(column -> column.getName())
+            .toList();
+
+        assertEquals(List.of("_id", "_document", "brand", "color", "engine.power", "engine.type"), columns);
+
+        var car = Car.apply(GUID.apply("cars", "bmw"), "BMW", null, Engine.apply(200, "gas"), List.of());
+        var row = MAPPING.getRow(car);
+
+        assertEquals(car.getGUID().toString(), row.get(0));
+        assertEquals(Arrays.asList("BMW", null, 200L, "gas"), row.subList(2, row.size()));
+        assertEquals(car, MAPPING.read((String) row.get(1)));
+    }
+
+    @Test
+    public void testTranslation() {
+        var byBrandAndEngine = JdbcQueryTemplate.compile(
+            and(match($("brand"), eq(p(0))), match($("engine"), match($("type"), isIn(p(1))))), MAPPING
+        );
+
+        var bound = byBrandAndEngine.bind(List.of("BMW", List.of("gas", "electric")));
+
+        assertTrue(byBrandAndEngine.isExact());
+        assertEquals("(\"brand\" = ?) AND (\"engine.type\" IN (?, ?))", bound.getSql());
+        assertEquals(List.of("BMW", "gas", "electric"), bound.getValues());
+
+        /*
+         * `null` values are compared with `IS NULL`.
+         */
+        var byColor = JdbcQueryTemplate.compile(match($("color"), eq(p(0))), MAPPING);
+        assertEquals("\"color\" IS NULL", byColor.bind(Arrays.asList((Object) null)).getSql());
+
+        /*
+         * The primary key is stored in `_id`, sorting and paging are executed by the database.
+         */
+        var byGuid = JdbcQueryTemplate.compile(match($("guid"), eq(p(0))), MAPPING);
+        var guid = GUID.apply("cars", "bmw");
+
+        assertTrue(byGuid.isPrimaryKeyMatch());
+        assertEquals(guid.toString(), byGuid.getPrimaryKey(List.of(guid)).orElseThrow());
+
+        var select = byBrandAndEngine.select(
+            orderBy(asc("engine.power"), desc("guid")).withLimit(10), List.of("BMW", List.of("gas"))
+        );
+
+        assertEquals(
+            "SELECT \"_id\", \"_document\" FROM \"car\" WHERE (\"brand\" = ?) AND (\"engine.type\" IN (?)) " +
+                "ORDER BY \"engine.power\" ASC NULLS FIRST, \"_id\" DESC NULLS LAST LIMIT ? OFFSET ?",
+            select.getSql()
+        );
+
+        assertEquals(List.of("BMW", "gas", 10L, 0L), select.getValues());
+    }
+
+    @Test
+    public void testResidualFilter() {
+        var bmw = Car.apply(
+            GUID.apply("cars", "bmw"), "BMW", "red", Engine.apply(200, "gas"), List.of(Driver.apply("Anna", 42))
+        );
+        var vw = Car.apply(GUID.apply("cars", "vw"), "VW", "red", Engine.apply(100, "gas"), List.of());
+
+        /*
+         * Collections are not stored in columns, only the color is compared by the database.
+         */
+        var template = JdbcQueryTemplate.compile(
+            and(match($("color"), eq(p(0))), elemMatch($("drivers"), match($("name"), eq(p(1))))), MAPPING
+        );
+
+        var parameters = List.<Object>of("red", "Anna");
+
+        assertFalse(template.isExact());
+        assertEquals("\"color\" = ?", template.bind(parameters).getSql());
+        assertTrue(template.getResidualFilter(parameters).test(bmw));
+        assertFalse(template.getResidualFilter(parameters).test(vw));
+        assertFalse(template.isExecutedByDatabase(orderBy(asc("brand"))));
+
+        /*
+         * Alternatives which can't be expressed in SQL select all rows.
+         */
+        var alternatives = JdbcQueryTemplate.compile(
+            or(match($("color"), eq(p(0))), elemMatch($("drivers"), match($("name"), eq(p(1))))), MAPPING
+        );
+
+        assertEquals("1 = 1", alternatives.bind(parameters).getSql());
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.wellnr.platform.core.persistence.jdbc;
+
+import com.wellnr.platform.common.guid.GUID;
+import com.wellnr.platform.core.config.JdbcDatabaseConfiguration;
+import com.wellnr.platform.core.context.PlatformContext;
+import com.wellnr.platform.core.persistence.query.AbstractQueryEngineRepositoryTest;
+import org.junit.jupiter.api.Test;
+import samples.data.car.*;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.wellnr.platform.core.persistence.query.Queries.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcRepositoryTest extends AbstractQueryEngineRepositoryTest {
+
+    @Override
+    public CarsRepository getCarsRepository(PlatformContext context) {
+        return JdbcRepository.create(context, CarsRepository.class, createConfiguration(), Car.class);
+    }
+
+    @Override
+    public LogbookEntryRepository getLogbookEntriesRepository(PlatformContext context) {
+        return JdbcRepository.create(
+            context, LogbookEntryRepository.class, createConfiguration(), LogbookEntry.class
+        );
+    }
+
+    /**
+     * Batch writes insert new rows and update existing rows, results can be streamed.
+     */
+    @Test
+    public void testBatchWritesAndStreaming() {
+        var engine = JdbcQueryEngine.apply(Car.class, createConfiguration());
+        var byGuid = match($("guid"), eq(p(0)));
+
+        var cars = new ArrayList<Car>();
+        var parameters = new ArrayList<List<Object>>();
+
+        for (var i = 0; i < 2500; i++) {
+            var car = Car.apply(
+                GUID.apply("cars", "car-" + i), "Brand-" + (i % 10), "red", Engine.apply(i, "gas"), List.of()
+            );
+
+            cars.add(car);
+            parameters.add(List.of(car.getGUID()));
+        }
+
+        engine.insertOrUpdateAll(cars, byGuid, parameters);
+
+        var tesla = Car.apply(GUID.apply("cars", "car-7"), "Tesla", "silver", Engine.apply(110, "electric"), List.of());
+        engine.insertOrUpdateAll(List.of(tesla), byGuid, List.of(List.of(tesla.getGUID())));
+
+        assertEquals(2500, engine.count(match($("guid"), isIn(p(0))), List.of(parameters.stream()
+            .map(p -> p.get(0))
+            .toList())));
+
+        assertEquals("Tesla", engine.findOne(byGuid, List.of(tesla.getGUID())).orElseThrow().getBrand());
+
+        try (var stream = engine.stream(match($("color"), eq(v("red"))), orderBy(desc("engine.power")), List.of())) {
+            var powers = stream.limit(3).map(car -> car.getEngine().getPower()).toList();
+            assertEquals(List.of(2499, 2498, 2497), powers);
+        }
+
+        assertEquals(250, engine.remove(match($("brand"), eq(v("Brand-3"))), List.of()));
+        assertTrue(engine.findAll(match($("brand"), eq(v("Brand-3"))), List.of()).isEmpty());
+    }
+
+    /**
+     * Columns which are missing in an existing table are added and filled from the stored documents.
+     */
+    @Test
+    public void testMissingColumnsAreAdded() throws SQLException {
+        var configuration = createConfiguration();
+        var byGuid = match($("guid"), eq(p(0)));
+        var car = Car.apply(GUID.apply("cars", "car-1"), "Tesla", "silver", Engine.apply(110, "electric"), List.of());
+
+        JdbcQueryEngine.apply(Car.class, configuration).insertOrUpdate(car, byGuid, List.of(car.getGUID()));
+
+        try (var connection = DriverManager.getConnection(configuration.getUrl());
+             var statement = connection.createStatement()) {
+
+            statement.execute("ALTER TABLE \"car\" DROP COLUMN \"color\"");
+        }
+
+        var engine = JdbcQueryEngine.apply(Car.class, configuration);
+        assertEquals(List.of(car), engine.findAll(match($("color"), eq(v("silver"))), List.of()));
+    }
+
+    /**
+     * Closing the pools of a context closes idle sessions, and sessions which are in use once they are released.
+     */
+    @Test
+    public void testPoolsAreClosed() throws SQLException {
+        var context = PlatformContext.apply();
+        var pools = context.getInstance(JdbcConnectionPoolRegistry.class);
+        var pool = pools.createPool(createConfiguration());
+
+        var idle = pool.acquire();
+        var used = pool.acquire();
+        pool.release(idle);
+
+        pools.close();
+
+        assertEquals(0, pools.size());
+        assertTrue(idle.getConnection().isClosed());
+        assertFalse(used.getConnection().isClosed());
+
+        pool.release(used);
+
+        assertTrue(used.getConnection().isClosed());
+        assertThrows(IllegalStateException.class, pool::acquire);
+    }
+
+    private static JdbcDatabaseConfiguration createConfiguration() {
+        return JdbcDatabaseConfiguration.apply("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.wellnr.platform.core.persistence.mongo;
+
+import com.wellnr.platform.core.config.MongoDatabaseConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MongoClientRegistryTest {
+
+    @Test
+    public void test() {
+        var registry = MongoClientRegistry.apply();
+        var pool = MongoDatabaseConfiguration.ConnectionPoolProperties.apply(
+            10, 0, 2, Duration.ofSeconds(5), Duration.ofMinutes(1)
+        );
+
+        var users = MongoDatabaseConfiguration.apply("users", null, "mongodb://localhost:27017", pool);
+        var cars = MongoDatabaseConfiguration.apply("cars", null, "mongodb://localhost:27017", pool);
+        var unpooled = MongoDatabaseConfiguration.apply("cars", "mongodb://localhost:27017");
+
+        var client = registry.getClient(users);
+
+        assertSame(client, registry.getClient(cars));
+        assertFalse(client == registry.getClient(unpooled));
+        assertEquals("cars", registry.getDatabase(cars).getName());
+        assertEquals(2, registry.size());
+        assertEquals(10, users.getClientSettings().getConnectionPoolSettings().getMaxSize());
+
+        registry.close();
+
+        assertEquals(0, registry.size());
+        assertFalse(client == registry.getClient(users));
+
+        registry.close();
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.wellnr.platform.core.persistence.mongo;
+
+import com.mongodb.client.MongoDatabase;
+import com.wellnr.platform.common.guid.GUID;
+import com.wellnr.platform.core.config.MongoDatabaseConfiguration;
+import org.bson.Document;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.utility.DockerImageName;
+import samples.data.car.Car;
+import samples.data.car.Driver;
+import samples.data.car.Engine;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.wellnr.platform.core.persistence.query.Queries.*;
+
+/**
+ * Measures the bytes received by the database per update of {@link MongoQueryEngine}, with full replacements
+ * and with diff updates (see {@link MongoQueryEngine.MongoCollectionProperties#diffUpdates}).
+ * <p>
+ * Not executed as part of the test suite, requires Docker. Usage: {@code MongoDiffUpdatesBenchmark [records]},
+ * defaults to 10k records. Each record is updated once, only its color changes.
+ */
+public final class MongoDiffUpdatesBenchmark {
+
+    private MongoDiffUpdatesBenchmark() {
+
+    }
+
+    public static void main(String[] args) {
+        var records = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        try (var container = new MongoDBContainer(DockerImageName.parse("mongo:6.0.4"))) {
+            container.start();
+
+            var configuration = MongoDatabaseConfiguration.apply("benchmark", container.getConnectionString());
+            var database = configuration.getClient();
+
+            for (var diffUpdates : List.of(false, true)) {
+                var properties = MongoQueryEngine.MongoCollectionProperties
+                    .apply()
+                    .withCollectionName("cars_" + diffUpdates)
+                    .withDiffUpdates(diffUpdates);
+
+                var engine = MongoQueryEngine.apply(Car.class, database, properties);
+                var byGuid = match($("guid"), eq(p(0)));
+
+                var drivers = IntStream
+                    .range(0, 20)
+                    .mapToObj(i -> Driver.apply("Driver " + i, 18 + i))
+                    .toList();
+
+                for (var i = 0; i < records; i++) {
+                    var car = Car.apply(
+                        GUID.apply("cars", "car-" + i), "Brand-" + (i % 100), "red", Engine.apply(i, "gas"), drivers
+                    );
+
+                    engine.insertOrUpdate(car, byGuid, List.of(car.getGUID()));
+                }
+
+                var bytesBefore = getBytesIn(database);
+                var startedAt = System.nanoTime();
+
+                for (var i = 0; i < records; i++) {
+                    var car = engine.findOne(byGuid, List.of(GUID.apply("cars", "car-" + i))).orElseThrow();
+                    var changed = Car.apply(car.getGUID(), car.getBrand(), "blue", car.getEngine(), car.getDrivers());
+
+                    engine.insertOrUpdate(changed, byGuid, List.of(changed.getGUID()));
+                }
+
+                var duration = System.nanoTime() - startedAt;
+                var bytes = getBytesIn(database) - bytesBefore;
+
+                System.out.printf(
+                    "diffUpdates=%s: %d bytes received per find and update, %.2f ms per find and update%n",
+                    diffUpdates, bytes / records, duration / 1e6 / records
+                );
+            }
+        }
+    }
+
+    private static long getBytesIn(MongoDatabase database) {
+        var status = database.runCommand(new Document("serverStatus", 1));
+        return ((Number) status.get("network", Document.class).get("bytesIn")).longValue();
+    }
+
+}
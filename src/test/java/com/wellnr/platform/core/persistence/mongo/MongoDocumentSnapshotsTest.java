@@ -0,0 +1,74 @@
+package com.wellnr.platform.core.persistence.mongo;
+
+import com.mongodb.MongoClientSettings;
+import com.wellnr.platform.common.databind.DefaultObjectMapperFactory;
+import com.wellnr.platform.common.guid.GUID;
+import org.bson.BsonDocument;
+import org.bson.UuidRepresentation;
+import org.junit.jupiter.api.Test;
+import org.mongojack.JacksonCodecRegistry;
+import samples.data.car.Car;
+import samples.data.car.Engine;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MongoDocumentSnapshotsTest {
+
+    @Test
+    public void test() {
+        var codecs = new JacksonCodecRegistry(
+            DefaultObjectMapperFactory.apply().createJsonMapper(true),
+            MongoClientSettings.getDefaultCodecRegistry(),
+            null,
+            UuidRepresentation.STANDARD
+        );
+
+        var snapshots = MongoDocumentSnapshots.apply(codecs.addCodecForClass(Car.class), true);
+        var guid = GUID.apply("cars", "bmw");
+        var car = Car.apply(guid, "BMW", "red", Engine.apply(200, "gas"), List.of());
+
+        /*
+         * Without snapshot, the document must be replaced.
+         */
+        assertEquals(Optional.empty(), snapshots.getUpdate(guid, snapshots.encode(car)));
+
+        /*
+         * Only changed fields are updated, embedded documents field by field.
+         */
+        snapshots.remember(car);
+
+        var changed = Car.apply(guid, "BMW", "blue", Engine.apply(250, "gas"), null);
+        var update = snapshots.getUpdate(guid, snapshots.encode(changed)).orElseThrow();
+
+        assertEquals(
+            BsonDocument.parse("{ $set: { 'color': 'blue', 'engine.power': 250, 'drivers': null } }"),
+            update
+        );
+
+        assertTrue(snapshots.getUpdate(guid, snapshots.encode(car)).orElseThrow().isEmpty());
+
+        /*
+         * Loaded entities are not remembered before an entity has been written by its GUID.
+         */
+        var readOnly = MongoDocumentSnapshots.apply(codecs.addCodecForClass(Car.class), true);
+        readOnly.remember(car);
+
+        assertEquals(Optional.empty(), readOnly.getUpdate(guid, readOnly.encode(car)));
+
+        readOnly.remember(car);
+        assertTrue(readOnly.getUpdate(guid, readOnly.encode(car)).isPresent());
+
+        /*
+         * Disabled snapshots never return updates.
+         */
+        var disabled = MongoDocumentSnapshots.apply(codecs.addCodecForClass(Car.class), false);
+        disabled.remember(car);
+
+        assertFalse(disabled.isEnabled());
+        assertEquals(Optional.empty(), disabled.getUpdate(guid, disabled.encode(car)));
+    }
+
+}
@@ -1,8 +1,12 @@
 package com.wellnr.platform.core.persistence.mongo;
 
 import com.wellnr.platform.common.databind.DefaultObjectMapperFactory;
+import com.mongodb.client.model.Collation;
 import com.wellnr.platform.common.guid.GUID;
+import com.wellnr.platform.common.tuples.Tuple2;
 import com.wellnr.platform.core.config.MongoDatabaseConfiguration;
+import com.wellnr.platform.core.persistence.query.Index;
+import com.wellnr.platform.core.persistence.query.values.Field;
 import org.bson.UuidRepresentation;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -14,9 +18,12 @@ import samples.data.car.Driver;
 import samples.data.car.Engine;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.StreamSupport;
 
 import static com.wellnr.platform.core.persistence.query.Queries.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class MongoQueryEngineTest {
 
@@ -110,4 +117,22 @@ public class MongoQueryEngineTest {
         assertEquals("BMW", result.get(0).getBrand());
     }
 
+    @Test
+    public void testEnsureIndex() {
+        var index = Index.apply(Field.apply("brand"), Field.apply("engine.type"));
+
+        engine.ensureIndex(index);
+        engine.ensureIndex(index);
+        engine.ensureIndex(Index.apply(Field.apply("guid")));
+
+        var name = engine.indexes.get(Tuple2.apply(index, Optional.<Collation>empty())).join();
+        var names = StreamSupport
+            .stream(engine.collection.listIndexes().spliterator(), false)
+            .map(document -> document.getString("name"))
+            .toList();
+
+        assertEquals(1, engine.indexes.size());
+        assertTrue(names.contains(name));
+    }
+
 }
@@ -2,12 +2,18 @@ package com.wellnr.platform.core.persistence.query;
 
 import com.wellnr.platform.common.guid.GUID;
 import com.wellnr.platform.core.context.PlatformContext;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
 import org.junit.jupiter.api.Test;
 import samples.data.car.*;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public abstract class AbstractQueryEngineRepositoryTest {
@@ -81,4 +87,188 @@ public abstract class AbstractQueryEngineRepositoryTest {
         assertEquals(entry, result.get(0));
     }
 
+    @Test
+    public void testSortingAndPaging() {
+        var context = PlatformContext.apply();
+        var repo = getCarsRepository(context);
+
+        for (var brand : List.of("c", "a", "e", "b", "d")) {
+            repo.insertOrUpdateCar(Car.apply(
+                GUID.apply("cars", "sorted-" + brand), brand, "green", Engine.apply(10, "gas"), List.of()
+            ));
+        }
+
+        var top = repo.findAllCarsByColorOrderByBrandDescTop2("green");
+        assertEquals(List.of("e", "d"), top.stream().map(Car::getBrand).toList());
+
+        var page = repo.findAllCarsByColorOrderByBrand("green", QueryOptions.apply().withOffset(1).withLimit(2));
+        assertEquals(List.of("b", "c"), page.stream().map(Car::getBrand).toList());
+
+        var nextPage = repo.findAllCarsByColorOrderByBrand(
+            "green", QueryOptions.apply().withAfter(List.of(Queries.v("c"))).withLimit(2)
+        );
+        assertEquals(List.of("d", "e"), nextPage.stream().map(Car::getBrand).toList());
+    }
+
+    @Test
+    public void testSortingAndPagingByGUID() {
+        var context = PlatformContext.apply();
+        var repo = getCarsRepository(context);
+
+        for (var id : List.of("c", "a", "d", "b")) {
+            repo.insertOrUpdateCar(Car.apply(
+                GUID.apply("cars", "tied-" + id), id.equals("d") ? "x" : "y", "yellow", Engine.apply(10, "gas"),
+                List.of()
+            ));
+        }
+
+        /*
+         * Cars with the same brand are ordered by their GUIDs, also when paging by the last car of a page.
+         */
+        var page = repo.findAllCarsByColorOrderByBrandAndGUID("yellow", QueryOptions.apply().withLimit(2));
+        assertEquals(
+            List.of(GUID.apply("cars", "tied-d"), GUID.apply("cars", "tied-a")),
+            page.stream().map(Car::getGUID).toList()
+        );
+
+        var last = page.get(page.size() - 1);
+        var nextPage = repo.findAllCarsByColorOrderByBrandAndGUID(
+            "yellow", QueryOptions.apply().withAfter(List.of(Queries.v(last.getBrand()), Queries.v(last.getGUID())))
+        );
+
+        assertEquals(
+            List.of(GUID.apply("cars", "tied-b"), GUID.apply("cars", "tied-c")),
+            nextPage.stream().map(Car::getGUID).toList()
+        );
+    }
+
+    @Test
+    public void testCountAndExists() {
+        var context = PlatformContext.apply();
+        var repo = getCarsRepository(context);
+
+        for (var brand : List.of("a", "b", "c")) {
+            repo.insertOrUpdateCar(Car.apply(
+                GUID.apply("cars", "counted-" + brand), brand, "purple", Engine.apply(10, "gas"), List.of()
+            ));
+        }
+
+        assertEquals(3, repo.countCars());
+        assertEquals(3, repo.countCarsByColor("purple"));
+        assertEquals(0, repo.countCarsByColor("orange"));
+        assertTrue(repo.existsCarByBrand("b"));
+        assertFalse(repo.existsCarByBrand("d"));
+
+        repo.removeCarByGUID(GUID.apply("cars", "counted-b"));
+
+        assertEquals(2, repo.countCarsByColor("purple"));
+        assertFalse(repo.existsCarByBrand("b"));
+    }
+
+    @Test
+    public void testCustomQueries() {
+        var context = PlatformContext.apply();
+        var repo = getCarsRepository(context);
+
+        for (var color : List.of("cyan", "magenta", "olive")) {
+            repo.insertOrUpdateCar(Car.apply(
+                GUID.apply("cars", "custom-" + color), "Custom-" + color, color, Engine.apply(10, "gas"), List.of()
+            ));
+        }
+
+        var cars = repo.findAllCarsByColors(List.of("cyan", "olive"));
+        assertEquals(Set.of("cyan", "olive"), cars.stream().map(Car::getColor).collect(Collectors.toSet()));
+
+        var magenta = repo.findAllCarsByBrandIgnoreCase("CUSTOM-MAGENTA");
+        assertEquals(List.of("magenta"), magenta.stream().map(Car::getColor).toList());
+    }
+
+    @Test
+    public void testRemoveMany() {
+        var context = PlatformContext.apply();
+        var repo = getCarsRepository(context);
+
+        for (var brand : List.of("a", "b", "c")) {
+            repo.insertOrUpdateCar(Car.apply(
+                GUID.apply("cars", "removed-" + brand), brand, "white", Engine.apply(10, "gas"), List.of()
+            ));
+        }
+
+        assertEquals(3, repo.removeCarsByColor("white"));
+        assertEquals(0, repo.removeCarsByColor("white"));
+        assertEquals(0, repo.countCarsByColor("white"));
+    }
+
+    @Test
+    public void testBatchWrites() {
+        var context = PlatformContext.apply();
+        var repo = getCarsRepository(context);
+
+        var cars = List.of("a", "b", "c")
+            .stream()
+            .map(brand -> Car.apply(
+                GUID.apply("cars", "batch-" + brand), brand, "black", Engine.apply(10, "gas"), List.of()
+            ))
+            .toList();
+
+        repo.insertOrUpdateAllCars(cars);
+        repo.insertOrUpdateAllCars(List.of(Car.apply(
+            GUID.apply("cars", "batch-a"), "a", "grey", Engine.apply(10, "gas"), List.of()
+        )));
+
+        assertEquals(2, repo.countCarsByColor("black"));
+        assertEquals(1, repo.countCarsByColor("grey"));
+
+        var removed = repo.removeAllCarsByGUID(List.of(
+            GUID.apply("cars", "batch-a"), GUID.apply("cars", "batch-b"), GUID.apply("cars", "batch-x")
+        ));
+
+        assertEquals(2, removed);
+        assertEquals(List.of("c"), repo.findAllCarsByBrand("c").stream().map(Car::getBrand).toList());
+        assertEquals(0, repo.countCarsByColor("grey"));
+    }
+
+    @Test
+    public void testStreaming() {
+        var context = PlatformContext.apply();
+        var repo = getCarsRepository(context);
+
+        for (var brand : List.of("c", "a", "b")) {
+            repo.insertOrUpdateCar(Car.apply(
+                GUID.apply("cars", "streamed-" + brand), brand, "blue", Engine.apply(10, "gas"), List.of()
+            ));
+        }
+
+        try (var stream = repo.findAllCarsByColorOrderByBrandDesc("blue")) {
+            assertEquals(List.of("c", "b", "a"), stream.map(Car::getBrand).toList());
+        }
+
+        var received = new ArrayList<String>();
+        repo.findAllCarsByColorOrderByBrandAsc("blue").subscribe(new Flow.Subscriber<>() {
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Car item) {
+                received.add(item.getBrand());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                received.add(throwable.getMessage());
+            }
+
+            @Override
+            public void onComplete() {
+                received.add("done");
+            }
+
+        });
+
+        assertEquals(List.of("a", "b", "c", "done"), received);
+    }
+
 }
@@ -3,6 +3,8 @@ package com.wellnr.platform.core.persistence.query;
 import com.wellnr.platform.core.persistence.query.annotations.CustomQuery;
 import com.wellnr.platform.core.persistence.query.annotations.Path;
 import com.wellnr.platform.core.persistence.query.filter.Query;
+import com.wellnr.platform.core.persistence.query.filter.True;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
@@ -86,8 +88,74 @@ class QueriesTest {
         assertEquals(match($("properties.name"), eq(p(0))), query);
     }
 
+    @Test
+    void getIndexesFromConjunction() throws NoSuchMethodException {
+        var method = TestRepo.class.getMethod("findAllStringByNameAndAge", String.class, int.class);
+        var indexes = Queries.getIndexes(Queries.fromMethod(method));
+
+        assertEquals(List.of(Index.apply($("Name"), $("Age"))), indexes);
+    }
+
+    @Test
+    void getIndexesFromDisjunction() {
+        var query = or(
+            match($("name"), eq(p(0))),
+            and(match($("age"), eq(p(1))), match($("city"), eq($("city", p(2))))),
+            match(uppercase($("brand")), eq(p(3))),
+            match($("color"), eq($("brand")))
+        );
+
+        var expected = List.of(
+            Index.apply($("name")),
+            Index.apply($("age"), $("city"))
+        );
+
+        assertEquals(expected, Queries.getIndexes(query));
+    }
+
+    @Test
+    void optionsFromMethod() throws NoSuchMethodException {
+        var method = TestRepo.class.getMethod(
+            "findAllStringByNameOrderByDisplayNameDescAndGUIDTop50", String.class, QueryOptions.class
+        );
+
+        var expectedQuery = Queries.fromMethod(TestRepo.class.getMethod("findAllStringByName", String.class));
+
+        assertEquals(expectedQuery, Queries.fromMethod(method));
+        assertEquals(orderBy(desc("displayName"), asc("GUID")).withLimit(50), Queries.optionsFromMethod(method));
+    }
+
+    @Test
+    void optionsFromMethodWithoutOptions() throws NoSuchMethodException {
+        var method = TestRepo.class.getMethod("findAllStringByNameAndAge", String.class, int.class);
+        assertEquals(QueryOptions.apply(), Queries.optionsFromMethod(method));
+    }
+
+    @Test
+    void optionsFromMethodAfterEntityName() throws NoSuchMethodException {
+        var method = TestRepo.class.getMethod("findAllPurchaseOrderByCustomer", String.class);
+        var expectedQuery = Queries.fromMethod(TestRepo.class.getMethod("findAllStringByCustomer", String.class));
+
+        /*
+         * `OrderBy` is part of the entity's name, not a sort option.
+         */
+        assertEquals(expectedQuery, Queries.fromMethod(method, PurchaseOrder.class));
+        assertEquals(QueryOptions.apply(), Queries.optionsFromMethod(method, PurchaseOrder.class));
+
+        var sorted = TestRepo.class.getMethod("findAllPurchaseOrdersOrderByCustomerTop5");
+
+        assertEquals(True.apply(), Queries.fromMethod(sorted, PurchaseOrder.class));
+        assertEquals(orderBy(asc("customer")).withLimit(5), Queries.optionsFromMethod(sorted, PurchaseOrder.class));
+    }
+
     public interface TestRepo {
 
+        List<String> findAllStringByCustomer(String customer);
+
+        List<String> findAllPurchaseOrderByCustomer(String customer);
+
+        List<String> findAllPurchaseOrdersOrderByCustomerTop5();
+
         List<String> findAllStringByName(String name);
 
         List<String> findAllStringByNameAndAge(String name, int age);
@@ -96,6 +164,8 @@ class QueriesTest {
 
         List<String> findAllStringByNameOrAgeAndCity(String name, int age, String city);
 
+        List<String> findAllStringByNameOrderByDisplayNameDescAndGUIDTop50(String name, QueryOptions options);
+
         List<String> findAllStringByAnnotatedName(
             @Path("properties.name") String name);
 
@@ -119,6 +189,8 @@ class QueriesTest {
 
     }
 
+    public static class PurchaseOrder {
 
+    }
 
-}
\ No newline at end of file
+}
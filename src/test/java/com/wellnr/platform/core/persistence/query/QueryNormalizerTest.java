@@ -0,0 +1,77 @@
+package com.wellnr.platform.core.persistence.query;
+
+import com.wellnr.platform.core.persistence.query.filter.False;
+import com.wellnr.platform.core.persistence.query.filter.True;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.wellnr.platform.core.persistence.query.Queries.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QueryNormalizerTest {
+
+    @Test
+    void flattenAndFold() {
+        var query = and(
+            and(match($("name"), eq(p(0))), True.apply()),
+            and(match($("name"), eq(p(0)))),
+            or(match($("age"), eq(p(1))), False.apply()));
+
+        var expected = and(
+            match($("name"), eq(p(0))),
+            match($("age"), eq(p(1))));
+
+        assertEquals(expected, QueryNormalizer.normalize(query));
+        assertEquals(False.apply(), QueryNormalizer.normalize(and(match($("name"), eq(p(0))), False.apply())));
+        assertEquals(True.apply(), QueryNormalizer.normalize(or(match($("name"), eq(p(0))), and())));
+    }
+
+    @Test
+    void mergeEqualitiesOfSameField() {
+        var query = or(
+            match($("color"), eq(v("blue"))),
+            match($("age"), eq(p(2))),
+            or(match($("color"), eq(v("red"))), match($("color"), isIn(v("green"), v("blue")))));
+
+        var expected = or(
+            match($("color"), isIn(v("blue"), v("red"), v("green"))),
+            match($("age"), eq(p(2))));
+
+        assertEquals(expected, QueryNormalizer.normalize(query));
+
+        /*
+         * Parameters may be collections, which are compared as a whole by `eq`, but as alternatives by `isIn`.
+         */
+        var parameters = or(match($("color"), eq(p(0))), match($("color"), eq(p(1))));
+        assertEquals(parameters, QueryNormalizer.normalize(parameters));
+
+        var mixed = or(match($("color"), eq(p(0))), match($("color"), eq(v("red"))));
+        assertEquals(mixed, QueryNormalizer.normalize(mixed));
+
+        var collection = or(match($("color"), eq(v(List.of("red")))), match($("color"), eq(v("blue"))));
+        assertEquals(collection, QueryNormalizer.normalize(collection));
+    }
+
+    @Test
+    void orderBySelectivity() {
+        var query = and(
+            elemMatch($("wheels"), eq(v("front"))),
+            or(match($("age"), eq(p(0))), match($("name"), eq(p(1)))),
+            match(uppercase($("name")), eq(p(2))),
+            match($("color"), isIn(p(3), p(4))),
+            match($("age"), eq(p(5))),
+            match($("guid"), eq(p(6))));
+
+        var expected = and(
+            match($("guid"), eq(p(6))),
+            match($("age"), eq(p(5))),
+            match($("color"), isIn(p(3), p(4))),
+            match(uppercase($("name")), eq(p(2))),
+            or(match($("age"), eq(p(0))), match($("name"), eq(p(1)))),
+            elemMatch($("wheels"), eq(v("front"))));
+
+        assertEquals(expected, QueryNormalizer.normalize(query));
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.wellnr.platform.core.persistence.query.cache;
+
+import com.wellnr.platform.common.guid.GUID;
+import com.wellnr.platform.core.persistence.inmemory.InMemoryQueryEngine;
+import org.junit.jupiter.api.Test;
+import samples.data.car.Car;
+import samples.data.car.Engine;
+
+import java.util.List;
+
+import static com.wellnr.platform.core.persistence.query.Queries.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingQueryEngineTest {
+
+    @Test
+    public void test() {
+        var statistics = QueryCacheStatistics.apply();
+        var engine = CachingQueryEngine.apply(
+            InMemoryQueryEngine.apply(Car.class), Car.class, QueryCacheProperties.apply(100, statistics)
+        );
+
+        var byGuid = match($("guid"), eq(p(0)));
+        var byColor = match($("color"), eq(p(0)));
+
+        var bmw = Car.apply(GUID.apply("cars", "bmw"), "BMW", "red", Engine.apply(200, "gas"), List.of());
+        var vw = Car.apply(GUID.apply("cars", "vw"), "VW", "blue", Engine.apply(100, "gas"), List.of());
+
+        engine.insertOrUpdate(bmw, byGuid, List.of(bmw.getGUID()));
+        engine.insertOrUpdate(vw, byGuid, List.of(vw.getGUID()));
+
+        /*
+         * Repeated reads are answered from the cache.
+         */
+        assertEquals(bmw, engine.findOne(byGuid, List.of(bmw.getGUID())).orElseThrow());
+        assertEquals(bmw, engine.findOne(byGuid, List.of(bmw.getGUID())).orElseThrow());
+        assertEquals(List.of(vw), engine.findAll(byColor, List.of("blue")));
+        assertEquals(List.of(vw), engine.findAll(byColor, List.of("blue")));
+        assertEquals(1, engine.count(byColor, List.of("red")));
+
+        assertEquals(2, statistics.getHits());
+        assertEquals(3, statistics.getMisses());
+
+        /*
+         * Writes only invalidate affected results: the BMW becomes blue, thus the lookup of the BMW and the list
+         * of blue cars are invalidated (as well as counts); other results are kept.
+         */
+        assertEquals(vw, engine.findOne(byGuid, List.of(vw.getGUID())).orElseThrow());
+
+        var blueBmw = Car.apply(bmw.getGUID(), "BMW", "blue", bmw.getEngine(), List.of());
+        engine.insertOrUpdate(blueBmw, byGuid, List.of(blueBmw.getGUID()));
+
+        assertEquals(3, statistics.getInvalidations());
+        assertEquals(blueBmw, engine.findOne(byGuid, List.of(bmw.getGUID())).orElseThrow());
+        assertEquals(2, engine.findAll(byColor, List.of("blue")).size());
+        assertEquals(0, engine.count(byColor, List.of("red")));
+        assertEquals(vw, engine.findOne(byGuid, List.of(vw.getGUID())).orElseThrow());
+        assertEquals(3, statistics.getHits());
+
+        /*
+         * Removals invalidate results which contain removed items.
+         */
+        engine.remove(byGuid, List.of(vw.getGUID()));
+
+        assertTrue(engine.findOne(byGuid, List.of(vw.getGUID())).isEmpty());
+        assertEquals(List.of(blueBmw), engine.findAll(byColor, List.of("blue")));
+    }
+
+    @Test
+    public void testPagesAreInvalidatedWithTheirQuery() {
+        var properties = QueryCacheProperties.apply(100, QueryCacheStatistics.apply());
+        var engine = CachingQueryEngine.apply(InMemoryQueryEngine.apply(Car.class), Car.class, properties);
+
+        var byGuid = match($("guid"), eq(p(0)));
+        var byColor = match($("color"), eq(p(0)));
+        var cars = List.of("audi", "bmw", "vw")
+            .stream()
+            .map(brand -> Car.apply(GUID.apply("cars", brand), brand, "red", Engine.apply(100, "gas"), List.of()))
+            .toList();
+
+        cars.forEach(car -> engine.insertOrUpdate(car, byGuid, List.of(car.getGUID())));
+
+        var firstPage = orderBy(asc("brand")).withLimit(1);
+        var secondPage = firstPage.withOffset(1);
+
+        assertEquals(List.of(cars.get(0)), engine.findAll(byColor, firstPage, List.of("red")));
+        assertEquals(List.of(cars.get(1)), engine.findAll(byColor, secondPage, List.of("red")));
+
+        /*
+         * The removed item is only contained in the first page, but the second page moves.
+         */
+        engine.remove(byGuid, List.of(cars.get(0).getGUID()));
+
+        assertEquals(List.of(cars.get(1)), engine.findAll(byColor, firstPage, List.of("red")));
+        assertEquals(List.of(cars.get(2)), engine.findAll(byColor, secondPage, List.of("red")));
+    }
+
+    @Test
+    public void testFrequencyAwareEviction() {
+        var statistics = QueryCacheStatistics.apply();
+        var cache = FrequencyAwareCache.<String, String>apply(2, statistics);
+
+        cache.get("a");
+        cache.put("a", "A");
+        cache.get("a");
+        cache.get("b");
+        cache.put("b", "B");
+
+        /*
+         * `c` has been requested once; it is not admitted instead of the least recently used entry `a`.
+         */
+        cache.get("c");
+        cache.put("c", "C");
+
+        assertTrue(cache.get("a").isPresent());
+        assertEquals(1, statistics.getRejections());
+
+        /*
+         * Once requested more frequently, `c` evicts the least recently used entry `b`.
+         */
+        cache.get("c");
+        cache.get("c");
+        cache.put("c", "C");
+
+        assertTrue(cache.get("c").isPresent());
+        assertTrue(cache.get("b").isEmpty());
+        assertEquals(1, statistics.getEvictions());
+    }
+
+}
@@ -0,0 +1,21 @@
+package samples.data.car;
+
+import com.wellnr.platform.core.persistence.query.filter.Query;
+
+import static com.wellnr.platform.core.persistence.query.Queries.*;
+
+public final class CarsQueries {
+
+    private CarsQueries() {
+
+    }
+
+    public static Query findAllCarsByColors() {
+        return match($("color"), isIn(p(0)));
+    }
+
+    public static Query findAllCarsByBrandIgnoreCase() {
+        return match(uppercase($("brand")), eq(uppercase(p(0))));
+    }
+
+}
@@ -1,9 +1,13 @@
 package samples.data.car;
 
 import com.wellnr.platform.common.guid.GUID;
+import com.wellnr.platform.core.persistence.query.annotations.CustomQuery;
+import com.wellnr.platform.core.persistence.query.options.QueryOptions;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
 
 public interface CarsRepository {
 
@@ -17,8 +21,36 @@ public interface CarsRepository {
 
     List<Car> findAllCarsByBrand(String brand);
 
+    List<Car> findAllCarsByColorOrderByBrandDescTop2(String color);
+
+    List<Car> findAllCarsByColorOrderByBrand(String color, QueryOptions options);
+
+    List<Car> findAllCarsByColorOrderByBrandAndGUID(String color, QueryOptions options);
+
+    Stream<Car> findAllCarsByColorOrderByBrandDesc(String color);
+
+    Flow.Publisher<Car> findAllCarsByColorOrderByBrandAsc(String color);
+
+    @CustomQuery(CarsQueries.class)
+    List<Car> findAllCarsByColors(List<String> colors);
+
+    @CustomQuery(CarsQueries.class)
+    List<Car> findAllCarsByBrandIgnoreCase(String brand);
+
+    long countCars();
+
+    long countCarsByColor(String color);
+
+    boolean existsCarByBrand(String brand);
+
     void insertOrUpdateCar(Car car);
 
+    void insertOrUpdateAllCars(List<Car> cars);
+
     void removeCarByGUID(GUID guid);
 
+    long removeCarsByColor(String color);
+
+    long removeAllCarsByGUID(List<GUID> guids);
+
 }